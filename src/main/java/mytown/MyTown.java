@@ -27,7 +27,6 @@ import mytown.handlers.Ticker;
 import mytown.handlers.VisualsHandler;
 import mytown.new_datasource.MyTownDatasource;
 import mytown.protection.ProtectionHandlers;
-import mytown.protection.ProtectionManager;
 import mytown.protection.eventhandlers.ExtraEventsHandler;
 import mytown.protection.json.ProtectionParser;
 import mytown.proxies.EconomyProxy;
@@ -93,14 +92,14 @@ public class MyTown {
         ProtectionParser.start();
         //SafemodeHandler.setSafemode(!DatasourceProxy.start(config));
         datasource = new MyTownDatasource();
+        // The worlds are loaded by now, their chunks are read with the datasource
+        ProtectionHandlers.instance.rebuildTracked();
         LOG.info("Started");
     }
 
     @EventHandler
     public void serverStopping(FMLServerStoppingEvent ev) {
-        datasource.deleteAllBlockOwners();
-        ProtectionManager.saveBlockOwnersToDB();
-        datasource.stop();
+        datasource.shutdown();
     }
 
     /**
@@ -180,6 +179,7 @@ public class MyTown {
         }
 
         ProtectionParser.start();
+        ProtectionHandlers.instance.rebuildTracked();
     }
 
     /**
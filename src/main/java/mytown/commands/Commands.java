@@ -102,7 +102,7 @@ public abstract class Commands {
     }
 
     public static Resident getResidentFromName(String playerName) {
-        Resident res = MyTownUniverse.instance.residents.get(playerName);
+        Resident res = MyTownUniverse.instance.getResident(playerName);
         if (res == null)
             throw new MyTownCommandException("mytown.cmd.err.resident.missing", playerName);
         return res;
@@ -1,5 +1,6 @@
 package mytown.commands;
 
+import com.google.common.base.Joiner;
 import myessentials.chat.api.ChatComponentContainer;
 import myessentials.chat.api.ChatComponentFormatted;
 import myessentials.chat.api.ChatManager;
@@ -23,9 +24,14 @@ import mytown.entities.flag.Flag;
 import mytown.entities.flag.FlagType;
 import mytown.entities.tools.WhitelisterTool;
 import mytown.handlers.SafemodeHandler;
+import mytown.handlers.UpkeepJob;
 import mytown.handlers.VisualsHandler;
 import mytown.new_datasource.MyTownDatasource;
 import mytown.new_datasource.MyTownUniverse;
+import mytown.new_datasource.StatementCache;
+import mytown.new_datasource.WriteBehindQueue;
+import mytown.protection.ProtectionHandlers;
+import mytown.protection.Sweep;
 import mytown.util.exceptions.MyTownCommandException;
 import net.minecraft.block.Block;
 import net.minecraft.block.ITileEntityProvider;
@@ -41,6 +47,7 @@ import net.minecraft.util.IChatComponent;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * All commands for admins go here
@@ -149,8 +156,13 @@ public class CommandsAdmin extends Commands {
             console = true)
     public static CommandResponse updateRanksCommand(ICommandSender sender, List<String> args) {
         MyTown.instance.getRanksConfig().create(new Rank.Container());
-        for(Town town : getUniverse().towns) {
-            getDatasource().resetRanks(town);
+        getDatasource().startBatch();
+        try {
+            for(Town town : getUniverse().towns) {
+                getDatasource().resetRanks(town);
+            }
+        } finally {
+            getDatasource().executeBatch();
         }
         ChatManager.send(sender, "mytown.notification.update.ranks");
         return CommandResponse.DONE;
@@ -769,6 +781,35 @@ public class CommandsAdmin extends Commands {
         return CommandResponse.DONE;
     }
 
+    @Command(
+            name = "upkeep",
+            permission = "mytown.adm.cmd.upkeep",
+            parentName = "mytown.adm.cmd",
+            syntax = "/townadmin upkeep",
+            console = true)
+    public static CommandResponse upkeepCommand(ICommandSender sender, List<String> args) {
+        UpkeepJob.Projection projection = new UpkeepJob.Projection(UpkeepJob.compute(getUniverse().towns));
+        ChatManager.send(sender, "mytown.notification.town.upkeep.projection", projection.paying, projection.failing, projection.deleted.size(), Joiner.on(", ").join(projection.deleted));
+        return CommandResponse.DONE;
+    }
+
+    @Command(
+            name = "sweeps",
+            permission = "mytown.adm.cmd.sweeps",
+            parentName = "mytown.adm.cmd",
+            syntax = "/townadmin sweeps",
+            console = true)
+    public static CommandResponse sweepsCommand(ICommandSender sender, List<String> args) {
+        for (Map.Entry<Integer, Sweep[]> entry : ProtectionHandlers.instance.getSweeps().entrySet()) {
+            Sweep entities = entry.getValue()[0];
+            Sweep tileEntities = entry.getValue()[1];
+            ChatManager.send(sender, "mytown.notification.sweeps", entry.getKey(),
+                    entities.getLastSize(), entities.getLastTicks(), entities.getMaxTicks(), entities.getLastBusyMicros(),
+                    tileEntities.getLastSize(), tileEntities.getLastTicks(), tileEntities.getMaxTicks(), tileEntities.getLastBusyMicros());
+        }
+        return CommandResponse.DONE;
+    }
+
     @Command(
             name = "db",
             permission = "mytown.adm.cmd.db",
@@ -786,11 +827,15 @@ public class CommandsAdmin extends Commands {
             syntax = "/townadmin db purge",
             console = true)
     public static CommandResponse dbCommandPurge(ICommandSender sender, List<String> args) {
-        for (Town town : getUniverse().towns) {
-            getDatasource().deleteTown(town);
-        }
-        for (Resident resident : getUniverse().residents) {
-            getDatasource().deleteResident(resident);
+        getDatasource().startBatch();
+        try {
+            for (Town town : getUniverse().towns) {
+                getDatasource().deleteTown(town);
+            }
+            // The residents that aren't in memory are deleted too
+            getDatasource().deleteAllResidents();
+        } finally {
+            getDatasource().executeBatch();
         }
 
         ChatManager.send(sender, "mytown.notification.db.purging");
@@ -804,12 +849,56 @@ public class CommandsAdmin extends Commands {
             syntax = "/townadmin db reload",
             console = true)
     public static CommandResponse dbReloadCommand(ICommandSender sender, List<String> args) {
+        getDatasource().shutdown();
         MyTownUniverse.instance.clear();
         MyTown.instance.datasource = new MyTownDatasource();
         ChatManager.send(sender, "mytown.notification.db.reloaded");
         return CommandResponse.DONE;
     }
 
+    @Command(
+            name = "queue",
+            permission = "mytown.adm.cmd.db.queue",
+            parentName = "mytown.adm.cmd.db",
+            syntax = "/townadmin db queue",
+            console = true)
+    public static CommandResponse dbQueueCommand(ICommandSender sender, List<String> args) {
+        WriteBehindQueue queue = getDatasource().getWriteQueue();
+        ChatManager.send(sender, "mytown.notification.db.queue", queue.getDepth(), queue.getLag(), queue.getExecuted(), queue.getCoalesced(), queue.getFailed());
+        StatementCache statements = getDatasource().getStatementCache();
+        ChatManager.send(sender, "mytown.notification.db.statements", statements.getSize(), statements.getHits(), statements.getMisses(), statements.getInvalidations());
+        return CommandResponse.DONE;
+    }
+
+    @Command(
+            name = "migrate",
+            permission = "mytown.adm.cmd.db.migrate",
+            parentName = "mytown.adm.cmd.db",
+            syntax = "/townadmin db migrate",
+            console = true)
+    public static CommandResponse dbMigrateCommand(ICommandSender sender, List<String> args) {
+        final String target = Config.instance.migrationTarget.get();
+        if (target.isEmpty()) {
+            throw new MyTownCommandException("mytown.cmd.err.db.migrate.target");
+        }
+        // Only the admins are left to change anything, and whatever they change isn't copied
+        if (!SafemodeHandler.isInSafemode()) {
+            throw new MyTownCommandException("mytown.cmd.err.db.migrate.safemode");
+        }
+
+        final MyTownDatasource datasource = getDatasource();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                datasource.migrate(target);
+            }
+        }, "MyTown Migration");
+        thread.setDaemon(true);
+        thread.start();
+        ChatManager.send(sender, "mytown.notification.db.migrating");
+        return CommandResponse.DONE;
+    }
+
     @Command(
             name = "perm",
             permission = "mytown.adm.cmd.perm",
@@ -1363,8 +1452,7 @@ public class CommandsAdmin extends Commands {
             Town town = getTownFromName(args.get(0));
             Plot plot = getPlotFromName(town, args.get(1));
 
-            plot.setName(args.get(2));
-            getDatasource().savePlot(plot);
+            MyTownUniverse.instance.renamePlot(plot, args.get(2));
 
             ChatManager.send(sender, "mytown.notification.plot.renamed");
             return CommandResponse.DONE;
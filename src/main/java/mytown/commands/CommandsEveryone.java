@@ -314,8 +314,7 @@ public class CommandsEveryone extends Commands {
                 throw new MyTownCommandException("mytown.cmd.err.plot.perm.set.noPermission");
             }
 
-            plot.setName(args.get(0));
-            getDatasource().savePlot(plot);
+            MyTownUniverse.instance.renamePlot(plot, args.get(0));
 
             ChatManager.send(sender, "mytown.notification.plot.renamed");
 
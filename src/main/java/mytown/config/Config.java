@@ -26,6 +26,42 @@ public class Config extends ConfigTemplate {
     public ConfigProperty<String> dbType = new ConfigProperty<String>(
             "type", "datasource", "Datasource Type. Eg: MySQL, SQLite, etc.",
             "SQLite");
+    public ConfigProperty<Integer> loadConnections = new ConfigProperty<Integer>(
+            "loadConnections", "datasource",
+            "The number of extra connections used to read the tables at the same time when the server starts. 0 reads them one after the other.",
+            4);
+    public ConfigProperty<Integer> loadFetchSize = new ConfigProperty<Integer>(
+            "loadFetchSize", "datasource",
+            "The number of rows fetched from the database at a time when the server starts.",
+            1000);
+    public ConfigProperty<Integer> residentCacheSize = new ConfigProperty<Integer>(
+            "residentCacheSize", "datasource",
+            "The number of residents kept in memory that are offline and not part of any town. The others are read from the database when needed.",
+            1000);
+    public ConfigProperty<Boolean> snapshot = new ConfigProperty<Boolean>(
+            "snapshot", "datasource",
+            "If true the universe is written to a file when the server stops cleanly and read from it on the next start, as long as the database wasn't changed since.",
+            true);
+    public ConfigProperty<Boolean> journal = new ConfigProperty<Boolean>(
+            "journal", "datasource",
+            "If true every change is also appended to a journal file before it's written to the database, the ones still waiting to be written are saved on the next start after a crash. Only for a database used by a single server.",
+            false);
+    public ConfigProperty<Integer> journalCommitInterval = new ConfigProperty<Integer>(
+            "journalCommitInterval", "datasource",
+            "The time in milliseconds the changes are gathered before they're written to the journal together. At most this much is lost on a crash.",
+            20);
+    public ConfigProperty<Integer> journalCheckpointSize = new ConfigProperty<Integer>(
+            "journalCheckpointSize", "datasource",
+            "The size in kilobytes of the journal after which it's emptied, once all of its changes are in the database.",
+            1024);
+    public ConfigProperty<String> migrationTarget = new ConfigProperty<String>(
+            "migrationTarget", "datasource",
+            "The JDBC URL of the database '/townadmin db migrate' copies everything to, with the user and password in it if needed. MyTown has to be started once on it first so it has the tables.",
+            "");
+    public ConfigProperty<Integer> migrationBatchSize = new ConfigProperty<Integer>(
+            "migrationBatchSize", "datasource",
+            "The number of rows inserted together while migrating, each batch is saved on its own.",
+            1000);
 
     /* ----- Others ----- */
 
@@ -123,6 +159,14 @@ public class Config extends ConfigTemplate {
             "upkeepTownDeletionDays", "towns",
             "The amount of days a town can go on without paying upkeep.",
             7);
+    public ConfigProperty<Integer> upkeepBudget = new ConfigProperty<Integer>(
+            "upkeepBudget", "towns",
+            "The time in microseconds that deleting the towns which didn't pay upkeep may take per tick, the rest is deleted on the next ticks.",
+            2000);
+    public ConfigProperty<Boolean> upkeepDryRun = new ConfigProperty<Boolean>(
+            "upkeepDryRun", "towns",
+            "Only write to the log what the daily upkeep would do, without taking any money or deleting any town. Use '/townadmin upkeep' to see it at any time.",
+            false);
     public ConfigProperty<Integer> minPlotsArea = new ConfigProperty<Integer>(
             "minPlotsArea", "plots",
             "The minimum area required to create a plot. (X*Z)",
@@ -152,6 +196,10 @@ public class Config extends ConfigTemplate {
             "defaultProtectionSize", "protection",
             "The range that it's going to check in if a protection's segment that has a tileentity does not provide getters for its area of influence.",
             32);
+    public ConfigProperty<Integer> placementCheckTimeout = new ConfigProperty<Integer>(
+            "placementCheckTimeout", "protection",
+            "The number of ticks to wait for the TileEntity of a placed block to appear before giving up on recording its owner.",
+            20);
     public ConfigProperty<Boolean> fireSpreadInTowns = new ConfigProperty<Boolean>(
             "fireSpreadInTowns", "protection",
             "Allow fire to spread and burn up blocks in all towns and plots on the server.",
@@ -164,6 +212,14 @@ public class Config extends ConfigTemplate {
             "mobTravelInTowns", "protection",
             "Allow mobs to travel into, but not spawn in a mob protected towns and plots on the server.",
             false);
+    public ConfigProperty<Integer> sweepInterval = new ConfigProperty<Integer>(
+            "sweepInterval", "protection",
+            "The number of ticks over which all the loaded entities and tile entities of a world are checked, spread evenly.",
+            20);
+    public ConfigProperty<Integer> sweepBudget = new ConfigProperty<Integer>(
+            "sweepBudget", "protection",
+            "The time in microseconds the checks of entities, and separately those of tile entities, may take in a world per tick. A check that doesn't fit is moved to the next tick, so a lower budget smooths out the ticks but takes longer to go through all of them. Use '/townadmin sweeps' to see how long it takes.",
+            1000);
 
     //@ConfigProperty(category = "extra", name = "debug", comment = "Enables debugging output to console, use '/ta debug' to toggle ingame")
     //public static boolean debug;
@@ -1,6 +1,5 @@
 package mytown.entities;
 
-import mytown.MyTown;
 import mytown.config.Config;
 
 import java.util.ArrayList;
@@ -24,17 +23,6 @@ public class Bank {
         return false;
     }
 
-    public void payUpkeep() {
-        int amount = getNextPaymentAmount();
-        if(makePayment(amount)) {
-            daysNotPaid = 0;
-            town.notifyEveryone(MyTown.instance.LOCAL.getLocalization("mytown.notification.town.upkeep"));
-        } else {
-            daysNotPaid++;
-            town.notifyEveryone(MyTown.instance.LOCAL.getLocalization("mytown.notification.town.upkeep.failed", Config.instance.upkeepTownDeletionDays.get() - daysNotPaid));
-        }
-    }
-
     public Town getTown() {
         return town;
     }
@@ -11,6 +11,7 @@ import mytown.entities.flag.Flag;
 import mytown.entities.flag.FlagType;
 import mytown.handlers.VisualsHandler;
 import mytown.new_datasource.MyTownUniverse;
+import mytown.util.LongObjectMap;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.init.Blocks;
 import net.minecraft.tileentity.TileEntitySign;
@@ -20,8 +21,13 @@ import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class Plot implements IChatFormat {
     private int dbID;
@@ -69,6 +75,10 @@ public class Plot implements IChatFormat {
         return dim == this.dim && x1 <= x && x <= x2 && y1 <= y && y <= y2 && z1 <= z && z <= z2;
     }
 
+    public boolean intersects(int dim, Volume volume) {
+        return dim == this.dim && x1 <= volume.getMaxX() && volume.getMinX() <= x2 && y1 <= volume.getMaxY() && volume.getMinY() <= y2 && z1 <= volume.getMaxZ() && volume.getMinZ() <= z2;
+    }
+
     public boolean hasPermission(Resident res, FlagType<Boolean> flagType) {
         if(flagType.configurable ? flagsContainer.getValue(flagType) : flagType.defaultValue) {
             return true;
@@ -224,8 +234,15 @@ public class Plot implements IChatFormat {
             }
     }
 
+    /**
+     * Keeps an index of the plots per chunk they cover so that point and volume queries
+     * only check the few plots near the position instead of the whole list.
+     * Plots never change their coordinates, so every way of adding or removing one, iterators included,
+     * keeps the index up to date.
+     */
     public static class Container extends ArrayList<Plot> implements IChatFormat {
 
+        private final Map<Integer, LongObjectMap<List<Plot>>> chunkIndex = new HashMap<Integer, LongObjectMap<List<Plot>>>();
         private int maxPlots;
 
         public Container() {
@@ -236,21 +253,162 @@ public class Plot implements IChatFormat {
             this.maxPlots = maxPlots;
         }
 
+        @Override
+        public boolean add(Plot plot) {
+            index(plot);
+            return super.add(plot);
+        }
+
+        @Override
+        public void add(int i, Plot plot) {
+            index(plot);
+            super.add(i, plot);
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends Plot> plots) {
+            for (Plot plot : plots) {
+                index(plot);
+            }
+            return super.addAll(plots);
+        }
+
+        @Override
+        public boolean addAll(int i, Collection<? extends Plot> plots) {
+            for (Plot plot : plots) {
+                index(plot);
+            }
+            return super.addAll(i, plots);
+        }
+
+        @Override
+        public Plot set(int i, Plot plot) {
+            Plot old = super.set(i, plot);
+            unindex(old);
+            index(plot);
+            return old;
+        }
+
+        /**
+         * Also used by the iterators of the list.
+         */
+        @Override
+        public Plot remove(int i) {
+            Plot plot = super.remove(i);
+            unindex(plot);
+            return plot;
+        }
+
+        @Override
+        public boolean remove(Object plot) {
+            if (plot instanceof Plot) {
+                return unlink((Plot) plot);
+            }
+            return false;
+        }
+
+        @Override
+        protected void removeRange(int from, int to) {
+            for (int i = from; i < to; i++) {
+                unindex(super.get(i));
+            }
+            super.removeRange(from, to);
+        }
+
         public void remove(Plot plot) {
             for (int x = plot.getStartChunkX(); x <= plot.getEndChunkX(); x++) {
                 for (int z = plot.getStartChunkZ(); z <= plot.getEndChunkZ(); z++) {
                     TownBlock b = MyTownUniverse.instance.blocks.get(plot.getDim(), x, z);
-                    if (b != null) {
-                        for(Iterator<Plot> it = b.plotsContainer.iterator(); it.hasNext(); ) {
-                            Plot plotInBlock = it.next();
-                            if(plot == plotInBlock) {
-                                it.remove();
-                            }
+                    if (b != null && b.plotsContainer != this) {
+                        b.plotsContainer.unlink(plot);
+                    }
+                }
+            }
+            unlink(plot);
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            chunkIndex.clear();
+        }
+
+        /**
+         * Removes the plot only from this container and its index.
+         */
+        private boolean unlink(Plot plot) {
+            if (super.remove(plot)) {
+                unindex(plot);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Removes all the given plots in a single pass over the list, the blocks they're on are left untouched.
+         */
+        @Override
+        public boolean removeAll(Collection<?> plots) {
+            Set<?> removed = plots instanceof Set ? (Set<?>) plots : new HashSet<Object>(plots);
+            if (!super.removeAll(removed)) {
+                return false;
+            }
+            for (Object plot : removed) {
+                if (plot instanceof Plot) {
+                    unindex((Plot) plot);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> plots) {
+            Set<?> kept = plots instanceof Set ? (Set<?>) plots : new HashSet<Object>(plots);
+            List<Plot> removed = new ArrayList<Plot>();
+            for (Plot plot : this) {
+                if (!kept.contains(plot)) {
+                    removed.add(plot);
+                }
+            }
+            return removeAll(removed);
+        }
+
+        private void index(Plot plot) {
+            LongObjectMap<List<Plot>> chunks = chunkIndex.get(plot.getDim());
+            if (chunks == null) {
+                chunks = new LongObjectMap<List<Plot>>();
+                chunkIndex.put(plot.getDim(), chunks);
+            }
+            for (int x = plot.getStartChunkX(); x <= plot.getEndChunkX(); x++) {
+                for (int z = plot.getStartChunkZ(); z <= plot.getEndChunkZ(); z++) {
+                    long key = LongObjectMap.pack(x, z);
+                    List<Plot> bucket = chunks.get(key);
+                    if (bucket == null) {
+                        bucket = new ArrayList<Plot>(2);
+                        chunks.put(key, bucket);
+                    }
+                    bucket.add(plot);
+                }
+            }
+        }
+
+        private void unindex(Plot plot) {
+            LongObjectMap<List<Plot>> chunks = chunkIndex.get(plot.getDim());
+            if (chunks == null) {
+                return;
+            }
+            for (int x = plot.getStartChunkX(); x <= plot.getEndChunkX(); x++) {
+                for (int z = plot.getStartChunkZ(); z <= plot.getEndChunkZ(); z++) {
+                    long key = LongObjectMap.pack(x, z);
+                    List<Plot> bucket = chunks.get(key);
+                    if (bucket != null) {
+                        bucket.remove(plot);
+                        if (bucket.isEmpty()) {
+                            chunks.remove(key);
                         }
                     }
                 }
             }
-            super.remove(plot);
         }
 
         public Plot get(String name) {
@@ -262,14 +420,49 @@ public class Plot implements IChatFormat {
         }
 
         public Plot get(int dim, int x, int y, int z) {
-            for(Plot plot : this) {
-                if(plot.isCoordWithin(dim, x, y, z)) {
+            LongObjectMap<List<Plot>> chunks = chunkIndex.get(dim);
+            if (chunks == null) {
+                return null;
+            }
+            List<Plot> bucket = chunks.get(LongObjectMap.pack(x >> 4, z >> 4));
+            if (bucket == null) {
+                return null;
+            }
+            for (int i = 0; i < bucket.size(); i++) {
+                Plot plot = bucket.get(i);
+                if (plot.isCoordWithin(dim, x, y, z)) {
                     return plot;
                 }
             }
             return null;
         }
 
+        /**
+         * Gets all the plots that intersect the given volume.
+         */
+        public List<Plot> get(int dim, Volume volume) {
+            LongObjectMap<List<Plot>> chunks = chunkIndex.get(dim);
+            if (chunks == null) {
+                return new ArrayList<Plot>();
+            }
+            // A plot is in the bucket of every chunk it spans
+            Set<Plot> result = new LinkedHashSet<Plot>();
+            for (int x = volume.getMinX() >> 4; x <= volume.getMaxX() >> 4; x++) {
+                for (int z = volume.getMinZ() >> 4; z <= volume.getMaxZ() >> 4; z++) {
+                    List<Plot> bucket = chunks.get(LongObjectMap.pack(x, z));
+                    if (bucket == null) {
+                        continue;
+                    }
+                    for (Plot plot : bucket) {
+                        if (plot.intersects(dim, volume)) {
+                            result.add(plot);
+                        }
+                    }
+                }
+            }
+            return new ArrayList<Plot>(result);
+        }
+
         public Plot get(Resident res) {
             return get(res.getPlayer().dimension, (int) Math.floor(res.getPlayer().posX), (int) Math.floor(res.getPlayer().posY), (int) Math.floor(res.getPlayer().posZ));
         }
@@ -16,6 +16,7 @@ import net.minecraft.util.ChatComponentText;
 import net.minecraft.util.ChunkCoordinates;
 import net.minecraft.util.IChatComponent;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
 
 public class Resident implements IChatFormat {
@@ -25,12 +26,21 @@ public class Resident implements IChatFormat {
     private Date joinDate = new Date();
     private Date lastOnline = new Date();
 
-    private int teleportCooldown = 0;
+    /**
+     * The server tick until which the resident can't teleport, the time left is counted from it.
+     */
+    private int teleportCooldownEnd = 0;
 
     private int extraBlocks = 0;
 
     private boolean isFakePlayer = false;
 
+    /**
+     * The containers holding the resident, whose name index has to follow when it changes its name.
+     * Weak since a container is often dropped without removing its residents first.
+     */
+    private final List<WeakReference<Container>> containers = new ArrayList<WeakReference<Container>>(2);
+
     public final Plot.Container plotsContainer = new Plot.Container(Config.instance.defaultMaxPlots.get());
     public final Town.Container townInvitesContainer = new Town.Container();
     public final Town.Container townsContainer = new Town.Container();
@@ -69,14 +79,6 @@ public class Resident implements IChatFormat {
         }
     }
 
-    /**
-     * Tick function called every tick
-     */
-    public void tick() {
-        if(teleportCooldown > 0)
-            teleportCooldown--;
-    }
-
     /* ----- Map ----- */
 
     /**
@@ -174,7 +176,18 @@ public class Resident implements IChatFormat {
 
     public void setPlayer(EntityPlayer pl) {
         this.player = pl;
+        String oldName = playerName;
         this.playerName = pl.getDisplayName();
+        if (oldName != null && !oldName.equalsIgnoreCase(playerName)) {
+            for (Iterator<WeakReference<Container>> it = containers.iterator(); it.hasNext(); ) {
+                Container container = it.next().get();
+                if (container == null) {
+                    it.remove();
+                } else {
+                    container.rename(this, oldName);
+                }
+            }
+        }
     }
 
     public UUID getUUID() {
@@ -205,11 +218,25 @@ public class Resident implements IChatFormat {
     }
 
     public void setTeleportCooldown(int cooldownTicks) {
-        this.teleportCooldown = cooldownTicks;
+        setTeleportCooldown(cooldownTicks, MinecraftServer.getServer().getTickCounter());
     }
 
+    public void setTeleportCooldown(int cooldownTicks, int tick) {
+        this.teleportCooldownEnd = tick + cooldownTicks;
+    }
+
+    /**
+     * The server ticks left until the resident can teleport again.
+     */
     public int getTeleportCooldown() {
-        return teleportCooldown;
+        return getTeleportCooldown(MinecraftServer.getServer().getTickCounter());
+    }
+
+    /**
+     * The ticks left at the given server tick until the resident can teleport again.
+     */
+    public int getTeleportCooldown(int tick) {
+        return Math.max(0, teleportCooldownEnd - tick);
     }
 
     public int getExtraBlocks() {
@@ -233,24 +260,162 @@ public class Resident implements IChatFormat {
         this.isFakePlayer = isFakePlayer;
     }
 
+    private void linkContainer(Container container) {
+        containers.add(new WeakReference<Container>(container));
+    }
+
+    private void unlinkContainer(Container container) {
+        for (Iterator<WeakReference<Container>> it = containers.iterator(); it.hasNext(); ) {
+            Container linked = it.next().get();
+            if (linked == null) {
+                it.remove();
+            } else if (linked == container) {
+                it.remove();
+                return;
+            }
+        }
+    }
+
+    /**
+     * List of residents indexed by UUID and by case insensitive player name.
+     * A container holds at most one resident per UUID.
+     */
     public static class Container extends ArrayList<Resident> implements IChatFormat {
 
-        public Resident get(UUID uuid) {
-            for (Resident res : this) {
-                if (res.getUUID().equals(uuid)) {
-                    return res;
+        private final Map<UUID, Resident> uuidIndex = new HashMap<UUID, Resident>();
+        private final Map<String, Resident> nameIndex = new HashMap<String, Resident>();
+        /**
+         * The residents hidden in the name index by one with the same name that was added before them, in the order they were added.
+         */
+        private final Map<String, List<Resident>> shadowedNames = new HashMap<String, List<Resident>>();
+
+        @Override
+        public boolean add(Resident res) {
+            if (uuidIndex.containsKey(res.getUUID())) {
+                return false;
+            }
+            super.add(res);
+            index(res);
+            return true;
+        }
+
+        @Override
+        public void add(int index, Resident res) {
+            if (uuidIndex.containsKey(res.getUUID())) {
+                throw new IllegalArgumentException("Resident " + res.getUUID() + " is already in this container");
+            }
+            super.add(index, res);
+            index(res);
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends Resident> residents) {
+            boolean changed = false;
+            for (Resident res : residents) {
+                changed |= add(res);
+            }
+            return changed;
+        }
+
+        @Override
+        public boolean addAll(int index, Collection<? extends Resident> residents) {
+            boolean changed = false;
+            for (Resident res : residents) {
+                if (!uuidIndex.containsKey(res.getUUID())) {
+                    add(index++, res);
+                    changed = true;
                 }
             }
-            return null;
+            return changed;
         }
 
-        public Resident get(String username) {
-            for (Resident res : this) {
-                if (res.getPlayerName().equals(username)) {
-                    return res;
+        @Override
+        public Resident set(int index, Resident res) {
+            Resident old = get(index);
+            if (old != res && uuidIndex.containsKey(res.getUUID())) {
+                throw new IllegalArgumentException("Resident " + res.getUUID() + " is already in this container");
+            }
+            super.set(index, res);
+            unindex(old);
+            index(res);
+            return old;
+        }
+
+        @Override
+        public Resident remove(int index) {
+            Resident res = super.remove(index);
+            unindex(res);
+            return res;
+        }
+
+        @Override
+        public boolean remove(Object obj) {
+            if (!contains(obj)) {
+                return false;
+            }
+            super.remove(obj);
+            unindex((Resident) obj);
+            return true;
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> residents) {
+            boolean changed = false;
+            for (Object obj : residents) {
+                changed |= remove(obj);
+            }
+            return changed;
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> residents) {
+            boolean changed = false;
+            for (int i = size() - 1; i >= 0; i--) {
+                if (!residents.contains(get(i))) {
+                    remove(i);
+                    changed = true;
                 }
             }
-            return null;
+            return changed;
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            for (int i = fromIndex; i < toIndex; i++) {
+                unindex(get(i));
+            }
+            super.removeRange(fromIndex, toIndex);
+        }
+
+        @Override
+        public void clear() {
+            for (Resident res : this) {
+                res.unlinkContainer(this);
+            }
+            super.clear();
+            uuidIndex.clear();
+            nameIndex.clear();
+            shadowedNames.clear();
+        }
+
+        @Override
+        public boolean contains(Object obj) {
+            return obj instanceof Resident && uuidIndex.get(((Resident) obj).getUUID()) == obj;
+        }
+
+        public Resident get(UUID uuid) {
+            return uuidIndex.get(uuid);
+        }
+
+        /**
+         * Gets the resident with the given name, ignoring case.
+         * If more residents have the same name the one that had it first in this container is returned.
+         */
+        public Resident get(String username) {
+            if (username == null) {
+                return null;
+            }
+            return nameIndex.get(nameKey(username));
         }
 
         public void remove(Resident res) {
@@ -262,34 +427,84 @@ public class Resident implements IChatFormat {
                 }
             }
             */
-            super.remove(res);
+            remove((Object) res);
         }
 
         public void remove(UUID uuid) {
-            for(Iterator<Resident> it = iterator(); it.hasNext();) {
-                Resident res = it.next();
-                if(res.getUUID().equals(uuid)) {
-                    it.remove();
-                }
+            Resident res = uuidIndex.get(uuid);
+            if (res != null) {
+                remove((Object) res);
             }
         }
 
         public boolean contains(String username) {
-            for (Resident res : this) {
-                if (res.getPlayerName().equals(username)) {
-                    return true;
-                }
-            }
-            return false;
+            return get(username) != null;
         }
 
         public boolean contains(UUID uuid) {
-            for (Resident res : this) {
-                if (res.getUUID().equals(uuid)) {
-                    return true;
+            return uuidIndex.containsKey(uuid);
+        }
+
+        private void index(Resident res) {
+            uuidIndex.put(res.getUUID(), res);
+            indexName(res);
+            res.linkContainer(this);
+        }
+
+        private void unindex(Resident res) {
+            uuidIndex.remove(res.getUUID());
+            unindexName(res, res.getPlayerName());
+            res.unlinkContainer(this);
+        }
+
+        /**
+         * Moves the resident to its new name in the name index, called by the resident itself.
+         */
+        private void rename(Resident res, String oldName) {
+            unindexName(res, oldName);
+            indexName(res);
+        }
+
+        private void indexName(Resident res) {
+            if (res.getPlayerName() == null) {
+                return;
+            }
+            String key = nameKey(res.getPlayerName());
+            if (!nameIndex.containsKey(key)) {
+                nameIndex.put(key, res);
+                return;
+            }
+            List<Resident> shadowed = shadowedNames.get(key);
+            if (shadowed == null) {
+                shadowed = new ArrayList<Resident>(1);
+                shadowedNames.put(key, shadowed);
+            }
+            shadowed.add(res);
+        }
+
+        private void unindexName(Resident res, String name) {
+            if (name == null) {
+                return;
+            }
+            String key = nameKey(name);
+            List<Resident> shadowed = shadowedNames.get(key);
+            if (nameIndex.get(key) == res) {
+                if (shadowed == null) {
+                    nameIndex.remove(key);
+                    return;
                 }
+                // The resident with the same name that was added next takes its place
+                nameIndex.put(key, shadowed.remove(0));
+            } else if (shadowed == null || !shadowed.remove(res)) {
+                return;
             }
-            return false;
+            if (shadowed.isEmpty()) {
+                shadowedNames.remove(key);
+            }
+        }
+
+        private static String nameKey(String username) {
+            return username.toLowerCase(Locale.ENGLISH);
         }
 
         @Override
@@ -1,18 +1,25 @@
 package mytown.entities;
 
+import com.google.common.base.Function;
+import com.google.common.collect.Iterators;
 import myessentials.chat.api.IChatFormat;
 import myessentials.entities.api.ChunkPos;
 import myessentials.entities.api.Volume;
 import mytown.MyTown;
 import mytown.config.Config;
 import mytown.handlers.VisualsHandler;
+import mytown.util.LongObjectMap;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.util.ChatComponentText;
 import net.minecraft.util.IChatComponent;
 import net.minecraft.world.ChunkCoordIntPair;
 import net.minecraftforge.common.ForgeChunkManager;
 
+import java.util.AbstractCollection;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 public class TownBlock implements IChatFormat {
     /**
@@ -119,19 +126,53 @@ public class TownBlock implements IChatFormat {
         return dim == this.dim && cx == x && cz == z;
     }
 
-    public static class Container extends HashMap<String, TownBlock> implements IChatFormat {
+    /**
+     * Stores the blocks per dimension in a map keyed by the packed chunk coordinates.
+     * Checking or getting a block does not create any objects, which matters since it's done on most protection checks.
+     */
+    public static class Container implements IChatFormat {
+
+        private final Map<Integer, LongObjectMap<TownBlock>> dimensions = new HashMap<Integer, LongObjectMap<TownBlock>>();
+        private final Collection<TownBlock> values = new AbstractCollection<TownBlock>() {
+            @Override
+            public Iterator<TownBlock> iterator() {
+                return Iterators.concat(Iterators.transform(dimensions.values().iterator(), new Function<LongObjectMap<TownBlock>, Iterator<TownBlock>>() {
+                    @Override
+                    public Iterator<TownBlock> apply(LongObjectMap<TownBlock> blocks) {
+                        return blocks.values().iterator();
+                    }
+                }));
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+        private int size = 0;
 
         private int extraBlocks = 0;
         private int extraFarClaims = 0;
 
         public boolean add(TownBlock block) {
-            super.put(block.getKey(), block);
+            LongObjectMap<TownBlock> blocks = dimensions.get(block.dim);
+            if (blocks == null) {
+                blocks = new LongObjectMap<TownBlock>();
+                dimensions.put(block.dim, blocks);
+            }
+            if (blocks.put(LongObjectMap.pack(block.x, block.z), block) == null) {
+                size++;
+            }
             VisualsHandler.instance.updateTownBorders(this);
             return true;
         }
 
         public boolean remove(TownBlock block) {
-            boolean result = super.remove(block.getKey()) != null;
+            LongObjectMap<TownBlock> blocks = dimensions.get(block.dim);
+            boolean result = blocks != null && blocks.remove(LongObjectMap.pack(block.x, block.z)) != null;
+            if (result) {
+                size--;
+            }
             VisualsHandler.instance.updateTownBorders(this);
             return result;
         }
@@ -141,11 +182,32 @@ public class TownBlock implements IChatFormat {
         }
 
         public boolean contains(int dim, int x, int z) {
-            return super.containsKey(String.format(KEY_FORMAT, dim, x, z));
+            return get(dim, x, z) != null;
         }
 
         public TownBlock get(int dim, int x, int z) {
-            return super.get(String.format(KEY_FORMAT, dim, x, z));
+            LongObjectMap<TownBlock> blocks = dimensions.get(dim);
+            return blocks == null ? null : blocks.get(LongObjectMap.pack(x, z));
+        }
+
+        /**
+         * Live view of all the blocks in this container.
+         */
+        public Collection<TownBlock> values() {
+            return values;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public void clear() {
+            dimensions.clear();
+            size = 0;
         }
 
         public int getExtraBlocks() {
@@ -2,6 +2,7 @@ package mytown.entities.tools;
 
 import myessentials.chat.api.ChatManager;
 import myessentials.entities.api.BlockPos;
+import myessentials.entities.api.Volume;
 import myessentials.entities.api.tool.Tool;
 import myessentials.entities.api.tool.ToolManager;
 import myessentials.localization.api.LocalManager;
@@ -17,6 +18,8 @@ import net.minecraft.init.Blocks;
 import net.minecraft.server.MinecraftServer;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
+import java.util.List;
+
 /**
  * Tool that selects two corners of a plot and creates it.
  */
@@ -146,19 +149,17 @@ public class PlotSelectionTool extends Tool {
                         return;
                     }
                 }
-
-                // Verifying if it's inside another plot
-                for (int k = selectionFirst.y; k <= selectionSecond.y; k++) {
-                    Plot plot = selectionFirst.town.plotsContainer.get(selectionFirst.dim, i, k, j);
-                    if (plot != null) {
-                        ChatManager.send(owner.getPlayer(), "mytown.cmd.err.plot.insideOther", plot);
-                        resetSelection(true, 0);
-                        return;
-                    }
-                }
             }
         }
 
+        // Verifying if it's inside another plot
+        List<Plot> overlappingPlots = selectionFirst.town.plotsContainer.get(selectionFirst.dim, new Volume(selectionFirst.x, selectionFirst.y, selectionFirst.z, selectionSecond.x, selectionSecond.y, selectionSecond.z));
+        if (!overlappingPlots.isEmpty()) {
+            ChatManager.send(owner.getPlayer(), "mytown.cmd.err.plot.insideOther", overlappingPlots.get(0));
+            resetSelection(true, 0);
+            return;
+        }
+
         Plot plot = MyTownUniverse.instance.newPlot(plotName, selectionFirst.town, selectionFirst.dim, selectionFirst.x, selectionFirst.y, selectionFirst.z, selectionSecond.x, selectionSecond.y, selectionSecond.z);
         resetSelection(true, 5);
 
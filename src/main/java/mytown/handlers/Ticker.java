@@ -4,56 +4,35 @@ import cpw.mods.fml.common.eventhandler.EventPriority;
 import cpw.mods.fml.common.eventhandler.SubscribeEvent;
 import cpw.mods.fml.common.gameevent.PlayerEvent;
 import cpw.mods.fml.common.gameevent.TickEvent;
-import cpw.mods.fml.relauncher.Side;
 import mytown.MyTown;
 import mytown.config.Config;
-import mytown.new_datasource.MyTownDatasource;
 import mytown.new_datasource.MyTownUniverse;
-import mytown.entities.AdminTown;
 import mytown.entities.Resident;
-import mytown.entities.Town;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.MinecraftServer;
 import net.minecraftforge.event.world.BlockEvent;
 
 import java.util.Calendar;
 
 public class Ticker {
 
-    private boolean ticked = true;
     private int lastCalendarDay = -1;
+
     @SubscribeEvent
-    public void onTickEvent(TickEvent.WorldTickEvent ev) {
-        if(ev.side == Side.CLIENT)
+    public void onServerTick(TickEvent.ServerTickEvent ev) {
+        if (ev.phase != TickEvent.Phase.START) {
             return;
-
-
-        for(Resident res : MyTownUniverse.instance.residents) {
-            res.tick();
         }
 
-        if((Config.instance.costTownUpkeep.get() > 0 || Config.instance.costAdditionalUpkeep.get() > 0) && ev.phase == TickEvent.Phase.START) {
-            if (ticked) {
-                if(lastCalendarDay != -1 && Calendar.getInstance().get(Calendar.DAY_OF_YEAR) != lastCalendarDay) {
-                    for (int i = 0; i < MyTownUniverse.instance.towns.size(); i++) {
-                        Town town = MyTownUniverse.instance.towns.get(i);
-                        if (!(town instanceof AdminTown)) {
-                            town.bank.payUpkeep();
-                            if(town.bank.getDaysNotPaid() == Config.instance.upkeepTownDeletionDays.get() && Config.instance.upkeepTownDeletionDays.get() > 0) {
-                                MyTown.instance.LOG.info("Town {} has been deleted because it didn't pay upkeep for {} days.", town.getName(), Config.instance.upkeepTownDeletionDays.get());
-                                getDatasource().deleteTown(town);
-                            } else {
-                                getDatasource().saveTownBank(town.bank);
-                            }
-                        }
-                    }
-                    ticked = false;
-                }
-                lastCalendarDay = Calendar.getInstance().get(Calendar.DAY_OF_YEAR);
-            } else {
-                ticked = true;
+        if ((Config.instance.costTownUpkeep.get() > 0 || Config.instance.costAdditionalUpkeep.get() > 0) && MinecraftServer.getServer().getTickCounter() % 20 == 0) {
+            int day = Calendar.getInstance().get(Calendar.DAY_OF_YEAR);
+            if (lastCalendarDay != -1 && day != lastCalendarDay) {
+                UpkeepJob.instance.run();
             }
+            lastCalendarDay = day;
         }
+        UpkeepJob.instance.tick();
     }
 
     @SubscribeEvent(priority = EventPriority.HIGHEST)
@@ -61,6 +40,7 @@ public class Ticker {
         Resident res = MyTownUniverse.instance.getOrMakeResident(ev.player);
         if (res != null) {
             res.setPlayer(ev.player);
+            MyTownUniverse.instance.residentCache.login(res);
         } else {
             MyTown.instance.LOG.error("Didn't create resident for player {} ({})", ev.player.getCommandSenderName(), ev.player.getPersistentID());
         }
@@ -71,6 +51,7 @@ public class Ticker {
         Resident res = MyTownUniverse.instance.getOrMakeResident(ev.player);
         if (res != null) {
             res.setPlayer(ev.player);
+            MyTownUniverse.instance.residentCache.logout(res);
         }
     }
 
@@ -81,8 +62,4 @@ public class Ticker {
             ev.setCanceled(true);
         }
     }
-
-    private MyTownDatasource getDatasource() {
-        return MyTown.instance.datasource;
-    }
 }
@@ -0,0 +1,185 @@
+package mytown.handlers;
+
+import myessentials.chat.api.ChatManager;
+import mytown.MyTown;
+import mytown.config.Config;
+import mytown.entities.AdminTown;
+import mytown.entities.Resident;
+import mytown.entities.Town;
+import mytown.new_datasource.MyTownDatasource;
+import mytown.new_datasource.MyTownUniverse;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.server.MinecraftServer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the daily upkeep of all the towns.
+ * What each town pays is worked out in memory first, then all the banks are saved in one batch, which the writer
+ * thread of the datasource writes in a single transaction. The towns that haven't paid for too long are deleted
+ * a few per tick within upkeepBudget, and each online resident is told about all of its towns at once.
+ */
+public class UpkeepJob {
+
+    public static final UpkeepJob instance = new UpkeepJob();
+
+    private final LinkedList<Town> deletions = new LinkedList<Town>();
+
+    /**
+     * Works out the upkeep of the towns without changing their banks.
+     */
+    public static List<Payment> compute(List<Town> towns) {
+        int deletionDays = Config.instance.upkeepTownDeletionDays.get();
+        List<Payment> payments = new ArrayList<Payment>();
+        for (int i = 0; i < towns.size(); i++) {
+            Town town = towns.get(i);
+            if (town instanceof AdminTown) {
+                continue;
+            }
+            int cost = town.bank.getNextPaymentAmount();
+            boolean paid = town.bank.getAmount() >= cost;
+            int daysNotPaid = paid ? 0 : town.bank.getDaysNotPaid() + 1;
+            payments.add(new Payment(town, cost, paid, daysNotPaid, deletionDays > 0 && daysNotPaid == deletionDays));
+        }
+        return payments;
+    }
+
+    /**
+     * Collects the upkeep of every town, or only logs what it would do if upkeepDryRun is set.
+     */
+    public void run() {
+        long start = System.nanoTime();
+        List<Payment> payments = compute(MyTownUniverse.instance.towns);
+        Projection projection = new Projection(payments);
+        if (Config.instance.upkeepDryRun.get()) {
+            MyTown.instance.LOG.info("Upkeep dry run: {} towns would pay, {} could not pay, {} would be deleted: {}",
+                    projection.paying, projection.failing, projection.deleted.size(), projection.deleted);
+            return;
+        }
+
+        MyTownDatasource datasource = MyTown.instance.datasource;
+        datasource.startBatch();
+        try {
+            for (Payment payment : payments) {
+                if (payment.paid) {
+                    payment.town.bank.makePayment(payment.cost);
+                }
+                payment.town.bank.setDaysNotPaid(payment.daysNotPaid);
+                if (payment.delete) {
+                    deletions.add(payment.town);
+                } else {
+                    datasource.saveTownBank(payment.town.bank);
+                }
+            }
+        } finally {
+            datasource.executeBatch();
+        }
+        notifyResidents(payments);
+
+        MyTown.instance.LOG.info("Collected the upkeep of {} towns in {} ms, {} could not pay, {} will be deleted.",
+                payments.size(), (System.nanoTime() - start) / 1000000, projection.failing, projection.deleted.size());
+    }
+
+    /**
+     * Deletes the towns that didn't pay for too long, as many as fit in upkeepBudget but at least one per tick.
+     */
+    public void tick() {
+        if (deletions.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        long budget = Config.instance.upkeepBudget.get() * 1000L;
+        do {
+            Town town = deletions.removeFirst();
+            // It may have been deleted in the meantime
+            if (MyTownUniverse.instance.towns.contains(town)) {
+                MyTown.instance.LOG.info("Town {} has been deleted because it didn't pay upkeep for {} days.", town.getName(), Config.instance.upkeepTownDeletionDays.get());
+                MyTown.instance.datasource.deleteTown(town);
+            }
+        } while (!deletions.isEmpty() && System.nanoTime() - start < budget);
+    }
+
+    public int getPendingDeletions() {
+        return deletions.size();
+    }
+
+    /**
+     * Sends each online resident one message for all of its towns, instead of one per town to every resident.
+     */
+    @SuppressWarnings("unchecked")
+    private void notifyResidents(List<Payment> payments) {
+        Map<Town, Payment> townPayments = new HashMap<Town, Payment>();
+        for (Payment payment : payments) {
+            townPayments.put(payment.town, payment);
+        }
+
+        int deletionDays = Config.instance.upkeepTownDeletionDays.get();
+        for (EntityPlayer player : (List<EntityPlayer>) MinecraftServer.getServer().getConfigurationManager().playerEntityList) {
+            Resident res = MyTownUniverse.instance.getOrMakeResident(player);
+            if (res == null) {
+                continue;
+            }
+            boolean collected = false;
+            for (Town town : res.townsContainer) {
+                Payment payment = townPayments.get(town);
+                if (payment == null) {
+                    continue;
+                }
+                if (payment.paid) {
+                    collected = true;
+                } else {
+                    ChatManager.send(player, "mytown.notification.town.upkeep.failed", town.getName(), deletionDays - payment.daysNotPaid);
+                }
+            }
+            if (collected) {
+                ChatManager.send(player, "mytown.notification.town.upkeep");
+            }
+        }
+    }
+
+    /**
+     * The upkeep of a town for the day.
+     */
+    public static class Payment {
+        public final Town town;
+        public final int cost;
+        public final boolean paid;
+        public final int daysNotPaid;
+        public final boolean delete;
+
+        public Payment(Town town, int cost, boolean paid, int daysNotPaid, boolean delete) {
+            this.town = town;
+            this.cost = cost;
+            this.paid = paid;
+            this.daysNotPaid = daysNotPaid;
+            this.delete = delete;
+        }
+    }
+
+    /**
+     * What the upkeep would do, shown by the dry run and by /townadmin upkeep.
+     */
+    public static class Projection {
+        public int paying = 0;
+        public int failing = 0;
+        public final List<String> deleted = new ArrayList<String>();
+
+        public Projection(List<Payment> payments) {
+            for (Payment payment : payments) {
+                if (payment.paid) {
+                    paying++;
+                } else {
+                    failing++;
+                }
+                if (payment.delete) {
+                    deleted.add(payment.town.getName());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package mytown.new_datasource;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Copies every table of a MyTown database to another one, for example from SQLite to MySQL.
+ * The rows are streamed and inserted in batches, each batch in its own transaction, so only one batch is held at a time.
+ * The tables are read in the order of their primary key. A migration that stopped half way continues where it was:
+ * the rows already in the target are the first ones of that order, so that many are skipped.
+ * Every table is then checked by comparing the number of rows and a checksum that doesn't depend on their order.
+ *
+ * The target needs the tables already, MyTown creates them when it's started once on it.
+ * Nothing should write to the source while it's copied.
+ */
+public class DatasourceMigration {
+
+    /**
+     * In the order they can be filled in without breaking any foreign key.
+     * The updates of the schema and the update counter belong to each database.
+     */
+    public static final String[] TABLES = {"Worlds", "Residents", "Towns", "Ranks", "RankPermissions", "Blocks", "Plots", "Nations",
+            "ResidentsToTowns", "TownsToNations", "TownFlags", "PlotFlags", "ResidentsToPlots", "BlockWhitelists", "SelectedTown",
+            "Friends", "FriendRequests", "TownInvites", "BlockOwners", "TownBanks", "PlotBanks"};
+
+    private static final int PROGRESS_ROWS = 100000;
+
+    private final Logger log;
+    private final Connection source;
+    private final Connection target;
+    private final String prefix;
+    private final int batchSize;
+    private final File checkpointFile;
+    private final Properties checkpoint = new Properties();
+
+    private long copied = 0;
+
+    public DatasourceMigration(Logger log, Connection source, Connection target, String prefix, int batchSize, File checkpointFile) {
+        this.log = log;
+        this.source = source;
+        this.target = target;
+        this.prefix = prefix;
+        this.batchSize = Math.max(1, batchSize);
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Copies and checks all the tables. If it fails it can be run again to continue.
+     */
+    public boolean run() {
+        long start = System.nanoTime();
+        try {
+            if (checkpointFile.isFile()) {
+                loadCheckpoint();
+                log.info("Continuing the migration from {}", checkpointFile.getPath());
+            } else {
+                // What MyTown saved when it created the tables of the target
+                clearTarget();
+                saveCheckpoint();
+            }
+
+            for (String table : TABLES) {
+                if (checkpoint.containsKey(table)) {
+                    continue;
+                }
+                if (!copy(table)) {
+                    return false;
+                }
+                checkpoint.setProperty(table, "done");
+                saveCheckpoint();
+            }
+
+            // A snapshot written by the target's server no longer matches
+            Statement statement = target.createStatement();
+            try {
+                statement.executeUpdate("UPDATE " + prefix + "UpdateCounter SET counter=counter+1");
+            } finally {
+                statement.close();
+            }
+
+            if (!checkpointFile.delete()) {
+                log.warn("Failed to delete {}, delete it before migrating again.", checkpointFile.getPath());
+            }
+            log.info("Migrated {} tables in {} s, {} rows copied.", TABLES.length, (System.nanoTime() - start) / 1000000000, copied);
+            return true;
+        } catch (SQLException e) {
+            log.error("Failed to migrate the database! Run the migration again to continue it.");
+            log.error(ExceptionUtils.getStackTrace(e));
+        } catch (IOException e) {
+            log.error("Failed to save the progress of the migration to {}!", checkpointFile.getPath());
+            log.error(ExceptionUtils.getStackTrace(e));
+        }
+        return false;
+    }
+
+    private void clearTarget() throws SQLException {
+        Statement statement = target.createStatement();
+        try {
+            for (int i = TABLES.length - 1; i >= 0; i--) {
+                statement.executeUpdate("DELETE FROM " + prefix + TABLES[i]);
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    private boolean copy(String table) throws SQLException {
+        long start = System.nanoTime();
+        String name = prefix + table;
+        long skip = count(target, name);
+
+        PreparedStatement select = source.prepareStatement("SELECT * FROM " + name + " ORDER BY " + getOrder(name),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        PreparedStatement insert = null;
+        boolean autoCommit = target.getAutoCommit();
+        target.setAutoCommit(false);
+        long rows = 0;
+        long checksum = 0;
+        try {
+            select.setFetchSize(TableLoader.getFetchSize(source, batchSize));
+            ResultSet rs = select.executeQuery();
+            ResultSetMetaData meta = rs.getMetaData();
+            int columns = meta.getColumnCount();
+            insert = target.prepareStatement(getInsert(name, meta));
+
+            int batched = 0;
+            while (rs.next()) {
+                checksum += checksum(rs, columns);
+                if (rows++ < skip) {
+                    continue;
+                }
+                for (int i = 1; i <= columns; i++) {
+                    insert.setObject(i, rs.getObject(i));
+                }
+                insert.addBatch();
+                if (++batched == batchSize) {
+                    insert.executeBatch();
+                    target.commit();
+                    batched = 0;
+                }
+                if (rows % PROGRESS_ROWS == 0) {
+                    log.info("Copied {} rows of {}", rows, table);
+                }
+            }
+            if (batched > 0) {
+                insert.executeBatch();
+                target.commit();
+            }
+            rs.close();
+        } catch (SQLException e) {
+            target.rollback();
+            throw e;
+        } finally {
+            select.close();
+            if (insert != null) {
+                insert.close();
+            }
+            target.setAutoCommit(autoCommit);
+        }
+        copied += rows - Math.min(rows, skip);
+
+        long[] copy = verify(name);
+        if (copy[0] != rows || copy[1] != checksum) {
+            log.error("Table {} does not match after copying it: {} rows with checksum {} in the source, {} rows with checksum {} in the target!",
+                    table, rows, Long.toHexString(checksum), copy[0], Long.toHexString(copy[1]));
+            log.error("Delete {} and migrate again to start over.", checkpointFile.getPath());
+            return false;
+        }
+        log.info("Copied {} rows of {} in {} ms ({} were already there), checksum {}", rows, table, (System.nanoTime() - start) / 1000000, Math.min(rows, skip), Long.toHexString(checksum));
+        return true;
+    }
+
+    /**
+     * The number of rows and the checksum of the table in the target.
+     */
+    private long[] verify(String name) throws SQLException {
+        PreparedStatement select = target.prepareStatement("SELECT * FROM " + name, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            select.setFetchSize(TableLoader.getFetchSize(target, batchSize));
+            ResultSet rs = select.executeQuery();
+            int columns = rs.getMetaData().getColumnCount();
+            long rows = 0;
+            long checksum = 0;
+            while (rs.next()) {
+                checksum += checksum(rs, columns);
+                rows++;
+            }
+            rs.close();
+            return new long[] {rows, checksum};
+        } finally {
+            select.close();
+        }
+    }
+
+    /**
+     * The CRC32 of the values of the current row. The drivers don't return the same types, the values are compared as
+     * whole numbers, floats and strings. Summed up for a whole table, so the order of the rows doesn't matter.
+     */
+    public static long checksum(ResultSet rs, int columns) throws SQLException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(9);
+        for (int i = 1; i <= columns; i++) {
+            Object value = rs.getObject(i);
+            buffer.clear();
+            if (value == null) {
+                buffer.put((byte) 0);
+            } else if (value instanceof Boolean) {
+                buffer.put((byte) 1).putLong((Boolean) value ? 1 : 0);
+            } else if (value instanceof Float || value instanceof Double) {
+                buffer.put((byte) 2).putInt(Float.floatToIntBits(((Number) value).floatValue()));
+            } else if (value instanceof Number) {
+                buffer.put((byte) 1).putLong(((Number) value).longValue());
+            } else {
+                crc.update(3);
+                crc.update(value.toString().getBytes(Charsets.UTF_8));
+                continue;
+            }
+            crc.update(buffer.array(), 0, buffer.position());
+        }
+        return crc.getValue();
+    }
+
+    private long count(Connection connection, String name) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + name);
+            rs.next();
+            return rs.getLong(1);
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * The primary key of the table, or all of its columns if it has none, so the rows always come in the same order.
+     */
+    private String getOrder(String name) throws SQLException {
+        // Listed by their name, put back in the order of the key so its index is used
+        Map<Integer, String> key = new TreeMap<Integer, String>();
+        ResultSet rs = source.getMetaData().getPrimaryKeys(null, null, name);
+        try {
+            while (rs.next()) {
+                key.put(rs.getInt("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+            }
+        } finally {
+            rs.close();
+        }
+        List<String> columns = new ArrayList<String>(key.values());
+        if (columns.isEmpty()) {
+            Statement statement = source.createStatement();
+            try {
+                ResultSetMetaData meta = statement.executeQuery("SELECT * FROM " + name + " WHERE 1=0").getMetaData();
+                for (int i = 1; i <= meta.getColumnCount(); i++) {
+                    columns.add(meta.getColumnName(i));
+                }
+            } finally {
+                statement.close();
+            }
+        }
+        return join(columns);
+    }
+
+    private String getInsert(String name, ResultSetMetaData meta) throws SQLException {
+        List<String> columns = new ArrayList<String>();
+        List<String> parameters = new ArrayList<String>();
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            columns.add(meta.getColumnName(i));
+            parameters.add("?");
+        }
+        return "INSERT INTO " + name + " (" + join(columns) + ") VALUES(" + join(parameters) + ")";
+    }
+
+    private static String join(List<String> values) {
+        StringBuilder builder = new StringBuilder();
+        for (String value : values) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    private void loadCheckpoint() throws IOException {
+        InputStream in = new FileInputStream(checkpointFile);
+        try {
+            checkpoint.load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private void saveCheckpoint() throws IOException {
+        OutputStream out = new FileOutputStream(checkpointFile);
+        try {
+            checkpoint.store(out, "Tables already migrated, delete this file to start over");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Migrates without a server: java -cp MyTown.jar:[libraries and JDBC drivers] mytown.new_datasource.DatasourceMigration [source URL] [target URL] [table prefix]
+     */
+    public static void main(String[] args) throws SQLException {
+        Logger log = LogManager.getLogger("MyTown Migration");
+        if (args.length < 2) {
+            log.error("Usage: DatasourceMigration <source JDBC URL> <target JDBC URL> [table prefix] [batch size]");
+            System.exit(1);
+        }
+        String prefix = args.length > 2 ? args[2] : "";
+        int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+
+        Connection source = DriverManager.getConnection(args[0]);
+        Connection target = DriverManager.getConnection(args[1]);
+        boolean migrated;
+        try {
+            migrated = new DatasourceMigration(log, source, target, prefix, batchSize, new File("MyTown.migration")).run();
+        } finally {
+            source.close();
+            target.close();
+        }
+        System.exit(migrated ? 0 : 1);
+    }
+}
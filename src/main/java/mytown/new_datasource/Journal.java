@@ -0,0 +1,403 @@
+package mytown.new_datasource;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the statements sent to the write queue, so the ones still waiting survive a crash.
+ * Appending only copies the record to memory. A thread writes everything appended during the commit interval
+ * in one go and forces it to disk, a single sync for the whole group.
+ * On the next start the records are replayed in order. Every statement sets absolute values, so running one
+ * again that was already written leaves the same row, and an insert that already happened just fails.
+ * Once all the appended statements were written to the database the log is emptied, that's the checkpoint.
+ *
+ * A record is its length, a CRC32 and then the payload. A statement is defined once with an ID,
+ * the following records only refer to the ID and carry the parameters.
+ * Replaying stops at the first incomplete or damaged record, or one referring to an unknown statement,
+ * the ones after it were never synced.
+ */
+public class Journal {
+
+    private static final byte DEFINE = 1;
+    private static final byte STATEMENT = 2;
+
+    private static final byte NULL = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte FLOAT = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte STRING = 6;
+
+    private final Logger log;
+    private final File file;
+    private final long commitInterval;
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+
+    /**
+     * Guards what was appended but not written yet, held for a moment by each append.
+     */
+    private final Object lock = new Object();
+    /**
+     * Guards the file, held while a group is written and synced.
+     */
+    private final Object fileLock = new Object();
+
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final Map<String, Integer> definitions = new HashMap<String, Integer>();
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final CRC32 crc = new CRC32();
+
+    private Thread thread;
+    private volatile boolean running = false;
+
+    private long size = 0;
+    private long appended = 0;
+    private long commits = 0;
+    private long synced = 0;
+
+    public Journal(Logger log, File file, long commitInterval) throws IOException {
+        this.log = log;
+        this.file = file;
+        this.commitInterval = commitInterval;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        this.size = channel.size();
+    }
+
+    /**
+     * Starts the thread that syncs the appended records.
+     */
+    public void start() {
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                process();
+            }
+        }, "MyTown Journal");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Appends a statement, it's on disk at most one commit interval later.
+     */
+    public void append(String sql, Object... parameters) {
+        synchronized (lock) {
+            try {
+                Integer id = definitions.get(sql);
+                if (id == null) {
+                    id = definitions.size();
+                    definitions.put(sql, id);
+                    recordOut.writeByte(DEFINE);
+                    recordOut.writeInt(id);
+                    writeString(sql);
+                    writeRecord();
+                }
+
+                recordOut.writeByte(STATEMENT);
+                recordOut.writeInt(id);
+                recordOut.writeShort(parameters.length);
+                for (Object parameter : parameters) {
+                    writeValue(parameter);
+                }
+                writeRecord();
+                appended++;
+            } catch (IOException e) {
+                // Only written to memory
+                throw new IllegalStateException(e);
+            } finally {
+                // What's left of a statement that couldn't be written
+                record.reset();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void writeRecord() throws IOException {
+        byte[] payload = record.toByteArray();
+        record.reset();
+        crc.reset();
+        crc.update(payload);
+        DataOutputStream out = new DataOutputStream(pending);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            recordOut.writeByte(NULL);
+        } else if (value instanceof Integer) {
+            recordOut.writeByte(INT);
+            recordOut.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            recordOut.writeByte(LONG);
+            recordOut.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            recordOut.writeByte(FLOAT);
+            recordOut.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            recordOut.writeByte(DOUBLE);
+            recordOut.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            recordOut.writeByte(BOOLEAN);
+            recordOut.writeBoolean((Boolean) value);
+        } else if (value instanceof String) {
+            recordOut.writeByte(STRING);
+            writeString((String) value);
+        } else {
+            throw new IllegalArgumentException("Can't write a " + value.getClass().getSimpleName() + " to the journal");
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        recordOut.writeInt(bytes.length);
+        recordOut.write(bytes);
+    }
+
+    private void process() {
+        while (true) {
+            synchronized (lock) {
+                while (pending.size() == 0 && running) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException ex) {
+                        // Only close() ends the journal
+                    }
+                }
+                if (pending.size() == 0) {
+                    return;
+                }
+            }
+            if (running) {
+                // Lets the records of the next moments join the group
+                try {
+                    Thread.sleep(commitInterval);
+                } catch (InterruptedException ex) {
+                    // Synced right away
+                }
+            }
+            sync();
+        }
+    }
+
+    /**
+     * Writes and forces to disk everything appended so far.
+     */
+    public void sync() {
+        synchronized (fileLock) {
+            byte[] group;
+            long count;
+            synchronized (lock) {
+                if (pending.size() == 0) {
+                    return;
+                }
+                group = pending.toByteArray();
+                pending = new ByteArrayOutputStream();
+                count = appended;
+            }
+            try {
+                channel.write(ByteBuffer.wrap(group), size);
+                channel.force(false);
+                size += group.length;
+                commits++;
+                synced = count;
+            } catch (IOException e) {
+                log.error("Failed to write to the journal {}, retrying with the next group.", file.getName());
+                log.error(ExceptionUtils.getStackTrace(e));
+                // The group holds the definitions of its statements, it goes back in front of what was appended since
+                synchronized (lock) {
+                    ByteArrayOutputStream retry = new ByteArrayOutputStream(group.length + pending.size());
+                    retry.write(group, 0, group.length);
+                    retry.write(pending.toByteArray(), 0, pending.size());
+                    pending = retry;
+                }
+            }
+        }
+    }
+
+    /**
+     * Empties the journal, only allowed once every statement appended so far was written to the database.
+     */
+    public void checkpoint() {
+        synchronized (fileLock) {
+            synchronized (lock) {
+                pending.reset();
+                definitions.clear();
+            }
+            try {
+                channel.truncate(0);
+                channel.force(false);
+                size = 0;
+            } catch (IOException e) {
+                log.error("Failed to empty the journal {}!", file.getName());
+                log.error(ExceptionUtils.getStackTrace(e));
+            }
+        }
+    }
+
+    /**
+     * Runs every complete record of the journal in order and cuts off the damaged tail, if any.
+     * Returns the number of statements replayed, the journal should be emptied once they're saved.
+     */
+    public int replay(Handler handler) throws IOException {
+        synchronized (fileLock) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            channel.read(buffer, 0);
+            buffer.flip();
+
+            Map<Integer, String> statements = new HashMap<Integer, String>();
+            CRC32 crc = new CRC32();
+            int count = 0;
+            long valid = 0;
+            while (buffer.remaining() >= 8) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                ByteBuffer in = ByteBuffer.wrap(payload);
+                byte type = in.get();
+                if (type == DEFINE) {
+                    statements.put(in.getInt(), readString(in));
+                } else if (type == STATEMENT) {
+                    String sql = statements.get(in.getInt());
+                    if (sql == null) {
+                        // Its definition was lost, nothing after it can be trusted
+                        break;
+                    }
+                    Object[] parameters = new Object[in.getShort()];
+                    for (int i = 0; i < parameters.length; i++) {
+                        parameters[i] = readValue(in);
+                    }
+                    handler.statement(sql, parameters);
+                    count++;
+                } else {
+                    break;
+                }
+                valid = buffer.position();
+            }
+
+            if (valid < channel.size()) {
+                log.warn("Dropped {} bytes from the end of the journal {}, they were never fully written.", channel.size() - valid, file.getName());
+                channel.truncate(valid);
+                channel.force(false);
+            }
+            size = valid;
+            return count;
+        }
+    }
+
+    private Object readValue(ByteBuffer in) {
+        byte type = in.get();
+        switch (type) {
+            case NULL:
+                return null;
+            case INT:
+                return in.getInt();
+            case LONG:
+                return in.getLong();
+            case FLOAT:
+                return in.getFloat();
+            case DOUBLE:
+                return in.getDouble();
+            case BOOLEAN:
+                return in.get() != 0;
+            case STRING:
+                return readString(in);
+            default:
+                throw new IllegalStateException("Unknown value type " + type + " in the journal");
+        }
+    }
+
+    private String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    /**
+     * Syncs what's left, stops the thread and closes the file.
+     */
+    public void close() {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        sync();
+        try {
+            raf.close();
+        } catch (IOException e) {
+            log.error("Failed to close the journal {}!", file.getName());
+            log.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getSize() {
+        synchronized (fileLock) {
+            return size;
+        }
+    }
+
+    public long getAppended() {
+        synchronized (lock) {
+            return appended;
+        }
+    }
+
+    public long getSynced() {
+        synchronized (fileLock) {
+            return synced;
+        }
+    }
+
+    public long getCommits() {
+        synchronized (fileLock) {
+            return commits;
+        }
+    }
+
+    /**
+     * Receives the statements of the journal when it's replayed.
+     */
+    public interface Handler {
+        void statement(String sql, Object[] parameters);
+    }
+}
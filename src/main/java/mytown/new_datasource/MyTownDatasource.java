@@ -10,81 +10,520 @@ import mytown.entities.*;
 import mytown.entities.flag.Flag;
 import mytown.entities.flag.FlagType;
 import mytown.handlers.MyTownLoadingCallback;
-import mytown.protection.ProtectionManager;
+import mytown.util.Constants;
+import mytown.util.LongObjectMap;
 import net.minecraft.server.MinecraftServer;
-import net.minecraft.tileentity.TileEntity;
 import net.minecraft.world.World;
 import net.minecraftforge.common.ForgeChunkManager;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
 
 public class MyTownDatasource extends DatasourceSQL {
 
     //public static final MyTownDatasource instance = new MyTownDatasource();
 
+    private static final String RESIDENT_COLUMNS = "SELECT uuid, name, joined, lastOnline, extraBlocks, fakePlayer";
+
+    /**
+     * Still null while the super constructor loads and checks the universe, writes are run right away until then.
+     */
+    private final WriteBehindQueue writeQueue = new WriteBehindQueue();
+    private List<WriteBehindQueue.Write> batch;
+    private int batchDepth = 0;
+    private boolean batchCancelled = false;
+    private StatementCache statements;
+    private long updateCounter;
+    private Journal journal;
+    /**
+     * Only one migration runs at a time, another one waits for it.
+     */
+    private final Object migrationLock = new Object();
+    /**
+     * Residents that aren't in memory are read with it, see {@link #loadResident(UUID)}.
+     */
+    private Connection reader;
+    private boolean readerFailed = false;
+    /**
+     * Whether the last resident lookup reached the database, a resident that wasn't found is then known to be missing.
+     */
+    private boolean lastLoadRead;
+
     public MyTownDatasource() {
         super(MyTown.instance.LOG, Config.instance, new MyTownSchema());
     }
 
+    public WriteBehindQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    /**
+     * Created on first use, the super constructor already writes while it loads the universe.
+     */
+    public synchronized StatementCache getStatementCache() {
+        if (statements == null) {
+            statements = new StatementCache();
+        }
+        return statements;
+    }
+
+    /**
+     * Gets the prepared statement of the SQL for the current connection, it's only parsed the first time.
+     */
+    private PreparedStatement statement(String sql, boolean returnGeneratedKeys) throws SQLException {
+        return getStatementCache().get(bridge.getConnection(), sql, returnGeneratedKeys);
+    }
+
+    /**
+     * Collects the writes that follow until executeBatch is called, they are then sent in batches inside a single transaction.
+     * Batches can be nested, only the outermost one is executed.
+     */
+    public void startBatch() {
+        if (batchDepth++ == 0) {
+            batch = new ArrayList<WriteBehindQueue.Write>();
+        }
+    }
+
+    public void executeBatch() {
+        if (--batchDepth == 0) {
+            List<WriteBehindQueue.Write> writes = batch;
+            batch = null;
+            if (batchCancelled) {
+                batchCancelled = false;
+                LOG.debug("Dropped a cancelled batch of {} changes", writes.size());
+            } else {
+                submitBatch(writes);
+            }
+        }
+    }
+
+    /**
+     * Ends the batch without writing anything collected in it, when the change it was started for couldn't be completed.
+     * Cancelling a nested batch drops the outermost one. What writeAndWait already sent can't be taken back.
+     */
+    public void cancelBatch() {
+        batchCancelled = true;
+        executeBatch();
+    }
+
+    private void submitBatch(List<WriteBehindQueue.Write> writes) {
+        if (!writes.isEmpty()) {
+            submit(new BatchWrite(null, "Failed to save a batch of " + writes.size() + " changes, none of them were saved!", writes));
+        }
+    }
+
+    private void write(WriteBehindQueue.Write write) {
+        if (batch != null) {
+            batch.add(write);
+        } else {
+            submit(write);
+        }
+    }
+
+    private void submit(WriteBehindQueue.Write write) {
+        if (writeQueue == null) {
+            write.run();
+        } else if (journal == null) {
+            writeQueue.add(write);
+        } else {
+            // Appended and queued together so a checkpoint never drops a write that isn't queued yet
+            synchronized (journal) {
+                if (journal.getSize() > Config.instance.journalCheckpointSize.get() * 1024L && writeQueue.getDepth() == 0) {
+                    journal.checkpoint();
+                }
+                append(write);
+                writeQueue.add(write);
+            }
+        }
+    }
+
+    private void append(WriteBehindQueue.Write write) {
+        if (write instanceof StatementWrite) {
+            journal.append(((StatementWrite) write).sql, ((StatementWrite) write).parameters);
+        } else if (write instanceof BatchWrite) {
+            for (WriteBehindQueue.Write w : ((BatchWrite) write).writes) {
+                append(w);
+            }
+        }
+    }
+
+    /**
+     * Runs the write after all the queued ones and waits for it, used by the inserts whose generated ID is needed.
+     */
+    private boolean writeAndWait(WriteBehindQueue.Write write) {
+        if (batch != null) {
+            // What was collected so far has to be written first
+            submitBatch(batch);
+            batch = new ArrayList<WriteBehindQueue.Write>();
+        }
+        return writeQueue == null ? write.run() : writeQueue.addAndWait(write);
+    }
+
     @Override
     public boolean loadAll() {
-        return loadWorlds() && loadTowns() && loadRanks() && loadBlocks() && loadResidents() &&
-                loadPlots() && /*loadNations() &&*/ loadTownFlags() && loadPlotFlags() &&
-                loadBlockWhitelists() &&  loadTownInvites() && loadBlockOwners() && loadTownBanks() &&
-                loadRankPermissions() && loadResidentsToTowns() && /*loadTownsToNations() &&*/
-                loadResidentsToPlots() && loadSelectedTowns();
+        if (Config.instance.journal.get()) {
+            openJournal();
+        }
+
+        TableLoader loader = createLoader();
+
+        long counter = readUpdateCounter();
+        // Anything written from now on makes the snapshot outdated
+        if (counter >= 0 && !saveUpdateCounter(counter + 1)) {
+            getSnapshot().delete();
+        }
+        if (counter >= 0 && Config.instance.snapshot.get()) {
+            boolean loaded = false;
+            startBatch();
+            try {
+                loaded = getSnapshot().load(counter, loader.getTables());
+            } finally {
+                if (loaded) {
+                    executeBatch();
+                } else {
+                    // The repairs belong to the universe of the rejected snapshot, the database load makes its own
+                    cancelBatch();
+                }
+            }
+            if (loaded) {
+                return true;
+            }
+            getUniverse().clear();
+            loader = createLoader();
+        }
+
+        List<Connection> readers = openLoadConnections();
+        // Repairs made while loading are written once every table was read, SQLite can't write while they are
+        startBatch();
+        try {
+            return loader.load(bridge.getConnection(), readers);
+        } finally {
+            closeConnections(readers);
+            executeBatch();
+        }
     }
 
-    @Override
-    public boolean checkAll() {
-        return checkFlags() && checkTowns();
+    /**
+     * The tables of the universe in the order they're loaded, the snapshot is written in the same order.
+     */
+    private TableLoader createLoader() {
+        TableLoader loader = new TableLoader(LOG, Config.instance.loadFetchSize.get());
+        loader.add(worldsTable());
+        loader.add(townsTable());
+        loader.add(ranksTable());
+        loader.add(blocksTable());
+        loader.add(residentsTable());
+        loader.add(plotsTable());
+        //loader.add(nationsTable());
+        loader.add(townFlagsTable());
+        loader.add(plotFlagsTable());
+        loader.add(blockWhitelistsTable());
+        loader.add(townInvitesTable());
+        loader.add(townBanksTable());
+        loader.add(rankPermissionsTable());
+        loader.add(residentsToTownsTable());
+        //loader.add(townsToNationsTable());
+        loader.add(residentsToPlotsTable());
+        loader.add(selectedTownsTable());
+        return loader;
     }
-    
-    protected boolean loadWorlds() {
+
+    /**
+     * Saves what the journal holds from the last run, which only happens after a crash, then starts appending to it.
+     * The journal is left out if it can't be read, the database is then used as if it was off.
+     */
+    private void openJournal() {
         try {
-            PreparedStatement s = prepare("SELECT * FROM " + prefix + "Worlds", true);
-            ResultSet rs = s.executeQuery();
+            journal = new Journal(LOG, new File(Constants.CONFIG_FOLDER, "MyTown.journal"), Config.instance.journalCommitInterval.get());
+            replayJournal();
+            journal.start();
+        } catch (IOException e) {
+            LOG.error("Failed to open the journal, changes will only be written to the database!");
+            LOG.error(ExceptionUtils.getStackTrace(e));
+            journal = null;
+        } catch (SQLException e) {
+            LOG.error("Failed to save the changes of the journal to the database! It's kept for the next start.");
+            LOG.error(ExceptionUtils.getStackTrace(e));
+            journal.close();
+            journal = null;
+        }
+    }
 
-            while (rs.next()) {
-                MyTownUniverse.instance.addWorld(rs.getInt("dim"));
+    private void replayJournal() throws IOException, SQLException {
+        Connection connection = bridge.getConnection();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        final int[] failed = {0};
+        int replayed;
+        try {
+            replayed = journal.replay(new Journal.Handler() {
+                @Override
+                public void statement(String sql, Object[] parameters) {
+                    try {
+                        PreparedStatement s = statement(sql, false);
+                        SQLBatch.setParameters(s, parameters);
+                        s.executeUpdate();
+                    } catch (SQLException e) {
+                        // Most likely an insert that was saved before the crash
+                        failed[0]++;
+                        LOG.debug("Skipped a change of the journal: {}", e.getMessage());
+                    }
+                }
+            });
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        journal.checkpoint();
+        if (replayed > 0) {
+            LOG.info("Saved {} changes from the journal that may have been lost, {} of them were already in the database.", replayed, failed[0]);
+        }
+    }
+
+    /**
+     * Syncs and closes the journal, called once the write queue is stopped so it no longer holds anything new.
+     */
+    public void stopJournal() {
+        if (journal != null) {
+            journal.close();
+            if (writeQueue.getFailed() == 0 && !journal.getFile().delete()) {
+                LOG.warn("Failed to delete the journal {}, its changes will be saved again on the next start.", journal.getFile().getName());
             }
+            journal = null;
+        }
+    }
 
-        } catch (SQLException e) {
-            LOG.error("Failed to load worlds from the database!");
-            LOG.error(ExceptionUtils.getStackTrace(e));
+    public Journal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Writes everything that's queued and closes the journal, the snapshot and the connections, in that order.
+     * Called when the server stops and before the datasource is replaced by a reload, which opens the same journal again.
+     */
+    public void shutdown() {
+        writeQueue.stop();
+        stopJournal();
+        saveSnapshot();
+        closeReader();
+        stop();
+    }
+
+    /**
+     * Writes the universe to the snapshot, called when the server stops once every write is done.
+     */
+    public boolean saveSnapshot() {
+        if (!Config.instance.snapshot.get()) {
+            return false;
+        }
+        if (writeQueue.getFailed() > 0) {
+            LOG.warn("Not writing the snapshot of the universe since {} writes failed, the database may not match it.", writeQueue.getFailed());
+            getSnapshot().delete();
+            return false;
+        }
+        long counter = updateCounter + 1;
+        if (!saveUpdateCounter(counter)) {
+            getSnapshot().delete();
             return false;
         }
+        return getSnapshot().write(counter, createLoader().getTables());
+    }
 
-        for (World world : MinecraftServer.getServer().worldServers) {
-            if (!MyTownUniverse.instance.worlds.contains(world.provider.dimensionId)) {
-                saveWorld(world.provider.dimensionId);
+    public UniverseSnapshot getSnapshot() {
+        return new UniverseSnapshot(LOG, new File(Constants.CONFIG_FOLDER, "Universe.snapshot"));
+    }
+
+    /**
+     * Reads the counter that changes whenever the server starts writing and when it stops, -1 if it's missing.
+     */
+    private long readUpdateCounter() {
+        try {
+            PreparedStatement s = statement("SELECT counter FROM " + prefix + "UpdateCounter", false);
+            ResultSet rs = s.executeQuery();
+            try {
+                return rs.next() ? rs.getLong(1) : -1;
+            } finally {
+                rs.close();
             }
+        } catch (SQLException e) {
+            LOG.error("Failed to read the update counter!");
+            LOG.error(ExceptionUtils.getStackTrace(e));
+            return -1;
         }
+    }
 
+    /**
+     * Saves the counter right away, it has to be written before and after everything else.
+     */
+    private boolean saveUpdateCounter(long counter) {
+        if (!new StatementWrite(null, "Failed to save the update counter!", "UPDATE " + prefix + "UpdateCounter SET counter=?", counter).run()) {
+            return false;
+        }
+        updateCounter = counter;
         return true;
     }
 
-    
-    protected boolean loadTowns() {
+    @Override
+    public boolean checkAll() {
+        startBatch();
         try {
-            PreparedStatement loadTownsStatement = prepare("SELECT * FROM " + prefix + "Towns", true);
-            ResultSet rs = loadTownsStatement.executeQuery();
+            return checkFlags() && checkTowns();
+        } finally {
+            executeBatch();
+        }
+    }
 
-            while (rs.next()) {
+    /**
+     * Opens the connections the tables are read with at startup.
+     * The bridge only hands out its own connection, so the URL is taken from it and the credentials from the properties it connected with.
+     * Without them, the tables are read one after the other on the main connection.
+     */
+    private List<Connection> openLoadConnections() {
+        List<Connection> connections = new ArrayList<Connection>();
+        try {
+            for (int i = 0; i < Config.instance.loadConnections.get(); i++) {
+                connections.add(openConnection());
+            }
+        } catch (SQLException e) {
+            LOG.warn("Failed to open the connections to load the tables with, they will be read one after the other.");
+            LOG.warn(ExceptionUtils.getStackTrace(e));
+            closeConnections(connections);
+            connections.clear();
+        }
+        return connections;
+    }
+
+    /**
+     * Opens another connection to the same database, the caller closes it.
+     */
+    public Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(bridge.getConnection().getMetaData().getURL(), getBridgeProperties());
+    }
+
+    /**
+     * Copies the whole database to the one at the given URL, see {@link DatasourceMigration}.
+     * Blocks until it's done. The write queue is held meanwhile so the source doesn't change while it's copied,
+     * the changes made in the meantime are written to the source afterwards and are not copied.
+     */
+    public boolean migrate(String targetUrl) {
+        synchronized (migrationLock) {
+            writeQueue.flush();
+            writeQueue.hold();
+            Connection source = null;
+            Connection target = null;
+            try {
+                source = openConnection();
+                target = DriverManager.getConnection(targetUrl);
+                File checkpoint = new File(Constants.CONFIG_FOLDER, "MyTown.migration");
+                return new DatasourceMigration(LOG, source, target, prefix, Config.instance.migrationBatchSize.get(), checkpoint).run();
+            } catch (SQLException e) {
+                LOG.error("Failed to connect to the databases to migrate!");
+                LOG.error(ExceptionUtils.getStackTrace(e));
+                return false;
+            } finally {
+                closeConnections(Arrays.asList(source, target));
+                writeQueue.release();
+            }
+        }
+    }
+
+    private void closeConnections(List<Connection> connections) {
+        for (Connection connection : connections) {
+            if (connection == null) {
+                continue;
+            }
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // Nothing left to save on it
+            }
+        }
+    }
+
+    private Properties getBridgeProperties() {
+        for (Class<?> c = bridge.getClass(); c != null; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField("dbProperties");
+                field.setAccessible(true);
+                return (Properties) field.get(bridge);
+            } catch (NoSuchFieldException ignored) {
+                // Declared in a super class
+            } catch (IllegalAccessException ignored) {
+                break;
+            }
+        }
+        return new Properties();
+    }
+
+    protected TableLoader.Table worldsTable() {
+        return new TableLoader.Table("Worlds", "SELECT dim FROM " + prefix + "Worlds", "Failed to load worlds from the database!") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {rs.getInt(1)};
+            }
+
+            @Override
+            protected void apply(Object[] row) {
+                MyTownUniverse.instance.addWorld((Integer) row[0]);
+            }
+
+            @Override
+            protected void finish() {
+                for (World world : MinecraftServer.getServer().worldServers) {
+                    if (!MyTownUniverse.instance.worlds.contains(world.provider.dimensionId)) {
+                        saveWorld(world.provider.dimensionId);
+                    }
+                }
+            }
+
+            @Override
+            protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+                for (int dim : getUniverse().worlds) {
+                    writer.row(dim);
+                }
+            }
+        };
+    }
+
+    protected TableLoader.Table townsTable() {
+        return new TableLoader.Table("Towns", "SELECT name, isAdminTown, spawnDim, spawnX, spawnY, spawnZ, cameraYaw, cameraPitch, extraBlocks, extraFarClaims, maxPlots FROM " + prefix + "Towns", "Failed to load Towns!") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {rs.getString(1), rs.getBoolean(2), rs.getInt(3), rs.getFloat(4), rs.getFloat(5), rs.getFloat(6),
+                        rs.getFloat(7), rs.getFloat(8), rs.getInt(9), rs.getInt(10), rs.getInt(11)};
+            }
+
+            @Override
+            protected void apply(Object[] row) {
                 Town town;
-                if (rs.getBoolean("isAdminTown")) {
-                    town = new AdminTown(rs.getString("name"));
+                if ((Boolean) row[1]) {
+                    town = new AdminTown((String) row[0]);
                 } else {
-                    town = new Town(rs.getString("name"));
+                    town = new Town((String) row[0]);
                 }
-                town.setSpawn(new Teleport(rs.getInt("spawnDim"), rs.getFloat("spawnX"), rs.getFloat("spawnY"), rs.getFloat("spawnZ"), rs.getFloat("cameraYaw"), rs.getFloat("cameraPitch")));
-                town.townBlocksContainer.setExtraBlocks(rs.getInt("extraBlocks"));
-                town.townBlocksContainer.setExtraFarClaims(rs.getInt("extraFarClaims"));
-                town.plotsContainer.setMaxPlots(rs.getInt("maxPlots"));
+                town.setSpawn(new Teleport((Integer) row[2], (Float) row[3], (Float) row[4], (Float) row[5], (Float) row[6], (Float) row[7]));
+                town.townBlocksContainer.setExtraBlocks((Integer) row[8]);
+                town.townBlocksContainer.setExtraFarClaims((Integer) row[9]);
+                town.plotsContainer.setMaxPlots((Integer) row[10]);
 
                 for (ForgeChunkManager.Ticket ticket : MyTownLoadingCallback.tickets) {
                     if (ticket.getModData().getString("townName").equals(town.getName())) {
@@ -94,133 +533,312 @@ public class MyTownDatasource extends DatasourceSQL {
 
                 MyTownUniverse.instance.addTown(town);
             }
-        } catch (SQLException e) {
-            LOG.error("Failed to load Towns!");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
 
-        return true;
+            @Override
+            protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+                for (Town town : getUniverse().towns) {
+                    Teleport spawn = town.getSpawn();
+                    writer.row(town.getName(), town instanceof AdminTown, spawn.getDim(), spawn.getX(), spawn.getY(), spawn.getZ(), spawn.getYaw(), spawn.getPitch(),
+                            town.townBlocksContainer.getExtraBlocks(), town.townBlocksContainer.getExtraFarClaims(), town.plotsContainer.getMaxPlots());
+                }
+            }
+        };
     }
 
-    
-    protected boolean loadBlocks() {
-        try {
-            PreparedStatement loadBlocksStatement = prepare("SELECT * FROM " + prefix + "Blocks", true);
-            ResultSet rs = loadBlocksStatement.executeQuery();
+    protected TableLoader.Table blocksTable() {
+        return new TableLoader.Table("Blocks", "SELECT dim, x, z, isFarClaim, pricePaid, townName FROM " + prefix + "Blocks", "Failed to load blocks!") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getBoolean(4), rs.getInt(5), rs.getString(6)};
+            }
 
-            while (rs.next()) {
-                Town town = getUniverse().towns.get(rs.getString("townName"));
-                TownBlock block = new TownBlock(rs.getInt("dim"), rs.getInt("x"), rs.getInt("z"), rs.getBoolean("isFarClaim"), rs.getInt("pricePaid"), town);
+            @Override
+            protected void apply(Object[] row) {
+                Town town = getUniverse().towns.get((String) row[5]);
+                TownBlock block = new TownBlock((Integer) row[0], (Integer) row[1], (Integer) row[2], (Boolean) row[3], (Integer) row[4], town);
 
                 town.townBlocksContainer.add(block);
 
                 MyTownUniverse.instance.addTownBlock(block);
             }
-        } catch (SQLException e) {
-            LOG.error("Failed to load blocks!");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
 
-        return true;
+            @Override
+            protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+                for (TownBlock block : getUniverse().blocks.values()) {
+                    writer.row(block.getDim(), block.getX(), block.getZ(), block.isFarClaim(), block.getPricePaid(), block.getTown().getName());
+                }
+            }
+        };
     }
 
-    
-    protected boolean loadRanks() {
-        try {
-            PreparedStatement loadRanksStatement = prepare("SELECT * FROM " + prefix + "Ranks", true);
-            ResultSet rs = loadRanksStatement.executeQuery();
-            while (rs.next()) {
-                Town town = getUniverse().towns.get(rs.getString("townName"));
+    protected TableLoader.Table ranksTable() {
+        return new TableLoader.Table("Ranks", "SELECT name, townName, type FROM " + prefix + "Ranks", "Failed to load a rank!") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {rs.getString(1), rs.getString(2), rs.getString(3)};
+            }
+
+            @Override
+            protected void apply(Object[] row) {
+                String name = (String) row[0];
+                String townName = (String) row[1];
+                Town town = getUniverse().towns.get(townName);
                 if (town == null) {
                     LOG.error("A rank from the database does not belong to any town. Deleting...");
-                    PreparedStatement ds = prepare("DELETE FROM Ranks WHERE name=? AND townName=?", false);
-                    ds.executeUpdate();
-                    continue;
+                    write(new StatementWrite(null, "Failed to delete rank " + name + " of the missing town " + townName,
+                            "DELETE FROM " + prefix + "Ranks WHERE name=? AND townName=?", name, townName));
+                    return;
                 }
 
-                Rank rank = new Rank(rs.getString("name"), town, Rank.Type.valueOf(rs.getString("type")));
+                Rank rank = new Rank(name, town, Rank.Type.valueOf((String) row[2]));
 
-                LOG.debug("Loading Rank %s for Town {}", rank.getName(), town.getName());
+                LOG.debug("Loading Rank {} for Town {}", rank.getName(), town.getName());
 
                 town.ranksContainer.add(rank);
                 MyTownUniverse.instance.addRank(rank);
             }
-        } catch (SQLException e) {
-            LOG.error("Failed to load a rank!");
-            LOG.error(ExceptionUtils.getStackTrace(e));
+
+            @Override
+            protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+                for (Town town : getUniverse().towns) {
+                    for (Rank rank : town.ranksContainer) {
+                        writer.row(rank.getName(), town.getName(), rank.getType().name());
+                    }
+                }
+            }
+        };
+    }
+
+    protected TableLoader.Table rankPermissionsTable() {
+        return new TableLoader.Table("RankPermissions", "SELECT node, ranks, townName FROM " + prefix + "RankPermissions", "Failed to load RankPermissions!") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {rs.getString(1), rs.getString(2), rs.getString(3)};
+            }
+
+            @Override
+            protected void apply(Object[] row) {
+                Town town = getUniverse().towns.get((String) row[2]);
+                Rank rank = town.ranksContainer.get((String) row[1]);
+
+                rank.permissionsContainer.add((String) row[0]);
+            }
+
+            @Override
+            protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+                for (Town town : getUniverse().towns) {
+                    for (Rank rank : town.ranksContainer) {
+                        for (String node : rank.permissionsContainer) {
+                            writer.row(node, rank.getName(), town.getName());
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Only the members of a town or a plot are loaded, the others are read when they're looked up.
+     */
+    protected TableLoader.Table residentsTable() {
+        return new TableLoader.Table("Residents", RESIDENT_COLUMNS + " FROM " + prefix + "Residents WHERE uuid IN (SELECT resident FROM " + prefix + "ResidentsToTowns)" +
+                " OR uuid IN (SELECT resident FROM " + prefix + "ResidentsToPlots)", "Failed to load Residents!") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return readResident(rs);
+            }
+
+            @Override
+            protected void apply(Object[] row) {
+                MyTownUniverse.instance.addResident(createResident(row));
+            }
+
+            @Override
+            protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+                Set<Resident> plotMembers = new HashSet<Resident>();
+                for (Plot plot : getUniverse().plots) {
+                    plotMembers.addAll(plot.ownersContainer);
+                    plotMembers.addAll(plot.membersContainer);
+                }
+                // The same residents as the query, the others are still read when they're looked up
+                for (Resident res : getUniverse().residents) {
+                    if (!res.townsContainer.isEmpty() || plotMembers.contains(res)) {
+                        writer.row(res.getUUID(), res.getPlayerName(), res.getJoinDate().getTime() / 1000L, res.getLastOnline().getTime() / 1000L,
+                                res.getExtraBlocks(), res.getFakePlayer());
+                    }
+                }
+            }
+        };
+    }
+
+    private static Object[] readResident(ResultSet rs) throws SQLException {
+        return new Object[] {UUID.fromString(rs.getString(1)), rs.getString(2), rs.getLong(3), rs.getLong(4), rs.getInt(5), rs.getBoolean(6)};
+    }
+
+    private static Resident createResident(Object[] row) {
+        Resident res = new Resident((UUID) row[0], (String) row[1], (Long) row[2], (Long) row[3]);
+        res.setExtraBlocks((Integer) row[4]);
+        res.setFakePlayer((Boolean) row[5]);
+        return res;
+    }
+
+    /**
+     * Reads a resident that isn't in memory along with its invites and adds it to the universe, null if it's not in the database.
+     * The query runs on a connection of its own instead of waiting behind the queued writes. A resident only leaves memory
+     * while the write queue is empty, so the one read is never older than what's queued.
+     * A resident that isn't in the database is remembered by the resident cache as missing, one that couldn't be read
+     * isn't, so the two can be told apart.
+     */
+    public Resident loadResident(UUID uuid) {
+        Resident res = loadResident("uuid=?", uuid.toString());
+        if (res == null && lastLoadRead) {
+            MyTownUniverse.instance.residentCache.setMissing(uuid);
         }
-        return true;
+        return res;
     }
 
-    
-    protected boolean loadRankPermissions() {
-        try {
-            PreparedStatement loadRankPermsStatement = prepare("SELECT * FROM " + prefix + "RankPermissions", true);
-            ResultSet rs = loadRankPermsStatement.executeQuery();
-            while(rs.next()) {
-                Town town = getUniverse().towns.get(rs.getString("townName"));
-                Rank rank = town.ranksContainer.get(rs.getString("ranks"));
+    /**
+     * Same as above with the name of the resident, ignoring case.
+     * The name is looked up as it's written first, only a name that isn't found that way is compared to every resident.
+     */
+    public Resident loadResident(String username) {
+        Resident res = loadResident("name=?", username);
+        if (res == null && lastLoadRead) {
+            res = loadResident("LOWER(name)=?", username.toLowerCase(Locale.ENGLISH));
+        }
+        if (res == null && lastLoadRead) {
+            MyTownUniverse.instance.residentCache.setMissing(username);
+        }
+        return res;
+    }
 
-                rank.permissionsContainer.add(rs.getString("node"));
+    private Resident loadResident(String condition, final String value) {
+        final String sql = RESIDENT_COLUMNS + " FROM " + prefix + "Residents WHERE " + condition;
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        final List<String> invites = new ArrayList<String>();
+        Connection connection = getReader();
+        if (connection != null) {
+            try {
+                queryResident(connection, sql, value, rows, invites);
+                lastLoadRead = true;
+            } catch (SQLException e) {
+                LOG.error("Failed to load resident " + value + "!");
+                LOG.error(ExceptionUtils.getStackTrace(e));
+                // Opened again on the next lookup
+                closeReader();
+                lastLoadRead = false;
             }
-        } catch (SQLException e) {
-            LOG.error("Failed to load RankPermissions!");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+        } else {
+            lastLoadRead = writeAndWait(new WriteBehindQueue.Write(null, "Failed to load resident " + value + "!") {
+                @Override
+                protected void execute() throws SQLException {
+                    queryResident(bridge.getConnection(), sql, value, rows, invites);
+                }
+            });
         }
-        return true;
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        // Looked up by a name it no longer had in memory
+        Resident res = getUniverse().residents.get((UUID) rows.get(0)[0]);
+        if (res != null) {
+            return res;
+        }
+
+        res = createResident(rows.get(0));
+        MyTownUniverse.instance.addResident(res);
+        for (String townName : invites) {
+            Town town = getUniverse().towns.get(townName);
+            if (town != null) {
+                res.townInvitesContainer.add(town);
+            }
+        }
+        return res;
     }
 
-    
-    protected boolean loadResidents() {
+    private void queryResident(Connection connection, String sql, String value, List<Object[]> rows, List<String> invites) throws SQLException {
+        PreparedStatement s = connection.prepareStatement(sql);
         try {
-            PreparedStatement loadResidentsStatement = prepare("SELECT * FROM " + prefix + "Residents", true);
-            ResultSet rs = loadResidentsStatement.executeQuery();
+            s.setString(1, value);
+            ResultSet rs = s.executeQuery();
+            if (!rs.next()) {
+                return;
+            }
+            rows.add(readResident(rs));
+            rs.close();
+        } finally {
+            s.close();
+        }
 
+        s = connection.prepareStatement("SELECT townName FROM " + prefix + "TownInvites WHERE resident=?");
+        try {
+            s.setString(1, rows.get(0)[0].toString());
+            ResultSet rs = s.executeQuery();
             while (rs.next()) {
-                Resident res = new Resident(UUID.fromString(rs.getString("uuid")), rs.getString("name"), rs.getLong("joined"), rs.getLong("lastOnline"));
-                res.setExtraBlocks(rs.getInt("extraBlocks"));
-                res.setFakePlayer(rs.getBoolean("fakePlayer"));
+                invites.add(rs.getString(1));
+            }
+            rs.close();
+        } finally {
+            s.close();
+        }
+    }
 
-                MyTownUniverse.instance.addResident(res);
+    /**
+     * The connection residents are read with, opened on the first lookup.
+     * Null if it can't be opened, they are then read on the writer thread after the queued writes.
+     */
+    private Connection getReader() {
+        if (reader == null && !readerFailed) {
+            try {
+                reader = openConnection();
+            } catch (SQLException e) {
+                LOG.warn("Failed to open the connection to read residents with, they will be read after the queued writes.");
+                LOG.warn(ExceptionUtils.getStackTrace(e));
+                readerFailed = true;
             }
-        } catch (SQLException e) {
-            LOG.error("Failed to load Residents!");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
         }
+        return reader;
+    }
 
-        return true;
+    public void closeReader() {
+        if (reader != null) {
+            closeConnections(Arrays.asList(reader));
+            reader = null;
+        }
     }
 
-    
-    protected boolean loadPlots() {
-        try {
-            PreparedStatement loadPlotsStatement = prepare("SELECT * FROM " + prefix + "Plots", true);
-            ResultSet rs = loadPlotsStatement.executeQuery();
+    protected TableLoader.Table plotsTable() {
+        return new TableLoader.Table("Plots", "SELECT ID, name, dim, x1, y1, z1, x2, y2, z2, townName FROM " + prefix + "Plots", "Failed to load Plots!") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getInt(4), rs.getInt(5), rs.getInt(6),
+                        rs.getInt(7), rs.getInt(8), rs.getInt(9), rs.getString(10)};
+            }
 
-            while (rs.next()) {
-                Town town = getUniverse().towns.get(rs.getString("townName"));
-                Plot plot = new Plot(rs.getString("name"), town, rs.getInt("dim"), rs.getInt("x1"), rs.getInt("y1"), rs.getInt("z1"), rs.getInt("x2"), rs.getInt("y2"), rs.getInt("z2"));
-                plot.setDbID(rs.getInt("ID"));
+            @Override
+            protected void apply(Object[] row) {
+                Town town = getUniverse().towns.get((String) row[9]);
+                Plot plot = new Plot((String) row[1], town, (Integer) row[2], (Integer) row[3], (Integer) row[4], (Integer) row[5], (Integer) row[6], (Integer) row[7], (Integer) row[8]);
+                plot.setDbID((Integer) row[0]);
 
                 town.plotsContainer.add(plot);
 
                 MyTownUniverse.instance.addPlot(plot);
             }
-        } catch (SQLException e) {
-            LOG.error("Failed to load Plots!");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
 
-        return true;
+            @Override
+            protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+                for (Plot plot : getUniverse().plots) {
+                    writer.row(plot.getDbID(), plot.getName(), plot.getDim(), plot.getStartX(), plot.getStartY(), plot.getStartZ(),
+                            plot.getEndX(), plot.getEndY(), plot.getEndZ(), plot.getTown().getName());
+                }
+            }
+        };
     }
 
     /*
-    
+
     protected boolean loadNations() {
         try {
             PreparedStatement loadNationsStatement = prepare("SELECT * FROM " + prefix + "Nations", true);
@@ -240,17 +858,19 @@ public class MyTownDatasource extends DatasourceSQL {
     }
     */
 
-    @SuppressWarnings("unchecked")
-    
-    protected boolean loadTownFlags() {
-        try {
-            PreparedStatement loadFlagsStatement = prepare("SELECT * FROM " + prefix + "TownFlags", true);
-            ResultSet rs = loadFlagsStatement.executeQuery();
+    protected TableLoader.Table townFlagsTable() {
+        return new TableLoader.Table("TownFlags", "SELECT townName, name, serializedValue FROM " + prefix + "TownFlags", "Failed to load TownFlags!") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {rs.getString(1), rs.getString(2), rs.getString(3)};
+            }
 
-            while (rs.next()) {
-                String townName = rs.getString("townName");
-                String flagName = rs.getString("name");
-                String serializedValue = rs.getString("serializedValue");
+            @SuppressWarnings("unchecked")
+            @Override
+            protected void apply(Object[] row) {
+                String townName = (String) row[0];
+                String flagName = (String) row[1];
+                String serializedValue = (String) row[2];
 
                 FlagType flagType;
                 try {
@@ -258,11 +878,9 @@ public class MyTownDatasource extends DatasourceSQL {
                 } catch (IllegalArgumentException ex) {
                     LOG.error("Flag {} does no longer exist... will be deleted shortly from the database.", flagName);
                     LOG.error(ExceptionUtils.getStackTrace(ex));
-                    PreparedStatement removeFlag = prepare("DELETE FROM " + prefix + "TownFlags WHERE townName=? AND name=?", true);
-                    removeFlag.setString(1, townName);
-                    removeFlag.setString(2, flagName);
-                    removeFlag.executeUpdate();
-                    continue;
+                    write(new StatementWrite(null, "Failed to delete flag " + flagName + " of town " + townName,
+                            "DELETE FROM " + prefix + "TownFlags WHERE townName=? AND name=?", townName, flagName));
+                    return;
                 }
 
                 Flag flag;
@@ -271,11 +889,9 @@ public class MyTownDatasource extends DatasourceSQL {
                 }  catch (JsonSyntaxException ex) {
                     LOG.error("Flag {} has an invalid value... reverting to default", flagName);
                     LOG.error(ExceptionUtils.getStackTrace(ex));
-                    PreparedStatement updateFlag = prepare("UPDATE " + prefix + "TownFlags SET serializedValue=? WHERE townName=? AND name=?", false);
-                    updateFlag.setString(1, flagType.serializeValue(flagType.defaultValue));
-                    updateFlag.setString(2, townName);
-                    updateFlag.setString(3, flagName);
-                    updateFlag.executeUpdate();
+                    write(new StatementWrite(null, "Failed to reset flag " + flagName + " of town " + townName,
+                            "UPDATE " + prefix + "TownFlags SET serializedValue=? WHERE townName=? AND name=?",
+                            flagType.serializeValue(flagType.defaultValue), townName, flagName));
 
                     flag = new Flag(flagType, flagType.defaultValue);
                 }
@@ -283,24 +899,32 @@ public class MyTownDatasource extends DatasourceSQL {
                 Town town = getUniverse().towns.get(townName);
                 town.flagsContainer.add(flag);
             }
-        } catch (SQLException e) {
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
-        return true;
+
+            @SuppressWarnings("unchecked")
+            @Override
+            protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+                for (Town town : getUniverse().towns) {
+                    for (Flag flag : town.flagsContainer) {
+                        writer.row(town.getName(), flag.flagType.name, flag.flagType.serializeValue(flag.value));
+                    }
+                }
+            }
+        };
     }
 
-    @SuppressWarnings("unchecked")
-    
-    public boolean loadPlotFlags() {
-        try {
-            PreparedStatement loadFlagsStatement = prepare("SELECT * FROM " + prefix + "PlotFlags", true);
-            ResultSet rs = loadFlagsStatement.executeQuery();
+    protected TableLoader.Table plotFlagsTable() {
+        return new TableLoader.Table("PlotFlags", "SELECT plotID, name, serializedValue FROM " + prefix + "PlotFlags", "Failed to load PlotFlags!") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {rs.getInt(1), rs.getString(2), rs.getString(3)};
+            }
 
-            while (rs.next()) {
-                int plotID = rs.getInt("plotID");
-                String flagName = rs.getString("name");
-                String serializedValue = rs.getString("serializedValue");
+            @SuppressWarnings("unchecked")
+            @Override
+            protected void apply(Object[] row) {
+                int plotID = (Integer) row[0];
+                String flagName = (String) row[1];
+                String serializedValue = (String) row[2];
 
                 FlagType flagType;
                 try {
@@ -308,11 +932,9 @@ public class MyTownDatasource extends DatasourceSQL {
                 } catch (IllegalArgumentException ex) {
                     LOG.error("Flag {} does no longer exist... will be deleted shortly from the database.", flagName);
                     LOG.error(ExceptionUtils.getStackTrace(ex));
-                    PreparedStatement removeFlag = prepare("DELETE FROM " + prefix + "PlotFlags WHERE plotID=? AND name=?", true);
-                    removeFlag.setInt(1, plotID);
-                    removeFlag.setString(2, flagName);
-                    removeFlag.executeUpdate();
-                    continue;
+                    write(new StatementWrite(null, "Failed to delete flag " + flagName + " of plot " + plotID,
+                            "DELETE FROM " + prefix + "PlotFlags WHERE plotID=? AND name=?", plotID, flagName));
+                    return;
                 }
 
                 Flag flag;
@@ -321,72 +943,82 @@ public class MyTownDatasource extends DatasourceSQL {
                 }  catch (JsonSyntaxException ex) {
                     LOG.error("Flag {} has an invalid value... reverting to default", flagName);
                     LOG.error(ExceptionUtils.getStackTrace(ex));
-                    PreparedStatement updateFlag = prepare("UPDATE " + prefix + "PlotFlags SET serializedValue=? WHERE plotID=? AND name=?", false);
-                    updateFlag.setString(1, flagType.serializeValue(flagType.defaultValue));
-                    updateFlag.setInt(2, plotID);
-                    updateFlag.setString(3, flagName);
-                    continue;
+                    write(new StatementWrite(null, "Failed to reset flag " + flagName + " of plot " + plotID,
+                            "UPDATE " + prefix + "PlotFlags SET serializedValue=? WHERE plotID=? AND name=?",
+                            flagType.serializeValue(flagType.defaultValue), plotID, flagName));
+                    return;
                 }
 
                 Plot plot = getUniverse().plots.get(plotID);
                 plot.flagsContainer.add(flag);
             }
-        } catch (SQLException e) {
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
 
-        return true;
+            @SuppressWarnings("unchecked")
+            @Override
+            protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+                for (Plot plot : getUniverse().plots) {
+                    for (Flag flag : plot.flagsContainer) {
+                        writer.row(plot.getDbID(), flag.flagType.name, flag.flagType.serializeValue(flag.value));
+                    }
+                }
+            }
+        };
     }
 
-    
-    protected boolean loadResidentsToTowns() {
-        try {
-            PreparedStatement statement = prepare("SELECT * FROM " + prefix + "ResidentsToTowns", true);
-            ResultSet rs = statement.executeQuery();
+    protected TableLoader.Table residentsToTownsTable() {
+        return new TableLoader.Table("ResidentsToTowns", "SELECT resident, town, ranks FROM " + prefix + "ResidentsToTowns", "Failed to link Residents to Towns!") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {UUID.fromString(rs.getString(1)), rs.getString(2), rs.getString(3)};
+            }
 
-            while (rs.next()) {
-                Resident res = getUniverse().residents.get(UUID.fromString(rs.getString("resident")));
-                Town town = getUniverse().towns.get(rs.getString("town"));
-                Rank rank = town.ranksContainer.get(rs.getString("ranks"));
+            @Override
+            protected void apply(Object[] row) {
+                Resident res = getUniverse().residents.get((UUID) row[0]);
+                Town town = getUniverse().towns.get((String) row[1]);
+                Rank rank = town.ranksContainer.get((String) row[2]);
 
                 town.residentsMap.put(res, rank);
                 res.townsContainer.add(town);
             }
-        } catch (SQLException e) {
-            LOG.error("Failed to link Residents to Towns!");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
 
-        return true;
+            @Override
+            protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+                for (Town town : getUniverse().towns) {
+                    for (Map.Entry<Resident, Rank> entry : town.residentsMap.entrySet()) {
+                        writer.row(entry.getKey().getUUID(), town.getName(), entry.getValue().getName());
+                    }
+                }
+            }
+        };
     }
 
-    
-    protected boolean loadBlockWhitelists() {
-        try {
-            PreparedStatement statement = prepare("SELECT * FROM " + prefix + "BlockWhitelists", true);
-            ResultSet rs = statement.executeQuery();
+    protected TableLoader.Table blockWhitelistsTable() {
+        return new TableLoader.Table("BlockWhitelists", "SELECT ID, dim, x, y, z, flagName, townName FROM " + prefix + "BlockWhitelists", "Failed to load a Block whitelist") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getInt(5), rs.getString(6), rs.getString(7)};
+            }
 
-            while (rs.next()) {
+            @Override
+            protected void apply(Object[] row) {
                 // plotID will be 0 if it's a town's whitelist
-                BlockWhitelist bw = new BlockWhitelist(rs.getInt("dim"), rs.getInt("x"), rs.getInt("y"), rs.getInt("z"), FlagType.valueOf(rs.getString("flagName")));
-                bw.setDbID(rs.getInt("ID"));
-                Town town = getUniverse().towns.get(rs.getString("townName"));
+                BlockWhitelist bw = new BlockWhitelist((Integer) row[1], (Integer) row[2], (Integer) row[3], (Integer) row[4], FlagType.valueOf((String) row[5]));
+                bw.setDbID((Integer) row[0]);
+                Town town = getUniverse().towns.get((String) row[6]);
                 /*
                 town.addBlockWhitelist(bw);
                 */
             }
 
-        } catch (SQLException e) {
-            LOG.error("Failed to load a Block whitelist");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
-        return true;
+            @Override
+            protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+                // Not kept in the universe yet
+            }
+        };
     }
     /*
-    
+
     protected boolean loadTownsToNations() {
         try {
             PreparedStatement statement = prepare("SELECT * FROM " + prefix + "TownsToNations", true);
@@ -412,123 +1044,166 @@ public class MyTownDatasource extends DatasourceSQL {
     }
     */
 
-    
-    protected boolean loadResidentsToPlots() {
-        try {
-            PreparedStatement loadStatement = prepare("SELECT * FROM " + prefix + "ResidentsToPlots", true);
-            ResultSet rs = loadStatement.executeQuery();
+    protected TableLoader.Table residentsToPlotsTable() {
+        return new TableLoader.Table("ResidentsToPlots", "SELECT plotID, resident, isOwner FROM " + prefix + "ResidentsToPlots", "Failed to link Residents to Plots") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {rs.getInt(1), UUID.fromString(rs.getString(2)), rs.getBoolean(3)};
+            }
 
-            while (rs.next()) {
-                Plot plot = getUniverse().plots.get(rs.getInt("plotID"));
-                Resident res = getUniverse().residents.get(UUID.fromString(rs.getString("resident")));
+            @Override
+            protected void apply(Object[] row) {
+                Plot plot = getUniverse().plots.get((Integer) row[0]);
+                Resident res = getUniverse().residents.get((UUID) row[1]);
 
-                if (rs.getBoolean("isOwner")) {
+                if ((Boolean) row[2]) {
                     plot.ownersContainer.add(res);
                 } else {
                     plot.membersContainer.add(res);
                 }
+                getUniverse().residentCache.reference(res.getUUID());
             }
-        } catch (SQLException e) {
-            LOG.error("Failed to link Residents to Plots");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
-        return true;
+
+            @Override
+            protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+                for (Plot plot : getUniverse().plots) {
+                    for (Resident res : plot.ownersContainer) {
+                        writer.row(plot.getDbID(), res.getUUID(), true);
+                    }
+                    for (Resident res : plot.membersContainer) {
+                        writer.row(plot.getDbID(), res.getUUID(), false);
+                    }
+                }
+            }
+        };
     }
 
-    
-    protected boolean loadTownInvites() {
-        try {
-            PreparedStatement s = prepare("SELECT * FROM " + prefix + "TownInvites", true);
-            ResultSet rs = s.executeQuery();
-            while (rs.next()) {
-                Resident res = getUniverse().residents.get(UUID.fromString(rs.getString("resident")));
-                Town town = getUniverse().towns.get(rs.getString("townName"));
+    protected TableLoader.Table townInvitesTable() {
+        return new TableLoader.Table("TownInvites", "SELECT resident, townName FROM " + prefix + "TownInvites", "Failed to load town invites.") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {UUID.fromString(rs.getString(1)), rs.getString(2)};
+            }
+
+            @Override
+            protected void apply(Object[] row) {
+                Resident res = getUniverse().residents.get((UUID) row[0]);
+                if (res == null) {
+                    // Added when the resident is read
+                    return;
+                }
+                Town town = getUniverse().towns.get((String) row[1]);
 
                 res.townInvitesContainer.add(town);
             }
-        } catch (SQLException e) {
-            LOG.error("Failed to load town invites.");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
 
-        return true;
+            @Override
+            protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+                for (Resident res : getUniverse().residents) {
+                    for (Town town : res.townInvitesContainer) {
+                        writer.row(res.getUUID(), town.getName());
+                    }
+                }
+            }
+        };
     }
 
+    /**
+     * Reads the owners of the blocks inside a chunk into the map, it's done when the chunk loads.
+     * The read is queued on the writer thread after all the writes queued so far, so it sees the ones still waiting
+     * and never runs on the connection while another thread uses it. Done runs on the writer thread once it's over,
+     * the owners are left out if the read failed.
+     */
     @SuppressWarnings("SuspiciousNameCombination")
-    
-    protected boolean loadBlockOwners() {
-        try {
-            PreparedStatement s = prepare("SELECT * FROM " + prefix + "BlockOwners", true);
-            ResultSet rs = s.executeQuery();
-            while(rs.next()) {
-                Resident res = getUniverse().residents.get(UUID.fromString(rs.getString("resident")));
-                int dim = rs.getInt("dim");
-                int x = rs.getInt("x");
-                int y = rs.getInt("y");
-                int z = rs.getInt("z");
-
-                World world = MinecraftServer.getServer().worldServerForDimension(dim);
-                if(world == null) {
-                    LOG.error("Failed to find a TileEntity at position ({}, {}, {}| DIM: {})", x, y, z, dim);
-                    continue;
-                }
-
-                TileEntity te = world.getTileEntity(x, y, z);
-                if(te == null) {
-                    LOG.error("Failed to find a TileEntity at position ({}, {}, {}| DIM: {})", x, y, z, dim);
-                    continue;
+    public void loadBlockOwners(final int dim, final int chunkX, final int chunkZ, final LongObjectMap<UUID> owners, final Runnable done) {
+        WriteBehindQueue.Write read = new WriteBehindQueue.Write(null, null) {
+            @Override
+            protected void execute() throws SQLException {
+                try {
+                    PreparedStatement s = statement("SELECT resident, x, y, z FROM " + prefix + "BlockOwners WHERE dim=? AND x>=? AND x<=? AND z>=? AND z<=?", false);
+                    s.setInt(1, dim);
+                    s.setInt(2, chunkX << 4);
+                    s.setInt(3, (chunkX << 4) + 15);
+                    s.setInt(4, chunkZ << 4);
+                    s.setInt(5, (chunkZ << 4) + 15);
+                    ResultSet rs = s.executeQuery();
+                    try {
+                        while (rs.next()) {
+                            owners.put(LongObjectMap.packBlock(rs.getInt(2), rs.getInt(3), rs.getInt(4)), UUID.fromString(rs.getString(1)));
+                        }
+                    } finally {
+                        rs.close();
+                    }
+                } catch (SQLException e) {
+                    // Not counted as a failed write, the database is unchanged
+                    LOG.error("Failed to load block owners in chunk ({}, {}| DIM: {})", chunkX, chunkZ, dim);
+                    LOG.error(ExceptionUtils.getStackTrace(e));
+                    owners.clear();
+                } finally {
+                    done.run();
                 }
-                ProtectionManager.addTileEntity(te, res);
             }
-        } catch (SQLException e) {
-            LOG.error("Failed to load block owners.");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+        };
+        if (writeQueue == null) {
+            read.run();
+        } else {
+            writeQueue.add(read);
         }
-        return true;
     }
 
-    
-    protected boolean loadTownBanks() {
-        try {
-            PreparedStatement s = prepare("SELECT * FROM " + prefix + "TownBanks", true);
-            ResultSet rs = s.executeQuery();
-            while(rs.next()) {
-                Town town = getUniverse().towns.get(rs.getString("townName"));
+    protected TableLoader.Table townBanksTable() {
+        return new TableLoader.Table("TownBanks", "SELECT townName, amount, daysNotPaid FROM " + prefix + "TownBanks", "Failed to load town banks.") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {rs.getString(1), rs.getInt(2), rs.getInt(3)};
+            }
+
+            @Override
+            protected void apply(Object[] row) {
+                Town town = getUniverse().towns.get((String) row[0]);
 
-                town.bank.setAmount(rs.getInt("amount"));
-                town.bank.setDaysNotPaid(rs.getInt("daysNotPaid"));
+                town.bank.setAmount((Integer) row[1]);
+                town.bank.setDaysNotPaid((Integer) row[2]);
 
                 getUniverse().addBank(town.bank);
             }
-        } catch (SQLException e) {
-            LOG.error("Failed to load town banks.");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
-        return true;
+
+            @Override
+            protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+                for (Bank bank : getUniverse().banks) {
+                    writer.row(bank.getTown().getName(), bank.getAmount(), bank.getDaysNotPaid());
+                }
+            }
+        };
     }
 
-    
-    protected boolean loadSelectedTowns() {
-        try {
-            PreparedStatement statement = prepare("SELECT * FROM " + prefix + "SelectedTown", true);
-            ResultSet rs = statement.executeQuery();
+    protected TableLoader.Table selectedTownsTable() {
+        return new TableLoader.Table("SelectedTown", "SELECT resident, townName FROM " + prefix + "SelectedTown", "Failed to load a town selection.") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {UUID.fromString(rs.getString(1)), rs.getString(2)};
+            }
 
-            while (rs.next()) {
-                Resident res = getUniverse().residents.get(UUID.fromString(rs.getString("resident")));
-                Town town = getUniverse().towns.get(rs.getString("townName"));
+            @Override
+            protected void apply(Object[] row) {
+                Resident res = getUniverse().residents.get((UUID) row[0]);
+                if (res == null) {
+                    return;
+                }
+                Town town = getUniverse().towns.get((String) row[1]);
                 res.townsContainer.isSelectedTownSaved = true;
                 res.townsContainer.setMainTown(town);
             }
-        } catch (SQLException e) {
-            LOG.error("Failed to load a town selection.");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
-        return true;
+
+            @Override
+            protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+                for (Resident res : getUniverse().residents) {
+                    if (res.townsContainer.isSelectedTownSaved && res.townsContainer.getMainTown() != null) {
+                        writer.row(res.getUUID(), res.townsContainer.getMainTown().getName());
+                    }
+                }
+            }
+        };
     }
 
     /* ----- Save ----- */
@@ -536,172 +1211,79 @@ public class MyTownDatasource extends DatasourceSQL {
     
     public boolean saveTown(Town town) {
         LOG.debug("Saving Town {}", town.getName());
-        try {
-            if (getUniverse().towns.contains(town)) { // Update
-                PreparedStatement updateStatement = prepare("UPDATE " + prefix + "Towns SET name=?, spawnDim=?, spawnX=?, spawnY=?, spawnZ=?, cameraYaw=?, cameraPitch=?, extraBlocks=?, maxPlots=?, extraFarClaims=? WHERE name=?", true);
-                updateStatement.setString(1, town.getName());
-                updateStatement.setInt(2, town.getSpawn().getDim());
-                updateStatement.setFloat(3, town.getSpawn().getX());
-                updateStatement.setFloat(4, town.getSpawn().getY());
-                updateStatement.setFloat(5, town.getSpawn().getZ());
-                updateStatement.setFloat(6, town.getSpawn().getYaw());
-                updateStatement.setFloat(7, town.getSpawn().getPitch());
-                updateStatement.setInt(8, town.townBlocksContainer.getExtraBlocks());
-                updateStatement.setInt(9, town.plotsContainer.getMaxPlots());
-                updateStatement.setInt(10, town.townBlocksContainer.getExtraFarClaims());
-
-                if (town.getOldName() == null)
-                    updateStatement.setString(11, town.getName());
-                else
-                    updateStatement.setString(11, town.getOldName());
-
-                updateStatement.executeUpdate();
-
-                // Need to move the Town in the map from the old name to the new
-                if (town.getOldName() != null) {
-                    MyTownUniverse.instance.removeTown(town);
-                    // This updates the name
-                    MyTownUniverse.instance.addTown(town);
-                }
-                town.resetOldName();
-
-            } else { // Insert
-                PreparedStatement insertStatement = prepare("INSERT INTO " + prefix + "Towns (name, spawnDim, spawnX, spawnY, spawnZ, cameraYaw, cameraPitch, isAdminTown, extraBlocks, maxPlots, extraFarClaims) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", true);
-                insertStatement.setString(1, town.getName());
-                insertStatement.setInt(2, town.getSpawn().getDim());
-                insertStatement.setFloat(3, town.getSpawn().getX());
-                insertStatement.setFloat(4, town.getSpawn().getY());
-                insertStatement.setFloat(5, town.getSpawn().getZ());
-                insertStatement.setFloat(6, town.getSpawn().getYaw());
-                insertStatement.setFloat(7, town.getSpawn().getPitch());
-                insertStatement.setBoolean(8, town instanceof AdminTown);
-                insertStatement.setInt(9, town.townBlocksContainer.getExtraBlocks());
-                insertStatement.setInt(10, town.plotsContainer.getMaxPlots());
-                insertStatement.setInt(11, town.townBlocksContainer.getExtraFarClaims());
-
-                insertStatement.executeUpdate();
-
-                // Put the Town in the Map
+        Teleport spawn = town.getSpawn();
+        if (getUniverse().towns.contains(town)) { // Update
+            String oldName = town.getOldName() == null ? town.getName() : town.getOldName();
+            // A rename can't be replaced by a later update since that one looks the town up with its new name
+            write(new StatementWrite(town.getOldName() == null ? "Towns:" + town.getName() : null, "Failed to save Town " + town.getName() + "!",
+                    "UPDATE " + prefix + "Towns SET name=?, spawnDim=?, spawnX=?, spawnY=?, spawnZ=?, cameraYaw=?, cameraPitch=?, extraBlocks=?, maxPlots=?, extraFarClaims=? WHERE name=?",
+                    town.getName(), spawn.getDim(), spawn.getX(), spawn.getY(), spawn.getZ(), spawn.getYaw(), spawn.getPitch(),
+                    town.townBlocksContainer.getExtraBlocks(), town.plotsContainer.getMaxPlots(), town.townBlocksContainer.getExtraFarClaims(), oldName));
+
+            // Need to move the Town in the map from the old name to the new
+            if (town.getOldName() != null) {
+                MyTownUniverse.instance.removeTown(town);
+                // This updates the name
                 MyTownUniverse.instance.addTown(town);
             }
-        } catch (SQLException e) {
-            LOG.error("Failed to save Town {}!", town.getName());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
-
-        return true;
-    }
-
-    
-    public boolean saveBlock(TownBlock block) {
-        LOG.debug("Saving TownBlock {}", block.getKey());
-        try {
-            if (getUniverse().blocks.contains(block)) { // Update
-                // TODO Update Block (If needed?)
-            } else { // Insert
-                PreparedStatement insertStatement = prepare("INSERT INTO " + prefix + "Blocks (dim, x, z, isFarClaim, pricePaid, townName) VALUES (?, ?, ?, ?, ?, ?)", true);
-                insertStatement.setInt(1, block.getDim());
-                insertStatement.setInt(2, block.getX());
-                insertStatement.setInt(3, block.getZ());
-                insertStatement.setBoolean(4, block.isFarClaim());
-                insertStatement.setInt(5, block.getPricePaid());
-                insertStatement.setString(6, block.getTown().getName());
-                insertStatement.executeUpdate();
+            town.resetOldName();
 
-                // Put the Block in the Map
-                MyTownUniverse.instance.addTownBlock(block);
+        } else { // Insert
+            write(new StatementWrite(null, "Failed to save Town " + town.getName() + "!",
+                    "INSERT INTO " + prefix + "Towns (name, spawnDim, spawnX, spawnY, spawnZ, cameraYaw, cameraPitch, isAdminTown, extraBlocks, maxPlots, extraFarClaims) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    town.getName(), spawn.getDim(), spawn.getX(), spawn.getY(), spawn.getZ(), spawn.getYaw(), spawn.getPitch(), town instanceof AdminTown,
+                    town.townBlocksContainer.getExtraBlocks(), town.plotsContainer.getMaxPlots(), town.townBlocksContainer.getExtraFarClaims()));
 
-                block.getTown().townBlocksContainer.add(block);
-            }
-        } catch (SQLException e) {
-            LOG.error("Failed to save Block {}!", block.getKey());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+            // Put the Town in the Map
+            MyTownUniverse.instance.addTown(town);
         }
+
         return true;
     }
 
-    
-    public boolean saveRank(Rank rank) { // TODO Insert any new permissions to the RankPermission table
-        LOG.debug("Saving Rank {} in town {}", rank.getName(), rank.getTown().getName());
-        try {
-            if (getUniverse().ranks.contains(rank)) { // Update
-                try {
-                    bridge.getConnection().setAutoCommit(false);
-
-                    PreparedStatement s = prepare("UPDATE " + prefix + "Ranks SET type=?, name=? WHERE name=? AND townName=?", true);
-                    s.setString(1, rank.getType().toString());
-                    if (rank.getNewName() == null) {
-                        s.setString(2, rank.getName());
-                    } else {
-                        s.setString(2, rank.getNewName());
-                        rank.resetNewName();
-                    }
-                    s.setString(3, rank.getName());
-                    s.setString(4, rank.getTown().getName());
-                    s.executeUpdate();
-
-                    s = prepare("DELETE FROM " + prefix + "RankPermissions WHERE ranks=? AND townName=?", true);
-                    s.setString(1, rank.getName());
-                    s.setString(2, rank.getTown().getName());
-                    s.executeUpdate();
-
-                    if (!rank.permissionsContainer.isEmpty()) {
-                        s = prepare("INSERT INTO " + prefix + "RankPermissions(node, ranks, townName) VALUES(?, ?, ?)", true);
-                        for (String perm : rank.permissionsContainer) {
-                            s.setString(1, perm);
-                            s.setString(2, rank.getName());
-                            s.setString(3, rank.getTown().getName());
-                            s.addBatch();
-                        }
-                        s.executeBatch();
-                    }
-                } catch (SQLException e) {
-                    LOG.error("Failed to update Rank {} in town {}", rank.getName(), rank.getTown().getName());
-                    LOG.error(ExceptionUtils.getStackTrace(e));
-                    bridge.getConnection().rollback();
-                    return false;
-                } finally {
-                    bridge.getConnection().setAutoCommit(true);
-                }
-            } else { // Insert
-                try {
-                    bridge.getConnection().setAutoCommit(false);
-
-                    PreparedStatement insertRankStatement = prepare("INSERT INTO " + prefix + "Ranks (name, townName, type) VALUES(?, ?, ?)", true);
-                    insertRankStatement.setString(1, rank.getName());
-                    insertRankStatement.setString(2, rank.getTown().getName());
-                    insertRankStatement.setString(3, rank.getType().toString());
-                    insertRankStatement.executeUpdate();
-
-                    if (!rank.permissionsContainer.isEmpty()) {
-                        PreparedStatement insertRankPermStatement = prepare("INSERT INTO " + prefix + "RankPermissions(node, ranks, townName) VALUES(?, ?, ?)", true);
-                        for (String perm : rank.permissionsContainer) {
-                            insertRankPermStatement.setString(1, perm);
-                            insertRankPermStatement.setString(2, rank.getName());
-                            insertRankPermStatement.setString(3, rank.getTown().getName());
-                            insertRankPermStatement.addBatch();
-                        }
-                        insertRankPermStatement.executeBatch();
-                    }
+    
+    public boolean saveBlock(TownBlock block) {
+        LOG.debug("Saving TownBlock {}", block.getKey());
+        if (getUniverse().blocks.contains(block)) { // Update
+            // TODO Update Block (If needed?)
+        } else { // Insert
+            write(new StatementWrite(null, "Failed to save Block " + block.getKey() + "!",
+                    "INSERT INTO " + prefix + "Blocks (dim, x, z, isFarClaim, pricePaid, townName) VALUES (?, ?, ?, ?, ?, ?)",
+                    block.getDim(), block.getX(), block.getZ(), block.isFarClaim(), block.getPricePaid(), block.getTown().getName()));
 
-                    // Put the Rank in the Map
-                    MyTownUniverse.instance.addRank(rank);
-                    rank.getTown().ranksContainer.add(rank);
-                } catch (SQLException e) {
-                    LOG.error("Failed to insert Rank {} in town {}", rank.getName(), rank.getTown().getName());
-                    LOG.error(ExceptionUtils.getStackTrace(e));
-                    bridge.getConnection().rollback();
-                    return false;
-                } finally {
-                    bridge.getConnection().setAutoCommit(true);
-                }
+            // Put the Block in the Map
+            MyTownUniverse.instance.addTownBlock(block);
+
+            block.getTown().townBlocksContainer.add(block);
+        }
+        return true;
+    }
+
+    
+    public boolean saveRank(Rank rank) { // TODO Insert any new permissions to the RankPermission table
+        LOG.debug("Saving Rank {} in town {}", rank.getName(), rank.getTown().getName());
+        String townName = rank.getTown().getName();
+        List<WriteBehindQueue.Write> writes = new ArrayList<WriteBehindQueue.Write>();
+        if (getUniverse().ranks.contains(rank)) { // Update
+            String newName = rank.getNewName() == null ? rank.getName() : rank.getNewName();
+            rank.resetNewName();
+            writes.add(new StatementWrite(null, null, "UPDATE " + prefix + "Ranks SET type=?, name=? WHERE name=? AND townName=?", rank.getType().toString(), newName, rank.getName(), townName));
+            writes.add(new StatementWrite(null, null, "DELETE FROM " + prefix + "RankPermissions WHERE ranks=? AND townName=?", rank.getName(), townName));
+            for (String perm : rank.permissionsContainer) {
+                writes.add(new StatementWrite(null, null, "INSERT INTO " + prefix + "RankPermissions(node, ranks, townName) VALUES(?, ?, ?)", perm, rank.getName(), townName));
             }
-        } catch (SQLException e) {
-            LOG.error("Failed to save Rank {} in Town {}", rank.getName(), rank.getTown().getName());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+            // A rename can't be replaced by a later update since that one looks the rank up with its new name
+            write(new BatchWrite(newName.equals(rank.getName()) ? "Ranks:" + townName + ":" + rank.getName() : null, "Failed to update Rank " + rank.getName() + " in town " + townName, writes));
+        } else { // Insert
+            writes.add(new StatementWrite(null, null, "INSERT INTO " + prefix + "Ranks (name, townName, type) VALUES(?, ?, ?)", rank.getName(), townName, rank.getType().toString()));
+            for (String perm : rank.permissionsContainer) {
+                writes.add(new StatementWrite(null, null, "INSERT INTO " + prefix + "RankPermissions(node, ranks, townName) VALUES(?, ?, ?)", perm, rank.getName(), townName));
+            }
+            write(new BatchWrite(null, "Failed to insert Rank " + rank.getName() + " in town " + townName, writes));
+
+            // Put the Rank in the Map
+            MyTownUniverse.instance.addRank(rank);
+            rank.getTown().ranksContainer.add(rank);
         }
         return true;
     }
@@ -709,51 +1291,30 @@ public class MyTownDatasource extends DatasourceSQL {
     
     public boolean saveRankPermission(Rank rank, String perm) {
         LOG.debug("Saving RankPermission {} for Rank {} in Town {}", perm, rank.getName(), rank.getTown().getName());
-        try {
-            PreparedStatement s = prepare("INSERT INTO " + prefix + "RankPermissions (node, ranks, townName) VALUES(?, ?, ?)", true);
-            s.setString(1, perm);
-            s.setString(2, rank.getName());
-            s.setString(3, rank.getTown().getName());
-            s.execute();
+        write(new StatementWrite(null, "Failed to add permission (" + perm + ") to Rank (" + rank.getName() + ")",
+                "INSERT INTO " + prefix + "RankPermissions (node, ranks, townName) VALUES(?, ?, ?)",
+                perm, rank.getName(), rank.getTown().getName()));
 
-            rank.permissionsContainer.add(perm);
-        } catch (SQLException e) {
-            LOG.error("Failed to add permission ({}) to Rank ({})", perm, rank.getName());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
+        rank.permissionsContainer.add(perm);
         return true;
     }
 
     
     public boolean saveResident(Resident resident) {
         LOG.debug("Saving Resident {} ({})", resident.getUUID(), resident.getPlayerName());
-        try {
-            if (getUniverse().residents.contains(resident.getUUID())) { // Update
-                PreparedStatement updateStatement = prepare("UPDATE " + prefix + "Residents SET name=?, lastOnline=?, extraBlocks=?, fakePlayer=? WHERE uuid=?", true);
-                updateStatement.setString(1, resident.getPlayerName());
-                updateStatement.setLong(2, resident.getLastOnline().getTime() / 1000L); // Stupid hack...
-                updateStatement.setInt(3, resident.getExtraBlocks());
-                updateStatement.setBoolean(4, resident.getFakePlayer());
-                updateStatement.setString(5, resident.getUUID().toString());
-                updateStatement.executeUpdate();
-            } else { // Insert
-                PreparedStatement insertStatement = prepare("INSERT INTO " + prefix + "Residents (uuid, name, joined, lastOnline, extraBlocks, fakePlayer) VALUES(?, ?, ?, ?, ?, ?)", true);
-                insertStatement.setString(1, resident.getUUID().toString());
-                insertStatement.setString(2, resident.getPlayerName());
-                insertStatement.setLong(3, resident.getJoinDate().getTime() / 1000L); // Stupid hack...
-                insertStatement.setLong(4, resident.getLastOnline().getTime() / 1000L); // Stupid hack...
-                insertStatement.setInt(5, resident.getExtraBlocks());
-                insertStatement.setBoolean(6, resident.getFakePlayer());
-                insertStatement.executeUpdate();
-
-                // Put the Resident in the Map
-                MyTownUniverse.instance.addResident(resident);
-            }
-        } catch (SQLException e) {
-            LOG.error("Failed to save resident {}!", resident.getUUID());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+        String uuid = resident.getUUID().toString();
+        long lastOnline = resident.getLastOnline().getTime() / 1000L; // Stupid hack...
+        if (getUniverse().residents.contains(resident.getUUID())) { // Update
+            write(new StatementWrite("Residents:" + uuid, "Failed to save resident " + uuid + "!",
+                    "UPDATE " + prefix + "Residents SET name=?, lastOnline=?, extraBlocks=?, fakePlayer=? WHERE uuid=?",
+                    resident.getPlayerName(), lastOnline, resident.getExtraBlocks(), resident.getFakePlayer(), uuid));
+        } else { // Insert
+            write(new StatementWrite(null, "Failed to save resident " + uuid + "!",
+                    "INSERT INTO " + prefix + "Residents (uuid, name, joined, lastOnline, extraBlocks, fakePlayer) VALUES(?, ?, ?, ?, ?, ?)",
+                    uuid, resident.getPlayerName(), resident.getJoinDate().getTime() / 1000L, lastOnline, resident.getExtraBlocks(), resident.getFakePlayer()));
+
+            // Put the Resident in the Map
+            MyTownUniverse.instance.addResident(resident);
         }
 
         return true;
@@ -761,51 +1322,44 @@ public class MyTownDatasource extends DatasourceSQL {
 
     @SuppressWarnings("unchecked")
     
-    public boolean savePlot(Plot plot) {
+    public boolean savePlot(final Plot plot) {
         LOG.debug("Saving Plot {} for Town {}", plot.getKey(), plot.getTown().getName());
-        try {
-            if (getUniverse().plots.contains(plot)) { // Update
-                PreparedStatement statement = prepare("UPDATE " + prefix + "Plots SET name=?, dim=?, x1=?, y1=?, z1=?, x2=?, y2=?, z2=? WHERE ID=?", true);
-                statement.setString(1, plot.getName());
-                statement.setInt(2, plot.getDim());
-                statement.setInt(3, plot.getStartX());
-                statement.setInt(4, plot.getStartY());
-                statement.setInt(5, plot.getStartZ());
-                statement.setInt(6, plot.getEndX());
-                statement.setInt(7, plot.getEndY());
-                statement.setInt(8, plot.getEndZ());
-                statement.setInt(9, plot.getDbID());
-                statement.executeUpdate();
-            } else { // Insert
-                PreparedStatement insertStatement = prepare("INSERT INTO " + prefix + "Plots (name, dim, x1, y1, z1, x2, y2, z2, townName) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)", true);
-                insertStatement.setString(1, plot.getName());
-                insertStatement.setInt(2, plot.getDim());
-                insertStatement.setInt(3, plot.getStartX());
-                insertStatement.setInt(4, plot.getStartY());
-                insertStatement.setInt(5, plot.getStartZ());
-                insertStatement.setInt(6, plot.getEndX());
-                insertStatement.setInt(7, plot.getEndY());
-                insertStatement.setInt(8, plot.getEndZ());
-                insertStatement.setString(9, plot.getTown().getName());
-                insertStatement.executeUpdate();
-
-                ResultSet generatedKeys = insertStatement.getGeneratedKeys();
-                if (generatedKeys.next())
-                    plot.setDbID(generatedKeys.getInt(1));
+        if (getUniverse().plots.contains(plot)) { // Update
+            write(new StatementWrite("Plots:" + plot.getDbID(), "Failed to save Plot " + plot.getKey() + "!",
+                    "UPDATE " + prefix + "Plots SET name=?, dim=?, x1=?, y1=?, z1=?, x2=?, y2=?, z2=? WHERE ID=?",
+                    plot.getName(), plot.getDim(), plot.getStartX(), plot.getStartY(), plot.getStartZ(), plot.getEndX(), plot.getEndY(), plot.getEndZ(), plot.getDbID()));
+        } else { // Insert
+            final Object[] parameters = {plot.getName(), plot.getDim(), plot.getStartX(), plot.getStartY(), plot.getStartZ(), plot.getEndX(), plot.getEndY(), plot.getEndZ(), plot.getTown().getName()};
+            // The generated ID is needed by everything linked to the plot
+            boolean inserted = writeAndWait(new WriteBehindQueue.Write(null, "Failed to save Plot " + plot.getKey() + "!") {
+                @Override
+                protected void execute() throws SQLException {
+                    PreparedStatement insertStatement = statement("INSERT INTO " + prefix + "Plots (name, dim, x1, y1, z1, x2, y2, z2, townName) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)", true);
+                    SQLBatch.setParameters(insertStatement, parameters);
+                    insertStatement.executeUpdate();
+
+                    ResultSet generatedKeys = insertStatement.getGeneratedKeys();
+                    if (generatedKeys.next())
+                        plot.setDbID(generatedKeys.getInt(1));
+                }
+            });
+            if (!inserted) {
+                return false;
+            }
 
+            startBatch();
+            try {
                 for (Flag flag : plot.getTown().flagsContainer) {
                     if(flag.flagType.isPlotPerm) {
                         saveFlag(new Flag(flag.flagType, flag.value), plot);
                     }
                 }
-
-                MyTownUniverse.instance.addPlot(plot);
-                plot.getTown().plotsContainer.add(plot);
+            } finally {
+                executeBatch();
             }
-        } catch (SQLException e) {
-            LOG.error("Failed to save Plot {}!", plot.getKey());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+
+            MyTownUniverse.instance.addPlot(plot);
+            plot.getTown().plotsContainer.add(plot);
         }
         return true;
     }
@@ -838,30 +1392,20 @@ public class MyTownDatasource extends DatasourceSQL {
     
     public boolean saveFlag(Flag flag, Plot plot) {
         LOG.debug("Saving Flag {} for Plot {}", flag.flagType.name, plot.getKey());
-        try {
-            if (plot.flagsContainer.contains(flag.flagType)) {
-                // Update
-                PreparedStatement s = prepare("UPDATE " + prefix + "PlotFlags SET serializedValue=? WHERE plotID=? AND name=?", true);
-                s.setString(1, flag.flagType.serializeValue(flag.value));
-                s.setInt(2, plot.getDbID());
-                s.setString(3, flag.flagType.name);
-                s.executeUpdate();
-
-
-            } else {
-                // Insert
-                PreparedStatement s = prepare("INSERT INTO " + prefix + "PlotFlags(name, serializedValue, plotID) VALUES(?, ?, ?)", true);
-                s.setString(1, flag.flagType.name);
-                s.setString(2, flag.flagType.serializeValue(flag.value));
-                s.setInt(3, plot.getDbID());
-                s.executeUpdate();
-
-                plot.flagsContainer.add(flag);
-            }
-        } catch (SQLException e) {
-            LOG.error("Failed to save Flag {}!", flag.flagType.name);
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+        String serializedValue = flag.flagType.serializeValue(flag.value);
+        if (plot.flagsContainer.contains(flag.flagType)) {
+            // Update
+            write(new StatementWrite("PlotFlags:" + plot.getDbID() + ":" + flag.flagType.name, "Failed to save Flag " + flag.flagType.name + "!",
+                    "UPDATE " + prefix + "PlotFlags SET serializedValue=? WHERE plotID=? AND name=?",
+                    serializedValue, plot.getDbID(), flag.flagType.name));
+
+        } else {
+            // Insert
+            write(new StatementWrite(null, "Failed to save Flag " + flag.flagType.name + "!",
+                    "INSERT INTO " + prefix + "PlotFlags(name, serializedValue, plotID) VALUES(?, ?, ?)",
+                    flag.flagType.name, serializedValue, plot.getDbID()));
+
+            plot.flagsContainer.add(flag);
         }
         return true;
     }
@@ -869,29 +1413,20 @@ public class MyTownDatasource extends DatasourceSQL {
     
     public boolean saveFlag(Flag flag, Town town) {
         LOG.debug("Saving Flag {} for Town {}", flag.flagType.name, town.getName());
-        try {
-            if (town.flagsContainer.contains(flag.flagType)) {
-                // Update
-                PreparedStatement updateStatement = prepare("UPDATE " + prefix + "TownFlags SET serializedValue=? WHERE townName=? AND name=?", true);
-                updateStatement.setString(1, flag.flagType.serializeValue(flag.value));
-                updateStatement.setString(2, town.getName());
-                updateStatement.setString(3, flag.flagType.name);
-                updateStatement.executeUpdate();
-
-            } else {
-                // Insert
-                PreparedStatement insertStatement = prepare("INSERT INTO " + prefix + "TownFlags(name,  serializedValue, townName) VALUES(?, ?, ?)", true);
-                insertStatement.setString(1, flag.flagType.name);
-                insertStatement.setString(2, flag.flagType.serializeValue(flag.value));
-                insertStatement.setString(3, town.getName());
-                insertStatement.executeUpdate();
-
-                town.flagsContainer.add(flag);
-            }
-        } catch (SQLException e) {
-            LOG.error("Failed to save Flag {}!", flag.flagType.name);
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+        String serializedValue = flag.flagType.serializeValue(flag.value);
+        if (town.flagsContainer.contains(flag.flagType)) {
+            // Update
+            write(new StatementWrite("TownFlags:" + town.getName() + ":" + flag.flagType.name, "Failed to save Flag " + flag.flagType.name + "!",
+                    "UPDATE " + prefix + "TownFlags SET serializedValue=? WHERE townName=? AND name=?",
+                    serializedValue, town.getName(), flag.flagType.name));
+
+        } else {
+            // Insert
+            write(new StatementWrite(null, "Failed to save Flag " + flag.flagType.name + "!",
+                    "INSERT INTO " + prefix + "TownFlags(name,  serializedValue, townName) VALUES(?, ?, ?)",
+                    flag.flagType.name, serializedValue, town.getName()));
+
+            town.flagsContainer.add(flag);
         }
         return true;
     }
@@ -899,75 +1434,55 @@ public class MyTownDatasource extends DatasourceSQL {
 
     @SuppressWarnings("SuspiciousNameCombination")
     
-    public boolean saveBlockWhitelist(BlockWhitelist bw, Town town) {
-        try {
-            if (!town.blockWhitelistsContainer.contains(bw)) {
-                PreparedStatement insertStatement = prepare("INSERT INTO " + prefix + "BlockWhitelists(dim, x, y, z, flagName, townName) VALUES(?, ?, ?, ?, ?, ?)", true);
-                insertStatement.setInt(1, bw.getDim());
-                insertStatement.setInt(2, bw.getX());
-                insertStatement.setInt(3, bw.getY());
-                insertStatement.setInt(4, bw.getZ());
-                insertStatement.setString(5, bw.getFlagType().toString());
-                insertStatement.setString(6, town.getName());
-
-                insertStatement.executeUpdate();
-
-                ResultSet keys = insertStatement.getGeneratedKeys();
-                if (keys.next())
-                    bw.setDbID(keys.getInt(1));
-
-                town.blockWhitelistsContainer.add(bw);
+    public boolean saveBlockWhitelist(final BlockWhitelist bw, Town town) {
+        if (!town.blockWhitelistsContainer.contains(bw)) {
+            final Object[] parameters = {bw.getDim(), bw.getX(), bw.getY(), bw.getZ(), bw.getFlagType().toString(), town.getName()};
+            // The generated ID is needed to delete it later
+            boolean inserted = writeAndWait(new WriteBehindQueue.Write(null, "Failed to save a Block Whitelist!") {
+                @Override
+                protected void execute() throws SQLException {
+                    PreparedStatement insertStatement = statement("INSERT INTO " + prefix + "BlockWhitelists(dim, x, y, z, flagName, townName) VALUES(?, ?, ?, ?, ?, ?)", true);
+                    SQLBatch.setParameters(insertStatement, parameters);
+                    insertStatement.executeUpdate();
+
+                    ResultSet keys = insertStatement.getGeneratedKeys();
+                    if (keys.next())
+                        bw.setDbID(keys.getInt(1));
+                }
+            });
+            if (!inserted) {
+                return false;
             }
-            // NO update since ID can't change
-        } catch (SQLException e) {
-            LOG.error("Failed to save a Block Whitelist!");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+
+            town.blockWhitelistsContainer.add(bw);
         }
+        // NO update since ID can't change
         return true;
     }
 
     
     public boolean saveSelectedTown(Resident res, Town town) {
-        try {
-            if (res.townsContainer.isSelectedTownSaved) {
-                PreparedStatement statement = prepare("UPDATE " + prefix + "SelectedTown SET townName=? WHERE resident=?", true);
-                statement.setString(1, town.getName());
-                statement.setString(2, res.getUUID().toString());
-                statement.executeUpdate();
-            } else {
-                PreparedStatement statement = prepare("INSERT INTO " + prefix + "SelectedTown(resident, townName) VALUES(?, ?)", true);
-                statement.setString(1, res.getUUID().toString());
-                statement.setString(2, town.getName());
-                statement.executeUpdate();
-                res.townsContainer.isSelectedTownSaved = true;
-            }
-            res.townsContainer.setMainTown(town);
-
-        } catch (SQLException e) {
-            LOG.error("Failed to save a town selection!");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+        String uuid = res.getUUID().toString();
+        if (res.townsContainer.isSelectedTownSaved) {
+            write(new StatementWrite("SelectedTown:" + uuid, "Failed to save a town selection!",
+                    "UPDATE " + prefix + "SelectedTown SET townName=? WHERE resident=?", town.getName(), uuid));
+        } else {
+            write(new StatementWrite(null, "Failed to save a town selection!",
+                    "INSERT INTO " + prefix + "SelectedTown(resident, townName) VALUES(?, ?)", uuid, town.getName()));
+            res.townsContainer.isSelectedTownSaved = true;
         }
+        res.townsContainer.setMainTown(town);
         return true;
     }
 
     
     public boolean saveTownInvite(Resident res, Town town) {
-        try {
-            if (!res.townInvitesContainer.contains(town)) {
-                PreparedStatement s = prepare("INSERT INTO " + prefix + "TownInvites(resident, townName) VALUES(?, ?)", true);
-                s.setString(1, res.getUUID().toString());
-                s.setString(2, town.getName());
-                s.executeUpdate();
+        if (!res.townInvitesContainer.contains(town)) {
+            write(new StatementWrite(null, "Failed to save town invite: " + res.getPlayerName() + " for town " + town.getName(),
+                    "INSERT INTO " + prefix + "TownInvites(resident, townName) VALUES(?, ?)", res.getUUID().toString(), town.getName()));
 
-                res.townInvitesContainer.add(town);
-            } else {
-                return false;
-            }
-        } catch (SQLException e) {
-            LOG.error("Failed to save town invite: {} for town {}", res.getPlayerName(), town.getName());
-            LOG.error(ExceptionUtils.getStackTrace(e));
+            res.townInvitesContainer.add(town);
+        } else {
             return false;
         }
         return true;
@@ -976,65 +1491,37 @@ public class MyTownDatasource extends DatasourceSQL {
     
     public boolean saveWorld(int dim) {
         LOG.debug("Saving World {}", dim);
-        try {
-            PreparedStatement s = prepare("INSERT INTO " + prefix + "Worlds(dim) VALUES(?)", true);
-            s.setInt(1, dim);
-            s.executeUpdate();
+        write(new StatementWrite(null, "Failed to save world with dimension id " + dim,
+                "INSERT INTO " + prefix + "Worlds(dim) VALUES(?)", dim));
 
-            MyTownUniverse.instance.addWorld(dim);
-        } catch (SQLException e) {
-            LOG.error("Failed to save world with dimension id {}", dim);
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
+        MyTownUniverse.instance.addWorld(dim);
         return true;
     }
 
     @SuppressWarnings("SuspiciousNameCombination")
     
     public boolean saveBlockOwner(Resident res, int dim, int x, int y, int z) {
-        try {
-            PreparedStatement s = prepare("INSERT INTO " + prefix + "BlockOwners(resident, dim, x, y, z) VALUES(?, ?, ?, ?, ?)", false);
-            s.setString(1, res.getUUID().toString());
-            s.setInt(2, dim);
-            s.setInt(3, x);
-            s.setInt(4, y);
-            s.setInt(5, z);
-            s.executeUpdate();
-        } catch (SQLException e) {
-            LOG.error("Failed to save block owner.");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
+        List<WriteBehindQueue.Write> writes = new ArrayList<WriteBehindQueue.Write>();
+        writes.add(new StatementWrite(null, null, "DELETE FROM " + prefix + "BlockOwners WHERE dim=? AND x=? AND y=? AND z=?", dim, x, y, z));
+        writes.add(new StatementWrite(null, null, "INSERT INTO " + prefix + "BlockOwners(resident, dim, x, y, z) VALUES(?, ?, ?, ?, ?)", res.getUUID().toString(), dim, x, y, z));
+        write(new BatchWrite("BlockOwners:" + dim + ":" + x + ":" + y + ":" + z, "Failed to save block owner.", writes));
         return true;
     }
 
     
     public boolean saveTownBank(Bank bank) {
-        try {
-            if(getUniverse().banks.contains(bank)) {
-                PreparedStatement s = prepare("UPDATE " + prefix + "TownBanks SET amount=?, daysNotPaid=? WHERE townName=?", false);
-                s.setInt(1, bank.getAmount());
-                s.setInt(2, bank.getDaysNotPaid());
-                s.setString(3, bank.getTown().getName());
-                s.executeUpdate();
-            } else {
-                bank.setAmount(Config.instance.defaultBankAmount.get());
-                bank.setDaysNotPaid(0);
-
-                PreparedStatement s = prepare("INSERT INTO " + prefix + "TownBanks VALUES(?, ?, ?)", false);
-                s.setString(1, bank.getTown().getName());
-                s.setInt(2, bank.getAmount());
-                s.setInt(3, bank.getDaysNotPaid());
-                s.executeUpdate();
-
-                getUniverse().addBank(bank);
-            }
-
-        } catch (SQLException e) {
-            LOG.error("Failed to save a town's bank.");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+        String townName = bank.getTown().getName();
+        if(getUniverse().banks.contains(bank)) {
+            write(new StatementWrite("TownBanks:" + townName, "Failed to save a town's bank.",
+                    "UPDATE " + prefix + "TownBanks SET amount=?, daysNotPaid=? WHERE townName=?", bank.getAmount(), bank.getDaysNotPaid(), townName));
+        } else {
+            bank.setAmount(Config.instance.defaultBankAmount.get());
+            bank.setDaysNotPaid(0);
+
+            write(new StatementWrite(null, "Failed to save a town's bank.",
+                    "INSERT INTO " + prefix + "TownBanks VALUES(?, ?, ?)", townName, bank.getAmount(), bank.getDaysNotPaid()));
+
+            getUniverse().addBank(bank);
         }
         return true;
     }
@@ -1043,57 +1530,31 @@ public class MyTownDatasource extends DatasourceSQL {
 
     
     public boolean linkResidentToTown(Resident res, Town town, Rank rank) {
-        try {
-            PreparedStatement s = prepare("INSERT INTO " + prefix + "ResidentsToTowns (resident, town, ranks) VALUES(?, ?, ?)", true);
-            s.setString(1, res.getUUID().toString());
-            s.setString(2, town.getName());
-            // You need rank since this method is the one that adds the resident to the town and vice-versa
-            s.setString(3, rank.getName());
-            s.execute();
-            
-            res.townsContainer.add(town);
-            town.residentsMap.put(res, rank);
-        } catch (SQLException e) {
-            LOG.error("Failed to link Resident {} ({}) with Town {}", res.getPlayerName(), res.getUUID(), town.getName());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
+        // You need rank since this method is the one that adds the resident to the town and vice-versa
+        write(new StatementWrite(null, "Failed to link Resident " + res.getPlayerName() + " (" + res.getUUID() + ") with Town " + town.getName(),
+                "INSERT INTO " + prefix + "ResidentsToTowns (resident, town, ranks) VALUES(?, ?, ?)", res.getUUID().toString(), town.getName(), rank.getName()));
+
+        res.townsContainer.add(town);
+        town.residentsMap.put(res, rank);
         return true;
     }
 
     
     public boolean unlinkResidentFromTown(Resident res, Town town) {
-        try {
-            PreparedStatement s = prepare("DELETE FROM " + prefix + "ResidentsToTowns WHERE resident = ? AND town = ?", true);
-            s.setString(1, res.getUUID().toString());
-            s.setString(2, town.getName());
-            s.execute();
+        write(new StatementWrite(null, "Failed to unlink Resident " + res.getPlayerName() + " (" + res.getUUID() + ") with Town " + town.getName(),
+                "DELETE FROM " + prefix + "ResidentsToTowns WHERE resident = ? AND town = ?", res.getUUID().toString(), town.getName()));
 
-            res.townsContainer.remove(town);
-            town.residentsMap.remove(res);
-        } catch (SQLException e) {
-            LOG.error("Failed to unlink Resident {} ({}) with Town {}", e, res.getPlayerName(), res.getUUID(), town.getName());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
+        res.townsContainer.remove(town);
+        town.residentsMap.remove(res);
         return true;
     }
 
     
     public boolean updateResidentToTownLink(Resident res, Town town, Rank rank) {
-        try {
-            PreparedStatement s = prepare("UPDATE " + prefix + "ResidentsToTowns SET ranks = ? WHERE resident = ? AND town = ?", true);
-            s.setString(1, rank.getName());
-            s.setString(2, res.getUUID().toString());
-            s.setString(3, town.getName());
-            s.executeUpdate();
+        write(new StatementWrite("ResidentsToTowns:" + res.getUUID() + ":" + town.getName(), "Failed to update link between Resident " + res.getPlayerName() + " (" + res.getUUID() + ") with Town " + town.getName(),
+                "UPDATE " + prefix + "ResidentsToTowns SET ranks = ? WHERE resident = ? AND town = ?", rank.getName(), res.getUUID().toString(), town.getName()));
 
-            town.residentsMap.put(res, rank);
-        } catch (SQLException e) {
-            LOG.error("Failed to update link between Resident {} ({}) with Town {}", e, res.getPlayerName(), res.getUUID(), town.getName());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
+        town.residentsMap.put(res, rank);
         return true;
     }
 
@@ -1148,60 +1609,36 @@ public class MyTownDatasource extends DatasourceSQL {
 
     
     public boolean linkResidentToPlot(Resident res, Plot plot, boolean isOwner) {
-        try {
-            PreparedStatement s = prepare("INSERT INTO " + prefix + "ResidentsToPlots(resident, plotID, isOwner) VALUES(?, ?, ?)", true);
-            s.setString(1, res.getUUID().toString());
-            s.setInt(2, plot.getDbID());
-            s.setBoolean(3, isOwner);
-            s.executeUpdate();
-
-            if (isOwner) {
-                plot.ownersContainer.add(res);
-            } else {
-                plot.membersContainer.add(res);
-            }
+        write(new StatementWrite(null, "Failed to link " + res.getPlayerName() + " to plot " + plot.getName() + " in town " + plot.getTown().getName(),
+                "INSERT INTO " + prefix + "ResidentsToPlots(resident, plotID, isOwner) VALUES(?, ?, ?)", res.getUUID().toString(), plot.getDbID(), isOwner));
 
-        } catch (SQLException e) {
-            LOG.error("Failed to link {} to plot {} in town {}", res.getPlayerName(), plot.getName(), plot.getTown().getName());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+        if (isOwner) {
+            plot.ownersContainer.add(res);
+        } else {
+            plot.membersContainer.add(res);
         }
+        getUniverse().residentCache.reference(res.getUUID());
         return true;
     }
 
     
     public boolean unlinkResidentFromPlot(Resident res, Plot plot) {
-        try {
-            PreparedStatement s = prepare("DELETE FROM " + prefix + "ResidentsToPlots WHERE resident=? AND plotID=?", true);
-            s.setString(1, res.getUUID().toString());
-            s.setInt(2, plot.getDbID());
-            s.executeUpdate();
-
-            plot.ownersContainer.remove(res);
-            plot.membersContainer.remove(res);
+        write(new StatementWrite(null, "Failed to unlink " + res.getPlayerName() + " to plot " + plot.getName() + " in town " + plot.getTown().getName(),
+                "DELETE FROM " + prefix + "ResidentsToPlots WHERE resident=? AND plotID=?", res.getUUID().toString(), plot.getDbID()));
 
-        } catch (SQLException e) {
-            LOG.error("Failed to unlink {} to plot {} in town {}", res.getPlayerName(), plot.getName(), plot.getTown().getName());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+        if (plot.ownersContainer.remove(res)) {
+            getUniverse().residentCache.release(res.getUUID());
+        }
+        if (plot.membersContainer.remove(res)) {
+            getUniverse().residentCache.release(res.getUUID());
         }
         return true;
     }
 
     
     public boolean updateResidentToPlotLink(Resident res, Plot plot, boolean isOwner) {
-        try {
-            PreparedStatement s = prepare("UPDATE " + prefix + "ResidentsToPlots SET isOwner=? WHERE resident=? AND plotID=?", true);
-            s.setBoolean(1, isOwner);
-            s.setString(2, res.getUUID().toString());
-            s.setInt(3, plot.getDbID());
-            s.executeUpdate();
-
-        } catch (SQLException e) {
-            LOG.error("Failed to update link {} to plot {} in town {}", res.getPlayerName(), plot.getName(), plot.getTown().getName());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
+        write(new StatementWrite("ResidentsToPlots:" + res.getUUID() + ":" + plot.getDbID(), "Failed to update link " + res.getPlayerName() + " to plot " + plot.getName() + " in town " + plot.getTown().getName(),
+                "UPDATE " + prefix + "ResidentsToPlots SET isOwner=? WHERE resident=? AND plotID=?", isOwner, res.getUUID().toString(), plot.getDbID()));
         return true;
     }
 
@@ -1209,38 +1646,23 @@ public class MyTownDatasource extends DatasourceSQL {
 
     
     public boolean deleteTown(Town town) {
+        startBatch();
         try {
             // Delete Town from Datasource
-            PreparedStatement deleteTownStatement = prepare("DELETE FROM " + prefix + "Towns WHERE name=?", true);
-            deleteTownStatement.setString(1, town.getName());
-            deleteTownStatement.execute();
+            write(new StatementWrite(null, "Failed to delete Town " + town.getName(),
+                    "DELETE FROM " + prefix + "Towns WHERE name=?", town.getName()));
 
             // Release all chunkloading tickets
             town.ticketMap.releaseTickets();
 
-            // Remove all Blocks owned by the Town
-            for (TownBlock b : town.townBlocksContainer.values()) {
-                MyTownUniverse.instance.removeTownBlock(b);
-            }
-            // Remove all Plots owned by the Town
-            for (Plot p : town.plotsContainer) {
-                MyTownUniverse.instance.removePlot(p);
-            }
-            // Remove all Ranks owned by this Town
-            for (Rank r : town.ranksContainer) {
-                MyTownUniverse.instance.removeRank(r);
-            }
+            // The rows of the blocks, plots, ranks and links go with it through the foreign keys
             for (Resident res : town.residentsMap.keySet()) {
                 if (res.townsContainer.getMainTown() == town)
                     deleteSelectedTown(res);
-                res.townsContainer.remove(town);
             }
-            // Remove the Town from the Map
-            MyTownUniverse.instance.removeTown(town);
-        } catch (SQLException e) {
-            LOG.error("Failed to delete Town {}", town.getName());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+            MyTownUniverse.instance.removeTownCascade(town);
+        } finally {
+            executeBatch();
         }
 
         return true;
@@ -1248,13 +1670,11 @@ public class MyTownDatasource extends DatasourceSQL {
 
     
     public boolean deleteBlock(TownBlock block) {
+        startBatch();
         try {
             // Delete Block from Datasource
-            PreparedStatement deleteBlockStatement = prepare("DELETE FROM " + prefix + "Blocks WHERE dim=? AND x=? AND z=?", true);
-            deleteBlockStatement.setInt(1, block.getDim());
-            deleteBlockStatement.setInt(2, block.getX());
-            deleteBlockStatement.setInt(3, block.getZ());
-            deleteBlockStatement.execute();
+            write(new StatementWrite(null, "Failed to delete Block " + block.getKey() + "!",
+                    "DELETE FROM " + prefix + "Blocks WHERE dim=? AND x=? AND z=?", block.getDim(), block.getX(), block.getZ()));
 
             if (block.isChunkloaded()) {
                 block.getTown().ticketMap.chunkUnload(block);
@@ -1269,69 +1689,60 @@ public class MyTownDatasource extends DatasourceSQL {
             }
             // Remove Block from Map
             MyTownUniverse.instance.removeTownBlock(block);
-        } catch (SQLException e) {
-            LOG.error("Failed to delete Block {}!", block.getKey());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+        } finally {
+            executeBatch();
         }
         return true;
     }
 
     
     public boolean deleteRank(Rank rank) {
-        try {
-            // Delete Rank from Datasource
-            PreparedStatement deleteRankStatement = prepare("DELETE FROM " + prefix + "Ranks WHERE name=? AND townName=?", true);
-            deleteRankStatement.setString(1, rank.getName());
-            deleteRankStatement.setString(2, rank.getTown().getName());
-            deleteRankStatement.execute();
-
-            // Remove Rank from Map
-            MyTownUniverse.instance.removeRank(rank);
-            rank.getTown().ranksContainer.remove(rank);
-        } catch (SQLException e) {
-            LOG.error("Failed to delete Rank {} in Town {}", rank.getName(), rank.getTown().getName());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
+        // Delete Rank from Datasource
+        write(new StatementWrite(null, "Failed to delete Rank " + rank.getName() + " in Town " + rank.getTown().getName(),
+                "DELETE FROM " + prefix + "Ranks WHERE name=? AND townName=?", rank.getName(), rank.getTown().getName()));
+
+        // Remove Rank from Map
+        MyTownUniverse.instance.removeRank(rank);
+        rank.getTown().ranksContainer.remove(rank);
 
         return true;
     }
 
     
     public boolean deleteResident(Resident resident) {
-        try {
-            // Delete Resident from Datasource
-            PreparedStatement deleteResidentStatement = prepare("DELETE FROM " + prefix + "Residents WHERE uuid=?", true);
-            deleteResidentStatement.setString(1, resident.getUUID().toString());
-            deleteResidentStatement.execute();
+        // Delete Resident from Datasource
+        write(new StatementWrite(null, "Failed to delete Resident " + resident.getUUID() + "!",
+                "DELETE FROM " + prefix + "Residents WHERE uuid=?", resident.getUUID().toString()));
+
+        // Remove Resident from Map
+        MyTownUniverse.instance.removeResident(resident);
+        // The row may still be read before the delete is written
+        MyTownUniverse.instance.residentCache.setMissing(resident.getUUID());
+        MyTownUniverse.instance.residentCache.setMissing(resident.getPlayerName());
+        return true;
+    }
 
-            // Remove Resident from Map
-            MyTownUniverse.instance.removeResident(resident);
-        } catch (SQLException e) {
-            LOG.error("Failed to delete Resident {}!", resident.getUUID());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+    /**
+     * Deletes every resident, also the ones that aren't in memory, their links go with them.
+     * It waits for the delete so none of them is read from the database again afterwards.
+     */
+    public boolean deleteAllResidents() {
+        boolean deleted = writeAndWait(new StatementWrite(null, "Failed to delete all Residents!", "DELETE FROM " + prefix + "Residents"));
+        for (Resident res : new ArrayList<Resident>(getUniverse().residents)) {
+            getUniverse().removeResident(res);
         }
-        return true;
+        return deleted;
     }
 
     
     public boolean deletePlot(Plot plot) {
-        try {
-            // Delete Plot from Datasource
-            PreparedStatement deletePlotStatement = prepare("DELETE FROM " + prefix + "Plots WHERE ID=?", true);
-            deletePlotStatement.setInt(1, plot.getDbID());
-            deletePlotStatement.execute();
-
-            // Remove Plot from Map
-            MyTownUniverse.instance.removePlot(plot);
-            plot.getTown().plotsContainer.remove(plot);
-        } catch (SQLException e) {
-            LOG.error("Failed to delete Plot {}!", plot.getKey());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
+        // Delete Plot from Datasource
+        write(new StatementWrite(null, "Failed to delete Plot " + plot.getKey() + "!",
+                "DELETE FROM " + prefix + "Plots WHERE ID=?", plot.getDbID()));
+
+        // Remove Plot from Map
+        MyTownUniverse.instance.removePlot(plot);
+        plot.getTown().plotsContainer.remove(plot);
         return true;
     }
 
@@ -1357,133 +1768,74 @@ public class MyTownDatasource extends DatasourceSQL {
 
     
     public boolean deleteBlockWhitelist(BlockWhitelist bw, Town town) {
-        try {
-            PreparedStatement deleteStatement = prepare("DELETE FROM " + prefix + "BlockWhitelists WHERE ID=?", false);
-            deleteStatement.setInt(1, bw.getDbID());
-            deleteStatement.executeUpdate();
+        write(new StatementWrite(null, "Failed to delete BlockWhitelist!",
+                "DELETE FROM " + prefix + "BlockWhitelists WHERE ID=?", bw.getDbID()));
 
-            town.blockWhitelistsContainer.remove(bw);
-        } catch (SQLException e) {
-            LOG.error("Failed to delete BlockWhitelist!");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
+        town.blockWhitelistsContainer.remove(bw);
         return true;
     }
 
     
     public boolean deleteSelectedTown(Resident res) {
-        try {
-            PreparedStatement statement = prepare("DELETE FROM " + prefix + "SelectedTown WHERE resident=?", true);
-            statement.setString(1, res.getUUID().toString());
-            statement.executeUpdate();
-        } catch (Exception e) {
-            LOG.error("Failed to delete a town selection!");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
+        write(new StatementWrite(null, "Failed to delete a town selection!",
+                "DELETE FROM " + prefix + "SelectedTown WHERE resident=?", res.getUUID().toString()));
         res.townsContainer.isSelectedTownSaved = false;
         return true;
     }
 
     
     public boolean deleteTownInvite(Resident res, Town town, boolean response) {
-        try {
-            PreparedStatement s = prepare("DELETE FROM " + prefix + "TownInvites WHERE resident=? AND townName=?", true);
-            s.setString(1, res.getUUID().toString());
-            s.setString(2, town.getName());
-            s.executeUpdate();
-            if (response) {
-                linkResidentToTown(res, town, town.ranksContainer.getDefaultRank());
-            }
-            res.townInvitesContainer.remove(town);
-        } catch (SQLException e) {
-            LOG.error("Failed to delete town invite for {} to town {}", res.getPlayerName(), town.getName());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
+        write(new StatementWrite(null, "Failed to delete town invite for " + res.getPlayerName() + " to town " + town.getName(),
+                "DELETE FROM " + prefix + "TownInvites WHERE resident=? AND townName=?", res.getUUID().toString(), town.getName()));
+        if (response) {
+            linkResidentToTown(res, town, town.ranksContainer.getDefaultRank());
         }
+        res.townInvitesContainer.remove(town);
         return true;
     }
 
 
     
     public boolean deleteFlag(Flag flag, Town town) {
-        try {
-            PreparedStatement deleteFlagStatement = prepare("DELETE FROM " + prefix + "TownFlags WHERE name=? AND townName=?", true);
-            deleteFlagStatement.setString(1, flag.flagType.toString());
-            deleteFlagStatement.setString(2, town.getName());
-            deleteFlagStatement.execute();
+        write(new StatementWrite(null, "Failed to delete flag " + flag.flagType.toString() + "!",
+                "DELETE FROM " + prefix + "TownFlags WHERE name=? AND townName=?", flag.flagType.toString(), town.getName()));
 
-            town.flagsContainer.remove(flag.flagType);
-        } catch (SQLException e) {
-            LOG.error("Failed to delete flag {}!", flag.flagType.toString());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
+        town.flagsContainer.remove(flag.flagType);
         return true;
     }
 
     
     public boolean deleteFlag(Flag flag, Plot plot) {
-        try {
-            PreparedStatement deleteFlagStatement = prepare("DELETE FROM " + prefix + "PlotFlags WHERE name=? AND plotID=?", true);
-            deleteFlagStatement.setString(1, flag.flagType.toString());
-            deleteFlagStatement.setInt(2, plot.getDbID());
-            deleteFlagStatement.execute();
+        write(new StatementWrite(null, "Failed to delete flag " + flag.flagType.toString() + "!",
+                "DELETE FROM " + prefix + "PlotFlags WHERE name=? AND plotID=?", flag.flagType.toString(), plot.getDbID()));
 
-            plot.flagsContainer.remove(flag.flagType);
-        } catch (SQLException e) {
-            LOG.error("Failed to delete flag {}!", flag.flagType.toString());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
+        plot.flagsContainer.remove(flag.flagType);
         return true;
     }
 
     
     public boolean deleteWorld(int dim) {
-        try {
-            PreparedStatement s = prepare("DELETE FROM " + prefix + "Worlds WHERE dim=?", true);
-            s.setInt(1, dim);
-            s.executeUpdate();
+        write(new StatementWrite(null, "Failed to delete world with dimension id " + dim,
+                "DELETE FROM " + prefix + "Worlds WHERE dim=?", dim));
 
-            MyTownUniverse.instance.removeWorld(dim);
-        } catch (SQLException e) {
-            LOG.error("Failed to delete world with dimension id {}", dim);
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
+        MyTownUniverse.instance.removeWorld(dim);
         return true;
     }
 
     
     public boolean deleteRankPermission(Rank rank, String perm) {
-        try {
-            PreparedStatement s = prepare("DELETE FROM " + prefix + "RankPermissions WHERE node = ? AND ranks = ? AND townName = ?", true);
-            s.setString(1, perm);
-            s.setString(2, rank.getName());
-            s.setString(3, rank.getTown().getName());
-            s.execute();
+        write(new StatementWrite(null, "Failed to add permission (" + perm + ") to Rank (" + rank.getName() + ") in Town (" + rank.getTown().getName() + ")",
+                "DELETE FROM " + prefix + "RankPermissions WHERE node = ? AND ranks = ? AND townName = ?", perm, rank.getName(), rank.getTown().getName()));
 
-            rank.permissionsContainer.remove(perm);
-        } catch (SQLException e) {
-            LOG.error("Failed to add permission ({}) to Rank ({}) in Town ({})", perm, rank.getName(), rank.getTown().getName());
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
+        rank.permissionsContainer.remove(perm);
         return true;
     }
 
     
-    public boolean deleteAllBlockOwners() {
-        try {
-            PreparedStatement s = prepare("DELETE FROM " + prefix + "BlockOwners", false);
-            s.execute();
-        } catch (SQLException e) {
-            LOG.error("Failed to delete BlockOwners table!");
-            LOG.error(ExceptionUtils.getStackTrace(e));
-            return false;
-        }
+    @SuppressWarnings("SuspiciousNameCombination")
+    public boolean deleteBlockOwner(int dim, int x, int y, int z) {
+        write(new StatementWrite("BlockOwners:" + dim + ":" + x + ":" + y + ":" + z, "Failed to delete block owner at position (" + x + ", " + y + ", " + z + "| DIM: " + dim + ")",
+                "DELETE FROM " + prefix + "BlockOwners WHERE dim=? AND x=? AND y=? AND z=?", dim, x, y, z));
         return true;
     }
 
@@ -1557,31 +1909,35 @@ public class MyTownDatasource extends DatasourceSQL {
     /* ----- Reset ----- */
 
     public boolean resetRanks(Town town) {
-
-        for(Rank defaultRank : Rank.defaultRanks) {
-            Rank rank = town.ranksContainer.get(defaultRank.getName());
-            if(rank == null) {
-                LOG.info("Adding rank {} to town {}", defaultRank.getName(), town.getName());
-                rank = new Rank(defaultRank.getName(), town, defaultRank.getType());
-            } else  {
-                rank.permissionsContainer.clear();
-                if(rank.getType() != defaultRank.getType()) {
-                    LOG.info("Changing type of rank {} to {}", rank.getName(), defaultRank.getType());
-                    rank.setType(defaultRank.getType());
+        startBatch();
+        try {
+            for(Rank defaultRank : Rank.defaultRanks) {
+                Rank rank = town.ranksContainer.get(defaultRank.getName());
+                if(rank == null) {
+                    LOG.info("Adding rank {} to town {}", defaultRank.getName(), town.getName());
+                    rank = new Rank(defaultRank.getName(), town, defaultRank.getType());
+                } else  {
+                    rank.permissionsContainer.clear();
+                    if(rank.getType() != defaultRank.getType()) {
+                        LOG.info("Changing type of rank {} to {}", rank.getName(), defaultRank.getType());
+                        rank.setType(defaultRank.getType());
+                    }
                 }
-            }
-            rank.permissionsContainer.addAll(defaultRank.permissionsContainer);
+                rank.permissionsContainer.addAll(defaultRank.permissionsContainer);
 
-            saveRank(rank);
-        }
+                saveRank(rank);
+            }
 
-        for(int i = 0; i < town.ranksContainer.size(); i++) {
-            Rank rank = town.ranksContainer.get(i);
-            if(!Rank.defaultRanks.contains(rank.getName())) {
-                LOG.info("Deleting rank {} from town {}", rank.getName(), town.getName());
-                deleteRank(rank);
-                i--;
+            for(int i = 0; i < town.ranksContainer.size(); i++) {
+                Rank rank = town.ranksContainer.get(i);
+                if(!Rank.defaultRanks.contains(rank.getName())) {
+                    LOG.info("Deleting rank {} from town {}", rank.getName(), town.getName());
+                    deleteRank(rank);
+                    i--;
+                }
             }
+        } finally {
+            executeBatch();
         }
         return true;
     }
@@ -1589,4 +1945,54 @@ public class MyTownDatasource extends DatasourceSQL {
     private MyTownUniverse getUniverse() {
         return MyTownUniverse.instance;
     }
+
+    /**
+     * A write of a single statement, it can be sent in a batch along with other rows of the same statement.
+     */
+    private class StatementWrite extends WriteBehindQueue.Write {
+        private final String sql;
+        private final Object[] parameters;
+
+        public StatementWrite(Object key, String failureMessage, String sql, Object... parameters) {
+            super(key, failureMessage);
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        @Override
+        protected void execute() throws SQLException {
+            PreparedStatement s = statement(sql, false);
+            SQLBatch.setParameters(s, parameters);
+            s.executeUpdate();
+        }
+
+        @Override
+        protected void addTo(SQLBatch batch) throws SQLException {
+            batch.add(sql, parameters);
+        }
+    }
+
+    /**
+     * Writes that have to be saved together, in a single transaction.
+     */
+    private class BatchWrite extends WriteBehindQueue.Write {
+        private final List<WriteBehindQueue.Write> writes;
+
+        public BatchWrite(Object key, String failureMessage, List<WriteBehindQueue.Write> writes) {
+            super(key, failureMessage);
+            this.writes = writes;
+        }
+
+        @Override
+        protected void execute() throws SQLException {
+            new SQLBatch(bridge.getConnection(), getStatementCache()).run(writes);
+        }
+
+        @Override
+        protected void addTo(SQLBatch batch) throws SQLException {
+            for (WriteBehindQueue.Write write : writes) {
+                write.addTo(batch);
+            }
+        }
+    }
 }
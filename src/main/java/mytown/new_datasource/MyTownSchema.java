@@ -6,6 +6,31 @@ import mytown.config.Config;
 import mytown.entities.Rank;
 
 public class MyTownSchema extends Schema {
+
+    /**
+     * The indexes on top of the primary keys, for the columns the foreign keys cascade through and the ones rows are looked up by.
+     * New ones go at the end, the position is part of the ID of the update that creates the index.
+     */
+    public static final Index[] INDEXES = {
+            new Index("Ranks", "townName", true),
+            new Index("RankPermissions", "townName, ranks", true),
+            new Index("Blocks", "townName", true),
+            new Index("Plots", "townName", true),
+            new Index("ResidentsToTowns", "town, ranks", false),
+            new Index("TownFlags", "townName", true),
+            new Index("PlotFlags", "plotID", true),
+            new Index("ResidentsToPlots", "plotID", true),
+            new Index("BlockWhitelists", "townName, flagName", true),
+            new Index("SelectedTown", "townName", true),
+            new Index("TownInvites", "townName", true),
+            new Index("TownsToNations", "nation", true),
+            new Index("Friends", "resident2", true),
+            new Index("FriendRequests", "residentTarget", true),
+            new Index("BlockOwners", "resident", true),
+            new Index("BlockOwners", "dim, x, z, y", false),
+            new Index("Residents", "name", false)
+    };
+
     @Override
     public void initializeUpdates(BridgeSQL bridge) {
         updates.add(new DBUpdate("07.25.2014.1", "Add Updates Table", "CREATE TABLE IF NOT EXISTS " + bridge.prefix + "Updates (" +
@@ -195,5 +220,39 @@ public class MyTownSchema extends Schema {
                 "Towns ADD extraFarClaims INTEGER DEFAULT 0"));
         updates.add(new DBUpdate("12.16.2015.1", "Add 'fakePlayer to residents", "ALTER TABLE " + bridge.prefix +
                 "Residents ADD fakePlayer BOOLEAN DEFAULT false"));
+        updates.add(new DBUpdate("1.10.2016.1", "Add 'UpdateCounter' table", "CREATE TABLE IF NOT EXISTS " + bridge.prefix + "UpdateCounter(" +
+                "counter BIGINT NOT NULL)"));
+        updates.add(new DBUpdate("1.10.2016.2", "Start the update counter", "INSERT INTO " + bridge.prefix + "UpdateCounter VALUES(0)"));
+
+        // InnoDB already indexes the columns of every foreign key when it creates the table
+        boolean mysql = "MySQL".equalsIgnoreCase(Config.instance.dbType.get());
+        for (int i = 0; i < INDEXES.length; i++) {
+            if (!mysql || !INDEXES[i].foreignKey) {
+                updates.add(new DBUpdate("1.24.2016." + (i + 1), "Index " + INDEXES[i].table + "(" + INDEXES[i].columns + ")", INDEXES[i].getCreate(bridge.prefix)));
+            }
+        }
+    }
+
+    /**
+     * An index of the columns of a table, the ones only used by a foreign key are left out on MySQL.
+     */
+    public static class Index {
+        public final String table;
+        public final String columns;
+        public final boolean foreignKey;
+
+        public Index(String table, String columns, boolean foreignKey) {
+            this.table = table;
+            this.columns = columns;
+            this.foreignKey = foreignKey;
+        }
+
+        public String getName(String prefix) {
+            return prefix + table + "_" + columns.replace(", ", "_");
+        }
+
+        public String getCreate(String prefix) {
+            return "CREATE INDEX " + getName(prefix) + " ON " + prefix + table + "(" + columns + ")";
+        }
     }
 }
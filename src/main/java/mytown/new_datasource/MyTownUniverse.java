@@ -21,7 +21,10 @@ import net.minecraft.world.World;
 import net.minecraftforge.common.util.FakePlayer;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class MyTownUniverse { // TODO Allow migrating between different Datasources
@@ -36,6 +39,15 @@ public class MyTownUniverse { // TODO Allow migrating between different Datasour
     public final Rank.Container ranks = new Rank.Container();
     public final Bank.Container banks = new Bank.Container();
     public final List<Integer> worlds = new ArrayList<Integer>();
+    public final ResidentCache residentCache = new ResidentCache(this);
+
+    private final Positions<Plot> plotPositions = new Positions<Plot>(plots);
+    private final Positions<Rank> rankPositions = new Positions<Rank>(ranks);
+    private final Positions<Bank> bankPositions = new Positions<Bank>(banks);
+    /**
+     * The number of plots with each name, its completion is removed along with the last of them.
+     */
+    private final Map<String, Integer> plotNames = new HashMap<String, Integer>();
 
     public MyTownUniverse() {
 
@@ -79,50 +91,66 @@ public class MyTownUniverse { // TODO Allow migrating between different Datasour
         }
         */
 
-        // Setting spawn before saving
-        town.setSpawn(new Teleport(creator.getPlayer().dimension, (float) creator.getPlayer().posX, (float) creator.getPlayer().posY, (float) creator.getPlayer().posZ, creator.getPlayer().cameraYaw, creator.getPlayer().cameraPitch));
-
-        // Saving town to database
-        if (!getDatasource().saveTown(town))
-            throw new CommandException("Failed to save Town");
+        EntityPlayer player = creator.getPlayer();
+        int dim = player.dimension;
+        int chunkX = ((int) player.posX) >> 4;
+        int chunkZ = ((int) player.posZ) >> 4;
 
-        int chunkX = ((int)creator.getPlayer().posX) >> 4;
-        int chunkZ = ((int)creator.getPlayer().posZ) >> 4;
-        int dim = creator.getPlayer().dimension;
-
-        //Claiming first block
-        TownBlock block = newBlock(dim, chunkX, chunkZ, false, Config.instance.costAmountClaim.get(), town);
-
-        // Saving block to db and town
-        if(MyTownUniverse.instance.blocks.contains(dim, chunkX, chunkZ)) {
-            getDatasource().deleteTown(town);
+        // Everything that can stop the creation is checked before the town is put in the universe
+        if (blocks.contains(dim, chunkX, chunkZ)) {
             throw new CommandException("Chunk at (" + dim + "," + chunkX + "," + chunkZ + ") is already claimed");
             //throw new MyTownCommandException("mytown.cmd.err.claim.already");
         }
+        TownBlock block = newBlock(dim, chunkX, chunkZ, false, Config.instance.costAmountClaim.get(), town);
+        if (block == null) {
+            throw new CommandException("Claiming chunk at (" + dim + "," + chunkX + "," + chunkZ + ") was cancelled");
+        }
 
-        getDatasource().saveBlock(block);
+        // Setting spawn before saving
+        town.setSpawn(new Teleport(dim, (float) player.posX, (float) player.posY, (float) player.posZ, player.cameraYaw, player.cameraPitch));
+
+        // All the rows of the new town are sent together in one transaction
+        getDatasource().startBatch();
+        boolean saved = false;
+        try {
+            // Saving town to database
+            if (!getDatasource().saveTown(town))
+                throw new CommandException("Failed to save Town");
 
-        // Saving and adding all flags to the database
-        for (FlagType type : FlagType.values()) {
-            if (type.isTownPerm) {
-                getDatasource().saveFlag(new Flag(type, type.defaultValue), town);
+            // Saving block to db and town
+            getDatasource().saveBlock(block);
+
+            // Saving and adding all flags to the database
+            for (FlagType type : FlagType.values()) {
+                if (type.isTownPerm) {
+                    getDatasource().saveFlag(new Flag(type, type.defaultValue), town);
+                }
             }
-        }
 
-        if (!(town instanceof AdminTown)) {
-            // Saving all ranks to database and town
-            for (Rank template : Rank.defaultRanks) {
-                Rank rank = new Rank(template.getName(), town, template.getType());
-                rank.permissionsContainer.addAll(template.permissionsContainer);
+            if (!(town instanceof AdminTown)) {
+                // Saving all ranks to database and town
+                for (Rank template : Rank.defaultRanks) {
+                    Rank rank = new Rank(template.getName(), town, template.getType());
+                    rank.permissionsContainer.addAll(template.permissionsContainer);
 
-                getDatasource().saveRank(rank);
+                    getDatasource().saveRank(rank);
+                }
+                // Linking resident to town
+                if (!getDatasource().linkResidentToTown(creator, town, town.ranksContainer.getMayorRank())) {
+                    MyTown.instance.LOG.error("Problem linking resident {} to town {}", creator.getPlayerName(), town.getName());
+                }
+
+                getDatasource().saveTownBank(town.bank);
             }
-            // Linking resident to town
-            if (!getDatasource().linkResidentToTown(creator, town, town.ranksContainer.getMayorRank())) {
-                MyTown.instance.LOG.error("Problem linking resident {} to town {}", creator.getPlayerName(), town.getName());
+            saved = true;
+        } finally {
+            if (saved) {
+                getDatasource().executeBatch();
+            } else {
+                // Nothing of the town is written and what was already put in memory is taken out again
+                getDatasource().cancelBatch();
+                removeTownCascade(town);
             }
-
-            getDatasource().saveTownBank(town.bank);
         }
 
         TownEvent.fire(new TownEvent.TownCreateEvent(town));
@@ -193,13 +221,46 @@ public class MyTownUniverse { // TODO Allow migrating between different Datasour
         return flag;
     }
 
+    /**
+     * Gets the resident from memory, or reads it from the database if it's not loaded.
+     * Null if it's not in the database or if it couldn't be read, only the first is remembered by the resident cache.
+     */
+    public Resident getResident(UUID uuid) {
+        Resident res = residents.get(uuid);
+        if (res == null && !residentCache.isMissing(uuid)) {
+            res = getDatasource().loadResident(uuid);
+        }
+        if (res != null) {
+            residentCache.touch(res);
+        }
+        return res;
+    }
+
+    public Resident getResident(String username) {
+        Resident res = residents.get(username);
+        if (res == null && !residentCache.isMissing(username)) {
+            res = getDatasource().loadResident(username);
+        }
+        if (res != null) {
+            residentCache.touch(res);
+        }
+        return res;
+    }
+
     public Resident getOrMakeResident(UUID uuid, String playerName, boolean isFakePlayer) {
-        Resident res = instance.residents.get(uuid);
+        Resident res = instance.getResident(uuid);
         if (res == null) {
+            if (!residentCache.isMissing(uuid)) {
+                // It couldn't be read, a new one would take the place of the one in the database
+                return null;
+            }
             res = instance.newResident(uuid, playerName, isFakePlayer);
             if (res != null && !getDatasource().saveResident(res)) { // Only save if a new Residen
                 return null;
             }
+            if (res != null) {
+                instance.residentCache.touch(res);
+            }
         }
         return res;
     }
@@ -257,10 +318,18 @@ public class MyTownUniverse { // TODO Allow migrating between different Datasour
         CommandCompletion.addCompletion("townCompletionAndAll", newName);
     }
 
+    public final void renamePlot(Plot plot, String newName) {
+        removePlotName(plot.getName());
+        plot.setName(newName);
+        getDatasource().savePlot(plot);
+        addPlotName(newName);
+    }
+
     /* ----- Add Entity ----- */
 
     public final void addResident(Resident res) {
         residents.add(res);
+        residentCache.found(res);
         CommandCompletion.addCompletion("residentCompletion", res.getPlayerName());
     }
 
@@ -282,7 +351,7 @@ public class MyTownUniverse { // TODO Allow migrating between different Datasour
     }
 
     public final void addRank(Rank rank) {
-        ranks.add(rank);
+        rankPositions.add(rank);
         CommandCompletion.addCompletion("rankCompletion", rank.getName());
     }
 
@@ -295,12 +364,13 @@ public class MyTownUniverse { // TODO Allow migrating between different Datasour
                 }
             }
         }
-        plots.add(plot);
-        CommandCompletion.addCompletion("plotCompletion", plot.getName());
+        if (plotPositions.add(plot)) {
+            addPlotName(plot.getName());
+        }
     }
 
     public final void addBank(Bank bank) {
-        banks.add(bank);
+        bankPositions.add(bank);
     }
 
 
@@ -312,6 +382,7 @@ public class MyTownUniverse { // TODO Allow migrating between different Datasour
 
     public final void removeResident(Resident res) {
         residents.remove(res);
+        residentCache.forget(res.getUUID());
         CommandCompletion.removeCompletion("residentCompletion", res.getPlayerName());
     }
 
@@ -328,25 +399,60 @@ public class MyTownUniverse { // TODO Allow migrating between different Datasour
     }
     */
 
+    /**
+     * Removes the town and everything it owns from memory. Its blocks are looked up by their position and its plots,
+     * ranks and bank are taken out of the lists of the universe by their position, so the work only depends on the
+     * size of the town.
+     */
+    public final void removeTownCascade(Town town) {
+        for (TownBlock block : town.townBlocksContainer.values()) {
+            removeTownBlock(block);
+        }
+
+        for (Plot plot : town.plotsContainer) {
+            if (plotPositions.remove(plot)) {
+                removePlotName(plot.getName());
+            }
+            VisualsHandler.instance.unmarkBlocks(plot);
+        }
+        for (Rank rank : town.ranksContainer) {
+            rankPositions.remove(rank);
+        }
+        bankPositions.remove(town.bank);
+
+        for (Resident res : town.residentsMap.keySet()) {
+            res.townsContainer.remove(town);
+        }
+        removeTown(town);
+    }
+
     public final void removeTownBlock(TownBlock block) {
         blocks.remove(block);
     }
 
     public final void removeRank(Rank rank) {
-        ranks.remove(rank);
+        rankPositions.remove(rank);
         // TODO: Check properly, although it's gonna fix itself on restart
     }
 
     public final void removePlot(Plot plot) {
-        plots.remove(plot);
-
-        boolean removeFromCompletionMap = true;
-        for(Plot p : plots) {
-            if(p.getName().equals(plot.getName()))
-                removeFromCompletionMap = false;
+        for (int x = plot.getStartChunkX(); x <= plot.getEndChunkX(); x++) {
+            for (int z = plot.getStartChunkZ(); z <= plot.getEndChunkZ(); z++) {
+                TownBlock b = blocks.get(plot.getDim(), x, z);
+                if (b != null) {
+                    b.plotsContainer.remove((Object) plot);
+                }
+            }
+        }
+        if (plotPositions.remove(plot)) {
+            removePlotName(plot.getName());
+            for (Resident res : plot.ownersContainer) {
+                residentCache.release(res.getUUID());
+            }
+            for (Resident res : plot.membersContainer) {
+                residentCache.release(res.getUUID());
+            }
         }
-        if(removeFromCompletionMap)
-            CommandCompletion.removeCompletion("plotCompletion", plot.getName());
 
         VisualsHandler.instance.unmarkBlocks(plot);
     }
@@ -360,13 +466,83 @@ public class MyTownUniverse { // TODO Allow migrating between different Datasour
         towns.clear();
         plots.clear();
         residents.clear();
+        residentCache.clear();
         blocks.clear();
         worlds.clear();
         ranks.clear();
+        plotPositions.clear();
+        rankPositions.clear();
+        bankPositions.clear();
+        plotNames.clear();
+    }
+
+    private void addPlotName(String name) {
+        Integer count = plotNames.get(name);
+        if (count == null) {
+            plotNames.put(name, 1);
+            CommandCompletion.addCompletion("plotCompletion", name);
+        } else {
+            plotNames.put(name, count + 1);
+        }
+    }
+
+    private void removePlotName(String name) {
+        Integer count = plotNames.get(name);
+        if (count == null) {
+            return;
+        }
+        if (count == 1) {
+            plotNames.remove(name);
+            CommandCompletion.removeCompletion("plotCompletion", name);
+        } else {
+            plotNames.put(name, count - 1);
+        }
     }
 
     /* ----- Utils ----- */
     private MyTownDatasource getDatasource() {
         return MyTown.instance.datasource;
     }
+
+    /**
+     * Remembers where each entity is in a list of the universe, whose order doesn't matter.
+     * Removing one moves the last entity of the list into its place instead of searching the whole list.
+     */
+    private static class Positions<T> {
+        private final List<T> list;
+        private final Map<T, Integer> indexes = new IdentityHashMap<T, Integer>();
+
+        public Positions(List<T> list) {
+            this.list = list;
+        }
+
+        /**
+         * Adds the entity at the end of the list, returns false if it's already in it.
+         */
+        public boolean add(T item) {
+            if (indexes.containsKey(item)) {
+                return false;
+            }
+            indexes.put(item, list.size());
+            list.add(item);
+            return true;
+        }
+
+        public boolean remove(T item) {
+            Integer index = indexes.remove(item);
+            if (index == null) {
+                return false;
+            }
+            T last = list.remove(list.size() - 1);
+            if (last != item) {
+                list.set(index, last);
+                indexes.put(last, index);
+            }
+            return true;
+        }
+
+        public void clear() {
+            indexes.clear();
+        }
+    }
 }
@@ -0,0 +1,170 @@
+package mytown.new_datasource;
+
+import mytown.MyTown;
+import mytown.config.Config;
+import mytown.entities.Resident;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Tracks the residents that don't need to stay in memory, the least recently used ones are removed from the universe
+ * once there are more than the capacity. They are read from the database again the next time they are looked up.
+ * Online players, members of a town and the residents referenced by a plot or a block in a loaded chunk are never removed.
+ * It also remembers the UUIDs and names that aren't in the database, so they're only looked up there once.
+ */
+public class ResidentCache {
+
+    private final MyTownUniverse universe;
+    private final Set<UUID> online = new HashSet<UUID>();
+    private final LinkedHashMap<UUID, Resident> unpinned = new LinkedHashMap<UUID, Resident>(16, 0.75f, true);
+    private final Map<UUID, Integer> references = new HashMap<UUID, Integer>();
+    private final Map<UUID, Boolean> missingUUIDs = createMissingMap();
+    private final Map<String, Boolean> missingNames = createMissingMap();
+
+    private long evictions = 0;
+
+    public ResidentCache(MyTownUniverse universe) {
+        this.universe = universe;
+    }
+
+    /**
+     * Marks the resident as just used, it's forgotten last.
+     */
+    public void touch(Resident res) {
+        if (isPinned(res)) {
+            unpinned.remove(res.getUUID());
+            return;
+        }
+        unpinned.put(res.getUUID(), res);
+        evict();
+    }
+
+    public void login(Resident res) {
+        online.add(res.getUUID());
+        unpinned.remove(res.getUUID());
+    }
+
+    public void logout(Resident res) {
+        online.remove(res.getUUID());
+        touch(res);
+    }
+
+    /**
+     * Keeps the resident in memory while something refers to it, like a plot it's a member of or a block it owns
+     * in a loaded chunk. Each reference is released once.
+     */
+    public void reference(UUID uuid) {
+        Integer count = references.get(uuid);
+        references.put(uuid, count == null ? 1 : count + 1);
+        unpinned.remove(uuid);
+    }
+
+    public void release(UUID uuid) {
+        Integer count = references.get(uuid);
+        if (count == null) {
+            return;
+        }
+        if (count == 1) {
+            // Tracked again the next time it's used
+            references.remove(uuid);
+        } else {
+            references.put(uuid, count - 1);
+        }
+    }
+
+    /**
+     * Stops tracking the resident, called when it's removed from the universe.
+     */
+    public void forget(UUID uuid) {
+        unpinned.remove(uuid);
+    }
+
+    /**
+     * Called when the resident is added to the universe, it's no longer missing.
+     */
+    public void found(Resident res) {
+        missingUUIDs.remove(res.getUUID());
+        if (res.getPlayerName() != null) {
+            missingNames.remove(res.getPlayerName().toLowerCase(Locale.ENGLISH));
+        }
+    }
+
+    /**
+     * Remembers that no resident with the UUID is in the database.
+     */
+    public void setMissing(UUID uuid) {
+        missingUUIDs.put(uuid, true);
+    }
+
+    public void setMissing(String username) {
+        missingNames.put(username.toLowerCase(Locale.ENGLISH), true);
+    }
+
+    public boolean isMissing(UUID uuid) {
+        return missingUUIDs.containsKey(uuid);
+    }
+
+    public boolean isMissing(String username) {
+        return missingNames.containsKey(username.toLowerCase(Locale.ENGLISH));
+    }
+
+    public boolean isPinned(Resident res) {
+        return online.contains(res.getUUID()) || !res.townsContainer.isEmpty() || references.containsKey(res.getUUID());
+    }
+
+    private void evict() {
+        int capacity = Config.instance.residentCacheSize.get();
+        if (unpinned.size() <= capacity) {
+            return;
+        }
+        // A resident whose row is still in the write queue wouldn't be found when it's read again
+        MyTownDatasource datasource = MyTown.instance == null ? null : MyTown.instance.datasource;
+        if (datasource != null && datasource.getWriteQueue().getDepth() > 0) {
+            return;
+        }
+        Iterator<Resident> it = unpinned.values().iterator();
+        while (unpinned.size() > capacity && it.hasNext()) {
+            Resident res = it.next();
+            it.remove();
+            // It may have joined a town since it was last used, it's tracked again once it leaves
+            if (!isPinned(res)) {
+                universe.removeResident(res);
+                evictions++;
+            }
+        }
+    }
+
+    public int getSize() {
+        return unpinned.size();
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Forgets the residents of the universe, the players that are online stay online.
+     */
+    public void clear() {
+        unpinned.clear();
+        references.clear();
+        missingUUIDs.clear();
+        missingNames.clear();
+    }
+
+    private static <K> Map<K, Boolean> createMissingMap() {
+        return new LinkedHashMap<K, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Boolean> eldest) {
+                return size() > Config.instance.residentCacheSize.get();
+            }
+        };
+    }
+}
@@ -0,0 +1,131 @@
+package mytown.new_datasource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends the statements of many writes with as few round-trips as possible, inside a single transaction.
+ * Consecutive rows of the same SQL are sent together with addBatch/executeBatch, so the statements
+ * still run in the exact order they were added.
+ */
+public class SQLBatch {
+
+    private final Connection connection;
+    private final StatementCache cache;
+    private final Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+    private String currentSql;
+    private PreparedStatement current;
+    private int roundTrips = 0;
+
+    public SQLBatch(Connection connection) {
+        this(connection, null);
+    }
+
+    /**
+     * The statements are taken from the cache and stay open for the next batches.
+     */
+    public SQLBatch(Connection connection, StatementCache cache) {
+        this.connection = connection;
+        this.cache = cache;
+    }
+
+    /**
+     * Runs all the writes in one transaction, everything is rolled back if any of them fails.
+     */
+    public void run(List<? extends WriteBehindQueue.Write> writes) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        boolean committed = false;
+        connection.setAutoCommit(false);
+        try {
+            for (WriteBehindQueue.Write write : writes) {
+                write.addTo(this);
+            }
+            flush();
+            connection.commit();
+            committed = true;
+        } finally {
+            // Whatever failed, even an unchecked exception, nothing of the batch may be committed by setAutoCommit
+            if (!committed) {
+                try {
+                    connection.rollback();
+                } finally {
+                    clear();
+                }
+            }
+            close();
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    public void add(String sql, Object... parameters) throws SQLException {
+        if (!sql.equals(currentSql)) {
+            flush();
+            current = statements.get(sql);
+            if (current == null) {
+                current = cache == null ? connection.prepareStatement(sql) : cache.get(connection, sql, false);
+                statements.put(sql, current);
+            }
+            currentSql = sql;
+        }
+        setParameters(current, parameters);
+        current.addBatch();
+    }
+
+    /**
+     * Sends the rows added since the last call, needed before running a statement outside of the batch.
+     */
+    public void flush() throws SQLException {
+        if (current != null) {
+            current.executeBatch();
+            roundTrips++;
+            current = null;
+            currentSql = null;
+        }
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public int getRoundTrips() {
+        return roundTrips;
+    }
+
+    /**
+     * Drops the rows that were never sent, a cached statement is used again by the next batch.
+     */
+    private void clear() {
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.clearBatch();
+            } catch (SQLException ignored) {
+                // Left for the connection to drop
+            }
+        }
+    }
+
+    private void close() {
+        if (cache == null) {
+            for (PreparedStatement statement : statements.values()) {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                    // The transaction is already over
+                }
+            }
+        }
+        statements.clear();
+        current = null;
+        currentSql = null;
+    }
+
+    public static void setParameters(PreparedStatement statement, Object... parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setObject(i + 1, parameters[i]);
+        }
+    }
+}
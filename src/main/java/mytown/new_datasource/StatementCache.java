@@ -0,0 +1,75 @@
+package mytown.new_datasource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the prepared statements of a connection so each SQL text is only parsed by the driver once.
+ * When the bridge hands out a different connection, after a reconnect, every statement of the old one is dropped.
+ * A statement is shared by everything that uses its SQL, so it must not be used by two threads at the same time.
+ */
+public class StatementCache {
+
+    private final Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+    private Connection connection;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long invalidations = 0;
+
+    public synchronized PreparedStatement get(Connection connection, String sql, boolean returnGeneratedKeys) throws SQLException {
+        if (connection != this.connection) {
+            if (this.connection != null) {
+                invalidate();
+            }
+            this.connection = connection;
+        }
+
+        String key = returnGeneratedKeys ? "+" + sql : sql;
+        PreparedStatement statement = statements.get(key);
+        if (statement != null && !statement.isClosed()) {
+            hits++;
+            return statement;
+        }
+
+        misses++;
+        statement = returnGeneratedKeys ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS) : connection.prepareStatement(sql);
+        statements.put(key, statement);
+        return statement;
+    }
+
+    /**
+     * Closes all the statements, they are prepared again the next time they are used.
+     */
+    public synchronized void invalidate() {
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // The connection is most likely gone already
+            }
+        }
+        statements.clear();
+        invalidations++;
+    }
+
+    public synchronized int getSize() {
+        return statements.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+}
@@ -0,0 +1,271 @@
+package mytown.new_datasource;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads tables in a pipeline: they are all read at the same time on worker threads, one connection each,
+ * while their rows are applied on the calling thread in the order the tables were added.
+ * Reading a row never depends on what was loaded before it, only applying does, so the result is the same
+ * as loading the tables one after the other.
+ * The rows are handed over through a queue of a fetch size, a big table is streamed instead of being held in memory.
+ */
+public class TableLoader {
+
+    private static final Object[] END = new Object[0];
+
+    private final Logger log;
+    private final int fetchSize;
+    private final List<Table> tables = new ArrayList<Table>();
+    private volatile boolean cancelled = false;
+
+    public TableLoader(Logger log, int fetchSize) {
+        this.log = log;
+        this.fetchSize = Math.max(1, fetchSize);
+    }
+
+    public void add(Table table) {
+        tables.add(table);
+    }
+
+    public List<Table> getTables() {
+        return tables;
+    }
+
+    /**
+     * Loads all the tables, reading them with the given connections.
+     * Without any, they are read and applied one after the other on the main connection.
+     */
+    public boolean load(Connection main, List<Connection> readers) {
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<Thread>();
+        final Queue<Table> unread = new ConcurrentLinkedQueue<Table>(tables);
+        for (int i = 0; i < readers.size(); i++) {
+            final Connection connection = readers.get(i);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Table table;
+                    while (!cancelled && (table = unread.poll()) != null) {
+                        read(table, connection);
+                    }
+                }
+            }, "MyTown Loader #" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Table table : tables) {
+            table.rows = new ArrayBlockingQueue<Object[]>(fetchSize);
+        }
+
+        boolean result = true;
+        try {
+            for (Table table : tables) {
+                boolean loaded = threads.isEmpty() ? loadDirectly(table, main) : apply(table);
+                if (!loaded) {
+                    log.error(table.failureMessage);
+                    log.error(ExceptionUtils.getStackTrace(table.error));
+                    result = false;
+                    break;
+                }
+                log.info("Loaded {} rows from {} in {} ms ({} ms reading, {} ms applying)", table.count, table.name,
+                        (table.readTime + table.applyTime) / 1000000, table.readTime / 1000000, table.applyTime / 1000000);
+            }
+        } finally {
+            cancelled = true;
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        log.info("Loaded {} tables in {} ms using {} connections", tables.size(), (System.nanoTime() - start) / 1000000, Math.max(1, readers.size()));
+        return result;
+    }
+
+    /**
+     * The fetch size that reads the rows of a query a few at a time instead of the whole result at once.
+     * MySQL ignores a positive fetch size unless useCursorFetch is set, it only streams the rows with Integer.MIN_VALUE.
+     */
+    public static int getFetchSize(Connection connection, int rows) throws SQLException {
+        return connection.getMetaData().getDriverName().contains("MySQL") ? Integer.MIN_VALUE : rows;
+    }
+
+    /**
+     * Reads the table on a worker thread, an error is passed on to the thread that applies it.
+     */
+    private void read(Table table, Connection connection) {
+        long start = System.nanoTime();
+        try {
+            PreparedStatement statement = connection.prepareStatement(table.sql);
+            try {
+                statement.setFetchSize(getFetchSize(connection, fetchSize));
+                ResultSet rs = statement.executeQuery();
+                while (rs.next()) {
+                    if (!hand(table, table.read(rs))) {
+                        return;
+                    }
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            table.error = e;
+        } catch (RuntimeException e) {
+            table.error = e;
+        } finally {
+            table.readTime = System.nanoTime() - start;
+            hand(table, END);
+        }
+    }
+
+    /**
+     * Waits for room in the queue of the table, gives up if the load was cancelled.
+     */
+    private boolean hand(Table table, Object[] row) {
+        try {
+            while (!table.rows.offer(row, 100, TimeUnit.MILLISECONDS)) {
+                if (cancelled) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean apply(Table table) {
+        try {
+            while (true) {
+                Object[] row = table.rows.take();
+                if (row == END) {
+                    break;
+                }
+                long start = System.nanoTime();
+                table.apply(row);
+                table.count++;
+                table.applyTime += System.nanoTime() - start;
+            }
+            if (table.error instanceof RuntimeException) {
+                throw (RuntimeException) table.error;
+            }
+            if (table.error == null) {
+                long start = System.nanoTime();
+                table.finish();
+                table.applyTime += System.nanoTime() - start;
+            }
+        } catch (SQLException e) {
+            table.error = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            table.error = e;
+        }
+        return table.error == null;
+    }
+
+    private boolean loadDirectly(Table table, Connection connection) {
+        long start = System.nanoTime();
+        try {
+            PreparedStatement statement = connection.prepareStatement(table.sql);
+            try {
+                statement.setFetchSize(getFetchSize(connection, fetchSize));
+                ResultSet rs = statement.executeQuery();
+                while (rs.next()) {
+                    Object[] row = table.read(rs);
+                    long applyStart = System.nanoTime();
+                    table.apply(row);
+                    table.count++;
+                    table.applyTime += System.nanoTime() - applyStart;
+                }
+            } finally {
+                statement.close();
+            }
+            long finishStart = System.nanoTime();
+            table.finish();
+            table.applyTime += System.nanoTime() - finishStart;
+        } catch (SQLException e) {
+            table.error = e;
+        }
+        table.readTime = System.nanoTime() - start - table.applyTime;
+        return table.error == null;
+    }
+
+    /**
+     * A table to load. Its columns are selected explicitly so they are read by index.
+     */
+    public abstract static class Table {
+        private final String name;
+        private final String sql;
+        private final String failureMessage;
+
+        private BlockingQueue<Object[]> rows;
+        private volatile Exception error;
+        private int count = 0;
+        private volatile long readTime = 0;
+        private long applyTime = 0;
+
+        public Table(String name, String sql, String failureMessage) {
+            this.name = name;
+            this.sql = sql;
+            this.failureMessage = failureMessage;
+        }
+
+        /**
+         * Reads the current row, called on a worker thread so it must not touch the universe.
+         */
+        protected abstract Object[] read(ResultSet rs) throws SQLException;
+
+        /**
+         * Adds a row that was read to the universe, called on the loading thread in the order of the rows.
+         */
+        protected abstract void apply(Object[] row) throws SQLException;
+
+        /**
+         * Called on the loading thread once all the rows were applied.
+         */
+        protected void finish() throws SQLException {
+        }
+
+        /**
+         * Writes the rows of the universe the way read returns them, so the snapshot is applied like the database.
+         */
+        protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+            throw new UnsupportedOperationException("Table " + name + " can't be written to a snapshot");
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getReadTime() {
+            return readTime;
+        }
+
+        public long getApplyTime() {
+            return applyTime;
+        }
+    }
+}
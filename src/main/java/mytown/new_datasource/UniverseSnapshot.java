@@ -0,0 +1,309 @@
+package mytown.new_datasource;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The whole universe in a single binary file, written on a clean shutdown and mapped into memory on the next start.
+ * It holds the rows of every table the way they are read from the database, they are applied with the same code.
+ * The database stays the source of truth: the file is only used while the update counter it was written with
+ * is still the one in the database.
+ *
+ * Layout: magic, version, counter, then each table as its name followed by its rows and an end marker.
+ * A row is its number of values followed by the values, each prefixed by its type.
+ * A string is written once, any later occurrence refers to it by index.
+ */
+public class UniverseSnapshot {
+
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x4D54534E; // MTSN
+
+    private static final byte END = 0;
+    private static final byte ROW = 1;
+
+    private static final byte NULL = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte FLOAT = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte STRING = 5;
+    private static final byte STRING_REF = 6;
+    private static final byte UUID_VALUE = 7;
+
+    private final Logger log;
+    private final File file;
+
+    public UniverseSnapshot(Logger log, File file) {
+        this.log = log;
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the rows of the tables, in order, to a temporary file which then replaces the snapshot.
+     */
+    public boolean write(long counter, List<TableLoader.Table> tables) {
+        long start = System.nanoTime();
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+            Writer writer = new Writer(out);
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(counter);
+                out.writeInt(tables.size());
+                for (TableLoader.Table table : tables) {
+                    writer.writeString(table.getName());
+                    table.snapshot(writer);
+                    out.writeByte(END);
+                }
+                out.writeInt(MAGIC);
+            } finally {
+                out.close();
+            }
+            // Renaming over an existing file fails on some systems
+            if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+                throw new IOException("Could not replace " + file.getPath());
+            }
+            log.info("Wrote {} rows to the snapshot {} in {} ms ({} bytes)", writer.rows, file.getName(), (System.nanoTime() - start) / 1000000, file.length());
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to write the snapshot of the universe!");
+            log.error(ExceptionUtils.getStackTrace(e));
+        } catch (RuntimeException e) {
+            log.error("Failed to write the snapshot of the universe!");
+            log.error(ExceptionUtils.getStackTrace(e));
+        }
+        if (temp.exists() && !temp.delete()) {
+            log.warn("Failed to delete the unfinished snapshot {}", temp.getPath());
+        }
+        return false;
+    }
+
+    /**
+     * Applies the rows of the snapshot to the tables, only if it was written with the given counter.
+     * Returns false if the snapshot can't be used, the tables may then have been applied partially.
+     */
+    public boolean load(long counter, List<TableLoader.Table> tables) {
+        if (!file.isFile()) {
+            log.info("No snapshot of the universe found, loading it from the database.");
+            return false;
+        }
+
+        long start = System.nanoTime();
+        try {
+            // Read on the heap, a mapped file can't be replaced or deleted on Windows until the mapping is collected
+            FileInputStream in = new FileInputStream(file);
+            ByteBuffer buffer;
+            try {
+                FileChannel channel = in.getChannel();
+                buffer = ByteBuffer.allocate((int) channel.size());
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // Until the whole file is read
+                }
+                buffer.flip();
+            } finally {
+                in.close();
+            }
+
+            Reader reader = new Reader(buffer);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.info("The snapshot of the universe was written by another version, loading it from the database.");
+                return false;
+            }
+            long written = buffer.getLong();
+            if (written != counter) {
+                log.info("The snapshot of the universe is outdated (counter {} instead of {}), loading it from the database.", written, counter);
+                return false;
+            }
+            if (buffer.getInt() != tables.size()) {
+                log.info("The snapshot of the universe has different tables, loading it from the database.");
+                return false;
+            }
+
+            int rows = 0;
+            for (TableLoader.Table table : tables) {
+                String name = reader.readString();
+                if (!table.getName().equals(name)) {
+                    log.error("Found table {} in the snapshot instead of {}!", name, table.getName());
+                    return false;
+                }
+                int count = 0;
+                byte marker;
+                while ((marker = buffer.get()) == ROW) {
+                    table.apply(reader.readRow());
+                    count++;
+                }
+                if (marker != END) {
+                    log.error("The rows of table {} in the snapshot are damaged!", name);
+                    return false;
+                }
+                table.finish();
+                log.debug("Loaded {} rows from {} in the snapshot", count, name);
+                rows += count;
+            }
+            if (buffer.getInt() != MAGIC) {
+                log.error("The snapshot of the universe does not end where it should!");
+                return false;
+            }
+
+            log.info("Loaded {} rows from the snapshot {} in {} ms", rows, file.getName(), (System.nanoTime() - start) / 1000000);
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to read the snapshot of the universe!");
+            log.error(ExceptionUtils.getStackTrace(e));
+        } catch (SQLException e) {
+            log.error("Failed to apply the snapshot of the universe!");
+            log.error(ExceptionUtils.getStackTrace(e));
+        } catch (RuntimeException e) {
+            // A truncated or damaged file
+            log.error("Failed to read the snapshot of the universe!");
+            log.error(ExceptionUtils.getStackTrace(e));
+        }
+        return false;
+    }
+
+    /**
+     * Deletes the snapshot, used when it can no longer be kept up to date with the database.
+     */
+    public void delete() {
+        if (file.exists() && !file.delete()) {
+            log.warn("Failed to delete the snapshot {}, it will be ignored since it's outdated.", file.getPath());
+        }
+    }
+
+    /**
+     * Given to the tables to write their rows.
+     */
+    public static class Writer {
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+        private int rows = 0;
+
+        private Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        public void row(Object... values) throws IOException {
+            out.writeByte(ROW);
+            out.writeShort(values.length);
+            for (Object value : values) {
+                writeValue(value);
+            }
+            rows++;
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof Integer) {
+                out.writeByte(INT);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Float) {
+                out.writeByte(FLOAT);
+                out.writeFloat((Float) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof String) {
+                Integer index = strings.get(value);
+                if (index == null) {
+                    out.writeByte(STRING);
+                    writeString((String) value);
+                } else {
+                    out.writeByte(STRING_REF);
+                    out.writeInt(index);
+                }
+            } else if (value instanceof UUID) {
+                out.writeByte(UUID_VALUE);
+                out.writeLong(((UUID) value).getMostSignificantBits());
+                out.writeLong(((UUID) value).getLeastSignificantBits());
+            } else {
+                throw new IllegalArgumentException("Can't write a " + value.getClass().getSimpleName() + " to a snapshot");
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(Charsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            strings.put(value, strings.size());
+        }
+    }
+
+    /**
+     * Reads the values back from the mapped file, in the same order the writer keeps its strings.
+     */
+    private static class Reader {
+        private final ByteBuffer buffer;
+        private final List<String> strings = new ArrayList<String>();
+
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private Object[] readRow() {
+            Object[] row = new Object[buffer.getShort()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = readValue();
+            }
+            return row;
+        }
+
+        private Object readValue() {
+            byte type = buffer.get();
+            switch (type) {
+                case NULL:
+                    return null;
+                case INT:
+                    return buffer.getInt();
+                case LONG:
+                    return buffer.getLong();
+                case FLOAT:
+                    return buffer.getFloat();
+                case BOOLEAN:
+                    return buffer.get() != 0;
+                case STRING:
+                    return readString();
+                case STRING_REF:
+                    return strings.get(buffer.getInt());
+                case UUID_VALUE:
+                    return new UUID(buffer.getLong(), buffer.getLong());
+                default:
+                    throw new IllegalStateException("Unknown value type " + type + " in the snapshot");
+            }
+        }
+
+        private String readString() {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            String value = new String(bytes, Charsets.UTF_8);
+            strings.add(value);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package mytown.new_datasource;
+
+import mytown.MyTown;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs the writes of the datasource on a dedicated thread, in the order they were queued,
+ * so that a slow database never stalls the server tick.
+ * The datasource changes the in-memory universe right away, only the SQL is deferred.
+ * A write queued with the key of a write that did not start yet replaces it and moves to the end of the queue,
+ * so a row changing every tick is written once with its latest values.
+ */
+public class WriteBehindQueue {
+
+    private final Map<Object, Write> pending = new LinkedHashMap<Object, Write>();
+    private final Thread thread;
+    private Write current;
+    private boolean running = true;
+    private boolean held = false;
+
+    private long executed = 0;
+    private long coalesced = 0;
+    private long failed = 0;
+
+    public WriteBehindQueue() {
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                process();
+            }
+        }, "MyTown Datasource Writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues the write, it is run right away on the calling thread if the queue was stopped.
+     */
+    public void add(Write write) {
+        synchronized (pending) {
+            if (running) {
+                write.queuedAt = System.currentTimeMillis();
+                Object key = write.key == null ? write : write.key;
+                Write replaced = pending.remove(key);
+                if (replaced != null) {
+                    write.queuedAt = replaced.queuedAt;
+                    replaced.finish(true);
+                    coalesced++;
+                }
+                pending.put(key, write);
+                pending.notifyAll();
+                return;
+            }
+        }
+        write.run();
+    }
+
+    /**
+     * Queues the write and waits until it and every write queued before it are done.
+     * Used when the caller needs the result, like a generated ID.
+     */
+    public boolean addAndWait(Write write) {
+        add(write);
+        synchronized (pending) {
+            while (!write.done) {
+                try {
+                    pending.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return write.succeeded;
+    }
+
+    /**
+     * Waits until all the queued writes are done.
+     */
+    public void flush() {
+        synchronized (pending) {
+            while (!pending.isEmpty() || current != null) {
+                try {
+                    pending.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Lets the writes queue up without running any of them until release is called.
+     * Returns once the write that was running is done, from then on nothing is written to the database.
+     */
+    public void hold() {
+        synchronized (pending) {
+            held = true;
+            while (current != null) {
+                try {
+                    pending.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the writes that queued up while the queue was held.
+     */
+    public void release() {
+        synchronized (pending) {
+            held = false;
+            pending.notifyAll();
+        }
+    }
+
+    /**
+     * Writes everything still in the queue and stops the writer thread.
+     * Has to be called before the connection is closed.
+     */
+    public void stop() {
+        synchronized (pending) {
+            running = false;
+            pending.notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void process() {
+        while (true) {
+            Write write;
+            synchronized (pending) {
+                while ((pending.isEmpty() || held) && running) {
+                    try {
+                        pending.wait();
+                    } catch (InterruptedException ex) {
+                        // Only stop() ends the writer
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                Iterator<Write> it = pending.values().iterator();
+                write = it.next();
+                it.remove();
+                current = write;
+            }
+
+            boolean succeeded = write.run();
+
+            synchronized (pending) {
+                current = null;
+                executed++;
+                if (!succeeded) {
+                    failed++;
+                }
+                pending.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * The number of writes that are waiting or running.
+     */
+    public int getDepth() {
+        synchronized (pending) {
+            return pending.size() + (current == null ? 0 : 1);
+        }
+    }
+
+    /**
+     * How long the oldest write that is not done yet has been waiting, in milliseconds.
+     */
+    public long getLag() {
+        synchronized (pending) {
+            long oldest = current == null ? Long.MAX_VALUE : current.queuedAt;
+            for (Write write : pending.values()) {
+                oldest = Math.min(oldest, write.queuedAt);
+            }
+            return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+        }
+    }
+
+    public long getExecuted() {
+        synchronized (pending) {
+            return executed;
+        }
+    }
+
+    public long getCoalesced() {
+        synchronized (pending) {
+            return coalesced;
+        }
+    }
+
+    public long getFailed() {
+        synchronized (pending) {
+            return failed;
+        }
+    }
+
+    /**
+     * A deferred database write. It should only read the values it captured when it was created,
+     * never the entities themselves since they keep changing on the server thread.
+     */
+    public abstract static class Write {
+        /**
+         * The row written, or null if the write can't be replaced by a later one (inserts, deletes, links).
+         */
+        private final Object key;
+        private final String failureMessage;
+        private long queuedAt;
+        private volatile boolean done = false;
+        private volatile boolean succeeded = false;
+
+        public Write(Object key, String failureMessage) {
+            this.key = key;
+            this.failureMessage = failureMessage;
+        }
+
+        protected abstract void execute() throws SQLException;
+
+        /**
+         * Adds the statements of the write to a batch, writes that can't be batched run on their own in its transaction.
+         */
+        protected void addTo(SQLBatch batch) throws SQLException {
+            batch.flush();
+            execute();
+        }
+
+        /**
+         * Runs the write on the current thread, returns whether it succeeded.
+         */
+        public boolean run() {
+            boolean result;
+            try {
+                execute();
+                result = true;
+            } catch (SQLException e) {
+                MyTown.instance.LOG.error(failureMessage);
+                MyTown.instance.LOG.error(ExceptionUtils.getStackTrace(e));
+                result = false;
+            } catch (RuntimeException e) {
+                MyTown.instance.LOG.error(failureMessage);
+                MyTown.instance.LOG.error(ExceptionUtils.getStackTrace(e));
+                result = false;
+            }
+            finish(result);
+            return result;
+        }
+
+        private void finish(boolean succeeded) {
+            this.succeeded = succeeded;
+            this.done = true;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package mytown.protection;
+
+import mytown.MyTown;
+import mytown.entities.Resident;
+import mytown.new_datasource.MyTownUniverse;
+import mytown.util.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The owners of the ownable TileEntities, keyed by dimension, chunk and packed block position.
+ * A chunk is read from the BlockOwners table when it loads and forgotten when it unloads, so only the owners inside
+ * loaded chunks are kept in memory. Nothing is kept for a chunk that wasn't loaded, its owners are only written. The datasource reads it on its writer thread after the writes queued before,
+ * so the ones still waiting are part of it, and the owners are put in place on the server thread on the next tick.
+ * What changes in the chunk until then is applied again on top of what was read.
+ * The database is written as soon as an owner changes.
+ * Only the UUID of the owner is kept, and the owners of the loaded chunks are referenced in the resident cache so
+ * they aren't evicted while a block of theirs is loaded.
+ */
+public class BlockOwnerMap {
+
+    private final Map<Integer, LongObjectMap<Chunk>> dimensions = new HashMap<Integer, LongObjectMap<Chunk>>();
+    /**
+     * The chunks that were read, filled by the writer thread of the datasource and emptied on the server thread.
+     */
+    private final Queue<Chunk> read = new ConcurrentLinkedQueue<Chunk>();
+
+    public Resident get(int dim, int x, int y, int z) {
+        Chunk chunk = getChunk(dim, x >> 4, z >> 4);
+        if (chunk == null) {
+            return null;
+        }
+        long key = LongObjectMap.packBlock(x, y, z);
+        UUID uuid = chunk.owners.get(key);
+        if (uuid == null) {
+            return null;
+        }
+        Resident res = MyTownUniverse.instance.getResident(uuid);
+        if (res == null && MyTownUniverse.instance.residentCache.isMissing(uuid)) {
+            // The resident was deleted, don't look it up in the database again.
+            // It's kept if it couldn't be read, the next lookup tries again.
+            chunk.owners.remove(key);
+            release(uuid);
+        }
+        return res;
+    }
+
+    public void put(int dim, int x, int y, int z, Resident res) {
+        Chunk chunk = getChunk(dim, x >> 4, z >> 4);
+        if (chunk != null) {
+            long key = LongObjectMap.packBlock(x, y, z);
+            reference(res.getUUID());
+            release(chunk.owners.put(key, res.getUUID()));
+            if (chunk.changes != null) {
+                chunk.changes.add(new Change(key, res.getUUID()));
+            }
+        }
+        saveOwner(res, dim, x, y, z);
+    }
+
+    /**
+     * Removes the owner of the block, returns false if the block is known to have none.
+     */
+    public boolean remove(int dim, int x, int y, int z) {
+        Chunk chunk = getChunk(dim, x >> 4, z >> 4);
+        if (chunk != null) {
+            long key = LongObjectMap.packBlock(x, y, z);
+            UUID owner = chunk.owners.remove(key);
+            if (owner == null && chunk.changes == null) {
+                return false;
+            }
+            release(owner);
+            if (chunk.changes != null) {
+                // It may be in what's being read
+                chunk.changes.add(new Change(key, null));
+            }
+        }
+        deleteOwner(dim, x, y, z);
+        return true;
+    }
+
+    /**
+     * Starts reading the owners inside the chunk, called when the chunk loads. Nothing happens if it's already loaded.
+     */
+    public void loadChunk(int dim, int chunkX, int chunkZ) {
+        LongObjectMap<Chunk> chunks = dimensions.get(dim);
+        if (chunks == null) {
+            chunks = new LongObjectMap<Chunk>();
+            dimensions.put(dim, chunks);
+        }
+
+        long key = LongObjectMap.pack(chunkX, chunkZ);
+        if (chunks.containsKey(key)) {
+            return;
+        }
+        final Chunk loading = new Chunk();
+        chunks.put(key, loading);
+        readOwners(dim, chunkX, chunkZ, loading.read, new Runnable() {
+            @Override
+            public void run() {
+                read.add(loading);
+            }
+        });
+    }
+
+    /**
+     * Whether the chunk the block is in was loaded but its owners aren't known yet.
+     */
+    public boolean isLoading(int dim, int x, int z) {
+        Chunk chunk = getChunk(dim, x >> 4, z >> 4);
+        return chunk != null && chunk.changes != null;
+    }
+
+    /**
+     * Puts the owners of the chunks read since the last tick in place.
+     */
+    public void tick() {
+        Chunk chunk;
+        while ((chunk = read.poll()) != null) {
+            if (chunk.unloaded) {
+                // Its references were released when it unloaded
+                continue;
+            }
+            for (Change change : chunk.changes) {
+                if (change.owner == null) {
+                    chunk.read.remove(change.key);
+                } else {
+                    chunk.read.put(change.key, change.owner);
+                }
+            }
+            for (UUID owner : chunk.read.values()) {
+                reference(owner);
+            }
+            releaseOwners(chunk);
+            chunk.owners = chunk.read;
+            chunk.read = null;
+            chunk.changes = null;
+        }
+    }
+
+    /**
+     * Forgets the owners inside the chunk, they are read again when it loads.
+     */
+    public void unloadChunk(int dim, int chunkX, int chunkZ) {
+        LongObjectMap<Chunk> chunks = dimensions.get(dim);
+        if (chunks != null) {
+            Chunk chunk = chunks.remove(LongObjectMap.pack(chunkX, chunkZ));
+            if (chunk != null) {
+                unload(chunk);
+            }
+            if (chunks.isEmpty()) {
+                dimensions.remove(dim);
+            }
+        }
+    }
+
+    public void unloadDimension(int dim) {
+        LongObjectMap<Chunk> chunks = dimensions.remove(dim);
+        if (chunks != null) {
+            for (Chunk chunk : chunks.values()) {
+                unload(chunk);
+            }
+        }
+    }
+
+    public void clear() {
+        for (LongObjectMap<Chunk> chunks : dimensions.values()) {
+            for (Chunk chunk : chunks.values()) {
+                unload(chunk);
+            }
+        }
+        dimensions.clear();
+    }
+
+    private void reference(UUID uuid) {
+        MyTownUniverse.instance.residentCache.reference(uuid);
+    }
+
+    private void release(UUID uuid) {
+        if (uuid != null) {
+            MyTownUniverse.instance.residentCache.release(uuid);
+        }
+    }
+
+    private void unload(Chunk chunk) {
+        chunk.unloaded = true;
+        releaseOwners(chunk);
+    }
+
+    private void releaseOwners(Chunk chunk) {
+        for (UUID owner : chunk.owners.values()) {
+            release(owner);
+        }
+    }
+
+    private Chunk getChunk(int dim, int chunkX, int chunkZ) {
+        LongObjectMap<Chunk> chunks = dimensions.get(dim);
+        return chunks == null ? null : chunks.get(LongObjectMap.pack(chunkX, chunkZ));
+    }
+
+    /**
+     * Reads the owners of the chunk into the map and runs done once it's over, on any thread.
+     */
+    protected void readOwners(int dim, int chunkX, int chunkZ, LongObjectMap<UUID> owners, Runnable done) {
+        MyTown.instance.datasource.loadBlockOwners(dim, chunkX, chunkZ, owners, done);
+    }
+
+    protected void saveOwner(Resident res, int dim, int x, int y, int z) {
+        MyTown.instance.datasource.saveBlockOwner(res, dim, x, y, z);
+    }
+
+    protected void deleteOwner(int dim, int x, int y, int z) {
+        MyTown.instance.datasource.deleteBlockOwner(dim, x, y, z);
+    }
+
+    private static class Chunk {
+        private LongObjectMap<UUID> owners = new LongObjectMap<UUID>(4);
+        /**
+         * Filled by the datasource, null once it's in place.
+         */
+        private LongObjectMap<UUID> read = new LongObjectMap<UUID>(4);
+        /**
+         * The owners put and removed while the chunk is read, null once it's in place.
+         */
+        private List<Change> changes = new ArrayList<Change>();
+        /**
+         * Set once it's unloaded, what's read for it afterwards is dropped.
+         */
+        private boolean unloaded = false;
+    }
+
+    private static class Change {
+        private final long key;
+        /**
+         * Null if the owner was removed.
+         */
+        private final UUID owner;
+
+        private Change(long key, UUID owner) {
+            this.key = key;
+            this.owner = owner;
+        }
+    }
+}
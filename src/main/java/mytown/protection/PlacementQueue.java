@@ -0,0 +1,96 @@
+package mytown.protection;
+
+import mytown.entities.Resident;
+import mytown.util.LongObjectMap;
+import net.minecraft.tileentity.TileEntity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Placements of ownable blocks whose TileEntity has not been found in the world yet.
+ * They're resolved on the server thread once per tick, a placement is dropped if its TileEntity doesn't appear in time.
+ */
+public abstract class PlacementQueue {
+
+    private final List<Placement> placements = new ArrayList<Placement>();
+    private final Map<Integer, LongObjectMap<Placement>> placementsByDim = new HashMap<Integer, LongObjectMap<Placement>>();
+
+    /**
+     * Gets the TileEntity at the given position, or null if it's not there yet.
+     */
+    protected abstract TileEntity getTileEntity(int dim, int x, int y, int z);
+
+    /**
+     * Called once the TileEntity of a placement appeared in the world.
+     */
+    protected abstract void resolve(TileEntity te, Resident res);
+
+    /**
+     * Queues a placement, replacing the one waiting at the same position if any.
+     */
+    public void add(Resident res, int dim, int x, int y, int z, int timeoutTick) {
+        Placement placement = new Placement(res, dim, x, y, z, timeoutTick);
+        LongObjectMap<Placement> positions = placementsByDim.get(dim);
+        if (positions == null) {
+            positions = new LongObjectMap<Placement>();
+            placementsByDim.put(dim, positions);
+        }
+        Placement previous = positions.put(placement.key, placement);
+        if (previous != null) {
+            placements.remove(previous);
+        }
+        placements.add(placement);
+    }
+
+    /**
+     * Resolves every placement whose TileEntity appeared, and drops the ones that timed out.
+     */
+    public void tick(int tick) {
+        if (placements.isEmpty()) {
+            return;
+        }
+
+        for (Iterator<Placement> it = placements.iterator(); it.hasNext(); ) {
+            Placement placement = it.next();
+            TileEntity te = getTileEntity(placement.dim, placement.x, placement.y, placement.z);
+            if (te != null) {
+                resolve(te, placement.res);
+            } else if (tick < placement.timeoutTick) {
+                continue;
+            }
+
+            it.remove();
+            placementsByDim.get(placement.dim).remove(placement.key);
+        }
+    }
+
+    public boolean isPending(int dim, int x, int y, int z) {
+        LongObjectMap<Placement> positions = placementsByDim.get(dim);
+        return positions != null && !positions.isEmpty() && positions.containsKey(LongObjectMap.packBlock(x, y, z));
+    }
+
+    public int size() {
+        return placements.size();
+    }
+
+    private static class Placement {
+        private final Resident res;
+        private final int dim, x, y, z;
+        private final long key;
+        private final int timeoutTick;
+
+        public Placement(Resident res, int dim, int x, int y, int z, int timeoutTick) {
+            this.res = res;
+            this.dim = dim;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.key = LongObjectMap.packBlock(x, y, z);
+            this.timeoutTick = timeoutTick;
+        }
+    }
+}
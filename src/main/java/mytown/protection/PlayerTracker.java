@@ -0,0 +1,150 @@
+package mytown.protection;
+
+import mytown.entities.Plot;
+import mytown.entities.Town;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Remembers for each player the block it was last checked in, so a player is only checked again once it moves
+ * into another block. Plots and chunks are made of whole blocks, crossing one of their borders always crosses a block's.
+ * The state of a player is created on its first check and updated in place afterwards.
+ */
+public class PlayerTracker {
+
+    private final Map<UUID, State> states = new HashMap<UUID, State>();
+
+    /**
+     * Gets the state of the player, creating it if it's the first time it's checked.
+     */
+    public State get(UUID uuid) {
+        State state = states.get(uuid);
+        if (state == null) {
+            state = new State();
+            states.put(uuid, state);
+        }
+        return state;
+    }
+
+    /**
+     * Forgets the player, when it logs out.
+     */
+    public void remove(UUID uuid) {
+        states.remove(uuid);
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    public void clear() {
+        states.clear();
+    }
+
+    public static class State {
+        private boolean checked = false;
+        private int dim, x, y, z;
+
+        private boolean allowed = false;
+        private int allowedDim;
+        private double allowedX, allowedY, allowedZ;
+        private Plot plot;
+
+        /**
+         * Moves to the given block, returns false if the player was already checked in it.
+         */
+        public boolean moveTo(int dim, int x, int y, int z) {
+            if (checked && this.x == x && this.z == z && this.y == y && this.dim == dim) {
+                return false;
+            }
+            checked = true;
+            this.dim = dim;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            return true;
+        }
+
+        /**
+         * Checks the player on the next tick even if it's still in the same block, used after it was sent elsewhere.
+         */
+        public void invalidate() {
+            checked = false;
+        }
+
+        /**
+         * The player isn't allowed where it is, it's checked again on the next tick wherever it's sent to.
+         * Returns true if it has to be sent back to the allowed position, false if it's already there or if it was
+         * never allowed anywhere.
+         */
+        public boolean deny(int dim, double x, double y, double z) {
+            invalidate();
+            return allowed && (allowedX != x || allowedY != y || allowedZ != z || allowedDim != dim);
+        }
+
+        /**
+         * Whether the player was allowed in another chunk than the given one, its location is then checked again.
+         */
+        public boolean isInAnotherChunk(int chunkX, int chunkZ) {
+            return allowed && (getAllowedChunkX() != chunkX || getAllowedChunkZ() != chunkZ);
+        }
+
+        public int getAllowedChunkX() {
+            return (int) Math.floor(allowedX) >> 4;
+        }
+
+        public int getAllowedChunkZ() {
+            return (int) Math.floor(allowedZ) >> 4;
+        }
+
+        /**
+         * Whether the player went into another plot of the town, or out of one into the rest of it.
+         * Only a plot of the same town counts, like it was looked up in it.
+         */
+        public boolean hasChangedPlot(Town town, Plot currentPlot) {
+            Plot lastPlot = plot != null && plot.getTown() == town ? plot : null;
+            return allowed && currentPlot != lastPlot;
+        }
+
+        /**
+         * Saves the position the player was allowed to be at, it's sent back there when it goes somewhere it's not allowed.
+         */
+        public void allow(int dim, double x, double y, double z, Plot plot) {
+            this.allowed = true;
+            this.allowedDim = dim;
+            this.allowedX = x;
+            this.allowedY = y;
+            this.allowedZ = z;
+            this.plot = plot;
+        }
+
+        public boolean hasAllowedPosition() {
+            return allowed;
+        }
+
+        public int getAllowedDim() {
+            return allowedDim;
+        }
+
+        public double getAllowedX() {
+            return allowedX;
+        }
+
+        public double getAllowedY() {
+            return allowedY;
+        }
+
+        public double getAllowedZ() {
+            return allowedZ;
+        }
+
+        /**
+         * The plot at the allowed position, null if it wasn't in one.
+         */
+        public Plot getPlot() {
+            return plot;
+        }
+    }
+}
@@ -20,8 +20,7 @@ import mytown.entities.Resident;
 import mytown.entities.Town;
 import mytown.entities.flag.FlagType;
 import mytown.new_datasource.MyTownUniverse;
-import mytown.thread.ThreadPlacementCheck;
-import mytown.util.MyTownUtils;
+import mytown.protection.segment.caller.CallerNBT;
 import net.minecraft.block.ITileEntityProvider;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityLiving;
@@ -30,15 +29,23 @@ import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
 import net.minecraftforge.common.util.FakePlayer;
 import net.minecraftforge.event.entity.EntityJoinWorldEvent;
 import net.minecraftforge.event.entity.living.LivingAttackEvent;
+import net.minecraftforge.event.entity.living.LivingDeathEvent;
 import net.minecraftforge.event.entity.living.LivingSpawnEvent;
 import net.minecraftforge.event.entity.player.*;
 import net.minecraftforge.event.entity.player.PlayerInteractEvent.Action;
 import net.minecraftforge.event.world.BlockEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -49,9 +56,33 @@ public class ProtectionHandlers {
     public static final ProtectionHandlers instance = new ProtectionHandlers();
 
 
-    public Map<TileEntity, Resident> ownedTileEntities = new HashMap<TileEntity, Resident>();
+    public final BlockOwnerMap blockOwners = new BlockOwnerMap();
+
+    private final PlacementQueue placements = new PlacementQueue() {
+        @Override
+        protected TileEntity getTileEntity(int dim, int x, int y, int z) {
+            World world = MinecraftServer.getServer().worldServerForDimension(dim);
+            return world.blockExists(x, y, z) ? world.getTileEntity(x, y, z) : null;
+        }
+
+        @Override
+        protected void resolve(TileEntity te, Resident res) {
+            ProtectionManager.addTileEntity(te, res);
+            track(te);
+        }
+    };
+
+    /**
+     * The entity and tile entity sweeps of each world, checking a part of them every tick.
+     */
+    private final Map<Integer, Sweep[]> sweeps = new HashMap<Integer, Sweep[]>();
+
+    /**
+     * The entities and TileEntities of each world that the sweeps need to check, see ProtectionManager.isTracked and isProtected.
+     */
+    private final Map<Integer, TrackedList<Entity>> trackedEntities = new HashMap<Integer, TrackedList<Entity>>();
+    private final Map<Integer, TrackedList<TileEntity>> protectedTiles = new HashMap<Integer, TrackedList<TileEntity>>();
 
-    public int activePlacementThreads = 0;
     public int maximalRange = 0;
 
     // ---- All the counters/tickers for preventing check every tick ----
@@ -60,13 +91,19 @@ public class ProtectionHandlers {
     private int itemPickupCounter = 0;
 
     public Resident getOwnerForTileEntity(TileEntity te) {
-        return this.ownedTileEntities.get(te);
+        return blockOwners.get(te.getWorldObj().provider.dimensionId, te.xCoord, te.yCoord, te.zCoord);
     }
 
     // ---- Main ticking method ----
 
     @SubscribeEvent
     public void serverTick(TickEvent.ServerTickEvent ev) {
+        if (ev.phase == TickEvent.Phase.START) {
+            blockOwners.tick();
+        } else {
+            placements.tick(MinecraftServer.getServer().getTickCounter());
+        }
+
         // TODO: Add a command to clean up the block whitelist table periodically
         if (MinecraftServer.getServer().getTickCounter() % 600 == 0) {
             for (Town town : MyTownUniverse.instance.towns)
@@ -90,37 +127,123 @@ public class ProtectionHandlers {
 
         //MyTown.instance.LOG.info("Tick number: " + MinecraftServer.getServer().getTickCounter());
 
-        // Entity check
-        // TODO: Rethink this system a couple million times before you come up with the best algorithm :P
-        int loadedEntityListSize = ev.world.loadedEntityList.size();
-        for (int i = 0; i < loadedEntityListSize; i++) {
-            if (i >= ev.world.loadedEntityList.size()) continue;
-            Object item = ev.world.loadedEntityList.get(i);
-            if (item == null) continue;
-            Entity entity = (Entity) item;
-            Town town = MyTownUtils.getTownAtPosition(entity.dimension, (int) Math.floor(entity.posX) >> 4, (int) Math.floor(entity.posZ) >> 4);
-            //MyTown.instance.log.info("Checking player...");
-            // Player check, every tick
-            if (entity instanceof EntityPlayerMP && !(entity instanceof FakePlayer)) {
-                ProtectionManager.check((EntityPlayerMP) entity);
-            } else {
-                // Other entity checks
-                if(MinecraftServer.getServer().getTickCounter() % 20 == 5) {
-                    ProtectionManager.checkExist(entity, false);
-                }
+        // Player check, every tick, but a player is only checked again once it moved into another block
+        for (int i = 0; i < ev.world.playerEntities.size(); i++) {
+            Object item = ev.world.playerEntities.get(i);
+            if (item instanceof EntityPlayerMP && !(item instanceof FakePlayer)) {
+                ProtectionManager.check((EntityPlayerMP) item);
             }
         }
 
-        // TileEntity check
-        if(MinecraftServer.getServer().getTickCounter() % 20 == 15) {
-            if (activePlacementThreads == 0) {
-                int loadedTileEntityListSize = ev.world.loadedTileEntityList.size();
-                for (int i = 0; i < loadedTileEntityListSize; i++) {
-                    if (i >= ev.world.loadedTileEntityList.size()) continue;
-                    Object item = ev.world.loadedTileEntityList.get(i);
-                    if (item == null) continue;
-                    TileEntity te = (TileEntity) item;
-                    ProtectionManager.check(te);
+        // Other entity and TileEntity checks, a part of them every tick
+        Sweep[] dimSweeps = getSweeps(ev.world.provider.dimensionId);
+        int tick = MinecraftServer.getServer().getTickCounter();
+        int interval = Config.instance.sweepInterval.get();
+        long budget = Config.instance.sweepBudget.get();
+        CallerNBT.startCache();
+        try {
+            dimSweeps[0].tick(getTrackedEntities(ev.world.provider.dimensionId), tick, interval, budget);
+            dimSweeps[1].tick(getProtectedTiles(ev.world.provider.dimensionId), tick, interval, budget);
+        } finally {
+            CallerNBT.endCache();
+        }
+    }
+
+    /**
+     * The sweeps of the entities and of the tile entities of the world.
+     */
+    public Sweep[] getSweeps(final int dim) {
+        Sweep[] dimSweeps = sweeps.get(dim);
+        if (dimSweeps == null) {
+            dimSweeps = new Sweep[] {
+                    new Sweep() {
+                        @Override
+                        protected void check(Object item) {
+                            Entity entity = (Entity) item;
+                            if (entity.isDead) {
+                                getTrackedEntities(dim).remove(entity);
+                                return;
+                            }
+                            ProtectionManager.checkExist(entity, false);
+                        }
+                    },
+                    new Sweep() {
+                        @Override
+                        protected void check(Object item) {
+                            TileEntity te = (TileEntity) item;
+                            if (te.isInvalid()) {
+                                getProtectedTiles(dim).remove(te);
+                                return;
+                            }
+                            // Its owner is not known yet
+                            if (isPlacementPending(dim, te.xCoord, te.yCoord, te.zCoord) || blockOwners.isLoading(dim, te.xCoord, te.zCoord)) return;
+                            ProtectionManager.check(te);
+                        }
+                    }
+            };
+            sweeps.put(dim, dimSweeps);
+        }
+        return dimSweeps;
+    }
+
+    public Map<Integer, Sweep[]> getSweeps() {
+        return sweeps;
+    }
+
+    // ---- Entities and TileEntities to sweep ----
+
+    public TrackedList<Entity> getTrackedEntities(int dim) {
+        TrackedList<Entity> entities = trackedEntities.get(dim);
+        if (entities == null) {
+            entities = new TrackedList<Entity>();
+            trackedEntities.put(dim, entities);
+        }
+        return entities;
+    }
+
+    public TrackedList<TileEntity> getProtectedTiles(int dim) {
+        TrackedList<TileEntity> tiles = protectedTiles.get(dim);
+        if (tiles == null) {
+            tiles = new TrackedList<TileEntity>();
+            protectedTiles.put(dim, tiles);
+        }
+        return tiles;
+    }
+
+    private void track(Entity entity) {
+        if (!entity.isDead && ProtectionManager.isTracked(entity)) {
+            getTrackedEntities(entity.worldObj.provider.dimensionId).add(entity);
+        }
+    }
+
+    private void track(TileEntity te) {
+        if (!te.isInvalid() && ProtectionManager.isProtected(te)) {
+            getProtectedTiles(te.getWorldObj().provider.dimensionId).add(te);
+        }
+    }
+
+    /**
+     * Finds again what needs to be swept in all the loaded worlds, after the protections or the config changed.
+     * Also starts reading the block owners of the loaded chunks that weren't read, the ones loaded before the datasource.
+     */
+    @SuppressWarnings("unchecked")
+    public void rebuildTracked() {
+        trackedEntities.clear();
+        protectedTiles.clear();
+        MinecraftServer server = MinecraftServer.getServer();
+        if (server == null || server.worldServers == null) {
+            return;
+        }
+        for (WorldServer world : server.worldServers) {
+            for (Entity entity : (List<Entity>) world.loadedEntityList) {
+                track(entity);
+            }
+            for (TileEntity te : (List<TileEntity>) world.loadedTileEntityList) {
+                track(te);
+            }
+            if (MyTown.instance.datasource != null) {
+                for (Chunk chunk : (List<Chunk>) world.theChunkProviderServer.loadedChunks) {
+                    blockOwners.loadChunk(world.provider.dimensionId, chunk.xPosition, chunk.zPosition);
                 }
             }
         }
@@ -177,14 +300,16 @@ public class ProtectionHandlers {
             if(ev.block instanceof ITileEntityProvider && ev.itemInHand != null) {
                 TileEntity te = ((ITileEntityProvider) ev.block).createNewTileEntity(MinecraftServer.getServer().worldServerForDimension(ev.world.provider.dimensionId), ev.itemInHand.getItemDamage());
                 if (te != null && ProtectionManager.isOwnable(te.getClass())) {
-                    ThreadPlacementCheck thread = new ThreadPlacementCheck(res, ev.x, ev.y, ev.z, ev.world.provider.dimensionId);
-                    activePlacementThreads++;
-                    thread.start();
+                    placements.add(res, ev.world.provider.dimensionId, ev.x, ev.y, ev.z, MinecraftServer.getServer().getTickCounter() + Config.instance.placementCheckTimeout.get());
                 }
             }
         }
     }
 
+    public boolean isPlacementPending(int dim, int x, int y, int z) {
+        return placements.isPending(dim, x, y, z);
+    }
+
     @SubscribeEvent
     public void onEntityInteract(EntityInteractEvent ev) {
         if(ev.entity.worldObj.isRemote || ev.isCanceled()) {
@@ -355,9 +480,7 @@ public class ProtectionHandlers {
         if (!ev.isCanceled() && ev.block instanceof ITileEntityProvider) {
             TileEntity te = ((ITileEntityProvider) ev.block).createNewTileEntity(ev.world, ev.blockMetadata);
             if(te != null && ProtectionManager.isOwnable(te.getClass())) {
-                te = ev.world.getTileEntity(ev.x, ev.y, ev.z);
-                ownedTileEntities.remove(te);
-                MyTown.instance.LOG.info("Removed te {}", te.toString());
+                blockOwners.remove(ev.world.provider.dimensionId, ev.x, ev.y, ev.z);
             }
         }
     }
@@ -445,6 +568,24 @@ public class ProtectionHandlers {
         ProtectionManager.checkExist(ev.entity, true);
     }
 
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public void trackJoinedEntity(EntityJoinWorldEvent ev) {
+        if (ev.world.isRemote || ev.isCanceled()) {
+            return;
+        }
+
+        track(ev.entity);
+    }
+
+    @SubscribeEvent
+    public void onLivingDeath(LivingDeathEvent ev) {
+        if (ev.entity.worldObj.isRemote) {
+            return;
+        }
+
+        getTrackedEntities(ev.entity.worldObj.provider.dimensionId).remove(ev.entity);
+    }
+
     @SubscribeEvent
     public void specialSpawn(LivingSpawnEvent.SpecialSpawn ev) {
         if (ev.isCanceled()) return;
@@ -463,6 +604,61 @@ public class ProtectionHandlers {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    @SubscribeEvent
+    public void onChunkUnload(ChunkEvent.Unload ev) {
+        if (ev.world.isRemote) {
+            return;
+        }
+
+        blockOwners.unloadChunk(ev.world.provider.dimensionId, ev.getChunk().xPosition, ev.getChunk().zPosition);
+
+        TrackedList<Entity> entities = getTrackedEntities(ev.world.provider.dimensionId);
+        for (List<Entity> entityList : (List<Entity>[]) ev.getChunk().entityLists) {
+            for (Entity entity : entityList) {
+                entities.remove(entity);
+            }
+        }
+        TrackedList<TileEntity> tiles = getProtectedTiles(ev.world.provider.dimensionId);
+        for (TileEntity te : (Collection<TileEntity>) ev.getChunk().chunkTileEntityMap.values()) {
+            tiles.remove(te);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @SubscribeEvent
+    public void onChunkLoad(ChunkEvent.Load ev) {
+        if (ev.world.isRemote) {
+            return;
+        }
+
+        // The spawn chunks load before the datasource starts, they're read in rebuildTracked once it has
+        if (MyTown.instance.datasource != null) {
+            blockOwners.loadChunk(ev.world.provider.dimensionId, ev.getChunk().xPosition, ev.getChunk().zPosition);
+        }
+
+        for (List<Entity> entityList : (List<Entity>[]) ev.getChunk().entityLists) {
+            for (Entity entity : entityList) {
+                track(entity);
+            }
+        }
+        for (TileEntity te : (Collection<TileEntity>) ev.getChunk().chunkTileEntityMap.values()) {
+            track(te);
+        }
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload ev) {
+        if (ev.world.isRemote) {
+            return;
+        }
+
+        blockOwners.unloadDimension(ev.world.provider.dimensionId);
+        sweeps.remove(ev.world.provider.dimensionId);
+        trackedEntities.remove(ev.world.provider.dimensionId);
+        protectedTiles.remove(ev.world.provider.dimensionId);
+    }
+
     // Fired AFTER the teleport
     @SubscribeEvent
     public void onPlayerChangedDimension(PlayerEvent.PlayerChangedDimensionEvent ev) {
@@ -473,6 +669,11 @@ public class ProtectionHandlers {
         }
     }
 
+    @SubscribeEvent
+    public void onPlayerLogout(PlayerEvent.PlayerLoggedOutEvent ev) {
+        ProtectionManager.forget(ev.player);
+    }
+
     private BlockPos createBlockPos(PlayerInteractEvent ev) {
         int x, y, z;
 
@@ -3,7 +3,6 @@ package mytown.protection;
 import cpw.mods.fml.common.eventhandler.Event;
 import myessentials.chat.api.ChatManager;
 import myessentials.entities.api.BlockPos;
-import myessentials.entities.api.EntityPos;
 import myessentials.entities.api.Volume;
 import myessentials.localization.api.LocalManager;
 import myessentials.utils.PlayerUtils;
@@ -33,10 +32,9 @@ import net.minecraft.tileentity.TileEntity;
 import net.minecraft.tileentity.TileEntitySign;
 import net.minecraft.util.MovingObjectPosition;
 import net.minecraft.world.World;
+import net.minecraftforge.common.util.FakePlayer;
 import net.minecraftforge.event.entity.player.PlayerInteractEvent;
 
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Utilities for the protections
@@ -49,7 +47,7 @@ public class ProtectionManager {
     public static final Segment.Container<SegmentEntity> segmentsEntity = new Segment.Container<SegmentEntity>();
     public static final Segment.Container<SegmentItem> segmentsItem = new Segment.Container<SegmentItem>();
     public static final Segment.Container<SegmentTileEntity> segmentsTile = new Segment.Container<SegmentTileEntity>();
-    private static final Map<EntityPlayer, EntityPos> lastTickPlayerPos = new HashMap<EntityPlayer, EntityPos>();
+    private static final PlayerTracker players = new PlayerTracker();
 
     private ProtectionManager() {
     }
@@ -75,44 +73,77 @@ public class ProtectionManager {
         }
     }
 
+    /**
+     * Checks where the player went, only once it moved into another block since it was last checked.
+     */
     public static void check(EntityPlayerMP player) {
-        Town town = MyTownUtils.getTownAtPosition(player.dimension, (int) Math.floor(player.posX) >> 4, (int) Math.floor(player.posZ) >> 4);
-        Resident res = MyTownUniverse.instance.getOrMakeResident(player);
-        EntityPos lastTickPos = lastTickPlayerPos.get(player);
+        int x = (int) Math.floor(player.posX);
+        int y = (int) Math.floor(player.posY);
+        int z = (int) Math.floor(player.posZ);
+        PlayerTracker.State state = players.get(player.getPersistentID());
+        if (!state.moveTo(player.dimension, x, y, z)) {
+            return;
+        }
 
+        Resident res = MyTownUniverse.instance.getOrMakeResident(player);
         if (res == null) {
             return;
         }
+        Town town = MyTownUtils.getTownAtPosition(player.dimension, x >> 4, z >> 4);
 
-        if (!ProtectionManager.hasPermission(res, FlagType.ENTER, player.dimension, (int) Math.floor(player.posX), (int) Math.floor(player.posY), (int) Math.floor(player.posZ))) {
-            if(lastTickPos == null) {
+        if (!ProtectionManager.hasPermission(res, FlagType.ENTER, player.dimension, x, y, z)) {
+            if (state.deny(player.dimension, player.posX, player.posY, player.posZ)) {
+                PlayerUtils.teleport(player, state.getAllowedDim(), state.getAllowedX(), state.getAllowedY(), state.getAllowedZ());
+            } else if (!state.hasAllowedPosition()) {
                 res.knockbackPlayerToBorder(town);
-            } else if(lastTickPos.getX() != player.posX || lastTickPos.getY() != player.posY || lastTickPos.getZ() != player.posZ || lastTickPos.getDim() != player.dimension) {
-                PlayerUtils.teleport(player, lastTickPos.getDim(), lastTickPos.getX(), lastTickPos.getY(), lastTickPos.getZ());
             }
-        } else {
-            // TODO: Refactor so that it's understandable
-            if(lastTickPos != null && (((int) Math.floor(lastTickPos.getX())) >> 4 != (int)(Math.floor(player.posX)) >> 4 || ((int) Math.floor(lastTickPos.getZ())) >> 4 != (int)(Math.floor(player.posZ)) >> 4)) {
-                if (lastTickPos.getDim() == player.dimension) {
-                    res.checkLocation(((int) Math.floor(lastTickPos.getX())) >> 4, ((int) Math.floor(lastTickPos.getZ())) >> 4,
-                            ((int) Math.floor(player.posX)) >> 4, ((int) (Math.floor(player.posZ))) >> 4, player.dimension);
-                } else {
-                    res.checkLocationOnDimensionChanged((int) (Math.floor(player.posX)), (int) (Math.floor(player.posZ)), player.dimension);
-                }
+            return;
+        }
+
+        Plot currentPlot = town == null ? null : town.plotsContainer.get(player.dimension, x, y, z);
+        if (state.isInAnotherChunk(x >> 4, z >> 4)) {
+            if (state.getAllowedDim() == player.dimension) {
+                res.checkLocation(state.getAllowedChunkX(), state.getAllowedChunkZ(), x >> 4, z >> 4, player.dimension);
+            } else {
+                res.checkLocationOnDimensionChanged(x, z, player.dimension);
+            }
+        }
+        if (town != null && state.hasChangedPlot(town, currentPlot)) {
+            if (currentPlot != null) {
+                ChatManager.send(player, "mytown.notification.plot.enter", currentPlot);
+            } else {
+                ChatManager.send(player, "mytown.notification.plot.enter", LocalManager.get("mytown.notification.plot.enter.unassigned"));
             }
+        }
+        state.allow(player.dimension, player.posX, player.posY, player.posZ, currentPlot);
+    }
 
-            if(lastTickPos != null && town != null) {
-                Plot currentPlot = town.plotsContainer.get(player.dimension, (int) Math.floor(player.posX), (int) Math.floor(player.posY), (int) Math.floor(player.posZ));
-                Plot lastTickPlot = town.plotsContainer.get(lastTickPos.getDim(), (int) Math.floor(lastTickPos.getX()), (int) Math.floor(lastTickPos.getY()), (int) Math.floor(lastTickPos.getZ()));
+    /**
+     * Forgets where the player was, when it logs out.
+     */
+    public static void forget(EntityPlayer player) {
+        players.remove(player.getPersistentID());
+    }
 
-                if(currentPlot != null && (lastTickPlot == null || currentPlot != lastTickPlot)) {
-                    ChatManager.send(player, "mytown.notification.plot.enter", currentPlot);
-                } else if(currentPlot == null && lastTickPlot != null) {
-                    ChatManager.send(player, "mytown.notification.plot.enter", LocalManager.get("mytown.notification.plot.enter.unassigned"));
-                }
-            }
-            lastTickPlayerPos.put(player, new EntityPos(player.posX, player.posY, player.posZ, player.dimension));
+    /**
+     * Whether checkExist can ever remove the entity while it's in the world, only those are swept.
+     * Players are checked on their own when they move.
+     */
+    public static boolean isTracked(Entity entity) {
+        if (entity instanceof EntityPlayerMP && !(entity instanceof FakePlayer)) {
+            return false;
         }
+        if (entity instanceof EntityLiving) {
+            return !Config.instance.mobTravelInTowns.get();
+        }
+        return !segmentsTrackedEntity.get(entity.getClass()).isEmpty();
+    }
+
+    /**
+     * Whether a segment protects the TileEntity, only those are swept.
+     */
+    public static boolean isProtected(TileEntity te) {
+        return !segmentsTile.get(te.getClass()).isEmpty();
     }
 
     public static boolean checkExist(Entity entity, boolean spawn) {
@@ -357,23 +388,11 @@ public class ProtectionManager {
     }
 
 
-    public static void saveBlockOwnersToDB() {
-        for(Map.Entry<TileEntity, Resident> set : ProtectionHandlers.instance.ownedTileEntities.entrySet()) {
-            MyTown.instance.datasource.saveBlockOwner(set.getValue(), set.getKey().getWorldObj().provider.dimensionId, set.getKey().xCoord, set.getKey().yCoord, set.getKey().zCoord);
-        }
-    }
-
     /**
-     * Method called by the ThreadPlacementCheck after it found a TileEntity
+     * Records the owner of a TileEntity, called once a placed ownable block has its TileEntity in the world
      */
-    public static synchronized void addTileEntity(TileEntity te, Resident res) {
-        ProtectionHandlers.instance.ownedTileEntities.put(te, res);
-        if(ProtectionHandlers.instance.activePlacementThreads != 0)
-            ProtectionHandlers.instance.activePlacementThreads--;
-    }
-
-    public static synchronized void placementThreadTimeout() {
-        ProtectionHandlers.instance.activePlacementThreads--;
+    public static void addTileEntity(TileEntity te, Resident res) {
+        ProtectionHandlers.instance.blockOwners.put(te.getWorldObj().provider.dimensionId, te.xCoord, te.yCoord, te.zCoord, res);
     }
 
     private MyTownUniverse getUniverse() {
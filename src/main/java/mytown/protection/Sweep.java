@@ -0,0 +1,120 @@
+package mytown.protection;
+
+import java.util.List;
+
+/**
+ * Goes through a list of the world a few items every tick instead of all of them at once.
+ * A pass is spread over the interval it's supposed to take, and each tick stops early once its time budget is used up,
+ * in which case the pass takes longer than the interval. At least one item is checked every tick so a pass always ends.
+ * The list may change between ticks, some items are then checked twice or only in the next pass.
+ * A check may remove its own item from the list.
+ */
+public abstract class Sweep {
+
+    private int cursor = 0;
+    private boolean running = false;
+
+    private int startTick;
+    private long startTime;
+    private long busyTime;
+
+    private int passes = 0;
+    private int lastTicks = 0;
+    private int maxTicks = 0;
+    private long lastMillis = 0;
+    private long lastBusyMicros = 0;
+    private int lastSize = 0;
+
+    /**
+     * Checks a single item of the list, it's never null.
+     */
+    protected abstract void check(Object item);
+
+    /**
+     * Checks the next items of the list. A new pass starts at most once every interval ticks.
+     * Returns the number of items checked.
+     */
+    public int tick(List<?> list, int tick, int interval, long budgetMicros) {
+        long now = System.nanoTime();
+        if (!running) {
+            if (passes > 0 && tick - startTick < interval) {
+                return 0;
+            }
+            running = true;
+            cursor = 0;
+            startTick = tick;
+            startTime = now;
+            busyTime = 0;
+        }
+
+        int ticksLeft = Math.max(1, startTick + interval - tick);
+        int quota = Math.max(1, (list.size() - cursor + ticksLeft - 1) / ticksLeft);
+        long budget = budgetMicros * 1000;
+        int checked = 0;
+        while (cursor < list.size() && checked < quota) {
+            int size = list.size();
+            Object item = list.get(cursor++);
+            checked++;
+            if (item != null) {
+                check(item);
+            }
+            if (list.size() < size) {
+                // The item removed itself, another one might have been moved into its place
+                cursor--;
+            }
+            if (System.nanoTime() - now >= budget) {
+                break;
+            }
+        }
+        long end = System.nanoTime();
+        busyTime += end - now;
+
+        if (cursor >= list.size()) {
+            running = false;
+            passes++;
+            lastSize = list.size();
+            lastTicks = tick - startTick + 1;
+            maxTicks = Math.max(maxTicks, lastTicks);
+            lastMillis = (end - startTime) / 1000000;
+            lastBusyMicros = busyTime / 1000;
+        }
+        return checked;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * The number of passes that went through the whole list.
+     */
+    public int getPasses() {
+        return passes;
+    }
+
+    /**
+     * The ticks the last pass took, how long at most a newly loaded item waited to be checked.
+     */
+    public int getLastTicks() {
+        return lastTicks;
+    }
+
+    public int getMaxTicks() {
+        return maxTicks;
+    }
+
+    public long getLastMillis() {
+        return lastMillis;
+    }
+
+    /**
+     * The time spent checking during the last pass, summed over its ticks.
+     */
+    public long getLastBusyMicros() {
+        return lastBusyMicros;
+    }
+
+    public int getLastSize() {
+        return lastSize;
+    }
+}
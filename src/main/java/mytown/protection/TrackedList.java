@@ -0,0 +1,65 @@
+package mytown.protection;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A list of objects of a world that need to be checked, adding and removing one doesn't depend on its size.
+ * An object is only in it once. Removing one moves the last object into its place, so the order isn't kept.
+ */
+public class TrackedList<T> extends AbstractList<T> {
+
+    private final List<T> items = new ArrayList<T>();
+    private final Map<T, Integer> indexes = new IdentityHashMap<T, Integer>();
+
+    /**
+     * Adds the object, returns false if it's already in the list.
+     */
+    @Override
+    public boolean add(T item) {
+        if (indexes.containsKey(item)) {
+            return false;
+        }
+        indexes.put(item, items.size());
+        items.add(item);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object item) {
+        Integer index = indexes.remove(item);
+        if (index == null) {
+            return false;
+        }
+        T last = items.remove(items.size() - 1);
+        if (last != item) {
+            items.set(index, last);
+            indexes.put(last, index);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object item) {
+        return indexes.containsKey(item);
+    }
+
+    @Override
+    public T get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public void clear() {
+        items.clear();
+        indexes.clear();
+    }
+}
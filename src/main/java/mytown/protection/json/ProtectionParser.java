@@ -48,7 +48,9 @@ public class ProtectionParser {
         extensions[0] = "json";
 
         ProtectionManager.segmentsBlock.clear();
+        ProtectionManager.segmentsSpecialBlock.clear();
         ProtectionManager.segmentsEntity.clear();
+        ProtectionManager.segmentsTrackedEntity.clear();
         ProtectionManager.segmentsItem.clear();
         ProtectionManager.segmentsTile.clear();
 
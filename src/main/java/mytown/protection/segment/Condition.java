@@ -1,92 +1,241 @@
 package mytown.protection.segment;
 
-import com.google.common.base.Joiner;
-import myessentials.utils.StringUtils;
 import mytown.protection.segment.getter.Getter;
 import mytown.util.exceptions.ConditionException;
 import mytown.util.exceptions.GetterException;
 
+/**
+ * A condition of a segment, compiled once when the protection is loaded.
+ * It is a chain of comparisons between a getter and a literal, joined with AND/OR.
+ * The chain is evaluated from left to right and stops as soon as the result is known
+ * (a false comparison followed by AND or a true one followed by OR).
+ */
 public class Condition {
 
-    private String[] conditionString;
+    private final String conditionString;
+    private final Comparison[] comparisons;
+    /**
+     * Whether the connector after each comparison is an OR, the last comparison has none.
+     */
+    private final boolean[] isOr;
 
-    public Condition(String conditionString) {
-        this.conditionString = conditionString.split(" ");
+    public Condition(String conditionString, Getter.Container getters) throws ConditionException {
+        this.conditionString = conditionString;
+        String[] tokens = conditionString.split(" ");
+        if (tokens.length % 4 != 3) {
+            throw new ConditionException("The condition \"" + conditionString + "\" has an invalid number of elements!");
+        }
+
+        comparisons = new Comparison[(tokens.length + 1) / 4];
+        isOr = new boolean[comparisons.length - 1];
+        for (int i = 0; i < tokens.length; i += 4) {
+            comparisons[i / 4] = compile(tokens[i], tokens[i + 1], tokens[i + 2], i / 4 + 1, getters);
+
+            if (i + 3 < tokens.length) {
+                if ("OR".equals(tokens[i + 3])) {
+                    isOr[i / 4] = true;
+                } else if (!"AND".equals(tokens[i + 3])) {
+                    throw new ConditionException("Invalid condition element: " + tokens[i + 3]);
+                }
+            }
+        }
     }
 
-    public boolean execute(Object object, Getter.Container getters) throws ConditionException, GetterException {
-        if(conditionString == null) {
+    public boolean execute(Object object) throws ConditionException, GetterException {
+        int last = comparisons.length - 1;
+        for (int i = 0; i < last; i++) {
+            boolean current = comparisons[i].evaluate(object);
+            if (current == isOr[i]) {
+                return current;
+            }
+        }
+        return comparisons[last].evaluate(object);
+    }
+
+    private static Comparison compile(String getterName, String operatorString, String literal, int element, Getter.Container getters) throws ConditionException {
+        Getter getter = getters.get(getterName);
+        if (getter == null) {
+            throw new ConditionException("The element number " + element + " uses the getter " + getterName + " which does not exist!");
+        }
+
+        Operator operator = Operator.fromString(operatorString);
+        if (operator == null) {
+            throw new ConditionException("The element number " + element + " has an invalid condition!");
+        }
+
+        Comparison comparison;
+        if ("true".equalsIgnoreCase(literal) || "false".equalsIgnoreCase(literal)) {
+            comparison = new BooleanComparison(getter, operator, Boolean.parseBoolean(literal));
+        } else if (isInt(literal)) {
+            comparison = new IntComparison(getter, operator, Integer.parseInt(literal));
+        } else if (isFloat(literal)) {
+            comparison = new FloatComparison(getter, operator, Float.parseFloat(literal));
+        } else if (literal.length() >= 2 && literal.startsWith("'") && literal.endsWith("'")) {
+            comparison = new StringComparison(getter, operator, literal.substring(1, literal.length() - 1));
+        } else {
+            throw new ConditionException("The element with number " + element + " has an invalid type to be checked against!");
+        }
+
+        if (!comparison.supports(operator)) {
+            throw new ConditionException("The element number " + element + " has an invalid condition!");
+        }
+        return comparison;
+    }
+
+    private static boolean isInt(String literal) {
+        try {
+            Integer.parseInt(literal);
             return true;
+        } catch (NumberFormatException ex) {
+            return false;
         }
+    }
 
-        //MyTown.instance.log.info("Checking condition: " + StringUtils.join(conditionString, " "));
-        boolean current;
+    private static boolean isFloat(String literal) {
+        try {
+            Float.parseFloat(literal);
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
 
-        Object instance;
-        instance = object;
+    @Override
+    public String toString() {
+        return conditionString;
+    }
 
-        for(int i = 0; i < conditionString.length; i += 4) {
+    private enum Operator {
+        EQUAL("=="),
+        NOT_EQUAL("!="),
+        LESS("<"),
+        GREATER(">");
 
-            // Get the boolean value of each part of the condition.
-            if(StringUtils.tryParseBoolean(conditionString[i + 2])) {
-                boolean value = (Boolean) getters.get(conditionString[i]).invoke(Boolean.class, instance, object);
-                if ("==".equals(conditionString[i + 1])) {
-                    current = value == Boolean.parseBoolean(conditionString[i + 2]);
-                } else if("!=".equals(conditionString[i + 1])) {
-                    current = value != Boolean.parseBoolean(conditionString[i + 2]);
-                } else {
-                    throw new ConditionException("The element number " + (i / 4) + 1 + " has an invalid condition!");
-                }
-            } else if(StringUtils.tryParseInt(conditionString[i + 2])) {
-                int value = (Integer) getters.get(conditionString[i]).invoke(Integer.class, instance, object);
-                if("==".equals(conditionString[i + 1])) {
-                    current = value == Integer.parseInt(conditionString[i + 2]);
-                } else if("!=".equals(conditionString[i + 1])) {
-                    current = value != Integer.parseInt(conditionString[i + 2]);
-                } else if("<".equals(conditionString[i + 1])) {
-                    current = value < Integer.parseInt(conditionString[i + 2]);
-                } else if(">".equals(conditionString[i + 1])) {
-                    current = value > Integer.parseInt(conditionString[i + 2]);
-                } else {
-                    throw new ConditionException("The element number " + (i / 4) + 1 + " has an invalid condition!");
-                }
-            } else if(StringUtils.tryParseFloat(conditionString[i + 2])) {
-                float value = (Integer) getters.get(conditionString[i]).invoke(Integer.class, instance, object);
-                if("==".equals(conditionString[i + 1])) {
-                    current = value == Float.parseFloat(conditionString[i + 2]);
-                } else if("!=".equals(conditionString[i + 1])) {
-                    current = value != Float.parseFloat(conditionString[i + 2]);
-                } else if("<".equals(conditionString[i + 1])) {
-                    current = value < Float.parseFloat(conditionString[i + 2]);
-                } else if(">".equals(conditionString[i + 1])) {
-                    current = value > Float.parseFloat(conditionString[i + 2]);
-                } else {
-                    throw new ConditionException("The element number " + ((i/4)+1) + " has an invalid condition!");
-                }
-            } else if(conditionString[i + 2].startsWith("'") && conditionString[i+2].endsWith("'")){
-                String value = (String) getters.get(conditionString[i]).invoke(String.class, instance, object);
-                if("==".equals(conditionString[i + 1])) {
-                    current = value.equals(conditionString[i+2].substring(1, conditionString[i+2].length() - 1));
-                } else if("!=".equals(conditionString[i + 1])) {
-                    current = !value.equals(conditionString[i+2].substring(1, conditionString[i+2].length() - 1));
-                } else {
-                    throw new ConditionException("The element number " + ((i/4)+1) + " has an invalid condition!");
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public static Operator fromString(String symbol) {
+            for (Operator operator : values()) {
+                if (operator.symbol.equals(symbol)) {
+                    return operator;
                 }
-            } else {
-                throw new ConditionException("The element with number " + ((i/4)+1) + " has an invalid type to be checked against!");
             }
+            return null;
+        }
+    }
 
-            if(conditionString.length <= i + 3 || current && "OR".equals(conditionString[i + 3]) || !current && "AND".equals(conditionString[i + 3]))
-                return current;
+    private abstract static class Comparison {
+        protected final Getter getter;
+        protected final Operator operator;
+
+        protected Comparison(Getter getter, Operator operator) {
+            this.getter = getter;
+            this.operator = operator;
+        }
 
-            if(!"OR".equals(conditionString[i + 3]) && !"AND".equals(conditionString[i + 3]))
-                throw new ConditionException("Invalid condition element: " + conditionString[i + 3]);
+        protected boolean supports(Operator operator) {
+            return operator == Operator.EQUAL || operator == Operator.NOT_EQUAL;
         }
-        return false;
+
+        protected Object getValue(Class<?> type, Object object) throws ConditionException, GetterException {
+            Object value = getter.getObject(object);
+            if (!type.isInstance(value)) {
+                throw new ConditionException("The getter " + getter.getName() + " did not return a value of type " + type.getSimpleName() + "!");
+            }
+            return value;
+        }
+
+        public abstract boolean evaluate(Object object) throws ConditionException, GetterException;
     }
 
-    @Override
-    public String toString() {
-        return Joiner.on(' ').join(conditionString);
+    private static class BooleanComparison extends Comparison {
+        private final boolean literal;
+
+        public BooleanComparison(Getter getter, Operator operator, boolean literal) {
+            super(getter, operator);
+            this.literal = literal;
+        }
+
+        @Override
+        public boolean evaluate(Object object) throws ConditionException, GetterException {
+            boolean value = getter.getBoolean(object);
+            return operator == Operator.EQUAL ? value == literal : value != literal;
+        }
+    }
+
+    private static class IntComparison extends Comparison {
+        private final int literal;
+
+        public IntComparison(Getter getter, Operator operator, int literal) {
+            super(getter, operator);
+            this.literal = literal;
+        }
+
+        @Override
+        protected boolean supports(Operator operator) {
+            return true;
+        }
+
+        @Override
+        public boolean evaluate(Object object) throws ConditionException, GetterException {
+            int value = getter.getInt(object);
+            switch (operator) {
+                case EQUAL:
+                    return value == literal;
+                case NOT_EQUAL:
+                    return value != literal;
+                case LESS:
+                    return value < literal;
+                default:
+                    return value > literal;
+            }
+        }
+    }
+
+    private static class FloatComparison extends Comparison {
+        private final float literal;
+
+        public FloatComparison(Getter getter, Operator operator, float literal) {
+            super(getter, operator);
+            this.literal = literal;
+        }
+
+        @Override
+        protected boolean supports(Operator operator) {
+            return true;
+        }
+
+        @Override
+        public boolean evaluate(Object object) throws ConditionException, GetterException {
+            float value = ((Number) getValue(Number.class, object)).floatValue();
+            switch (operator) {
+                case EQUAL:
+                    return value == literal;
+                case NOT_EQUAL:
+                    return value != literal;
+                case LESS:
+                    return value < literal;
+                default:
+                    return value > literal;
+            }
+        }
+    }
+
+    private static class StringComparison extends Comparison {
+        private final String literal;
+
+        public StringComparison(Getter getter, Operator operator, String literal) {
+            super(getter, operator);
+            this.literal = literal;
+        }
+
+        @Override
+        public boolean evaluate(Object object) throws ConditionException, GetterException {
+            String value = (String) getValue(String.class, object);
+            return operator == Operator.EQUAL ? value.equals(literal) : !value.equals(literal);
+        }
     }
 }
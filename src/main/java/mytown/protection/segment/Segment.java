@@ -1,5 +1,6 @@
 package mytown.protection.segment;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.reflect.TypeToken;
 import com.google.gson.*;
 import com.google.gson.internal.LazilyParsedNumber;
@@ -33,6 +34,11 @@ import java.util.*;
  * A part of the protection that protects against a specific thing.
  */
 public abstract class Segment {
+    /**
+     * Incremented whenever a segment gets disabled so that the containers drop their cached lookups.
+     */
+    private static int disabledCount = 0;
+
     protected boolean isDisabled = false;
     protected Priority priority = Priority.NORMAL;
     protected Class<?> checkClass;
@@ -62,7 +68,7 @@ public abstract class Segment {
         }
         try {
             Object ownerObj = null;
-            ownerObj = getters.get("owner").invoke(Object.class, object, object);
+            ownerObj = getters.get("owner").getObject(object);
             if (ownerObj instanceof EntityPlayer) {
                 return MyTownUniverse.instance.getOrMakeResident((EntityPlayer)ownerObj);
             } else if (ownerObj instanceof String) {
@@ -112,7 +118,7 @@ public abstract class Segment {
 
     protected boolean shouldCheck(Object object) {
         try {
-            if (condition != null && !condition.execute(object, getters)) {
+            if (condition != null && !condition.execute(object)) {
                 return false;
             }
         } catch (GetterException ex) {
@@ -133,7 +139,7 @@ public abstract class Segment {
         }
         try {
             Object rangeObj = null;
-            rangeObj = getters.get("range").invoke(Object.class, object, object);
+            rangeObj = getters.get("range").getObject(object);
             if (rangeObj instanceof LazilyParsedNumber) {
                 return ((LazilyParsedNumber)rangeObj).intValue();
             } else if (rangeObj instanceof Double) {
@@ -150,6 +156,7 @@ public abstract class Segment {
         MyTown.instance.LOG.error("Disabling segment for {}", checkClass.getName());
         MyTown.instance.LOG.info("Reload protections to enable it again.");
         this.isDisabled = true;
+        disabledCount++;
     }
 
     public static class Serializer extends SerializerTemplate<Segment> {
@@ -304,8 +311,9 @@ public abstract class Segment {
                 segment.flags.addAll(deserializeAsArray(jsonObject.get("flags"), context, new TypeToken<FlagType<Boolean>>() {}, new TypeToken<List<FlagType<Boolean>>>() {}.getType()));
                 jsonObject.remove("flags");
 
+                String conditionString = null;
                 if(jsonObject.has("condition")) {
-                    segment.condition = new Condition(jsonObject.get("condition").getAsString());
+                    conditionString = jsonObject.get("condition").getAsString();
                     jsonObject.remove("condition");
                 }
 
@@ -331,6 +339,15 @@ public abstract class Segment {
                         }
                     }
                 }
+
+                if(conditionString != null) {
+                    try {
+                        segment.condition = new Condition(conditionString, segment.getters);
+                    } catch (ConditionException ex) {
+                        MyTown.instance.LOG.error("Invalid condition for segment {" + classString + "}: " + ex.getMessage() + " >>> Segment Rejected <<<");
+                        return null;
+                    }
+                }
             }
 
             return segment;
@@ -457,13 +474,33 @@ public abstract class Segment {
         }
     }
 
+    /**
+     * List of segments that caches, for every class it was queried with,
+     * the enabled segments of the highest priority that apply to it.
+     * The cache is dropped when the container changes or any segment gets disabled.
+     */
     public static class Container<T extends Segment> extends ArrayList<T> {
 
+        private final Map<Class<?>, List<T>> cache = new HashMap<Class<?>, List<T>>();
+        private int cacheDisabledCount = disabledCount;
+
         public List<T> get(Class<?> clazz) {
+            if (cacheDisabledCount != disabledCount) {
+                invalidate();
+            }
+            List<T> usableSegments = cache.get(clazz);
+            if (usableSegments == null) {
+                usableSegments = resolve(clazz);
+                cache.put(clazz, usableSegments);
+            }
+            return usableSegments;
+        }
+
+        private List<T> resolve(Class<?> clazz) {
             List<T> usableSegments = new ArrayList<T>();
-            for(Segment segment : this) {
+            for(T segment : this) {
                 if(!segment.isDisabled() && segment.shouldCheckType(clazz)) {
-                    usableSegments.add((T)segment);
+                    usableSegments.add(segment);
                 }
             }
             if(usableSegments.size() > 1) {
@@ -481,7 +518,78 @@ public abstract class Segment {
                     }
                 }
             }
-            return usableSegments;
+            return ImmutableList.copyOf(usableSegments);
+        }
+
+        public void invalidate() {
+            cache.clear();
+            cacheDisabledCount = disabledCount;
+        }
+
+        @Override
+        public boolean add(T segment) {
+            invalidate();
+            return super.add(segment);
+        }
+
+        @Override
+        public void add(int index, T segment) {
+            invalidate();
+            super.add(index, segment);
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends T> segments) {
+            invalidate();
+            return super.addAll(segments);
+        }
+
+        @Override
+        public boolean addAll(int index, Collection<? extends T> segments) {
+            invalidate();
+            return super.addAll(index, segments);
+        }
+
+        @Override
+        public T set(int index, T segment) {
+            invalidate();
+            return super.set(index, segment);
+        }
+
+        @Override
+        public T remove(int index) {
+            invalidate();
+            return super.remove(index);
+        }
+
+        @Override
+        public boolean remove(Object segment) {
+            invalidate();
+            return super.remove(segment);
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> segments) {
+            invalidate();
+            return super.removeAll(segments);
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> segments) {
+            invalidate();
+            return super.retainAll(segments);
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            invalidate();
+            super.removeRange(fromIndex, toIndex);
+        }
+
+        @Override
+        public void clear() {
+            invalidate();
+            super.clear();
         }
     }
 }
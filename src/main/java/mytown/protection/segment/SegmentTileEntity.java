@@ -40,7 +40,7 @@ public class SegmentTileEntity extends Segment {
         try {
             Getter xMinGetter = getters.get("xMin");
             if (xMinGetter != null) {
-                return (Integer) (xMinGetter.invoke(Integer.class, te));
+                return xMinGetter.getInt(te);
             }
         } catch (GetterException ex) {}
         return te.xCoord - Config.instance.defaultProtectionSize.get();
@@ -50,7 +50,7 @@ public class SegmentTileEntity extends Segment {
         try {
             Getter yMinGetter = getters.get("yMin");
             if (yMinGetter != null) {
-                return (Integer) (yMinGetter.invoke(Integer.class, te));
+                return yMinGetter.getInt(te);
             }
         } catch (GetterException ex) {}
         return te.yCoord - Config.instance.defaultProtectionSize.get();
@@ -60,7 +60,7 @@ public class SegmentTileEntity extends Segment {
         try {
             Getter zMinGetter = getters.get("zMin");
             if (zMinGetter != null) {
-                return (Integer) (zMinGetter.invoke(Integer.class, te));
+                return zMinGetter.getInt(te);
             }
         } catch (GetterException ex) {}
         return te.zCoord - Config.instance.defaultProtectionSize.get();
@@ -70,7 +70,7 @@ public class SegmentTileEntity extends Segment {
         try {
             Getter xMaxGetter = getters.get("xMax");
             if (xMaxGetter != null) {
-                return (Integer) (xMaxGetter.invoke(Integer.class, te));
+                return xMaxGetter.getInt(te);
             }
         } catch (GetterException ex) {}
         return te.xCoord + Config.instance.defaultProtectionSize.get();
@@ -80,7 +80,7 @@ public class SegmentTileEntity extends Segment {
         try {
             Getter yMaxGetter = getters.get("yMax");
             if (yMaxGetter != null) {
-                return (Integer) (yMaxGetter.invoke(Integer.class, te));
+                return yMaxGetter.getInt(te);
             }
         } catch (GetterException ex) {}
         return te.yCoord + Config.instance.defaultProtectionSize.get();
@@ -90,7 +90,7 @@ public class SegmentTileEntity extends Segment {
         try {
             Getter zMaxGetter = getters.get("zMax");
             if (zMaxGetter != null) {
-                return (Integer) (zMaxGetter.invoke(Integer.class, te));
+                return zMaxGetter.getInt(te);
             }
         } catch (GetterException ex) {}
         return te.xCoord + Config.instance.defaultProtectionSize.get();
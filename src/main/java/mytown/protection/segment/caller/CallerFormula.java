@@ -1,47 +1,363 @@
 package mytown.protection.segment.caller;
 
-import bsh.EvalError;
-import bsh.Interpreter;
-import com.google.common.base.Joiner;
 import mytown.MyTown;
 import mytown.protection.segment.getter.Getter;
-import org.apache.commons.lang3.exception.ExceptionUtils;
+import mytown.util.exceptions.ProtectionParseException;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A caller that computes an arithmetic formula in which getters can be referenced by name.
+ * The formula is compiled once, when the getters are set, into an expression tree.
+ * It follows the Java rules that BeanShell used before: operations on two integers are integer operations,
+ * ^ is the bitwise exclusive or and is only valid on integers, and it binds weaker than + and -.
+ */
 public class CallerFormula extends Caller {
 
     protected Getter.Container getters;
 
+    // Evaluation state, segments are only checked on the server thread
+    private boolean isCompiled = false;
+    private Node formula;
+    private Getter[] references;
+    private double[] values;
+    private boolean[] isIntegral;
+
     public void setGetters(Getter.Container getters) {
         this.getters = getters;
+        compile();
     }
 
+    private void compile() {
+        isCompiled = true;
+        List<Getter> referenced = new ArrayList<Getter>();
+        try {
+            formula = new Parser(name, getters, referenced).parse();
+        } catch (ProtectionParseException ex) {
+            MyTown.instance.LOG.error("Invalid formula \"{}\": {}", name, ex.getMessage());
+            formula = null;
+        }
+        references = referenced.toArray(new Getter[referenced.size()]);
+        values = new double[references.length];
+        isIntegral = new boolean[references.length];
+    }
+
+    /**
+     * Returns the result as an Integer if only integers were involved or as a Double otherwise.
+     * Returns null if the formula is invalid or can not be computed with the values returned by the getters.
+     */
     @Override
     public Object invoke(Object instance, Object... parameters) throws Exception {
-        Object result = null;
-
-        String[] elements = name.split(" ");
+        if (!isCompiled) {
+            compile();
+        }
+        if (formula == null) {
+            return null;
+        }
 
-        // Replace all the getters with proper numbers, assume getters that are invalid as being numbers
-        for(int i = 0 ; i < elements.length; i++) {
-            if(!"+".equals(elements[i]) && !"-".equals(elements[i]) && !"*".equals(elements[i]) && !"/".equals(elements[i]) && !"^".equals(elements[i]) && getters != null && getters.contains(elements[i])) {
+        for (int i = 0; i < references.length; i++) {
+            Object info = references[i].invoke(Object.class, instance, parameters);
+            if (!setValue(i, info)) {
+                MyTown.instance.LOG.error("Getter {} returned {} which can not be used in formula \"{}\"", references[i].getName(), info, name);
+                return null;
+            }
+        }
 
-                Object info = getters.get(elements[i]).invoke(Object.class, instance, parameters);
-                // Replace all occurrences with the value that it got.
-                // Spaces are needed to not replace parts of other getters.
-                elements[i] = info.toString();
+        try {
+            double result = formula.evaluate(this);
+            if (formula.isIntegral(this)) {
+                return (int) result;
             }
+            return result;
+        } catch (ArithmeticException ex) {
+            MyTown.instance.LOG.error("Failed to compute formula \"{}\": {}", name, ex.getMessage());
+            return null;
         }
+    }
 
-        String formula = Joiner.on(' ').join(elements);
+    private boolean setValue(int index, Object info) {
+        if (info instanceof Integer || info instanceof Short || info instanceof Byte) {
+            values[index] = ((Number) info).intValue();
+            isIntegral[index] = true;
+            return true;
+        }
+        if (info instanceof Double || info instanceof Float) {
+            values[index] = ((Number) info).doubleValue();
+            isIntegral[index] = false;
+            return !Double.isNaN(values[index]) && !Double.isInfinite(values[index]);
+        }
+        if (info == null) {
+            return false;
+        }
+
+        // Anything else was put in the formula as text, read it the same way as a literal
+        String text = info.toString();
+        if (isIntLiteral(text)) {
+            values[index] = Integer.parseInt(text);
+            isIntegral[index] = true;
+            return true;
+        }
+        if (isDoubleLiteral(text)) {
+            values[index] = Double.parseDouble(text);
+            isIntegral[index] = false;
+            return true;
+        }
+        return false;
+    }
 
-        Interpreter interpreter = new Interpreter();
+    private static boolean isIntLiteral(String text) {
+        if (!text.matches("-?\\d+")) {
+            return false;
+        }
         try {
-            interpreter.eval("result = " + formula);
-            result = interpreter.get("result");
-        } catch (EvalError ex) {
-            MyTown.instance.LOG.error(ExceptionUtils.getStackTrace(ex));
+            Integer.parseInt(text);
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    private static boolean isDoubleLiteral(String text) {
+        return text.matches("-?(\\d+\\.\\d*|\\.\\d+)([eE][+-]?\\d+)?|-?\\d+[eE][+-]?\\d+");
+    }
+
+    private abstract static class Node {
+        public abstract double evaluate(CallerFormula context);
+
+        public abstract boolean isIntegral(CallerFormula context);
+    }
+
+    private static class Literal extends Node {
+        private final double value;
+        private final boolean isIntegral;
+
+        public Literal(double value, boolean isIntegral) {
+            this.value = value;
+            this.isIntegral = isIntegral;
+        }
+
+        @Override
+        public double evaluate(CallerFormula context) {
+            return value;
+        }
+
+        @Override
+        public boolean isIntegral(CallerFormula context) {
+            return isIntegral;
+        }
+    }
+
+    private static class Reference extends Node {
+        private final int index;
+
+        public Reference(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public double evaluate(CallerFormula context) {
+            return context.values[index];
+        }
+
+        @Override
+        public boolean isIntegral(CallerFormula context) {
+            return context.isIntegral[index];
+        }
+    }
+
+    private static class Negation extends Node {
+        private final Node operand;
+
+        public Negation(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public double evaluate(CallerFormula context) {
+            double value = operand.evaluate(context);
+            return operand.isIntegral(context) ? -(int) value : -value;
+        }
+
+        @Override
+        public boolean isIntegral(CallerFormula context) {
+            return operand.isIntegral(context);
         }
+    }
+
+    private static class Operation extends Node {
+        private final char operator;
+        private final Node left;
+        private final Node right;
+
+        public Operation(char operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public double evaluate(CallerFormula context) {
+            double a = left.evaluate(context);
+            double b = right.evaluate(context);
+            if (isIntegral(context)) {
+                int x = (int) a;
+                int y = (int) b;
+                switch (operator) {
+                    case '+':
+                        return x + y;
+                    case '-':
+                        return x - y;
+                    case '*':
+                        return x * y;
+                    case '/':
+                        return x / y;
+                    default:
+                        return x ^ y;
+                }
+            }
+            switch (operator) {
+                case '+':
+                    return a + b;
+                case '-':
+                    return a - b;
+                case '*':
+                    return a * b;
+                case '/':
+                    return a / b;
+                default:
+                    throw new ArithmeticException("Operator ^ can only be used on integers");
+            }
+        }
+
+        @Override
+        public boolean isIntegral(CallerFormula context) {
+            return left.isIntegral(context) && right.isIntegral(context);
+        }
+    }
+
+    /**
+     * Recursive descent parser with the Java precedence: unary, then * /, then + -, then ^.
+     */
+    private static class Parser {
+        private final String formula;
+        private final Getter.Container getters;
+        private final List<Getter> referenced;
+        private int position = 0;
 
-        return result;
+        public Parser(String formula, Getter.Container getters, List<Getter> referenced) {
+            this.formula = formula;
+            this.getters = getters;
+            this.referenced = referenced;
+        }
+
+        public Node parse() {
+            Node node = parseXor();
+            skipSpaces();
+            if (position < formula.length()) {
+                throw new ProtectionParseException("Unexpected character '" + formula.charAt(position) + "' at position " + position);
+            }
+            return node;
+        }
+
+        private Node parseXor() {
+            Node node = parseSum();
+            while (accept('^')) {
+                node = new Operation('^', node, parseSum());
+            }
+            return node;
+        }
+
+        private Node parseSum() {
+            Node node = parseProduct();
+            while (true) {
+                if (accept('+')) {
+                    node = new Operation('+', node, parseProduct());
+                } else if (accept('-')) {
+                    node = new Operation('-', node, parseProduct());
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node parseProduct() {
+            Node node = parseUnary();
+            while (true) {
+                if (accept('*')) {
+                    node = new Operation('*', node, parseUnary());
+                } else if (accept('/')) {
+                    node = new Operation('/', node, parseUnary());
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node parseUnary() {
+            if (accept('-')) {
+                return new Negation(parseUnary());
+            }
+            if (accept('+')) {
+                return parseUnary();
+            }
+            if (accept('(')) {
+                Node node = parseXor();
+                if (!accept(')')) {
+                    throw new ProtectionParseException("Missing closing parenthesis at position " + position);
+                }
+                return node;
+            }
+            return parseOperand();
+        }
+
+        private Node parseOperand() {
+            skipSpaces();
+            int start = position;
+            while (position < formula.length() && isOperandChar(formula.charAt(position))) {
+                position++;
+            }
+            if (start == position) {
+                throw new ProtectionParseException("Missing operand at position " + position);
+            }
+
+            String token = formula.substring(start, position);
+            if (isIntLiteral(token)) {
+                return new Literal(Integer.parseInt(token), true);
+            }
+            if (isDoubleLiteral(token)) {
+                return new Literal(Double.parseDouble(token), false);
+            }
+
+            Getter getter = getters == null ? null : getters.get(token);
+            if (getter == null) {
+                throw new ProtectionParseException("Unknown getter " + token);
+            }
+            int index = referenced.indexOf(getter);
+            if (index == -1) {
+                index = referenced.size();
+                referenced.add(getter);
+            }
+            return new Reference(index);
+        }
+
+        private boolean isOperandChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '$';
+        }
+
+        private boolean accept(char c) {
+            skipSpaces();
+            if (position < formula.length() && formula.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipSpaces() {
+            while (position < formula.length() && Character.isWhitespace(formula.charAt(position))) {
+                position++;
+            }
+        }
     }
 }
@@ -6,31 +6,84 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.*;
 import net.minecraft.tileentity.TileEntity;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Reads a tag from the NBT of the instance.
+ * The element can also be a path separated by '/', like "Items/0/id", which is resolved in one step
+ * and returns the value of the last tag instead of the tag itself.
+ */
 public class CallerNBT extends Caller {
+
+    /**
+     * TileEntities can only be read by serializing them whole. While a sweep runs it's done once for each of them
+     * and shared by all the getters and segments checking it, the cache is emptied when the sweep ends.
+     * Outside of a sweep the NBT is always read again, so a check never sees an old value.
+     */
+    private static final Map<TileEntity, NBTTagCompound> tileEntityCache = new IdentityHashMap<TileEntity, NBTTagCompound>();
+    private static boolean caching = false;
+
+    private String[] path;
+
     @Override
     public Object invoke(Object instance, Object... parameters) throws Exception {
-        if(instance instanceof Entity) {
-            NBTTagCompound nbt = ((Entity) instance).getEntityData();
-            return nbt.getTag(name);
-        } else if(instance instanceof TileEntity) {
-            NBTTagCompound nbt = new NBTTagCompound();
-            ((TileEntity) instance).writeToNBT(nbt);
-            return nbt.getTag(name);
-        } else if(instance instanceof Item) {
-            return ((ItemStack)parameters[0]).getTagCompound().getTag(name);
+        if(path == null) {
+            path = name.split("/");
+        }
+
+        if(path.length > 1) {
+            return getInfoFromPath(getRoot(instance, parameters));
+        }
+
+        if(instance instanceof Entity || instance instanceof TileEntity || instance instanceof Item) {
+            NBTTagCompound nbt = getRoot(instance, parameters);
+            return nbt == null ? null : nbt.getTag(name);
         } else if(instance instanceof NBTTagCompound) {
             instance = ((NBTTagCompound) instance).getTag(name);
             return getInfoFromNBTBase((NBTBase)instance);
         } else if(instance instanceof NBTTagList) {
-            int id = Integer.parseInt(name);
+            return getListElement((NBTTagList) instance, name);
+        }
+        return null;
+    }
 
-            if(id < 0 || id >= ((NBTTagList) instance).tagCount()) {
-                throw new IndexOutOfBoundsException("ID is out of bounds for NBTTagList");
+    private NBTTagCompound getRoot(Object instance, Object... parameters) {
+        if(instance instanceof Entity) {
+            return ((Entity) instance).getEntityData();
+        } else if(instance instanceof TileEntity) {
+            return getTileEntityNBT((TileEntity) instance);
+        } else if(instance instanceof Item) {
+            return ((ItemStack)parameters[0]).getTagCompound();
+        } else if(instance instanceof NBTTagCompound) {
+            return (NBTTagCompound) instance;
+        }
+        return null;
+    }
+
+    private Object getInfoFromPath(NBTTagCompound root) {
+        NBTBase current = root;
+        for(String element : path) {
+            if(current instanceof NBTTagCompound) {
+                current = ((NBTTagCompound) current).getTag(element);
+            } else if(current instanceof NBTTagList) {
+                current = getListElement((NBTTagList) current, element);
+            } else {
+                return null;
             }
+        }
+        Object info = getInfoFromNBTBase(current);
+        return info == null ? current : info;
+    }
+
+    private NBTTagCompound getListElement(NBTTagList list, String element) {
+        int id = Integer.parseInt(element);
 
-            return ((NBTTagList) instance).getCompoundTagAt(id);
+        if(id < 0 || id >= list.tagCount()) {
+            throw new IndexOutOfBoundsException("ID is out of bounds for NBTTagList");
         }
-        return null;
+
+        return list.getCompoundTagAt(id);
     }
 
     private Object getInfoFromNBTBase(NBTBase instance) {
@@ -42,7 +95,39 @@ public class CallerNBT extends Caller {
             return ((NBTTagInt) instance).func_150287_d();
         } else if(instance instanceof NBTTagString) {
             return ((NBTTagString) instance).func_150285_a_();
+        } else if(instance instanceof NBTTagShort || instance instanceof NBTTagByte) {
+            // Like the id and the Slot of the items in an inventory
+            return ((NBTBase.NBTPrimitive) instance).func_150287_d();
+        } else if(instance instanceof NBTTagLong) {
+            return ((NBTTagLong) instance).func_150291_c();
         }
         return null;
     }
+
+    public static NBTTagCompound getTileEntityNBT(TileEntity te) {
+        NBTTagCompound nbt = caching ? tileEntityCache.get(te) : null;
+        if(nbt == null) {
+            nbt = new NBTTagCompound();
+            te.writeToNBT(nbt);
+            if(caching) {
+                tileEntityCache.put(te, nbt);
+            }
+        }
+        return nbt;
+    }
+
+    /**
+     * Shares the NBT of each TileEntity between the checks until endCache is called.
+     */
+    public static void startCache() {
+        caching = true;
+    }
+
+    /**
+     * Stops sharing the NBT and lets go of the TileEntities read since startCache.
+     */
+    public static void endCache() {
+        caching = false;
+        tileEntityCache.clear();
+    }
 }
@@ -29,6 +29,21 @@ public abstract class Getter {
 
     public abstract Object invoke(Class<?> returnType, Object instance, Object... parameters) throws GetterException;
 
+    /**
+     * Gets the value on the object, which is also passed as the parameter of the callers.
+     */
+    public Object getObject(Object object) throws GetterException {
+        return invoke(Object.class, object, object);
+    }
+
+    public int getInt(Object object) throws GetterException {
+        return (Integer) invoke(Integer.class, object, object);
+    }
+
+    public boolean getBoolean(Object object) throws GetterException {
+        return (Boolean) invoke(Boolean.class, object, object);
+    }
+
     public static class Serializer extends SerializerTemplate<Getter> {
 
         @Override
@@ -0,0 +1,18 @@
+package mytown.protection.segment.getter;
+
+/**
+ * Base of the accessor classes generated by the GetterCompiler.
+ * Each subclass reads a whole getter chain directly, without reflection, boxing or varargs.
+ */
+public abstract class GetterAccessor {
+
+    public abstract Object getObject(Object instance);
+
+    public int getInt(Object instance) {
+        return (Integer) getObject(instance);
+    }
+
+    public boolean getBoolean(Object instance) {
+        return (Boolean) getObject(instance);
+    }
+}
@@ -0,0 +1,217 @@
+package mytown.protection.segment.getter;
+
+import mytown.MyTown;
+import mytown.protection.segment.caller.Caller;
+import mytown.protection.segment.caller.reflect.ReflectCallerField;
+import mytown.protection.segment.caller.reflect.ReflectCallerMethod;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a chain of callers into a generated GetterAccessor class.
+ * Only chains of public instance fields and public no argument methods of public classes can be compiled,
+ * anything else (formulas, NBT, private members, methods with parameters) keeps using the callers.
+ * A generated class can't be unloaded, so each chain is only compiled once and its accessor is reused when the
+ * protections are loaded again.
+ */
+public class GetterCompiler implements Opcodes {
+
+    private static final String ACCESSOR = Type.getInternalName(GetterAccessor.class);
+    private static final String PACKAGE = "mytown/protection/segment/getter/";
+    private static final AccessorClassLoader classLoader = new AccessorClassLoader(GetterCompiler.class.getClassLoader());
+    private static final Map<String, GetterAccessor> accessors = new HashMap<String, GetterAccessor>();
+    private static int accessorCount = 0;
+
+    private GetterCompiler() {
+    }
+
+    /**
+     * Returns the accessor for the chain of callers starting on the given class, or null if it can't be compiled.
+     */
+    public static GetterAccessor compile(Class<?> clazz, List<Caller> callers) {
+        if (clazz == null || callers.isEmpty() || callers.get(callers.size() - 1).getValueType() != null) {
+            return null;
+        }
+
+        List<Member> members = new ArrayList<Member>();
+        Class<?> currClass = clazz;
+        for (Caller caller : callers) {
+            Member member = resolve(currClass, caller);
+            if (member == null) {
+                return null;
+            }
+            members.add(member);
+            currClass = member instanceof Field ? ((Field) member).getType() : ((Method) member).getReturnType();
+        }
+
+        String key = members.toString();
+        GetterAccessor accessor = accessors.get(key);
+        if (accessor != null) {
+            return accessor;
+        }
+        try {
+            accessor = generate(members, currClass);
+            accessors.put(key, accessor);
+            return accessor;
+        } catch (Exception ex) {
+            MyTown.instance.LOG.debug("Failed to compile getter chain for " + clazz.getName() + ", falling back to callers", ex);
+            return null;
+        } catch (LinkageError err) {
+            MyTown.instance.LOG.debug("Failed to compile getter chain for " + clazz.getName() + ", falling back to callers", err);
+            return null;
+        }
+    }
+
+    private static Member resolve(Class<?> clazz, Caller caller) {
+        if (clazz.isPrimitive() || clazz.isArray()) {
+            return null;
+        }
+
+        Member member;
+        try {
+            if (caller instanceof ReflectCallerField) {
+                try {
+                    member = clazz.getField(caller.getName());
+                } catch (NoSuchFieldException ex) {
+                    member = clazz.getDeclaredField(caller.getName());
+                }
+            } else if (caller instanceof ReflectCallerMethod) {
+                Method method;
+                try {
+                    method = clazz.getMethod(caller.getName());
+                } catch (NoSuchMethodException ex) {
+                    method = clazz.getDeclaredMethod(caller.getName());
+                }
+                if (method.getReturnType() == void.class) {
+                    return null;
+                }
+                member = method;
+            } else {
+                return null;
+            }
+        } catch (Exception ex) {
+            return null;
+        }
+
+        int modifiers = member.getModifiers();
+        if (!Modifier.isPublic(modifiers) || Modifier.isStatic(modifiers) || !Modifier.isPublic(member.getDeclaringClass().getModifiers())) {
+            return null;
+        }
+        return member;
+    }
+
+    private static GetterAccessor generate(List<Member> members, Class<?> returnType) throws Exception {
+        String name = PACKAGE + "GeneratedAccessor" + accessorCount++;
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_6, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, name, null, ACCESSOR, null);
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, ACCESSOR, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC, "getObject", "(Ljava/lang/Object;)Ljava/lang/Object;", null, null);
+        mv.visitCode();
+        visitChain(mv, members);
+        if (returnType.isPrimitive()) {
+            Type type = Type.getType(returnType);
+            String wrapper = Type.getInternalName(getWrapper(returnType));
+            mv.visitMethodInsn(INVOKESTATIC, wrapper, "valueOf", "(" + type.getDescriptor() + ")L" + wrapper + ";", false);
+        }
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        if (returnType == int.class || returnType == Integer.class) {
+            mv = cw.visitMethod(ACC_PUBLIC, "getInt", "(Ljava/lang/Object;)I", null, null);
+            mv.visitCode();
+            visitChain(mv, members);
+            if (returnType == Integer.class) {
+                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Integer", "intValue", "()I", false);
+            }
+            mv.visitInsn(IRETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        if (returnType == boolean.class || returnType == Boolean.class) {
+            mv = cw.visitMethod(ACC_PUBLIC, "getBoolean", "(Ljava/lang/Object;)Z", null, null);
+            mv.visitCode();
+            visitChain(mv, members);
+            if (returnType == Boolean.class) {
+                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Boolean", "booleanValue", "()Z", false);
+            }
+            mv.visitInsn(IRETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        cw.visitEnd();
+
+        Class<?> accessorClass = classLoader.define(name.replace('/', '.'), cw.toByteArray());
+        return (GetterAccessor) accessorClass.newInstance();
+    }
+
+    /**
+     * Leaves the value of the last member of the chain on the stack, starting from the first argument.
+     */
+    private static void visitChain(MethodVisitor mv, List<Member> members) {
+        mv.visitVarInsn(ALOAD, 1);
+        for (Member member : members) {
+            Class<?> owner = member.getDeclaringClass();
+            String ownerName = Type.getInternalName(owner);
+            mv.visitTypeInsn(CHECKCAST, ownerName);
+            if (member instanceof Field) {
+                Field field = (Field) member;
+                mv.visitFieldInsn(GETFIELD, ownerName, field.getName(), Type.getDescriptor(field.getType()));
+            } else {
+                Method method = (Method) member;
+                mv.visitMethodInsn(owner.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL, ownerName, method.getName(), Type.getMethodDescriptor(method), owner.isInterface());
+            }
+        }
+    }
+
+    private static Class<?> getWrapper(Class<?> primitive) {
+        if (primitive == int.class) {
+            return Integer.class;
+        } else if (primitive == boolean.class) {
+            return Boolean.class;
+        } else if (primitive == long.class) {
+            return Long.class;
+        } else if (primitive == double.class) {
+            return Double.class;
+        } else if (primitive == float.class) {
+            return Float.class;
+        } else if (primitive == short.class) {
+            return Short.class;
+        } else if (primitive == byte.class) {
+            return Byte.class;
+        }
+        return Character.class;
+    }
+
+    private static class AccessorClassLoader extends ClassLoader {
+        public AccessorClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        public Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -1,13 +1,16 @@
 package mytown.protection.segment.getter;
 
 import com.google.gson.internal.LazilyParsedNumber;
+import mytown.util.exceptions.GetterException;
 
 public class GetterConstant extends Getter {
 
     public final Object constant;
+    private final int intConstant;
 
     public GetterConstant(Object constant) {
         this.constant = constant;
+        this.intConstant = constant instanceof Number ? ((Number) constant).intValue() : 0;
     }
 
     @Override
@@ -17,4 +20,25 @@ public class GetterConstant extends Getter {
         }
         return constant;
     }
+
+    @Override
+    public Object getObject(Object object) {
+        return constant;
+    }
+
+    @Override
+    public int getInt(Object object) throws GetterException {
+        if (!(constant instanceof Number)) {
+            throw new GetterException("Failed to get Integer type in getter: " + name);
+        }
+        return intConstant;
+    }
+
+    @Override
+    public boolean getBoolean(Object object) throws GetterException {
+        if (!(constant instanceof Boolean)) {
+            throw new GetterException("Failed to get Boolean type in getter: " + name);
+        }
+        return (Boolean) constant;
+    }
 }
@@ -15,6 +15,7 @@ import java.util.List;
 public class GetterDynamic extends Getter {
 
     public final List<Caller> callers = new ArrayList<Caller>();
+    private GetterAccessor accessor;
 
     public GetterDynamic(List<Caller> callers) {
         if(callers != null) {
@@ -32,6 +33,47 @@ public class GetterDynamic extends Getter {
             } catch(Exception ex) {
             }
         }
+        accessor = GetterCompiler.compile(clazz, callers);
+    }
+
+    /**
+     * Uses the compiled accessor if the chain could be compiled, its value is returned as it is, even null.
+     * Anything thrown while reading the chain is reported as a GetterException, the callers are not invoked again.
+     */
+    @Override
+    public Object getObject(Object object) throws GetterException {
+        if (accessor == null || object == null) {
+            return super.getObject(object);
+        }
+        try {
+            return accessor.getObject(object);
+        } catch (Exception ex) {
+            throw new GetterException("Failed to get Object type in getter: " + name, ex);
+        }
+    }
+
+    @Override
+    public int getInt(Object object) throws GetterException {
+        if (accessor == null || object == null) {
+            return super.getInt(object);
+        }
+        try {
+            return accessor.getInt(object);
+        } catch (Exception ex) {
+            throw new GetterException("Failed to get Integer type in getter: " + name, ex);
+        }
+    }
+
+    @Override
+    public boolean getBoolean(Object object) throws GetterException {
+        if (accessor == null || object == null) {
+            return super.getBoolean(object);
+        }
+        try {
+            return accessor.getBoolean(object);
+        } catch (Exception ex) {
+            throw new GetterException("Failed to get Boolean type in getter: " + name, ex);
+        }
     }
 
     @Override
@@ -0,0 +1,28 @@
+package mytown.test;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Assume;
+
+/**
+ * The benchmarks among the tests are skipped unless they're asked for with -Dmytown.benchmark=true,
+ * they take long and their timings only mean something on an idle machine. What they measured is logged.
+ */
+public class Benchmark {
+
+    private static final Logger LOG = LogManager.getLogger("MyTown2-Benchmark");
+
+    private Benchmark() {
+    }
+
+    /**
+     * Skips the calling test unless benchmarks were asked for.
+     */
+    public static void assumeEnabled() {
+        Assume.assumeTrue(Boolean.getBoolean("mytown.benchmark"));
+    }
+
+    public static void report(String format, Object... args) {
+        LOG.info(String.format(format, args));
+    }
+}
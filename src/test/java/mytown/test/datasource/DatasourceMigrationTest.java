@@ -0,0 +1,197 @@
+package mytown.test.datasource;
+
+import mytown.MyTown;
+import mytown.new_datasource.DatasourceMigration;
+import mytown.test.TestMain;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * Migrates between two SQLite files, the target having the tables already like after a first start on it.
+ */
+public class DatasourceMigrationTest {
+
+    private static final int ROWS = 2500;
+
+    private File sourceFile;
+    private File targetFile;
+    private File checkpointFile;
+    private Connection source;
+    private Connection target;
+
+    @BeforeClass
+    public static void initLogger() {
+        TestMain.main();
+    }
+
+    @Before
+    public void createDatabases() throws Exception {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException ex) {
+            Assume.assumeNoException(ex);
+        }
+        sourceFile = File.createTempFile("mytown-source", ".db");
+        targetFile = File.createTempFile("mytown-target", ".db");
+        checkpointFile = new File(targetFile.getPath() + ".migration");
+        source = DriverManager.getConnection("jdbc:sqlite:" + sourceFile.getPath());
+        target = DriverManager.getConnection("jdbc:sqlite:" + targetFile.getPath());
+        createTables(source);
+        createTables(target);
+
+        source.setAutoCommit(false);
+        PreparedStatement s = source.prepareStatement("INSERT INTO Blocks (dim, x, z, isFarClaim, pricePaid, townName) VALUES(?, ?, ?, ?, ?, ?)");
+        for (int i = 0; i < ROWS; i++) {
+            s.setInt(1, 0);
+            s.setInt(2, i % 100);
+            s.setInt(3, i / 100);
+            s.setBoolean(4, i % 7 == 0);
+            s.setInt(5, i);
+            s.setString(6, "Town" + (i % 10));
+            s.addBatch();
+        }
+        s.executeBatch();
+        s.close();
+        Statement statement = source.createStatement();
+        statement.executeUpdate("INSERT INTO Worlds (dim) VALUES(0)");
+        statement.executeUpdate("INSERT INTO Towns (name, spawnX, isAdminTown) VALUES('T\u00f6wn', 1.5, 0)");
+        statement.executeUpdate("INSERT INTO Towns (name, spawnX, isAdminTown) VALUES('Admin Town', NULL, 1)");
+        statement.close();
+        source.commit();
+        source.setAutoCommit(true);
+
+        // What MyTown saved on its first start
+        statement = target.createStatement();
+        statement.executeUpdate("INSERT INTO Worlds (dim) VALUES(-1)");
+        statement.close();
+    }
+
+    @After
+    public void deleteDatabases() throws SQLException {
+        if (source != null) {
+            source.close();
+            target.close();
+            sourceFile.delete();
+            targetFile.delete();
+            checkpointFile.delete();
+        }
+    }
+
+    @Test
+    public void shouldCopyEveryRow() throws SQLException {
+        Assert.assertTrue(migrate(100));
+
+        Assert.assertEquals(dump(source, "Towns", "name"), dump(target, "Towns", "name"));
+        Assert.assertEquals(dump(source, "Worlds", "dim"), dump(target, "Worlds", "dim"));
+        Assert.assertEquals(dump(source, "Blocks", "dim, x, z"), dump(target, "Blocks", "dim, x, z"));
+        Assert.assertEquals(1, counter(target));
+        Assert.assertFalse(checkpointFile.exists());
+    }
+
+    @Test
+    public void shouldContinueAStoppedMigration() throws Exception {
+        // Stopped after the first batches of Blocks, with the tables before it done
+        markDoneBefore("Blocks");
+
+        Statement statement = target.createStatement();
+        statement.executeUpdate("DELETE FROM Worlds");
+        statement.executeUpdate("INSERT INTO Worlds (dim) VALUES(0)");
+        statement.executeUpdate("INSERT INTO Towns (name, spawnX, isAdminTown) VALUES('T\u00f6wn', 1.5, 0)");
+        statement.executeUpdate("INSERT INTO Towns (name, spawnX, isAdminTown) VALUES('Admin Town', NULL, 1)");
+        statement.executeUpdate("INSERT INTO Blocks (dim, x, z, isFarClaim, pricePaid, townName) VALUES(0, 0, 0, 1, 0, 'Town0')");
+        statement.close();
+
+        Assert.assertTrue(migrate(100));
+        Assert.assertEquals(dump(source, "Blocks", "dim, x, z"), dump(target, "Blocks", "dim, x, z"));
+        Assert.assertFalse(checkpointFile.exists());
+    }
+
+    @Test
+    public void shouldNoticeARowThatDiffers() throws Exception {
+        markDoneBefore("Blocks");
+
+        // Counted as already copied, but not the same as the first row of the source
+        Statement statement = target.createStatement();
+        statement.executeUpdate("INSERT INTO Blocks (dim, x, z, isFarClaim, pricePaid, townName) VALUES(0, 0, 0, 1, 1, 'Town0')");
+        statement.close();
+
+        Assert.assertFalse(migrate(100));
+        Assert.assertTrue(checkpointFile.exists());
+        Assert.assertEquals(0, counter(target));
+    }
+
+    private boolean migrate(int batchSize) {
+        return new DatasourceMigration(MyTown.instance.LOG, source, target, "", batchSize, checkpointFile).run();
+    }
+
+    private void markDoneBefore(String stopped) throws IOException {
+        Properties checkpoint = new Properties();
+        for (String table : DatasourceMigration.TABLES) {
+            if (table.equals(stopped)) {
+                break;
+            }
+            checkpoint.setProperty(table, "done");
+        }
+        OutputStream out = new FileOutputStream(checkpointFile);
+        checkpoint.store(out, null);
+        out.close();
+    }
+
+    private void createTables(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        for (String table : DatasourceMigration.TABLES) {
+            if (table.equals("Worlds")) {
+                statement.executeUpdate("CREATE TABLE Worlds (dim INT NOT NULL, PRIMARY KEY(dim))");
+            } else if (table.equals("Towns")) {
+                statement.executeUpdate("CREATE TABLE Towns (name VARCHAR(32) NOT NULL, spawnX FLOAT, isAdminTown BOOLEAN, PRIMARY KEY(name))");
+            } else if (table.equals("Blocks")) {
+                statement.executeUpdate("CREATE TABLE Blocks (dim INT NOT NULL, x INT NOT NULL, z INT NOT NULL, isFarClaim BOOLEAN, pricePaid INT, townName VARCHAR(32), PRIMARY KEY(dim, x, z))");
+            } else {
+                statement.executeUpdate("CREATE TABLE " + table + " (name VARCHAR(32))");
+            }
+        }
+        statement.executeUpdate("CREATE TABLE UpdateCounter (counter BIGINT NOT NULL)");
+        statement.executeUpdate("INSERT INTO UpdateCounter VALUES(0)");
+        statement.close();
+    }
+
+    private String dump(Connection connection, String table, String order) throws SQLException {
+        Statement statement = connection.createStatement();
+        ResultSet rs = statement.executeQuery("SELECT * FROM " + table + " ORDER BY " + order);
+        int columns = rs.getMetaData().getColumnCount();
+        StringBuilder builder = new StringBuilder();
+        while (rs.next()) {
+            for (int i = 1; i <= columns; i++) {
+                builder.append(rs.getString(i)).append('|');
+            }
+            builder.append('\n');
+        }
+        statement.close();
+        return builder.toString();
+    }
+
+    private long counter(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        ResultSet rs = statement.executeQuery("SELECT counter FROM UpdateCounter");
+        rs.next();
+        long counter = rs.getLong(1);
+        statement.close();
+        return counter;
+    }
+}
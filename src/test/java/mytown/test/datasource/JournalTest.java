@@ -0,0 +1,289 @@
+package mytown.test.datasource;
+
+import mytown.MyTown;
+import mytown.new_datasource.Journal;
+import mytown.new_datasource.SQLBatch;
+import mytown.test.TestMain;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Simulates a crash by reading the journal with a new instance while the old one was never closed.
+ */
+public class JournalTest {
+
+    private static final String INSERT_TOWN = "INSERT INTO Towns (name, spawnX, isAdminTown) VALUES(?, ?, ?)";
+    private static final String UPDATE_BANK = "UPDATE TownBanks SET amount=?, daysNotPaid=? WHERE townName=?";
+    private static final String DELETE_TOWN = "DELETE FROM Towns WHERE name=?";
+
+    private File file;
+    private final List<Journal> journals = new ArrayList<Journal>();
+
+    @BeforeClass
+    public static void initLogger() {
+        TestMain.main();
+    }
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("mytown", ".journal");
+    }
+
+    @After
+    public void deleteFile() {
+        for (Journal journal : journals) {
+            journal.close();
+        }
+        file.delete();
+    }
+
+    @Test
+    public void shouldReplayWhatWasSynced() throws IOException {
+        Journal journal = open(0);
+        journal.append(INSERT_TOWN, "Town", 1.5F, false);
+        journal.append(UPDATE_BANK, 10, 0, "Town");
+        journal.append(INSERT_TOWN, "Admin Town", -3F, true);
+        journal.append(DELETE_TOWN, (Object) null);
+        journal.sync();
+
+        List<Object[]> replayed = replay(open(0));
+        Assert.assertEquals(4, replayed.size());
+        assertStatement(replayed.get(0), INSERT_TOWN, "Town", 1.5F, false);
+        assertStatement(replayed.get(1), UPDATE_BANK, 10, 0, "Town");
+        assertStatement(replayed.get(2), INSERT_TOWN, "Admin Town", -3F, true);
+        assertStatement(replayed.get(3), DELETE_TOWN, (Object) null);
+    }
+
+    @Test
+    public void shouldLoseOnlyWhatWasNotSynced() throws IOException {
+        Journal journal = open(0);
+        journal.append(UPDATE_BANK, 10, 0, "Town");
+        journal.sync();
+        journal.append(UPDATE_BANK, 20, 0, "Town");
+
+        List<Object[]> replayed = replay(open(0));
+        Assert.assertEquals(1, replayed.size());
+        assertStatement(replayed.get(0), UPDATE_BANK, 10, 0, "Town");
+    }
+
+    @Test
+    public void shouldCutOffATornRecord() throws IOException {
+        Journal journal = open(0);
+        for (int i = 0; i < 10; i++) {
+            journal.append(UPDATE_BANK, i, 0, "Town" + i);
+        }
+        journal.sync();
+
+        // The last group was only partly written when the server died
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 3);
+        raf.close();
+
+        Journal recovered = open(0);
+        Assert.assertEquals(9, replay(recovered).size());
+        Assert.assertEquals(file.length(), recovered.getSize());
+
+        // Appending after the recovery starts from the last complete record
+        recovered.append(DELETE_TOWN, "Town");
+        recovered.sync();
+        List<Object[]> replayed = replay(open(0));
+        Assert.assertEquals(10, replayed.size());
+        assertStatement(replayed.get(9), DELETE_TOWN, "Town");
+    }
+
+    @Test
+    public void shouldStopAtADamagedRecord() throws IOException {
+        Journal journal = open(0);
+        journal.append(UPDATE_BANK, 1, 0, "First");
+        journal.sync();
+        long firstGroup = file.length();
+        journal.append(UPDATE_BANK, 2, 0, "Second");
+        journal.append(UPDATE_BANK, 3, 0, "Third");
+        journal.sync();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(file.length() - 2);
+        raf.write(0xFF);
+        raf.close();
+
+        List<Object[]> replayed = replay(open(0));
+        Assert.assertEquals(2, replayed.size());
+        Assert.assertTrue(file.length() > firstGroup);
+        assertStatement(replayed.get(1), UPDATE_BANK, 2, 0, "Second");
+    }
+
+    @Test
+    public void shouldStopAtAStatementWithoutItsDefinition() throws IOException {
+        Journal journal = open(0);
+        journal.append(UPDATE_BANK, 1, 0, "First");
+        journal.sync();
+        int firstGroup = (int) file.length();
+        journal.append(UPDATE_BANK, 2, 0, "Second");
+        journal.sync();
+
+        // Only the second group is left, it refers to a statement defined in the first one
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        byte[] rest = new byte[(int) raf.length() - firstGroup];
+        raf.seek(firstGroup);
+        raf.readFully(rest);
+        raf.setLength(0);
+        raf.write(rest);
+        raf.close();
+
+        Assert.assertEquals(0, replay(open(0)).size());
+        Assert.assertEquals(0, file.length());
+    }
+
+    @Test
+    public void shouldOnlyReplayWhatFollowsTheCheckpoint() throws IOException {
+        Journal journal = open(0);
+        journal.append(INSERT_TOWN, "Town", 0F, false);
+        journal.sync();
+        journal.checkpoint();
+        Assert.assertEquals(0, journal.getSize());
+
+        journal.append(DELETE_TOWN, "Town");
+        journal.append(INSERT_TOWN, "Other", 0F, false);
+        journal.sync();
+
+        List<Object[]> replayed = replay(open(0));
+        Assert.assertEquals(2, replayed.size());
+        assertStatement(replayed.get(0), DELETE_TOWN, "Town");
+        assertStatement(replayed.get(1), INSERT_TOWN, "Other", 0F, false);
+    }
+
+    @Test
+    public void shouldSyncManyAppendsAtOnce() throws Exception {
+        final Journal journal = open(20);
+        journal.start();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            final int thread = t;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 500; i++) {
+                        journal.append(UPDATE_BANK, i, thread, "Town" + thread);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        journal.close();
+
+        Assert.assertEquals(2000, journal.getSynced());
+        Assert.assertTrue(journal.getCommits() < 100);
+        Assert.assertEquals(2000, replay(open(0)).size());
+    }
+
+    /**
+     * Replaying statements that were already written, like after a crash right before a checkpoint, ends with the same rows.
+     */
+    @Test
+    public void shouldReachTheSameRowsWhenReplayedTwice() throws Exception {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException ex) {
+            Assume.assumeNoException(ex);
+        }
+        Journal journal = open(0);
+        journal.append(INSERT_TOWN, "Town", 0F, false);
+        journal.append("INSERT INTO TownBanks (townName, amount, daysNotPaid) VALUES(?, ?, ?)", "Town", 5, 0);
+        journal.append(UPDATE_BANK, 20, 1, "Town");
+        journal.append(INSERT_TOWN, "Gone", 0F, false);
+        journal.append(DELETE_TOWN, "Gone");
+        journal.sync();
+
+        Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try {
+            Statement statement = connection.createStatement();
+            statement.executeUpdate("CREATE TABLE Towns (name VARCHAR(32) PRIMARY KEY, spawnX FLOAT, isAdminTown BOOLEAN)");
+            statement.executeUpdate("CREATE TABLE TownBanks (townName VARCHAR(32) PRIMARY KEY, amount INT, daysNotPaid INT)");
+            statement.close();
+
+            Assert.assertEquals(0, replayInto(open(0), connection));
+            String once = dump(connection);
+            Assert.assertEquals(2, replayInto(open(0), connection));
+            Assert.assertEquals(once, dump(connection));
+            Assert.assertEquals("Town|20|1", once);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private Journal open(long commitInterval) throws IOException {
+        Journal journal = new Journal(MyTown.instance.LOG, file, commitInterval);
+        journals.add(journal);
+        return journal;
+    }
+
+    private List<Object[]> replay(Journal journal) throws IOException {
+        final List<Object[]> replayed = new ArrayList<Object[]>();
+        journal.replay(new Journal.Handler() {
+            @Override
+            public void statement(String sql, Object[] parameters) {
+                replayed.add(new Object[] {sql, parameters});
+            }
+        });
+        return replayed;
+    }
+
+    /**
+     * Returns the number of statements that failed.
+     */
+    private int replayInto(Journal journal, final Connection connection) throws IOException {
+        final int[] failed = {0};
+        journal.replay(new Journal.Handler() {
+            @Override
+            public void statement(String sql, Object[] parameters) {
+                try {
+                    PreparedStatement s = connection.prepareStatement(sql);
+                    SQLBatch.setParameters(s, parameters);
+                    s.executeUpdate();
+                    s.close();
+                } catch (SQLException e) {
+                    failed[0]++;
+                }
+            }
+        });
+        return failed[0];
+    }
+
+    private String dump(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        ResultSet rs = statement.executeQuery("SELECT t.name, b.amount, b.daysNotPaid FROM Towns t JOIN TownBanks b ON b.townName = t.name ORDER BY t.name");
+        StringBuilder builder = new StringBuilder();
+        while (rs.next()) {
+            builder.append(rs.getString(1)).append('|').append(rs.getInt(2)).append('|').append(rs.getInt(3));
+        }
+        statement.close();
+        return builder.toString();
+    }
+
+    private void assertStatement(Object[] replayed, String sql, Object... parameters) {
+        Assert.assertEquals(sql, replayed[0]);
+        Assert.assertTrue(Arrays.toString((Object[]) replayed[1]), Arrays.equals(parameters, (Object[]) replayed[1]));
+    }
+}
@@ -0,0 +1,180 @@
+package mytown.test.datasource;
+
+import mytown.new_datasource.MyTownSchema;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Asks SQLite how it runs the statements the datasource sends while the server is running, and fails on any
+ * that reads a whole table or index. The tables are the ones of MyTownSchema, with its indexes.
+ */
+public class QueryPlanTest {
+
+    private static final String[] TABLES = {
+            "CREATE TABLE Residents (uuid CHAR(36) NOT NULL, name VARCHAR(240) NOT NULL, joined BIGINT NOT NULL, lastOnline BIGINT NOT NULL, extraBlocks INTEGER, fakePlayer BOOLEAN, PRIMARY KEY(uuid))",
+            "CREATE TABLE Worlds (dim INT, PRIMARY KEY(dim))",
+            "CREATE TABLE Towns (name VARCHAR(32) NOT NULL, isAdminTown BOOLEAN, spawnDim INT NOT NULL, spawnX FLOAT, spawnY FLOAT, spawnZ FLOAT, cameraYaw FLOAT, cameraPitch FLOAT, extraBlocks INTEGER, maxPlots INTEGER, maxFarClaims INTEGER, extraFarClaims INTEGER, PRIMARY KEY(name))",
+            "CREATE TABLE Ranks (name VARCHAR(50) NOT NULL, townName VARCHAR(32) NOT NULL, isDefault BOOLEAN, type VARCHAR(50), PRIMARY KEY(name, townName))",
+            "CREATE TABLE RankPermissions (node VARCHAR(100) NOT NULL, ranks VARCHAR(50) NOT NULL, townName VARCHAR(32) NOT NULL, PRIMARY KEY(node, ranks, townName))",
+            "CREATE TABLE Blocks (dim INT NOT NULL, x INT NOT NULL, z INT NOT NULL, townName VARCHAR(32) NOT NULL, isFarClaim BOOLEAN, pricePaid INTEGER, PRIMARY KEY(dim, x, z))",
+            "CREATE TABLE Plots (ID INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, name VARCHAR(50) NOT NULL, dim INT NOT NULL, x1 INT, y1 INT, z1 INT, x2 INT, y2 INT, z2 INT, townName VARCHAR(32) NOT NULL)",
+            "CREATE TABLE Nations (name VARCHAR(32) NOT NULL, PRIMARY KEY(name))",
+            "CREATE TABLE ResidentsToTowns (resident CHAR(36) NOT NULL, town VARCHAR(32) NOT NULL, ranks VARCHAR(50) NOT NULL, PRIMARY KEY(resident, town))",
+            "CREATE TABLE TownsToNations (town VARCHAR(50), nation VARCHAR(50), ranks CHAR(1) DEFAULT 'T', PRIMARY KEY(town, nation))",
+            "CREATE TABLE TownFlags (name VARCHAR(50) NOT NULL, serializedValue VARCHAR(400), townName VARCHAR(50) NOT NULL, PRIMARY KEY(name, townName))",
+            "CREATE TABLE PlotFlags (name VARCHAR(50) NOT NULL, serializedValue VARCHAR(400), plotID INT NOT NULL, PRIMARY KEY(name, plotID))",
+            "CREATE TABLE ResidentsToPlots (resident VARCHAR(36) NOT NULL, plotID INT NOT NULL, isOwner BOOLEAN, PRIMARY KEY(resident, plotID))",
+            "CREATE TABLE BlockWhitelists (ID INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, dim INT NOT NULL, x INT NOT NULL, y INT NOT NULL, z INT NOT NULL, townName VARCHAR(50), flagName VARCHAR(50) NOT NULL)",
+            "CREATE TABLE SelectedTown (resident CHAR(36), townName VARCHAR(50), PRIMARY KEY(resident))",
+            "CREATE TABLE Friends (resident1 CHAR(36), resident2 CHAR(36), PRIMARY KEY(resident1, resident2))",
+            "CREATE TABLE FriendRequests (resident CHAR(36), residentTarget CHAR(36), PRIMARY KEY(resident, residentTarget))",
+            "CREATE TABLE TownInvites (resident CHAR(36), townName VARCHAR(50), PRIMARY KEY(resident, townName))",
+            "CREATE TABLE BlockOwners (resident CHAR(36), dim INT NOT NULL, x INT NOT NULL, y INT NOT NULL, z INT NOT NULL)",
+            "CREATE TABLE TownBanks (townName VARCHAR(50), amount INT NOT NULL, daysNotPaid INTEGER, PRIMARY KEY(townName))",
+            "CREATE TABLE PlotBanks (plotID INT NOT NULL, amount INT NOT NULL, PRIMARY KEY(plotID))"
+    };
+
+    /**
+     * What the datasource sends to update and delete single rows and to read a resident that's not in memory.
+     */
+    private static final String[] STATEMENTS = {
+            "SELECT uuid, name, joined, lastOnline, extraBlocks, fakePlayer FROM Residents WHERE uuid=?",
+            "SELECT uuid, name, joined, lastOnline, extraBlocks, fakePlayer FROM Residents WHERE name=?",
+            "SELECT townName FROM TownInvites WHERE resident=?",
+            "SELECT * FROM BlockOwners WHERE dim=? AND x>=? AND x<=? AND z>=? AND z<=?",
+            "UPDATE Towns SET name=?, spawnDim=?, spawnX=?, spawnY=?, spawnZ=?, cameraYaw=?, cameraPitch=?, extraBlocks=?, maxPlots=?, extraFarClaims=? WHERE name=?",
+            "UPDATE Ranks SET type=?, name=? WHERE name=? AND townName=?",
+            "UPDATE Residents SET name=?, lastOnline=?, extraBlocks=?, fakePlayer=? WHERE uuid=?",
+            "UPDATE Plots SET name=?, dim=?, x1=?, y1=?, z1=?, x2=?, y2=?, z2=? WHERE ID=?",
+            "UPDATE PlotFlags SET serializedValue=? WHERE plotID=? AND name=?",
+            "UPDATE TownFlags SET serializedValue=? WHERE townName=? AND name=?",
+            "UPDATE SelectedTown SET townName=? WHERE resident=?",
+            "UPDATE TownBanks SET amount=?, daysNotPaid=? WHERE townName=?",
+            "UPDATE ResidentsToTowns SET ranks = ? WHERE resident = ? AND town = ?",
+            "UPDATE ResidentsToPlots SET isOwner=? WHERE resident=? AND plotID=?",
+            "DELETE FROM Towns WHERE name=?",
+            "DELETE FROM Blocks WHERE dim=? AND x=? AND z=?",
+            "DELETE FROM Ranks WHERE name=? AND townName=?",
+            "DELETE FROM RankPermissions WHERE ranks=? AND townName=?",
+            "DELETE FROM RankPermissions WHERE node = ? AND ranks = ? AND townName = ?",
+            "DELETE FROM Residents WHERE uuid=?",
+            "DELETE FROM Plots WHERE ID=?",
+            "DELETE FROM BlockWhitelists WHERE ID=?",
+            "DELETE FROM SelectedTown WHERE resident=?",
+            "DELETE FROM TownInvites WHERE resident=? AND townName=?",
+            "DELETE FROM TownFlags WHERE name=? AND townName=?",
+            "DELETE FROM PlotFlags WHERE name=? AND plotID=?",
+            "DELETE FROM BlockOwners WHERE dim=? AND x=? AND y=? AND z=?",
+            "DELETE FROM ResidentsToTowns WHERE resident = ? AND town = ?",
+            "DELETE FROM ResidentsToPlots WHERE resident=? AND plotID=?",
+            "DELETE FROM TownsToNations WHERE town = ? AND nation = ?",
+            "SELECT resident, ranks FROM ResidentsToTowns WHERE town=?"
+    };
+
+    /**
+     * The rows the foreign keys look for when a town, rank, plot or resident is deleted or renamed.
+     * SQLite doesn't show those in the plan of the delete, so they're asked for on their own.
+     */
+    private static final String[] CASCADES = {
+            "SELECT 1 FROM Ranks WHERE townName=?",
+            "SELECT 1 FROM RankPermissions WHERE ranks=? AND townName=?",
+            "SELECT 1 FROM Blocks WHERE townName=?",
+            "SELECT 1 FROM Plots WHERE townName=?",
+            "SELECT 1 FROM ResidentsToTowns WHERE ranks=? AND town=?",
+            "SELECT 1 FROM ResidentsToTowns WHERE resident=?",
+            "SELECT 1 FROM TownsToNations WHERE town=?",
+            "SELECT 1 FROM TownsToNations WHERE nation=?",
+            "SELECT 1 FROM TownFlags WHERE townName=?",
+            "SELECT 1 FROM PlotFlags WHERE plotID=?",
+            "SELECT 1 FROM ResidentsToPlots WHERE resident=?",
+            "SELECT 1 FROM ResidentsToPlots WHERE plotID=?",
+            "SELECT 1 FROM BlockWhitelists WHERE flagName=? AND townName=?",
+            "SELECT 1 FROM SelectedTown WHERE resident=?",
+            "SELECT 1 FROM SelectedTown WHERE townName=?",
+            "SELECT 1 FROM Friends WHERE resident1=?",
+            "SELECT 1 FROM Friends WHERE resident2=?",
+            "SELECT 1 FROM FriendRequests WHERE resident=?",
+            "SELECT 1 FROM FriendRequests WHERE residentTarget=?",
+            "SELECT 1 FROM TownInvites WHERE resident=?",
+            "SELECT 1 FROM TownInvites WHERE townName=?",
+            "SELECT 1 FROM BlockOwners WHERE resident=?",
+            "SELECT 1 FROM TownBanks WHERE townName=?",
+            "SELECT 1 FROM PlotBanks WHERE plotID=?"
+    };
+
+    private Connection connection;
+
+    @Before
+    public void createTables() throws SQLException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException ex) {
+            Assume.assumeNoException(ex);
+        }
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        Statement statement = connection.createStatement();
+        for (String table : TABLES) {
+            statement.executeUpdate(table);
+        }
+        for (MyTownSchema.Index index : MyTownSchema.INDEXES) {
+            statement.executeUpdate(index.getCreate(""));
+        }
+        statement.close();
+    }
+
+    @After
+    public void closeConnection() throws SQLException {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void shouldNotScanAnyTableForTheStatements() throws SQLException {
+        assertNoScans(STATEMENTS);
+    }
+
+    @Test
+    public void shouldNotScanAnyTableForTheForeignKeys() throws SQLException {
+        assertNoScans(CASCADES);
+    }
+
+    private void assertNoScans(String[] statements) throws SQLException {
+        List<String> scans = new ArrayList<String>();
+        for (String sql : statements) {
+            // Planned without the parameters, like the statements the datasource prepares once
+            PreparedStatement statement = connection.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+            ResultSet rs = statement.executeQuery();
+            int detail = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                String plan = rs.getString(detail);
+                if (plan.startsWith("SCAN")) {
+                    scans.add(sql + " -> " + plan);
+                }
+            }
+            rs.close();
+            statement.close();
+        }
+        Assert.assertTrue("Statements reading whole tables:\n" + join(scans), scans.isEmpty());
+    }
+
+    private String join(List<String> lines) {
+        StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            builder.append(line).append('\n');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package mytown.test.datasource;
+
+import mytown.config.Config;
+import mytown.entities.Resident;
+import mytown.new_datasource.MyTownUniverse;
+import mytown.new_datasource.ResidentCache;
+import mytown.test.MyTownTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class ResidentCacheTest extends MyTownTest {
+
+    @Test
+    public void shouldRemoveTheLeastRecentlyUsedResidents() {
+        MyTownUniverse universe = new MyTownUniverse();
+        ResidentCache cache = universe.residentCache;
+        int capacity = Config.instance.residentCacheSize.get();
+
+        Resident online = createResident(universe, "Online");
+        cache.login(online);
+
+        List<Resident> offline = new ArrayList<Resident>();
+        for (int i = 0; i < capacity + 100; i++) {
+            Resident res = createResident(universe, "Offline" + i);
+            cache.touch(res);
+            offline.add(res);
+        }
+
+        Assert.assertEquals(capacity, cache.getSize());
+        Assert.assertEquals(100, cache.getEvictions());
+        Assert.assertNull(universe.residents.get(offline.get(99).getUUID()));
+        Assert.assertSame(offline.get(100), universe.residents.get(offline.get(100).getUUID()));
+        Assert.assertSame(online, universe.residents.get(online.getUUID()));
+
+        // Used again, so the next one is removed instead
+        cache.touch(offline.get(100));
+        cache.touch(createResident(universe, "Latest"));
+        Assert.assertNotNull(universe.residents.get(offline.get(100).getUUID()));
+        Assert.assertNull(universe.residents.get(offline.get(101).getUUID()));
+
+        // Logging out makes it the most recently used one
+        cache.logout(online);
+        Assert.assertSame(online, universe.residents.get(online.getUUID()));
+        Assert.assertNull(universe.residents.get(offline.get(102).getUUID()));
+        Assert.assertEquals(capacity, cache.getSize());
+    }
+
+    @Test
+    public void shouldKeepTheReferencedResidents() {
+        MyTownUniverse universe = new MyTownUniverse();
+        ResidentCache cache = universe.residentCache;
+        int capacity = Config.instance.residentCacheSize.get();
+
+        Resident owner = createResident(universe, "Owner");
+        cache.touch(owner);
+        cache.reference(owner.getUUID());
+        cache.reference(owner.getUUID());
+        for (int i = 0; i < capacity + 10; i++) {
+            cache.touch(createResident(universe, "Offline" + i));
+        }
+        Assert.assertTrue(cache.isPinned(owner));
+        Assert.assertSame(owner, universe.residents.get(owner.getUUID()));
+
+        // Still referenced once
+        cache.release(owner.getUUID());
+        cache.touch(owner);
+        cache.touch(createResident(universe, "Latest"));
+        Assert.assertSame(owner, universe.residents.get(owner.getUUID()));
+
+        cache.release(owner.getUUID());
+        Assert.assertFalse(cache.isPinned(owner));
+    }
+
+    @Test
+    public void shouldRememberTheMissingResidents() {
+        MyTownUniverse universe = new MyTownUniverse();
+        ResidentCache cache = universe.residentCache;
+
+        UUID uuid = UUID.randomUUID();
+        cache.setMissing(uuid);
+        cache.setMissing("Missing");
+        Assert.assertTrue(cache.isMissing(uuid));
+        Assert.assertTrue(cache.isMissing("MISSING"));
+
+        // Not looked up in the database again
+        Assert.assertNull(universe.getResident(uuid));
+        Assert.assertNull(universe.getResident("missing"));
+
+        // Saved afterwards
+        universe.addResident(new Resident(uuid, "Missing", true));
+        Assert.assertFalse(cache.isMissing(uuid));
+        Assert.assertFalse(cache.isMissing("missing"));
+    }
+
+    private Resident createResident(MyTownUniverse universe, String name) {
+        Resident res = new Resident(UUID.randomUUID(), name, true);
+        universe.addResident(res);
+        return res;
+    }
+}
@@ -0,0 +1,242 @@
+package mytown.test.datasource;
+
+import mytown.new_datasource.SQLBatch;
+import mytown.new_datasource.WriteBehindQueue;
+import mytown.test.Benchmark;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares writing the rows of town creations and rank resets one statement at a time, like the datasource
+ * used to, with sending them through a SQLBatch. Runs on an in-memory SQLite database and on a stand-in
+ * for a MySQL server over the network, which is the same database with a delay added to every round-trip.
+ */
+public class SQLBatchTest {
+
+    private static final int TOWNS = 20;
+    private static final int FLAGS = 30;
+    private static final int RANKS = 4;
+    private static final int PERMISSIONS = 25;
+    private static final long NETWORK_LATENCY = 200000;
+
+    private int roundTrips;
+
+    @Before
+    public void checkDriver() {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException ex) {
+            Assume.assumeNoException(ex);
+        }
+    }
+
+    @Test
+    public void shouldKeepTheOrderOfTheStatements() throws Exception {
+        Connection connection = createConnection(0);
+        List<Row> rows = new ArrayList<Row>();
+        rows.add(new Row("INSERT INTO Ranks (name, townName, type) VALUES(?, ?, ?)", "Mayor", "Town", "MAYOR"));
+        rows.add(new Row("INSERT INTO RankPermissions (node, ranks, townName) VALUES(?, ?, ?)", "mytown.cmd", "Mayor", "Town"));
+        rows.add(new Row("DELETE FROM RankPermissions WHERE ranks=? AND townName=?", "Mayor", "Town"));
+        rows.add(new Row("INSERT INTO RankPermissions (node, ranks, townName) VALUES(?, ?, ?)", "mytown.cmd.plot", "Mayor", "Town"));
+        rows.add(new Row("INSERT INTO RankPermissions (node, ranks, townName) VALUES(?, ?, ?)", "mytown.cmd.town", "Mayor", "Town"));
+        new SQLBatch(connection).run(rows);
+
+        Assert.assertEquals(2, count(connection, "SELECT COUNT(*) FROM RankPermissions"));
+        Assert.assertEquals(1, count(connection, "SELECT COUNT(*) FROM RankPermissions WHERE node='mytown.cmd.town'"));
+        connection.close();
+    }
+
+    @Test
+    public void shouldRollBackTheWholeBatch() throws Exception {
+        Connection connection = createConnection(0);
+        List<Row> rows = new ArrayList<Row>();
+        rows.add(new Row("INSERT INTO Towns (name, spawnDim) VALUES(?, ?)", "Town", 0));
+        rows.add(new Row("INSERT INTO Towns (name, spawnDim) VALUES(?, ?)", "Town", 0));
+        try {
+            new SQLBatch(connection).run(rows);
+            Assert.fail("The duplicate town should fail the batch");
+        } catch (SQLException ex) {
+            // Expected
+        }
+        Assert.assertEquals(0, count(connection, "SELECT COUNT(*) FROM Towns"));
+        Assert.assertTrue(connection.getAutoCommit());
+        connection.close();
+    }
+
+    @Test
+    public void shouldRollBackOnAnUncheckedException() throws Exception {
+        Connection connection = createConnection(0);
+        List<WriteBehindQueue.Write> rows = new ArrayList<WriteBehindQueue.Write>();
+        rows.add(new Row("INSERT INTO Towns (name, spawnDim) VALUES(?, ?)", "Town", 0));
+        // Sends the town before the next write fails
+        rows.add(new Row("INSERT INTO Ranks (name, townName, type) VALUES(?, ?, ?)", "Mayor", "Town", "MAYOR"));
+        rows.add(new Row(null));
+        try {
+            new SQLBatch(connection).run(rows);
+            Assert.fail("The write without SQL should fail the batch");
+        } catch (NullPointerException ex) {
+            // Expected
+        }
+        Assert.assertEquals(0, count(connection, "SELECT COUNT(*) FROM Towns"));
+        Assert.assertEquals(0, count(connection, "SELECT COUNT(*) FROM Ranks"));
+        Assert.assertTrue(connection.getAutoCommit());
+        connection.close();
+    }
+
+    @Test
+    public void benchmarkTownCreation() throws Exception {
+        Benchmark.assumeEnabled();
+        List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < TOWNS; i++) {
+            String town = "Town" + i;
+            rows.add(new Row("INSERT INTO Towns (name, spawnDim) VALUES(?, ?)", town, 0));
+            for (int flag = 0; flag < FLAGS; flag++) {
+                rows.add(new Row("INSERT INTO TownFlags (name, serializedValue, townName) VALUES(?, ?, ?)", "flag" + flag, "true", town));
+            }
+            addRanks(rows, town, false);
+        }
+        benchmark("Town creation", rows);
+    }
+
+    @Test
+    public void benchmarkRankReset() throws Exception {
+        Benchmark.assumeEnabled();
+        List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < TOWNS; i++) {
+            addRanks(rows, "Town" + i, true);
+        }
+        benchmark("Rank reset", rows);
+    }
+
+    private void addRanks(List<Row> rows, String town, boolean reset) {
+        for (int rank = 0; rank < RANKS; rank++) {
+            String name = "Rank" + rank;
+            if (reset) {
+                rows.add(new Row("UPDATE Ranks SET type=?, name=? WHERE name=? AND townName=?", "REGULAR", name, name, town));
+                rows.add(new Row("DELETE FROM RankPermissions WHERE ranks=? AND townName=?", name, town));
+            } else {
+                rows.add(new Row("INSERT INTO Ranks (name, townName, type) VALUES(?, ?, ?)", name, town, "REGULAR"));
+            }
+            for (int perm = 0; perm < PERMISSIONS; perm++) {
+                rows.add(new Row("INSERT INTO RankPermissions (node, ranks, townName) VALUES(?, ?, ?)", "mytown.cmd.perm" + perm, name, town));
+            }
+        }
+    }
+
+    private void benchmark(String name, List<Row> rows) throws Exception {
+        for (long latency : new long[] {0, NETWORK_LATENCY}) {
+            String database = latency == 0 ? "SQLite" : "MySQL stand-in";
+
+            Connection connection = createConnection(latency);
+            roundTrips = 0;
+            long start = System.nanoTime();
+            for (Row row : rows) {
+                PreparedStatement statement = connection.prepareStatement(row.sql);
+                SQLBatch.setParameters(statement, row.parameters);
+                statement.executeUpdate();
+                statement.close();
+            }
+            long singleTime = System.nanoTime() - start;
+            int singleRoundTrips = roundTrips;
+            connection.close();
+
+            connection = createConnection(latency);
+            roundTrips = 0;
+            start = System.nanoTime();
+            new SQLBatch(connection).run(rows);
+            long batchTime = System.nanoTime() - start;
+            int batchRoundTrips = roundTrips;
+            connection.close();
+
+            Benchmark.report("%s on %s: %d round-trips in %d ms one by one, %d round-trips in %d ms batched",
+                    name, database, singleRoundTrips, singleTime / 1000000, batchRoundTrips, batchTime / 1000000);
+            Assert.assertTrue(batchRoundTrips * 10 < singleRoundTrips);
+        }
+    }
+
+    private Connection createConnection(long latency) throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("CREATE TABLE Towns (name VARCHAR(50) PRIMARY KEY, spawnDim INT)");
+        statement.executeUpdate("CREATE TABLE TownFlags (name VARCHAR(50), serializedValue VARCHAR(400), townName VARCHAR(50))");
+        statement.executeUpdate("CREATE TABLE Ranks (name VARCHAR(50), townName VARCHAR(50), type VARCHAR(50))");
+        statement.executeUpdate("CREATE TABLE RankPermissions (node VARCHAR(100), ranks VARCHAR(50), townName VARCHAR(50))");
+        statement.close();
+        return (Connection) wrap(connection, Connection.class, latency);
+    }
+
+    private int count(Connection connection, String sql) throws SQLException {
+        Statement statement = connection.createStatement();
+        ResultSet rs = statement.executeQuery(sql);
+        rs.next();
+        int count = rs.getInt(1);
+        statement.close();
+        return count;
+    }
+
+    /**
+     * Counts every call that goes to the database and waits for the latency on each of them.
+     */
+    private Object wrap(final Object target, Class<?> type, final long latency) {
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {type}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                Object result;
+                try {
+                    result = method.invoke(target, args);
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+
+                String name = method.getName();
+                if (name.startsWith("execute") || "commit".equals(name) || "rollback".equals(name)) {
+                    roundTrips++;
+                    long end = System.nanoTime() + latency;
+                    while (System.nanoTime() < end) {
+                        Thread.yield();
+                    }
+                }
+                if (result instanceof PreparedStatement) {
+                    return wrap(result, PreparedStatement.class, latency);
+                }
+                return result;
+            }
+        });
+    }
+
+    private static class Row extends WriteBehindQueue.Write {
+        private final String sql;
+        private final Object[] parameters;
+
+        public Row(String sql, Object... parameters) {
+            super(null, "Failed to write a row");
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        @Override
+        protected void execute() throws SQLException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void addTo(SQLBatch batch) throws SQLException {
+            batch.add(sql, parameters);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package mytown.test.datasource;
+
+import mytown.new_datasource.StatementCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StatementCacheTest {
+
+    private static final String UPDATE_BANK = "UPDATE TownBanks SET amount=?, daysNotPaid=? WHERE townName=?";
+    private static final String INSERT_PLOT = "INSERT INTO Plots (name, townName) VALUES(?, ?)";
+
+    private final List<String> prepared = new ArrayList<String>();
+    private final List<String> closed = new ArrayList<String>();
+
+    @Test
+    public void shouldPrepareEachStatementOnce() throws SQLException {
+        StatementCache cache = new StatementCache();
+        Connection connection = createConnection();
+
+        PreparedStatement statement = cache.get(connection, UPDATE_BANK, false);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertSame(statement, cache.get(connection, UPDATE_BANK, false));
+        }
+        Assert.assertNotSame(statement, cache.get(connection, UPDATE_BANK, true));
+
+        Assert.assertEquals(2, prepared.size());
+        Assert.assertEquals(100, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void shouldDropTheStatementsAfterReconnecting() throws SQLException {
+        StatementCache cache = new StatementCache();
+        Connection connection = createConnection();
+        PreparedStatement statement = cache.get(connection, UPDATE_BANK, false);
+        cache.get(connection, INSERT_PLOT, true);
+
+        Connection reconnected = createConnection();
+        Assert.assertNotSame(statement, cache.get(reconnected, UPDATE_BANK, false));
+
+        Assert.assertEquals(2, closed.size());
+        Assert.assertEquals(1, cache.getInvalidations());
+        Assert.assertEquals(1, cache.getSize());
+        Assert.assertEquals(3, cache.getMisses());
+    }
+
+    private Connection createConnection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("prepareStatement".equals(method.getName())) {
+                    prepared.add((String) args[0]);
+                    return createStatement((String) args[0]);
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private PreparedStatement createStatement(final String sql) {
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {PreparedStatement.class}, new InvocationHandler() {
+            private boolean isClosed = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("isClosed".equals(method.getName())) {
+                    return isClosed;
+                }
+                if ("close".equals(method.getName())) {
+                    isClosed = true;
+                    closed.add(sql);
+                    return null;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
@@ -0,0 +1,192 @@
+package mytown.test.datasource;
+
+import mytown.MyTown;
+import mytown.new_datasource.TableLoader;
+import mytown.test.TestMain;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads a small town/rank/member database with and without the worker connections, the result has to be the same.
+ */
+public class TableLoaderTest {
+
+    private static final int TOWNS = 200;
+    private static final int RANKS = 5;
+    private static final int MEMBERS = 20;
+
+    private File file;
+    private final List<Connection> connections = new ArrayList<Connection>();
+
+    @BeforeClass
+    public static void initLogger() {
+        TestMain.main();
+    }
+
+    @Before
+    public void createDatabase() throws Exception {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException ex) {
+            Assume.assumeNoException(ex);
+        }
+        // Separate connections to an in-memory database would each see an empty one
+        file = File.createTempFile("mytown-load", ".db");
+        Connection connection = connect();
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("CREATE TABLE Towns (name VARCHAR(32) PRIMARY KEY, maxPlots INT)");
+        statement.executeUpdate("CREATE TABLE Ranks (name VARCHAR(50), townName VARCHAR(32))");
+        statement.executeUpdate("CREATE TABLE Members (resident CHAR(36), townName VARCHAR(32), ranks VARCHAR(50))");
+        statement.close();
+
+        connection.setAutoCommit(false);
+        PreparedStatement towns = connection.prepareStatement("INSERT INTO Towns VALUES(?, ?)");
+        PreparedStatement ranks = connection.prepareStatement("INSERT INTO Ranks VALUES(?, ?)");
+        PreparedStatement members = connection.prepareStatement("INSERT INTO Members VALUES(?, ?, ?)");
+        for (int i = 0; i < TOWNS; i++) {
+            towns.setString(1, "Town" + i);
+            towns.setInt(2, i % 7);
+            towns.addBatch();
+            for (int rank = 0; rank < RANKS; rank++) {
+                ranks.setString(1, "Rank" + rank);
+                ranks.setString(2, "Town" + i);
+                ranks.addBatch();
+            }
+            for (int member = 0; member < MEMBERS; member++) {
+                members.setString(1, "Resident" + (i * MEMBERS + member));
+                members.setString(2, "Town" + i);
+                members.setString(3, "Rank" + (member % RANKS));
+                members.addBatch();
+            }
+        }
+        towns.executeBatch();
+        ranks.executeBatch();
+        members.executeBatch();
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    @After
+    public void deleteDatabase() throws SQLException {
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shouldLoadTheSameAsOneAfterTheOther() throws SQLException {
+        List<String> sequential = new ArrayList<String>();
+        TableLoader loader = createLoader(sequential, 16);
+        Assert.assertTrue(loader.load(connect(), new ArrayList<Connection>()));
+
+        List<String> parallel = new ArrayList<String>();
+        loader = createLoader(parallel, 16);
+        List<Connection> readers = new ArrayList<Connection>();
+        for (int i = 0; i < 3; i++) {
+            readers.add(connect());
+        }
+        Assert.assertTrue(loader.load(connect(), readers));
+
+        Assert.assertEquals(TOWNS + TOWNS * RANKS + TOWNS * MEMBERS, parallel.size());
+        Assert.assertEquals(sequential, parallel);
+        Assert.assertEquals(TOWNS * MEMBERS, loader.getTables().get(2).getCount());
+    }
+
+    @Test
+    public void shouldFailWhenATableCantBeRead() throws SQLException {
+        TableLoader loader = createLoader(new ArrayList<String>(), 16);
+        loader.add(new RowTable("Missing", "SELECT name FROM Missing", new ArrayList<String>()));
+
+        List<Connection> readers = new ArrayList<Connection>();
+        readers.add(connect());
+        Assert.assertFalse(loader.load(connect(), readers));
+    }
+
+    /**
+     * Ranks need their town and members need their rank, like the tables of the universe.
+     */
+    private TableLoader createLoader(final List<String> loaded, int fetchSize) {
+        final Map<String, Map<String, String>> ranksByTown = new HashMap<String, Map<String, String>>();
+        TableLoader loader = new TableLoader(MyTown.instance.LOG, fetchSize);
+        loader.add(new TableLoader.Table("Towns", "SELECT name, maxPlots FROM Towns", "Failed to load towns") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {rs.getString(1), rs.getInt(2)};
+            }
+
+            @Override
+            protected void apply(Object[] row) {
+                ranksByTown.put((String) row[0], new HashMap<String, String>());
+                loaded.add(row[0] + ":" + row[1]);
+            }
+        });
+        loader.add(new TableLoader.Table("Ranks", "SELECT name, townName FROM Ranks", "Failed to load ranks") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {rs.getString(1), rs.getString(2)};
+            }
+
+            @Override
+            protected void apply(Object[] row) {
+                ranksByTown.get((String) row[1]).put((String) row[0], row[1] + "/" + row[0]);
+                loaded.add(row[1] + "/" + row[0]);
+            }
+        });
+        loader.add(new TableLoader.Table("Members", "SELECT resident, townName, ranks FROM Members", "Failed to load members") {
+            @Override
+            protected Object[] read(ResultSet rs) throws SQLException {
+                return new Object[] {rs.getString(1), rs.getString(2), rs.getString(3)};
+            }
+
+            @Override
+            protected void apply(Object[] row) {
+                loaded.add(row[0] + "@" + ranksByTown.get((String) row[1]).get((String) row[2]));
+            }
+        });
+        return loader;
+    }
+
+    private Connection connect() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        connections.add(connection);
+        return connection;
+    }
+
+    private static class RowTable extends TableLoader.Table {
+        private final List<String> loaded;
+
+        public RowTable(String name, String sql, List<String> loaded) {
+            super(name, sql, "Expected failure to load " + name);
+            this.loaded = loaded;
+        }
+
+        @Override
+        protected Object[] read(ResultSet rs) throws SQLException {
+            return new Object[] {rs.getString(1)};
+        }
+
+        @Override
+        protected void apply(Object[] row) {
+            loaded.add((String) row[0]);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package mytown.test.datasource;
+
+import mytown.MyTown;
+import mytown.new_datasource.TableLoader;
+import mytown.new_datasource.UniverseSnapshot;
+import mytown.test.Benchmark;
+import mytown.test.TestMain;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes tables shaped like the ones of the universe to a snapshot and applies them back.
+ */
+public class UniverseSnapshotTest {
+
+    private static final int TOWNS = 500;
+    private static final int BLOCKS = 200000;
+
+    private File file;
+
+    @BeforeClass
+    public static void initLogger() {
+        TestMain.main();
+    }
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("mytown-universe", ".snapshot");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void shouldApplyTheSameRows() {
+        List<Object[]> towns = new ArrayList<Object[]>();
+        towns.add(new Object[] {"Town", false, 0, 1.5F, 64F, -3.25F, 90F, 0F, 4, 1, 2});
+        towns.add(new Object[] {"Admin Town", true, -1, 0F, 0F, 0F, 0F, 0F, 0, 0, 0});
+        List<Object[]> residents = new ArrayList<Object[]>();
+        residents.add(new Object[] {UUID.randomUUID(), "R\u00e9sident", 1420070400L, 1450000000L, 3, false});
+        residents.add(new Object[] {UUID.randomUUID(), "[BuildCraft]", 1420070400L, 1420070400L, 0, true});
+        List<Object[]> flags = new ArrayList<Object[]>();
+        flags.add(new Object[] {"Town", "ENTER", "true"});
+        flags.add(new Object[] {"Town", "MOBS", null});
+
+        UniverseSnapshot snapshot = new UniverseSnapshot(MyTown.instance.LOG, file);
+        Assert.assertTrue(snapshot.write(7, createTables(towns, residents, flags)));
+
+        List<Object[]> loadedTowns = new ArrayList<Object[]>();
+        List<Object[]> loadedResidents = new ArrayList<Object[]>();
+        List<Object[]> loadedFlags = new ArrayList<Object[]>();
+        Assert.assertTrue(snapshot.load(7, createTables(loadedTowns, loadedResidents, loadedFlags)));
+
+        assertRows(towns, loadedTowns);
+        assertRows(residents, loadedResidents);
+        assertRows(flags, loadedFlags);
+    }
+
+    @Test
+    public void shouldNotLoadAnOutdatedSnapshot() {
+        UniverseSnapshot snapshot = new UniverseSnapshot(MyTown.instance.LOG, file);
+        List<Object[]> towns = new ArrayList<Object[]>();
+        towns.add(new Object[] {"Town", false, 0, 0F, 0F, 0F, 0F, 0F, 0, 0, 0});
+        Assert.assertTrue(snapshot.write(7, createTables(towns, new ArrayList<Object[]>(), new ArrayList<Object[]>())));
+
+        List<Object[]> loaded = new ArrayList<Object[]>();
+        Assert.assertFalse(snapshot.load(8, createTables(loaded, new ArrayList<Object[]>(), new ArrayList<Object[]>())));
+        Assert.assertTrue(loaded.isEmpty());
+    }
+
+    @Test
+    public void shouldNotLoadADamagedSnapshot() throws IOException {
+        UniverseSnapshot snapshot = new UniverseSnapshot(MyTown.instance.LOG, file);
+        List<Object[]> residents = new ArrayList<Object[]>();
+        for (int i = 0; i < 100; i++) {
+            residents.add(new Object[] {UUID.randomUUID(), "Resident" + i, 0L, 0L, 0, false});
+        }
+        Assert.assertTrue(snapshot.write(1, createTables(new ArrayList<Object[]>(), residents, new ArrayList<Object[]>())));
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() / 2);
+        raf.close();
+
+        Assert.assertFalse(snapshot.load(1, createTables(new ArrayList<Object[]>(), new ArrayList<Object[]>(), new ArrayList<Object[]>())));
+        Assert.assertFalse(new UniverseSnapshot(MyTown.instance.LOG, new File(file.getPath() + ".missing")).load(1, new ArrayList<TableLoader.Table>()));
+    }
+
+    /**
+     * Prints how long it takes to write and map back a server's worth of claimed chunks.
+     */
+    @Test
+    public void benchmarkClaimedChunks() {
+        Benchmark.assumeEnabled();
+        List<Object[]> blocks = new ArrayList<Object[]>();
+        for (int i = 0; i < BLOCKS; i++) {
+            blocks.add(new Object[] {0, i % 1000, i / 1000, i % 17 == 0, 3, "Town" + (i % TOWNS)});
+        }
+        List<TableLoader.Table> tables = new ArrayList<TableLoader.Table>();
+        tables.add(new RowTable("Blocks", blocks));
+        UniverseSnapshot snapshot = new UniverseSnapshot(MyTown.instance.LOG, file);
+
+        long start = System.nanoTime();
+        Assert.assertTrue(snapshot.write(1, tables));
+        long written = System.nanoTime();
+
+        List<Object[]> loaded = new ArrayList<Object[]>();
+        tables.clear();
+        tables.add(new RowTable("Blocks", loaded));
+        Assert.assertTrue(snapshot.load(1, tables));
+        long read = System.nanoTime();
+
+        Assert.assertEquals(BLOCKS, loaded.size());
+        assertRows(blocks.subList(0, 1000), loaded.subList(0, 1000));
+        Benchmark.report("Snapshot of %d claimed chunks: %d bytes, written in %d ms, loaded in %d ms",
+                BLOCKS, file.length(), (written - start) / 1000000, (read - written) / 1000000);
+    }
+
+    private List<TableLoader.Table> createTables(List<Object[]> towns, List<Object[]> residents, List<Object[]> flags) {
+        List<TableLoader.Table> tables = new ArrayList<TableLoader.Table>();
+        tables.add(new RowTable("Towns", towns));
+        tables.add(new RowTable("Residents", residents));
+        tables.add(new RowTable("TownFlags", flags));
+        return tables;
+    }
+
+    private void assertRows(List<Object[]> expected, List<Object[]> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertTrue(Arrays.toString(actual.get(i)), Arrays.equals(expected.get(i), actual.get(i)));
+        }
+    }
+
+    /**
+     * Snapshots the rows of its list and adds the ones it's given back to it.
+     */
+    private static class RowTable extends TableLoader.Table {
+        private final List<Object[]> rows;
+
+        public RowTable(String name, List<Object[]> rows) {
+            super(name, "SELECT * FROM " + name, "Failed to load " + name);
+            this.rows = rows;
+        }
+
+        @Override
+        protected Object[] read(ResultSet rs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void apply(Object[] row) {
+            rows.add(row);
+        }
+
+        @Override
+        protected void snapshot(UniverseSnapshot.Writer writer) throws IOException {
+            for (Object[] row : rows) {
+                writer.row(row);
+            }
+        }
+    }
+}
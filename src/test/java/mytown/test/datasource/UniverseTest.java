@@ -0,0 +1,93 @@
+package mytown.test.datasource;
+
+import mytown.entities.Plot;
+import mytown.entities.Rank;
+import mytown.entities.Town;
+import mytown.entities.TownBlock;
+import mytown.new_datasource.MyTownUniverse;
+import mytown.test.MyTownTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+public class UniverseTest extends MyTownTest {
+
+    @Test
+    public void shouldOnlyRemoveWhatTheTownOwns() {
+        MyTownUniverse universe = new MyTownUniverse();
+        Town first = createTown(universe, "First", 0);
+        Town second = createTown(universe, "Second", 10);
+        Town third = createTown(universe, "Third", 20);
+
+        universe.removeTownCascade(second);
+
+        Assert.assertEquals(new HashSet<Town>(Arrays.asList(first, third)), new HashSet<Town>(universe.towns));
+        Assert.assertNull(universe.blocks.get(0, 10, 0));
+        Assert.assertNotNull(universe.blocks.get(0, 0, 0));
+        Assert.assertNotNull(universe.blocks.get(0, 20, 0));
+        assertOwnedBy(universe, first, third);
+    }
+
+    @Test
+    public void shouldKeepThePositionsRightAfterRemovals() {
+        MyTownUniverse universe = new MyTownUniverse();
+        List<Town> towns = new ArrayList<Town>();
+        for (int i = 0; i < 5; i++) {
+            towns.add(createTown(universe, "Town" + i, i * 10));
+        }
+
+        // The last entries are moved into the place of the removed ones, the next removals have to find them there
+        universe.removeTownCascade(towns.remove(0));
+        universe.removeTownCascade(towns.remove(3));
+        universe.removeTownCascade(towns.remove(0));
+        assertOwnedBy(universe, towns.toArray(new Town[towns.size()]));
+
+        Plot plot = towns.get(0).plotsContainer.get(towns.get(0).getName() + "Plot");
+        universe.removePlot(plot);
+        Assert.assertFalse(universe.plots.contains(plot));
+        Assert.assertEquals(1, universe.plots.size());
+
+        // Removing it a second time does nothing
+        universe.removePlot(plot);
+        Assert.assertEquals(1, universe.plots.size());
+
+        Rank rank = towns.get(1).ranksContainer.getMayorRank();
+        universe.removeRank(rank);
+        Assert.assertEquals(Arrays.asList(towns.get(0).ranksContainer.getMayorRank()), universe.ranks);
+    }
+
+    private static void assertOwnedBy(MyTownUniverse universe, Town... towns) {
+        Assert.assertEquals(towns.length, universe.plots.size());
+        Assert.assertEquals(towns.length, universe.ranks.size());
+        Assert.assertEquals(towns.length, universe.banks.size());
+        for (Town town : towns) {
+            Assert.assertTrue(universe.plots.contains(town.plotsContainer.get(town.getName() + "Plot")));
+            Assert.assertTrue(universe.ranks.contains(town.ranksContainer.getMayorRank()));
+            Assert.assertTrue(universe.banks.contains(town.bank));
+        }
+    }
+
+    private static Town createTown(MyTownUniverse universe, String name, int chunkX) {
+        Town town = new Town(name);
+        universe.addTown(town);
+
+        TownBlock block = new TownBlock(0, chunkX, 0, false, 0, town);
+        town.townBlocksContainer.add(block);
+        universe.addTownBlock(block);
+
+        Rank rank = new Rank("Mayor", town, Rank.Type.MAYOR);
+        town.ranksContainer.add(rank);
+        universe.addRank(rank);
+
+        universe.addBank(town.bank);
+
+        Plot plot = new Plot(name + "Plot", town, 0, chunkX << 4, 0, 0, (chunkX << 4) + 5, 100, 5);
+        universe.addPlot(plot);
+        town.plotsContainer.add(plot);
+        return town;
+    }
+}
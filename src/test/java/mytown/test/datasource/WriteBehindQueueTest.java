@@ -0,0 +1,124 @@
+package mytown.test.datasource;
+
+import mytown.new_datasource.WriteBehindQueue;
+import mytown.test.TestMain;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class WriteBehindQueueTest {
+
+    private final List<String> written = Collections.synchronizedList(new ArrayList<String>());
+
+    @BeforeClass
+    public static void initLogger() {
+        TestMain.main();
+    }
+
+    private WriteBehindQueue.Write createWrite(Object key, final String value) {
+        return new WriteBehindQueue.Write(key, "Failed to write " + value) {
+            @Override
+            protected void execute() throws SQLException {
+                written.add(value);
+            }
+        };
+    }
+
+    /**
+     * Keeps the writer busy until the latch is released, so the writes after it stay in the queue.
+     */
+    private WriteBehindQueue.Write createBlockingWrite(final CountDownLatch latch) {
+        return new WriteBehindQueue.Write(null, "Failed to wait") {
+            @Override
+            protected void execute() throws SQLException {
+                try {
+                    latch.await();
+                } catch (InterruptedException ex) {
+                    throw new SQLException(ex);
+                }
+            }
+        };
+    }
+
+    @Test
+    public void shouldCoalesceWritesWithTheSameKey() {
+        WriteBehindQueue queue = new WriteBehindQueue();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        queue.add(createBlockingWrite(latch));
+        queue.add(createWrite("TownBanks:A", "bank A 1"));
+        queue.add(createWrite(null, "insert B"));
+        queue.add(createWrite("TownBanks:A", "bank A 2"));
+        queue.add(createWrite(null, "insert C"));
+        Assert.assertEquals(4, queue.getDepth());
+
+        latch.countDown();
+        queue.flush();
+
+        Assert.assertEquals(0, queue.getDepth());
+        Assert.assertEquals(1, queue.getCoalesced());
+        Assert.assertEquals(4, queue.getExecuted());
+        Assert.assertEquals("[insert B, bank A 2, insert C]", written.toString());
+        queue.stop();
+    }
+
+    @Test
+    public void shouldWriteEverythingBeforeStopping() {
+        WriteBehindQueue queue = new WriteBehindQueue();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        queue.add(createBlockingWrite(latch));
+        for (int i = 0; i < 100; i++) {
+            queue.add(createWrite(null, Integer.toString(i)));
+        }
+        latch.countDown();
+        queue.stop();
+
+        Assert.assertEquals(100, written.size());
+        Assert.assertEquals("99", written.get(99));
+
+        // Writes after stopping are run right away
+        queue.add(createWrite(null, "late"));
+        Assert.assertEquals("late", written.get(100));
+    }
+
+    @Test
+    public void shouldReportFailedWrites() {
+        WriteBehindQueue queue = new WriteBehindQueue();
+
+        boolean succeeded = queue.addAndWait(new WriteBehindQueue.Write(null, "Expected failure of a write") {
+            @Override
+            protected void execute() throws SQLException {
+                throw new SQLException("Expected");
+            }
+        });
+        Assert.assertFalse(succeeded);
+        Assert.assertTrue(queue.addAndWait(createWrite(null, "after failure")));
+        Assert.assertEquals(1, queue.getFailed());
+        queue.stop();
+    }
+
+    @Test
+    public void shouldHoldTheWritesUntilReleased() throws InterruptedException {
+        WriteBehindQueue queue = new WriteBehindQueue();
+        queue.addAndWait(createWrite(null, "before"));
+
+        queue.hold();
+        queue.add(createWrite(null, "held 1"));
+        queue.add(createWrite(null, "held 2"));
+        Thread.sleep(50);
+        Assert.assertEquals("[before]", written.toString());
+        Assert.assertEquals(2, queue.getDepth());
+
+        queue.release();
+        queue.flush();
+        Assert.assertEquals("[before, held 1, held 2]", written.toString());
+        queue.stop();
+    }
+}
@@ -0,0 +1,99 @@
+package mytown.test.entities;
+
+import myessentials.entities.api.Volume;
+import mytown.entities.Plot;
+import mytown.entities.Town;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class PlotContainerTest {
+
+    private Town town;
+    private Plot.Container container;
+
+    @Before
+    public void createContainer() {
+        town = new Town("TestTown");
+        container = new Plot.Container();
+    }
+
+    @Test
+    public void shouldFindAPlotThatSpansChunkBorders() {
+        // Spans the chunks -1 to 1 on both axes
+        Plot plot = new Plot("Border", town, 0, -10, 0, -10, 20, 100, 20);
+        container.add(plot);
+
+        Assert.assertSame(plot, container.get(0, -10, 50, -10));
+        Assert.assertSame(plot, container.get(0, 0, 50, 0));
+        Assert.assertSame(plot, container.get(0, 20, 50, 20));
+        Assert.assertSame(plot, container.get(0, -1, 50, 16));
+        Assert.assertNull(container.get(0, 21, 50, 20));
+        Assert.assertNull(container.get(0, -11, 50, 0));
+        Assert.assertNull(container.get(1, 0, 50, 0));
+
+        // Every chunk of the volume holds the plot, it's only returned once
+        List<Plot> plots = container.get(0, new Volume(-32, 0, -32, 31, 255, 31));
+        Assert.assertEquals(Arrays.asList(plot), plots);
+    }
+
+    @Test
+    public void shouldReturnThePlotsThatIntersectAVolumeInOrder() {
+        Plot first = new Plot("First", town, 0, 0, 0, 0, 40, 100, 10);
+        Plot second = new Plot("Second", town, 0, 30, 0, 0, 60, 100, 10);
+        Plot above = new Plot("Above", town, 0, 0, 200, 0, 60, 255, 10);
+        container.add(first);
+        container.add(second);
+        container.add(above);
+
+        Assert.assertEquals(Arrays.asList(first, second), container.get(0, new Volume(0, 0, 0, 63, 100, 15)));
+        Assert.assertEquals(Arrays.asList(second), container.get(0, new Volume(50, 0, 0, 63, 100, 15)));
+        Assert.assertTrue(container.get(0, new Volume(100, 0, 100, 120, 255, 120)).isEmpty());
+        Assert.assertTrue(container.get(-1, new Volume(0, 0, 0, 63, 255, 15)).isEmpty());
+    }
+
+    @Test
+    public void shouldKeepTheIndexInSyncWithTheList() {
+        Plot first = new Plot("First", town, 0, 0, 0, 0, 10, 100, 10);
+        Plot second = new Plot("Second", town, 0, 20, 0, 20, 30, 100, 30);
+        Plot third = new Plot("Third", town, 0, 40, 0, 0, 50, 100, 10);
+
+        container.add(first);
+        container.addAll(Arrays.asList(second, third));
+        Assert.assertSame(second, container.get(0, 25, 50, 25));
+
+        container.remove((Object) second);
+        Assert.assertNull(container.get(0, 25, 50, 25));
+        Assert.assertSame(first, container.get(0, 5, 50, 5));
+
+        container.removeAll(Arrays.asList(first));
+        Assert.assertNull(container.get(0, 5, 50, 5));
+        Assert.assertSame(third, container.get(0, 45, 50, 5));
+
+        container.clear();
+        Assert.assertNull(container.get(0, 45, 50, 5));
+        Assert.assertTrue(container.get(0, new Volume(0, 0, 0, 63, 255, 63)).isEmpty());
+    }
+
+    @Test
+    public void shouldMoveThePlotWhenItIsResized() {
+        Plot plot = new Plot("Small", town, 0, 0, 0, 0, 10, 100, 10);
+        container.add(plot);
+
+        // Plots are resized by replacing them with one of the new size
+        Plot resized = new Plot("Small", town, 0, 0, 0, 0, 40, 100, 40);
+        container.set(container.indexOf(plot), resized);
+        Assert.assertEquals(1, container.size());
+        Assert.assertSame(resized, container.get(0, 5, 50, 5));
+        Assert.assertSame(resized, container.get(0, 35, 50, 35));
+
+        Plot shrunk = new Plot("Small", town, 0, 0, 0, 0, 5, 100, 5);
+        container.set(0, shrunk);
+        Assert.assertSame(shrunk, container.get(0, 5, 50, 5));
+        Assert.assertNull(container.get(0, 35, 50, 35));
+        Assert.assertEquals(Arrays.asList(shrunk), container.get(0, new Volume(0, 0, 0, 47, 255, 47)));
+    }
+}
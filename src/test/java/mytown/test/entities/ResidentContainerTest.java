@@ -0,0 +1,139 @@
+package mytown.test.entities;
+
+import metest.api.TestPlayer;
+import mytown.entities.Resident;
+import mytown.new_datasource.MyTownUniverse;
+import mytown.test.Benchmark;
+import mytown.test.MyTownTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class ResidentContainerTest extends MyTownTest {
+
+    private static final int LOOKUPS = 1000000;
+
+    @Test
+    public void shouldIndexByUUIDAndName() {
+        Resident.Container container = new Resident.Container();
+        Resident first = new Resident(UUID.randomUUID(), "SomePlayer", true);
+        Resident second = new Resident(UUID.randomUUID(), "someplayer", true);
+
+        Assert.assertTrue(container.add(first));
+        Assert.assertTrue(container.add(second));
+        Assert.assertFalse(container.add(first));
+        Assert.assertEquals(2, container.size());
+
+        Assert.assertSame(first, container.get(first.getUUID()));
+        Assert.assertSame(first, container.get("SOMEPLAYER"));
+        Assert.assertTrue(container.contains(second));
+
+        container.remove(first);
+        Assert.assertFalse(container.contains(first));
+        Assert.assertNull(container.get(first.getUUID()));
+        Assert.assertSame(second, container.get("SomePlayer"));
+
+        container.remove(second.getUUID());
+        Assert.assertTrue(container.isEmpty());
+        Assert.assertNull(container.get("SomePlayer"));
+    }
+
+    @Test
+    public void shouldFindTheNextResidentWithTheSameName() {
+        Resident.Container container = new Resident.Container();
+        Resident first = new Resident(UUID.randomUUID(), "Same", true);
+        Resident second = new Resident(UUID.randomUUID(), "same", true);
+        Resident third = new Resident(UUID.randomUUID(), "SAME", true);
+        container.add(first);
+        container.add(second);
+        container.add(third);
+
+        container.remove(second);
+        Assert.assertSame(first, container.get("same"));
+        container.remove(first);
+        Assert.assertSame(third, container.get("same"));
+        container.remove(third);
+        Assert.assertNull(container.get("same"));
+    }
+
+    @Test
+    public void shouldFollowRenames() {
+        Resident.Container container = new Resident.Container();
+        Resident res = new Resident(player.getPersistentID(), "OldName", true);
+        container.add(res);
+        Assert.assertSame(res, container.get("oldname"));
+
+        res.setPlayer(new TestPlayer(this.server, "NewName"));
+        Assert.assertNull(container.get("OldName"));
+        Assert.assertSame(res, container.get("newname"));
+    }
+
+    @Test
+    public void shouldOnlyMoveTheRenamedResidentInItsContainers() {
+        Resident.Container first = new Resident.Container();
+        Resident.Container second = new Resident.Container();
+        Resident.Container left = new Resident.Container();
+        Resident res = new Resident(player.getPersistentID(), "OldName", true);
+        Resident taken = new Resident(UUID.randomUUID(), "NewName", true);
+        Resident stranger = new Resident(UUID.randomUUID(), "Stranger", true);
+        first.add(res);
+        second.add(taken);
+        second.add(res);
+        second.add(stranger);
+        left.add(res);
+        left.remove(res);
+
+        res.setPlayer(new TestPlayer(this.server, "NewName"));
+        Assert.assertNull(first.get("OldName"));
+        Assert.assertSame(res, first.get("NewName"));
+        Assert.assertNull(second.get("OldName"));
+        Assert.assertSame(stranger, second.get("Stranger"));
+        Assert.assertNull(left.get("NewName"));
+
+        // The one that had the name before keeps it, the renamed one is found once it's gone
+        Assert.assertSame(taken, second.get("NewName"));
+        second.remove(taken);
+        Assert.assertSame(res, second.get("NewName"));
+
+        // Cleared containers no longer follow it
+        first.clear();
+        res.setPlayer(new TestPlayer(this.server, "OldName"));
+        Assert.assertNull(first.get("OldName"));
+        Assert.assertSame(res, second.get("OldName"));
+        Assert.assertNull(second.get("NewName"));
+    }
+
+    /**
+     * Lookups of already existing residents at different universe sizes.
+     * With the indexed container the time per lookup should not grow with the number of residents.
+     */
+    @Test
+    public void benchmarkGetOrMakeResident() {
+        Benchmark.assumeEnabled();
+        int[] sizes = {10000, 100000, 1000000};
+        for (int size : sizes) {
+            Resident.Container residents = MyTownUniverse.instance.residents;
+            int before = residents.size();
+            List<Resident> added = new ArrayList<Resident>(size);
+            for (int i = 0; i < size; i++) {
+                Resident res = new Resident(UUID.randomUUID(), "BenchPlayer" + i, true);
+                residents.add(res);
+                added.add(res);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                Resident res = added.get((int) ((i * 2654435761L) % size));
+                Assert.assertSame(res, MyTownUniverse.instance.getOrMakeResident(res.getUUID(), res.getPlayerName()));
+            }
+            long time = System.nanoTime() - start;
+            Benchmark.report("getOrMakeResident with %d residents: %d ns/op", size, time / LOOKUPS);
+
+            residents.subList(before, residents.size()).clear();
+            Assert.assertEquals(before, residents.size());
+        }
+    }
+}
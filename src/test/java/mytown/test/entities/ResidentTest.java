@@ -0,0 +1,27 @@
+package mytown.test.entities;
+
+import mytown.entities.Resident;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.UUID;
+
+public class ResidentTest {
+
+    @Test
+    public void shouldCountTheTeleportCooldownDownFromItsEnd() {
+        Resident res = new Resident(UUID.randomUUID(), "Traveller", true);
+        Assert.assertEquals(0, res.getTeleportCooldown(100));
+
+        res.setTeleportCooldown(200, 1000);
+        Assert.assertEquals(200, res.getTeleportCooldown(1000));
+        Assert.assertEquals(150, res.getTeleportCooldown(1050));
+        Assert.assertEquals(1, res.getTeleportCooldown(1199));
+        Assert.assertEquals(0, res.getTeleportCooldown(1200));
+        Assert.assertEquals(0, res.getTeleportCooldown(5000));
+
+        // Teleporting again starts a new cooldown
+        res.setTeleportCooldown(200, 5000);
+        Assert.assertEquals(200, res.getTeleportCooldown(5000));
+    }
+}
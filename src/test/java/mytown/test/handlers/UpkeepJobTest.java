@@ -0,0 +1,68 @@
+package mytown.test.handlers;
+
+import mytown.config.Config;
+import mytown.entities.AdminTown;
+import mytown.entities.Town;
+import mytown.handlers.UpkeepJob;
+import mytown.test.MyTownTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class UpkeepJobTest extends MyTownTest {
+
+    @Test
+    public void shouldWorkOutTheUpkeepWithoutTouchingTheBanks() {
+        int deletionDays = Config.instance.upkeepTownDeletionDays.get();
+
+        Town rich = new Town("Rich");
+        rich.bank.setAmount(rich.bank.getNextPaymentAmount() * 10);
+        // In debt, so they can't pay even if the upkeep is free
+        Town poor = new Town("Poor");
+        poor.bank.setAmount(-1);
+        Town doomed = new Town("Doomed");
+        doomed.bank.setAmount(-1);
+        doomed.bank.setDaysNotPaid(deletionDays - 1);
+        Town admin = new AdminTown("Admin");
+
+        List<Town> towns = new ArrayList<Town>(Arrays.asList(rich, poor, doomed, admin));
+        int richAmount = rich.bank.getAmount();
+        List<UpkeepJob.Payment> payments = UpkeepJob.compute(towns);
+
+        // Admin towns don't pay upkeep
+        Assert.assertEquals(3, payments.size());
+
+        UpkeepJob.Payment richPayment = payments.get(0);
+        Assert.assertSame(rich, richPayment.town);
+        Assert.assertTrue(richPayment.paid);
+        Assert.assertEquals(rich.bank.getNextPaymentAmount(), richPayment.cost);
+        Assert.assertEquals(0, richPayment.daysNotPaid);
+        Assert.assertFalse(richPayment.delete);
+
+        UpkeepJob.Payment poorPayment = payments.get(1);
+        Assert.assertFalse(poorPayment.paid);
+        Assert.assertEquals(1, poorPayment.daysNotPaid);
+        Assert.assertEquals(deletionDays == 1, poorPayment.delete);
+
+        UpkeepJob.Payment doomedPayment = payments.get(2);
+        Assert.assertFalse(doomedPayment.paid);
+        Assert.assertEquals(deletionDays, doomedPayment.daysNotPaid);
+        Assert.assertEquals(deletionDays > 0, doomedPayment.delete);
+
+        // Nothing is taken until the payments are applied
+        Assert.assertEquals(richAmount, rich.bank.getAmount());
+        Assert.assertEquals(0, poor.bank.getDaysNotPaid());
+        Assert.assertEquals(deletionDays - 1, doomed.bank.getDaysNotPaid());
+
+        UpkeepJob.Projection projection = new UpkeepJob.Projection(payments);
+        Assert.assertEquals(1, projection.paying);
+        Assert.assertEquals(2, projection.failing);
+        if (deletionDays > 1) {
+            Assert.assertEquals(Collections.singletonList("Doomed"), projection.deleted);
+        }
+    }
+}
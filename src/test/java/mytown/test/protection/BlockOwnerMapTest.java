@@ -0,0 +1,159 @@
+package mytown.test.protection;
+
+import mytown.entities.Resident;
+import mytown.new_datasource.MyTownUniverse;
+import mytown.protection.BlockOwnerMap;
+import mytown.util.LongObjectMap;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class BlockOwnerMapTest {
+
+    private TestMap map;
+    private Resident owner;
+    private Resident other;
+
+    @Before
+    public void createMap() {
+        map = new TestMap();
+        owner = new Resident(UUID.randomUUID(), "Owner", true);
+        other = new Resident(UUID.randomUUID(), "Other", true);
+        MyTownUniverse.instance.addResident(owner);
+        MyTownUniverse.instance.addResident(other);
+    }
+
+    @After
+    public void clearMap() {
+        map.clear();
+        MyTownUniverse.instance.removeResident(owner);
+        MyTownUniverse.instance.removeResident(other);
+    }
+
+    @Test
+    public void shouldPutTheOwnersInPlaceOnTheNextTick() {
+        map.loadChunk(0, 0, 0);
+        Assert.assertTrue(map.isLoading(0, 5, 5));
+        Assert.assertEquals(1, map.reads.size());
+
+        // Put while it's read, it's kept on top of what's read
+        map.put(0, 1, 64, 1, other);
+        map.finishRead(0, LongObjectMap.packBlock(1, 64, 1), owner);
+        map.finishRead(0, LongObjectMap.packBlock(2, 64, 2), owner);
+        Assert.assertTrue(map.isLoading(0, 5, 5));
+
+        map.tick();
+        Assert.assertFalse(map.isLoading(0, 5, 5));
+        Assert.assertSame(other, map.get(0, 1, 64, 1));
+        Assert.assertSame(owner, map.get(0, 2, 64, 2));
+        Assert.assertTrue(MyTownUniverse.instance.residentCache.isPinned(owner));
+        Assert.assertTrue(MyTownUniverse.instance.residentCache.isPinned(other));
+
+        // Loading it again doesn't read it again
+        map.loadChunk(0, 0, 0);
+        Assert.assertEquals(1, map.reads.size());
+
+        map.unloadChunk(0, 0, 0);
+        Assert.assertNull(map.get(0, 2, 64, 2));
+        Assert.assertFalse(MyTownUniverse.instance.residentCache.isPinned(owner));
+        Assert.assertFalse(MyTownUniverse.instance.residentCache.isPinned(other));
+    }
+
+    @Test
+    public void shouldDropWhatIsReadAfterTheChunkUnloaded() {
+        map.loadChunk(0, 0, 0);
+        map.put(0, 1, 64, 1, other);
+        map.unloadChunk(0, 0, 0);
+        Assert.assertFalse(MyTownUniverse.instance.residentCache.isPinned(other));
+
+        map.finishRead(0, LongObjectMap.packBlock(2, 64, 2), owner);
+        map.tick();
+        Assert.assertFalse(map.isLoading(0, 5, 5));
+        Assert.assertNull(map.get(0, 2, 64, 2));
+        Assert.assertFalse(MyTownUniverse.instance.residentCache.isPinned(owner));
+        Assert.assertFalse(MyTownUniverse.instance.residentCache.isPinned(other));
+
+        // Another chunk referencing the same owner keeps it referenced
+        map.loadChunk(0, 1, 0);
+        map.finishRead(1, LongObjectMap.packBlock(20, 64, 2), owner);
+        map.loadChunk(0, 0, 0);
+        map.unloadChunk(0, 0, 0);
+        map.finishRead(2, LongObjectMap.packBlock(2, 64, 2), owner);
+        map.tick();
+        Assert.assertSame(owner, map.get(0, 20, 64, 2));
+        Assert.assertTrue(MyTownUniverse.instance.residentCache.isPinned(owner));
+    }
+
+    @Test
+    public void shouldOnlyWriteTheOwnersOfChunksThatAreNotLoaded() {
+        map.put(0, 1, 64, 1, owner);
+        Assert.assertEquals(1, map.saves);
+        Assert.assertTrue(map.reads.isEmpty());
+        Assert.assertFalse(map.isLoading(0, 1, 1));
+        Assert.assertNull(map.get(0, 1, 64, 1));
+        Assert.assertFalse(MyTownUniverse.instance.residentCache.isPinned(owner));
+
+        Assert.assertTrue(map.remove(0, 1, 64, 1));
+        Assert.assertEquals(1, map.deletes);
+        Assert.assertTrue(map.reads.isEmpty());
+    }
+
+    @Test
+    public void shouldOnlyForgetTheOwnerOnceItIsDeleted() {
+        Resident deleted = new Resident(UUID.randomUUID(), "Deleted", true);
+        map.loadChunk(0, 0, 0);
+        map.finishRead(0, LongObjectMap.packBlock(1, 64, 1), deleted);
+        map.tick();
+
+        MyTownUniverse.instance.residentCache.setMissing(deleted.getUUID());
+        Assert.assertNull(map.get(0, 1, 64, 1));
+        Assert.assertFalse(map.remove(0, 1, 64, 1));
+        Assert.assertFalse(MyTownUniverse.instance.residentCache.isPinned(deleted));
+    }
+
+    private static class TestMap extends BlockOwnerMap {
+        private final List<Read> reads = new ArrayList<Read>();
+        private int saves = 0;
+        private int deletes = 0;
+
+        @Override
+        protected void readOwners(int dim, int chunkX, int chunkZ, LongObjectMap<UUID> owners, Runnable done) {
+            reads.add(new Read(owners, done));
+        }
+
+        @Override
+        protected void saveOwner(Resident res, int dim, int x, int y, int z) {
+            saves++;
+        }
+
+        @Override
+        protected void deleteOwner(int dim, int x, int y, int z) {
+            deletes++;
+        }
+
+        private void finishRead(int index, long key, Resident res) {
+            Read read = reads.get(index);
+            read.owners.put(key, res.getUUID());
+            if (!read.done) {
+                read.done = true;
+                read.callback.run();
+            }
+        }
+    }
+
+    private static class Read {
+        private final LongObjectMap<UUID> owners;
+        private final Runnable callback;
+        private boolean done = false;
+
+        private Read(LongObjectMap<UUID> owners, Runnable callback) {
+            this.owners = owners;
+            this.callback = callback;
+        }
+    }
+}
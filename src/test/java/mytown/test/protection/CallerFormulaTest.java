@@ -0,0 +1,124 @@
+package mytown.test.protection;
+
+import bsh.Interpreter;
+import com.google.common.base.Joiner;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.internal.LazilyParsedNumber;
+import mytown.protection.segment.caller.Caller;
+import mytown.protection.segment.caller.CallerFormula;
+import mytown.protection.segment.getter.Getter;
+import mytown.protection.segment.getter.GetterConstant;
+import mytown.test.Benchmark;
+import mytown.test.TestMain;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CallerFormulaTest {
+
+    private static final int EVALUATIONS = 100000;
+
+    private Gson gson;
+    private Getter.Container getters;
+
+    @BeforeClass
+    public static void initLogger() {
+        TestMain.main();
+    }
+
+    @Before
+    public void createGetters() {
+        GsonBuilder builder = new GsonBuilder();
+        new Caller.Serializer().register(builder);
+        gson = builder.create();
+
+        getters = new Getter.Container();
+        addGetter("energy", 12);
+        addGetter("radius", 2.5D);
+        addGetter("upgrades", new LazilyParsedNumber("3"));
+        addGetter("negative", -4);
+    }
+
+    private void addGetter(String name, Object constant) {
+        Getter getter = new GetterConstant(constant);
+        getter.setName(name);
+        getters.add(getter);
+    }
+
+    private CallerFormula createFormula(String formula) {
+        JsonObject json = new JsonObject();
+        json.addProperty("element", formula);
+        json.addProperty("type", "FORMULA");
+        CallerFormula caller = (CallerFormula) gson.fromJson(json, Caller.class);
+        caller.setGetters(getters);
+        return caller;
+    }
+
+    @Test
+    public void shouldMatchBeanShell() throws Exception {
+        String[] formulas = {
+                "energy + 4",
+                "energy / 5",
+                "energy / 5 * radius",
+                "radius * radius + upgrades",
+                "upgrades - negative * 2",
+                "energy ^ 2 + 1",
+                "( energy + 4 ) / ( upgrades - 1 )",
+                "energy - - 2",
+                "1.5 * upgrades / 2"
+        };
+        for (String formula : formulas) {
+            Assert.assertEquals(formula, legacyInvoke(formula), createFormula(formula).invoke(this, this));
+        }
+    }
+
+    @Test
+    public void shouldReturnNullForInvalidFormulas() throws Exception {
+        Assert.assertNull(createFormula("energy +").invoke(this, this));
+        Assert.assertNull(createFormula("unknown * 2").invoke(this, this));
+        Assert.assertNull(createFormula("radius ^ 2").invoke(this, this));
+        Assert.assertNull(createFormula("energy / 0").invoke(this, this));
+    }
+
+    /**
+     * Compares the BeanShell evaluation that ran before formulas were compiled with the compiled one.
+     */
+    @Test
+    public void benchmarkFormula() throws Exception {
+        Benchmark.assumeEnabled();
+        String formula = "( energy + 4 ) * radius / upgrades";
+        CallerFormula caller = createFormula(formula);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < EVALUATIONS; i++) {
+            legacyInvoke(formula);
+        }
+        long legacyTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < EVALUATIONS; i++) {
+            caller.invoke(this, this);
+        }
+        long compiledTime = System.nanoTime() - start;
+
+        Benchmark.report("Formula: BeanShell %d ns/op, compiled %d ns/op", legacyTime / EVALUATIONS, compiledTime / EVALUATIONS);
+    }
+
+    /**
+     * The evaluation as it was done before formulas were compiled, kept here as a baseline.
+     */
+    private Object legacyInvoke(String formula) throws Exception {
+        String[] elements = formula.split(" ");
+        for (int i = 0; i < elements.length; i++) {
+            if (getters.contains(elements[i])) {
+                elements[i] = getters.get(elements[i]).invoke(Object.class, this, this).toString();
+            }
+        }
+        Interpreter interpreter = new Interpreter();
+        interpreter.eval("result = " + Joiner.on(' ').join(elements));
+        return interpreter.get("result");
+    }
+}
@@ -0,0 +1,100 @@
+package mytown.test.protection;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import mytown.protection.segment.caller.Caller;
+import mytown.protection.segment.caller.CallerNBT;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.tileentity.TileEntity;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CallerNBTTest {
+
+    private Gson gson;
+
+    @Before
+    public void createGson() {
+        GsonBuilder builder = new GsonBuilder();
+        new Caller.Serializer().register(builder);
+        gson = builder.create();
+    }
+
+    @After
+    public void endCache() {
+        CallerNBT.endCache();
+    }
+
+    private Caller createCaller(String path) {
+        JsonObject json = new JsonObject();
+        json.addProperty("element", path);
+        json.addProperty("type", "NBT");
+        return gson.fromJson(json, Caller.class);
+    }
+
+    /**
+     * The NBT of a chest with a stack of 64 cobblestone in its third slot.
+     */
+    private NBTTagCompound createChest() {
+        NBTTagCompound item = new NBTTagCompound();
+        item.setShort("id", (short) 4);
+        item.setByte("Slot", (byte) 2);
+        item.setByte("Count", (byte) 64);
+        NBTTagList items = new NBTTagList();
+        items.appendTag(item);
+
+        NBTTagCompound chest = new NBTTagCompound();
+        chest.setTag("Items", items);
+        chest.setString("CustomName", "Storage");
+        return chest;
+    }
+
+    @Test
+    public void shouldReadPaths() throws Exception {
+        NBTTagCompound chest = createChest();
+        Assert.assertEquals(4, createCaller("Items/0/id").invoke(chest));
+        Assert.assertEquals(2, createCaller("Items/0/Slot").invoke(chest));
+        Assert.assertEquals(64, createCaller("Items/0/Count").invoke(chest));
+        Assert.assertNull(createCaller("Items/0/tag").invoke(chest));
+        Assert.assertEquals("Storage", createCaller("CustomName").invoke(chest));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void shouldNotReadPastTheList() throws Exception {
+        NBTTagCompound chest = createChest();
+        createCaller("Items/1/id").invoke(chest);
+    }
+
+    @Test
+    public void shouldOnlyShareTheNBTDuringASweep() throws Exception {
+        CountingTileEntity te = new CountingTileEntity();
+        Caller caller = createCaller("Items/0/id");
+
+        Assert.assertEquals(4, caller.invoke(te));
+        Assert.assertEquals(4, caller.invoke(te));
+        Assert.assertEquals(2, te.writes);
+
+        CallerNBT.startCache();
+        Assert.assertSame(CallerNBT.getTileEntityNBT(te), CallerNBT.getTileEntityNBT(te));
+        Assert.assertEquals(4, caller.invoke(te));
+        Assert.assertEquals(3, te.writes);
+        CallerNBT.endCache();
+
+        Assert.assertEquals(4, caller.invoke(te));
+        Assert.assertEquals(4, te.writes);
+    }
+
+    private class CountingTileEntity extends TileEntity {
+        private int writes = 0;
+
+        @Override
+        public void writeToNBT(NBTTagCompound nbt) {
+            writes++;
+            nbt.setTag("Items", createChest().getTag("Items"));
+        }
+    }
+}
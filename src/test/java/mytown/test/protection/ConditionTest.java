@@ -0,0 +1,170 @@
+package mytown.test.protection;
+
+import com.google.gson.internal.LazilyParsedNumber;
+import myessentials.utils.StringUtils;
+import mytown.protection.segment.Condition;
+import mytown.protection.segment.getter.Getter;
+import mytown.protection.segment.getter.GetterConstant;
+import mytown.test.Benchmark;
+import mytown.util.exceptions.ConditionException;
+import mytown.util.exceptions.GetterException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConditionTest {
+
+    private static final int EVALUATIONS = 1000000;
+    private static final String BENCHMARK_CONDITION = "isWorking == false AND energy < 10 OR mode != 'idle' AND ratio > 0.5";
+
+    private Getter.Container getters;
+
+    @Before
+    public void createGetters() {
+        getters = new Getter.Container();
+        addGetter("isWorking", false);
+        addGetter("energy", new LazilyParsedNumber("5"));
+        addGetter("mode", "active");
+        addGetter("ratio", new LazilyParsedNumber("0.75"));
+    }
+
+    private void addGetter(String name, Object constant) {
+        Getter getter = new GetterConstant(constant);
+        getter.setName(name);
+        getters.add(getter);
+    }
+
+    @Test
+    public void shouldEvaluateTypedComparisons() throws Exception {
+        Assert.assertTrue(new Condition("isWorking == false", getters).execute(this));
+        Assert.assertTrue(new Condition("energy > 4", getters).execute(this));
+        Assert.assertFalse(new Condition("energy != 5", getters).execute(this));
+        Assert.assertTrue(new Condition("ratio < 1.5", getters).execute(this));
+        Assert.assertTrue(new Condition("mode == 'active'", getters).execute(this));
+    }
+
+    @Test
+    public void shouldMatchLegacyEvaluator() throws Exception {
+        String[] conditions = {
+                BENCHMARK_CONDITION,
+                "energy > 10 OR isWorking == true",
+                "energy < 10 AND mode == 'idle' OR isWorking != true",
+                "isWorking == true AND energy > 100 OR mode == 'active'"
+        };
+        for (String condition : conditions) {
+            Assert.assertEquals(condition, legacyExecute(condition.split(" "), this, getters), new Condition(condition, getters).execute(this));
+        }
+    }
+
+    @Test
+    public void shouldRejectMalformedConditionsWhenCompiled() {
+        String[] malformed = {
+                "",
+                "energy <",
+                "missing == true",
+                "energy >= 5",
+                "mode < 'idle'",
+                "energy == 5 XOR isWorking == false",
+                "mode == idle"
+        };
+        for (String condition : malformed) {
+            try {
+                new Condition(condition, getters);
+                Assert.fail("Condition should have been rejected: " + condition);
+            } catch (ConditionException ex) {
+                // Expected
+            }
+        }
+    }
+
+    /**
+     * Compares the string based evaluator that ran before conditions were compiled with the compiled one.
+     */
+    @Test
+    public void benchmarkEvaluators() throws Exception {
+        Benchmark.assumeEnabled();
+        String[] tokens = BENCHMARK_CONDITION.split(" ");
+        Condition condition = new Condition(BENCHMARK_CONDITION, getters);
+        int matches = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < EVALUATIONS; i++) {
+            if (legacyExecute(tokens, this, getters)) {
+                matches++;
+            }
+        }
+        long legacyTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < EVALUATIONS; i++) {
+            if (condition.execute(this)) {
+                matches--;
+            }
+        }
+        long compiledTime = System.nanoTime() - start;
+
+        Benchmark.report("Condition: legacy %d ns/op, compiled %d ns/op", legacyTime / EVALUATIONS, compiledTime / EVALUATIONS);
+        Assert.assertEquals(0, matches);
+    }
+
+    /**
+     * The evaluator as it was before conditions were compiled, kept here as a baseline.
+     * Float values are read as numbers here as well, the old evaluator could only compare integers against them.
+     */
+    private static boolean legacyExecute(String[] conditionString, Object object, Getter.Container getters) throws ConditionException, GetterException {
+        boolean current;
+        for (int i = 0; i < conditionString.length; i += 4) {
+            if (StringUtils.tryParseBoolean(conditionString[i + 2])) {
+                boolean value = (Boolean) getters.get(conditionString[i]).invoke(Boolean.class, object, object);
+                if ("==".equals(conditionString[i + 1])) {
+                    current = value == Boolean.parseBoolean(conditionString[i + 2]);
+                } else if ("!=".equals(conditionString[i + 1])) {
+                    current = value != Boolean.parseBoolean(conditionString[i + 2]);
+                } else {
+                    throw new ConditionException("Invalid condition");
+                }
+            } else if (StringUtils.tryParseInt(conditionString[i + 2])) {
+                int value = (Integer) getters.get(conditionString[i]).invoke(Integer.class, object, object);
+                if ("==".equals(conditionString[i + 1])) {
+                    current = value == Integer.parseInt(conditionString[i + 2]);
+                } else if ("!=".equals(conditionString[i + 1])) {
+                    current = value != Integer.parseInt(conditionString[i + 2]);
+                } else if ("<".equals(conditionString[i + 1])) {
+                    current = value < Integer.parseInt(conditionString[i + 2]);
+                } else if (">".equals(conditionString[i + 1])) {
+                    current = value > Integer.parseInt(conditionString[i + 2]);
+                } else {
+                    throw new ConditionException("Invalid condition");
+                }
+            } else if (StringUtils.tryParseFloat(conditionString[i + 2])) {
+                float value = ((Number) getters.get(conditionString[i]).invoke(Number.class, object, object)).floatValue();
+                if ("==".equals(conditionString[i + 1])) {
+                    current = value == Float.parseFloat(conditionString[i + 2]);
+                } else if ("!=".equals(conditionString[i + 1])) {
+                    current = value != Float.parseFloat(conditionString[i + 2]);
+                } else if ("<".equals(conditionString[i + 1])) {
+                    current = value < Float.parseFloat(conditionString[i + 2]);
+                } else if (">".equals(conditionString[i + 1])) {
+                    current = value > Float.parseFloat(conditionString[i + 2]);
+                } else {
+                    throw new ConditionException("Invalid condition");
+                }
+            } else if (conditionString[i + 2].startsWith("'") && conditionString[i + 2].endsWith("'")) {
+                String value = (String) getters.get(conditionString[i]).invoke(String.class, object, object);
+                if ("==".equals(conditionString[i + 1])) {
+                    current = value.equals(conditionString[i + 2].substring(1, conditionString[i + 2].length() - 1));
+                } else if ("!=".equals(conditionString[i + 1])) {
+                    current = !value.equals(conditionString[i + 2].substring(1, conditionString[i + 2].length() - 1));
+                } else {
+                    throw new ConditionException("Invalid condition");
+                }
+            } else {
+                throw new ConditionException("Invalid type");
+            }
+
+            if (conditionString.length <= i + 3 || current && "OR".equals(conditionString[i + 3]) || !current && "AND".equals(conditionString[i + 3]))
+                return current;
+        }
+        return false;
+    }
+}
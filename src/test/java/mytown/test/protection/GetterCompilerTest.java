@@ -0,0 +1,168 @@
+package mytown.test.protection;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import mytown.protection.segment.caller.Caller;
+import mytown.protection.segment.getter.GetterAccessor;
+import mytown.protection.segment.getter.GetterCompiler;
+import mytown.protection.segment.getter.GetterDynamic;
+import mytown.test.Benchmark;
+import mytown.test.TestMain;
+import mytown.util.exceptions.GetterException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+
+public class GetterCompilerTest {
+
+    private static final int INVOCATIONS = 5000000;
+
+    public static class Inner {
+        public int level = 7;
+
+        public boolean isWorking() {
+            return true;
+        }
+
+        public Integer getBoxed() {
+            return 42;
+        }
+
+        public Object getNothing() {
+            return null;
+        }
+    }
+
+    public static class Machine {
+        public Inner inner = new Inner();
+        private int secret = 3;
+        public int brokenCalls = 0;
+
+        public Inner getBroken() {
+            brokenCalls++;
+            throw new IllegalStateException("Broken");
+        }
+
+        public Inner getInner() {
+            return inner;
+        }
+    }
+
+    private Gson gson;
+
+    @BeforeClass
+    public static void initLogger() {
+        TestMain.main();
+    }
+
+    @Before
+    public void createGson() {
+        GsonBuilder builder = new GsonBuilder();
+        new Caller.Serializer().register(builder);
+        gson = builder.create();
+    }
+
+    /**
+     * Creates the callers from pairs of type and element.
+     */
+    private List<Caller> createCallers(String... elements) {
+        JsonArray json = new JsonArray();
+        for (int i = 0; i < elements.length; i += 2) {
+            JsonObject caller = new JsonObject();
+            caller.addProperty("type", elements[i]);
+            caller.addProperty("element", elements[i + 1]);
+            json.add(caller);
+        }
+        return gson.fromJson(json, new TypeToken<List<Caller>>() {}.getType());
+    }
+
+    private GetterDynamic createGetter(String... elements) {
+        GetterDynamic getter = new GetterDynamic(createCallers(elements));
+        getter.setName("test");
+        getter.setClass(Machine.class);
+        return getter;
+    }
+
+    @Test
+    public void shouldReadCompiledChains() throws Exception {
+        Machine machine = new Machine();
+        Assert.assertNotNull(GetterCompiler.compile(Machine.class, createCallers("FIELD", "inner", "FIELD", "level")));
+        Assert.assertEquals(7, createGetter("FIELD", "inner", "FIELD", "level").getInt(machine));
+        Assert.assertEquals(7, createGetter("METHOD", "getInner", "FIELD", "level").getObject(machine));
+        Assert.assertTrue(createGetter("METHOD", "getInner", "METHOD", "isWorking").getBoolean(machine));
+        Assert.assertEquals(42, createGetter("FIELD", "inner", "METHOD", "getBoxed").getInt(machine));
+    }
+
+    @Test
+    public void shouldCompileAChainOnlyOnce() {
+        GetterAccessor accessor = GetterCompiler.compile(Machine.class, createCallers("METHOD", "getInner", "FIELD", "level"));
+        Assert.assertNotNull(accessor);
+        // Like when the protections are loaded again
+        Assert.assertSame(accessor, GetterCompiler.compile(Machine.class, createCallers("METHOD", "getInner", "FIELD", "level")));
+        Assert.assertNotSame(accessor, GetterCompiler.compile(Machine.class, createCallers("METHOD", "getInner", "METHOD", "isWorking")));
+    }
+
+    @Test
+    public void shouldFallBackToCallers() throws Exception {
+        Machine machine = new Machine();
+        Assert.assertNull(GetterCompiler.compile(Machine.class, createCallers("FIELD", "secret")));
+        Assert.assertEquals(3, createGetter("FIELD", "secret").getInt(machine));
+
+        GetterDynamic getter = createGetter("FIELD", "inner", "FIELD", "level");
+        machine.inner = null;
+        try {
+            getter.getInt(machine);
+            Assert.fail("A null value in the chain should be reported");
+        } catch (GetterException ex) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void shouldReturnWhatTheAccessorReturns() throws Exception {
+        Machine machine = new Machine();
+        Assert.assertNotNull(GetterCompiler.compile(Machine.class, createCallers("FIELD", "inner", "METHOD", "getNothing")));
+        Assert.assertNull(createGetter("FIELD", "inner", "METHOD", "getNothing").getObject(machine));
+
+        GetterDynamic getter = createGetter("METHOD", "getBroken", "FIELD", "level");
+        try {
+            getter.getInt(machine);
+            Assert.fail("An exception of the chain should be reported");
+        } catch (GetterException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertEquals(1, machine.brokenCalls);
+    }
+
+    /**
+     * Compares the compiled accessor with invoking the callers one by one.
+     */
+    @Test
+    public void benchmarkGetterChain() throws Exception {
+        Benchmark.assumeEnabled();
+        Machine machine = new Machine();
+        GetterDynamic getter = createGetter("METHOD", "getInner", "FIELD", "level");
+        int sum = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < INVOCATIONS; i++) {
+            sum += (Integer) getter.invoke(Integer.class, machine, machine);
+        }
+        long callersTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < INVOCATIONS; i++) {
+            sum -= getter.getInt(machine);
+        }
+        long compiledTime = System.nanoTime() - start;
+
+        Benchmark.report("Getter chain: callers %d ns/op, compiled %d ns/op", callersTime / INVOCATIONS, compiledTime / INVOCATIONS);
+        Assert.assertEquals(0, sum);
+    }
+}
@@ -0,0 +1,106 @@
+package mytown.test.protection;
+
+import mytown.entities.Resident;
+import mytown.protection.PlacementQueue;
+import net.minecraft.tileentity.TileEntity;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+public class PlacementQueueTest {
+
+    private TestQueue queue;
+    private Resident owner;
+    private Resident other;
+
+    @Before
+    public void createQueue() {
+        queue = new TestQueue();
+        owner = new Resident(UUID.randomUUID(), "Owner", true);
+        other = new Resident(UUID.randomUUID(), "Other", true);
+    }
+
+    @Test
+    public void shouldResolveThePlacementOnceItsTileEntityAppears() {
+        queue.add(owner, 0, 1, 64, 1, 20);
+        Assert.assertTrue(queue.isPending(0, 1, 64, 1));
+        Assert.assertFalse(queue.isPending(0, 1, 65, 1));
+        Assert.assertFalse(queue.isPending(1, 1, 64, 1));
+
+        queue.tick(5);
+        Assert.assertTrue(queue.isPending(0, 1, 64, 1));
+        Assert.assertTrue(queue.resolved.isEmpty());
+
+        TileEntity te = queue.place(0, 1, 64, 1);
+        queue.tick(6);
+        Assert.assertFalse(queue.isPending(0, 1, 64, 1));
+        Assert.assertEquals(0, queue.size());
+        Assert.assertSame(owner, queue.resolved.get(te));
+    }
+
+    @Test
+    public void shouldDropThePlacementOnceItTimesOut() {
+        queue.add(owner, 0, 1, 64, 1, 20);
+        queue.add(other, 0, 2, 64, 2, 30);
+
+        queue.tick(19);
+        Assert.assertEquals(2, queue.size());
+
+        queue.tick(20);
+        Assert.assertFalse(queue.isPending(0, 1, 64, 1));
+        Assert.assertTrue(queue.isPending(0, 2, 64, 2));
+
+        // Appearing after it timed out, the owner is no longer recorded
+        queue.place(0, 1, 64, 1);
+        queue.tick(21);
+        Assert.assertTrue(queue.resolved.isEmpty());
+
+        queue.tick(30);
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void shouldOnlyKeepTheLastPlacementOfAPosition() {
+        queue.add(owner, 0, 1, 64, 1, 20);
+        queue.add(other, 0, 1, 64, 1, 40);
+        Assert.assertEquals(1, queue.size());
+
+        queue.tick(25);
+        Assert.assertTrue(queue.isPending(0, 1, 64, 1));
+
+        TileEntity te = queue.place(0, 1, 64, 1);
+        queue.tick(26);
+        Assert.assertEquals(1, queue.resolved.size());
+        Assert.assertSame(other, queue.resolved.get(te));
+    }
+
+    private static class TestQueue extends PlacementQueue {
+        private final Map<String, TileEntity> world = new HashMap<String, TileEntity>();
+        private final Map<TileEntity, Resident> resolved = new IdentityHashMap<TileEntity, Resident>();
+
+        private TileEntity place(int dim, int x, int y, int z) {
+            TileEntity te = new TileEntity();
+            world.put(key(dim, x, y, z), te);
+            return te;
+        }
+
+        private static String key(int dim, int x, int y, int z) {
+            return dim + " " + x + " " + y + " " + z;
+        }
+
+        @Override
+        protected TileEntity getTileEntity(int dim, int x, int y, int z) {
+            return world.get(key(dim, x, y, z));
+        }
+
+        @Override
+        protected void resolve(TileEntity te, Resident res) {
+            resolved.put(te, res);
+        }
+    }
+}
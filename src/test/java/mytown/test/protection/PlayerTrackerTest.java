@@ -0,0 +1,201 @@
+package mytown.test.protection;
+
+import mytown.entities.Plot;
+import mytown.entities.Town;
+import mytown.protection.PlayerTracker;
+import mytown.test.Benchmark;
+import mytown.util.LongObjectMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+public class PlayerTrackerTest {
+
+    private static final int PLAYERS = 200;
+    private static final int TICKS = 20 * 60;
+
+    @Test
+    public void shouldOnlyMoveToAnotherBlock() {
+        PlayerTracker tracker = new PlayerTracker();
+        PlayerTracker.State state = tracker.get(UUID.randomUUID());
+
+        Assert.assertTrue(state.moveTo(0, 10, 64, -3));
+        Assert.assertFalse(state.moveTo(0, 10, 64, -3));
+        Assert.assertTrue(state.moveTo(0, 10, 65, -3));
+        Assert.assertTrue(state.moveTo(-1, 10, 65, -3));
+        Assert.assertFalse(state.moveTo(-1, 10, 65, -3));
+
+        state.invalidate();
+        Assert.assertTrue(state.moveTo(-1, 10, 65, -3));
+    }
+
+    @Test
+    public void shouldKeepTheStateUntilForgotten() {
+        PlayerTracker tracker = new PlayerTracker();
+        UUID uuid = UUID.randomUUID();
+        PlayerTracker.State state = tracker.get(uuid);
+        state.moveTo(0, 0, 64, 0);
+        state.allow(0, 0.5, 64, 0.5, null);
+
+        Assert.assertSame(state, tracker.get(uuid));
+        Assert.assertTrue(tracker.get(uuid).hasAllowedPosition());
+
+        tracker.remove(uuid);
+        Assert.assertEquals(0, tracker.size());
+        Assert.assertFalse(tracker.get(uuid).hasAllowedPosition());
+    }
+
+    @Test
+    public void shouldSendThePlayerBackWhereItWasAllowed() {
+        PlayerTracker.State state = new PlayerTracker().get(UUID.randomUUID());
+
+        // Never allowed anywhere, it's knocked back to the border instead
+        Assert.assertTrue(state.moveTo(0, 3, 64, 0));
+        Assert.assertFalse(state.deny(0, 3.5, 64, 0.5));
+        Assert.assertFalse(state.hasAllowedPosition());
+        Assert.assertTrue(state.moveTo(0, 3, 64, 0));
+
+        state.allow(0, 0.5, 64, 0.5, null);
+        Assert.assertTrue(state.moveTo(0, 1, 64, 0));
+        Assert.assertTrue(state.deny(0, 1.5, 64, 0.5));
+        Assert.assertTrue(state.deny(-1, 0.5, 64, 0.5));
+
+        // Checked again once it's back, even though it's in the block it was last checked in
+        Assert.assertTrue(state.moveTo(0, 0, 64, 0));
+        Assert.assertFalse(state.deny(0, 0.5, 64, 0.5));
+        Assert.assertTrue(state.moveTo(0, 0, 64, 0));
+        Assert.assertEquals(0.5, state.getAllowedX(), 0);
+        Assert.assertEquals(0, state.getAllowedDim());
+    }
+
+    @Test
+    public void shouldNoticeEnteringAndLeavingPlots() {
+        Town town = new Town("Town");
+        Town other = new Town("Other");
+        Plot plot = new Plot("Plot", town, 0, 0, 0, 0, 9, 255, 9);
+        Plot neighbour = new Plot("Neighbour", town, 0, 10, 0, 0, 19, 255, 9);
+        Plot otherPlot = new Plot("OtherPlot", other, 0, -10, 0, 0, -1, 255, 9);
+        PlayerTracker.State state = new PlayerTracker().get(UUID.randomUUID());
+
+        // Nothing is sent on the first check
+        Assert.assertFalse(state.hasChangedPlot(town, plot));
+
+        state.allow(0, 20.5, 64, 0.5, null);
+        Assert.assertTrue(state.hasChangedPlot(town, plot));
+        Assert.assertFalse(state.hasChangedPlot(town, null));
+
+        state.allow(0, 5.5, 64, 0.5, plot);
+        Assert.assertFalse(state.hasChangedPlot(town, plot));
+        Assert.assertTrue(state.hasChangedPlot(town, neighbour));
+        Assert.assertTrue(state.hasChangedPlot(town, null));
+        Assert.assertSame(plot, state.getPlot());
+
+        // A plot of another town is like no plot at all
+        state.allow(0, -5.5, 64, 0.5, otherPlot);
+        Assert.assertFalse(state.hasChangedPlot(town, null));
+        Assert.assertTrue(state.hasChangedPlot(town, plot));
+    }
+
+    @Test
+    public void shouldCheckTheLocationWhenCrossingAChunk() {
+        PlayerTracker.State state = new PlayerTracker().get(UUID.randomUUID());
+        Assert.assertFalse(state.isInAnotherChunk(0, 0));
+
+        state.allow(0, 15.9, 64, 0.5, null);
+        Assert.assertFalse(state.isInAnotherChunk(0, 0));
+        Assert.assertTrue(state.isInAnotherChunk(1, 0));
+        Assert.assertTrue(state.isInAnotherChunk(0, -1));
+
+        state.allow(0, -0.5, 64, -16.5, null);
+        Assert.assertEquals(-1, state.getAllowedChunkX());
+        Assert.assertEquals(-2, state.getAllowedChunkZ());
+        Assert.assertFalse(state.isInAnotherChunk(-1, -2));
+        Assert.assertTrue(state.isInAnotherChunk(0, -2));
+    }
+
+    /**
+     * Compares checking every player on every tick with checking them only when they moved into another block,
+     * for players standing still and players walking. The check is stood in for by the lookups of the resident and
+     * of the chunk it's in, which the old check did for every player on every tick before asking for the permission.
+     * It measures the tracker only, the permission itself needs a running server.
+     */
+    @Test
+    public void benchmarkIdleAndMovingPlayers() {
+        Benchmark.assumeEnabled();
+        LongObjectMap<Object> blocks = new LongObjectMap<Object>();
+        for (int x = -100; x < 100; x++) {
+            for (int z = -100; z < 100; z++) {
+                blocks.put(LongObjectMap.pack(x, z), new Object());
+            }
+        }
+
+        // Warm up
+        run(blocks, false, false);
+        run(blocks, true, false);
+
+        long idleChecks = run(blocks, false, true);
+        long movingChecks = run(blocks, true, true);
+
+        Assert.assertEquals(PLAYERS, idleChecks);
+        // Walking speed crosses a block every 5 ticks
+        Assert.assertTrue(movingChecks < PLAYERS * TICKS / 3);
+    }
+
+    private long run(LongObjectMap<Object> blocks, boolean moving, boolean print) {
+        PlayerTracker tracker = new PlayerTracker();
+        Map<UUID, Object> residents = new HashMap<UUID, Object>();
+        UUID[] uuids = new UUID[PLAYERS];
+        double[] xs = new double[PLAYERS];
+        double[] zs = new double[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            uuids[i] = UUID.randomUUID();
+            residents.put(uuids[i], new Object());
+            xs[i] = i * 3.5 - 300;
+            zs[i] = -i * 2.5 + 200;
+        }
+
+        long checks = 0;
+        int hits = 0;
+        long everyTick = 0;
+        long tracked = 0;
+        for (int tick = 0; tick < TICKS; tick++) {
+            if (moving) {
+                for (int i = 0; i < PLAYERS; i++) {
+                    xs[i] += 0.2 + (i % 3) * 0.04;
+                    zs[i] -= 0.05;
+                }
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < PLAYERS; i++) {
+                if (residents.get(uuids[i]) != null && blocks.get(LongObjectMap.pack((int) Math.floor(xs[i]) >> 4, (int) Math.floor(zs[i]) >> 4)) != null) {
+                    hits++;
+                }
+            }
+            everyTick += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < PLAYERS; i++) {
+                PlayerTracker.State state = tracker.get(uuids[i]);
+                if (!state.moveTo(0, (int) Math.floor(xs[i]), 64, (int) Math.floor(zs[i]))) {
+                    continue;
+                }
+                checks++;
+                if (residents.get(uuids[i]) != null && blocks.get(LongObjectMap.pack((int) Math.floor(xs[i]) >> 4, (int) Math.floor(zs[i]) >> 4)) != null) {
+                    hits--;
+                }
+                state.allow(0, xs[i], 64, zs[i], null);
+            }
+            tracked += System.nanoTime() - start;
+        }
+
+        if (print) {
+            Benchmark.report("%d %s players: every tick %d checks in %d ns/tick, on block change %d checks in %d ns/tick",
+                    PLAYERS, moving ? "moving" : "idle", PLAYERS * TICKS, everyTick / TICKS, checks, tracked / TICKS);
+        }
+        return checks;
+    }
+}
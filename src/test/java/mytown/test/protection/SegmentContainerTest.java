@@ -0,0 +1,105 @@
+package mytown.test.protection;
+
+import mytown.protection.segment.Segment;
+import mytown.protection.segment.enums.Priority;
+import mytown.test.TestMain;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SegmentContainerTest {
+
+    @BeforeClass
+    public static void initLogger() {
+        TestMain.main();
+    }
+
+    @Test
+    public void shouldOnlyKeepTheHighestPriority() {
+        Segment.Container<TestSegment> container = new Segment.Container<TestSegment>();
+        TestSegment normal = new TestSegment(Number.class, Priority.NORMAL);
+        TestSegment high = new TestSegment(Integer.class, Priority.HIGH);
+        container.add(normal);
+        container.add(high);
+
+        Assert.assertEquals(Arrays.asList(high), container.get(Integer.class));
+        Assert.assertEquals(Arrays.asList(normal), container.get(Long.class));
+        Assert.assertTrue(container.get(String.class).isEmpty());
+
+        // The same lookup is answered from the cache
+        Assert.assertSame(container.get(Integer.class), container.get(Integer.class));
+    }
+
+    @Test
+    public void shouldDropTheCacheWhenTheContainerChanges() {
+        Segment.Container<TestSegment> container = new Segment.Container<TestSegment>();
+        TestSegment first = new TestSegment(Integer.class, Priority.NORMAL);
+        TestSegment second = new TestSegment(Number.class, Priority.NORMAL);
+        container.add(first);
+        Assert.assertEquals(Arrays.asList(first), container.get(Integer.class));
+
+        container.add(second);
+        Assert.assertEquals(Arrays.asList(first, second), container.get(Integer.class));
+
+        container.remove(first);
+        Assert.assertEquals(Arrays.asList(second), container.get(Integer.class));
+
+        container.addAll(Arrays.asList(first));
+        Assert.assertEquals(Arrays.asList(second, first), container.get(Integer.class));
+
+        container.removeAll(Collections.singletonList(second));
+        Assert.assertEquals(Arrays.asList(first), container.get(Integer.class));
+
+        container.set(0, second);
+        Assert.assertEquals(Arrays.asList(second), container.get(Integer.class));
+
+        container.clear();
+        Assert.assertTrue(container.get(Integer.class).isEmpty());
+    }
+
+    @Test
+    public void shouldDropTheCacheWhenASegmentIsDisabled() {
+        Segment.Container<TestSegment> container = new Segment.Container<TestSegment>();
+        Segment.Container<TestSegment> other = new Segment.Container<TestSegment>();
+        TestSegment high = new TestSegment(Integer.class, Priority.HIGH);
+        TestSegment normal = new TestSegment(Integer.class, Priority.NORMAL);
+        TestSegment unrelated = new TestSegment(String.class, Priority.NORMAL);
+        container.add(high);
+        container.add(normal);
+        other.add(unrelated);
+        Assert.assertEquals(Arrays.asList(high), container.get(Integer.class));
+        Assert.assertEquals(Arrays.asList(unrelated), other.get(String.class));
+
+        // The segment of a lower priority is used once the highest one gets disabled
+        high.disable();
+        Assert.assertEquals(Arrays.asList(normal), container.get(Integer.class));
+        Assert.assertEquals(Arrays.asList(unrelated), other.get(String.class));
+
+        unrelated.disable();
+        Assert.assertTrue(other.get(String.class).isEmpty());
+
+        // A reload makes new segments, which are enabled again
+        List<TestSegment> reloaded = new ArrayList<TestSegment>();
+        reloaded.add(new TestSegment(Integer.class, Priority.HIGH));
+        container.clear();
+        container.addAll(reloaded);
+        Assert.assertEquals(reloaded, container.get(Integer.class));
+    }
+
+    private static class TestSegment extends Segment {
+        private TestSegment(Class<?> checkClass, Priority priority) {
+            this.checkClass = checkClass;
+            this.priority = priority;
+        }
+
+        @Override
+        public void disable() {
+            super.disable();
+        }
+    }
+}
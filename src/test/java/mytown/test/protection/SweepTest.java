@@ -0,0 +1,119 @@
+package mytown.test.protection;
+
+import mytown.protection.Sweep;
+import mytown.test.Benchmark;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SweepTest {
+
+    private static final long UNLIMITED = Long.MAX_VALUE / 1000;
+
+    @Test
+    public void shouldSpreadAPassOverTheInterval() {
+        CountingSweep sweep = new CountingSweep(0);
+        List<Object> list = createList(1000);
+
+        for (int tick = 0; tick < 20; tick++) {
+            Assert.assertEquals(50, sweep.tick(list, tick, 20, UNLIMITED));
+        }
+        Assert.assertEquals(1, sweep.getPasses());
+        Assert.assertEquals(20, sweep.getLastTicks());
+        Assert.assertEquals(1000, sweep.checked);
+    }
+
+    @Test
+    public void shouldWaitForTheIntervalBeforeTheNextPass() {
+        CountingSweep sweep = new CountingSweep(0);
+        List<Object> list = createList(5);
+
+        for (int tick = 0; tick < 60; tick++) {
+            sweep.tick(list, tick, 20, UNLIMITED);
+        }
+        Assert.assertEquals(3, sweep.getPasses());
+        Assert.assertEquals(15, sweep.checked);
+        Assert.assertEquals(5, sweep.getLastTicks());
+    }
+
+    @Test
+    public void shouldTakeLongerWhenOverTheBudget() {
+        // 100 checks of 50 microseconds with 1 ms per tick, about 20 checks fit in a tick
+        CountingSweep sweep = new CountingSweep(50000);
+        List<Object> list = createList(100);
+
+        int tick = 0;
+        while (sweep.getPasses() == 0) {
+            Assert.assertTrue(sweep.tick(list, tick++, 1, 1000) > 0);
+        }
+        Assert.assertEquals(100, sweep.checked);
+        Assert.assertTrue(sweep.getLastTicks() > 1);
+        Assert.assertEquals(sweep.getLastTicks(), sweep.getMaxTicks());
+    }
+
+    /**
+     * Compares the longest tick of checking everything once every 20 ticks with spreading it over them.
+     */
+    @Test
+    public void benchmarkLongestTick() {
+        Benchmark.assumeEnabled();
+        List<Object> list = createList(20000);
+        // Warm up
+        run(new CountingSweep(1000), list, 20, true);
+        run(new CountingSweep(1000), list, 20, false);
+
+        long[] once = run(new CountingSweep(1000), list, 20, true);
+        long[] spread = run(new CountingSweep(1000), list, 20, false);
+
+        Benchmark.report("%d checks every %d ticks: at once %d us in the longest tick, spread %d us in the longest tick",
+                list.size(), 20, once[0] / 1000, spread[0] / 1000);
+        Assert.assertEquals(once[1], spread[1]);
+    }
+
+    /**
+     * Returns the longest tick in nanoseconds and the number of checks.
+     */
+    private long[] run(CountingSweep sweep, List<Object> list, int interval, boolean atOnce) {
+        long longest = 0;
+        for (int tick = 0; tick < interval * 5; tick++) {
+            long start = System.nanoTime();
+            if (atOnce) {
+                if (tick % interval == 0) {
+                    sweep.tick(list, tick, 1, UNLIMITED);
+                }
+            } else {
+                sweep.tick(list, tick, interval, UNLIMITED);
+            }
+            longest = Math.max(longest, System.nanoTime() - start);
+        }
+        return new long[] {longest, sweep.checked};
+    }
+
+    private List<Object> createList(int size) {
+        List<Object> list = new ArrayList<Object>();
+        for (int i = 0; i < size; i++) {
+            list.add(new Object());
+        }
+        return list;
+    }
+
+    private static class CountingSweep extends Sweep {
+        private final long checkTime;
+        private long checked = 0;
+
+        public CountingSweep(long checkTime) {
+            this.checkTime = checkTime;
+        }
+
+        @Override
+        protected void check(Object item) {
+            checked++;
+            long end = System.nanoTime() + checkTime;
+            while (System.nanoTime() < end) {
+                // Busy, like a check of the protections
+            }
+        }
+    }
+}
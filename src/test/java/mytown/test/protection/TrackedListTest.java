@@ -0,0 +1,123 @@
+package mytown.test.protection;
+
+import mytown.protection.Sweep;
+import mytown.protection.TrackedList;
+import mytown.test.Benchmark;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TrackedListTest {
+
+    private static final int POPULATION = 50000;
+    private static final int PROTECTED = 500;
+
+    @Test
+    public void shouldAddOnceAndRemoveAnywhere() {
+        TrackedList<Object> list = new TrackedList<Object>();
+        List<Object> items = new ArrayList<Object>();
+        for (int i = 0; i < 10; i++) {
+            Object item = new Object();
+            items.add(item);
+            Assert.assertTrue(list.add(item));
+        }
+        Assert.assertFalse(list.add(items.get(3)));
+        Assert.assertEquals(10, list.size());
+
+        Assert.assertTrue(list.remove(items.get(3)));
+        Assert.assertTrue(list.remove(items.get(9)));
+        Assert.assertTrue(list.remove(items.get(0)));
+        Assert.assertFalse(list.remove(items.get(0)));
+        Assert.assertEquals(7, list.size());
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(i != 0 && i != 3 && i != 9, list.contains(items.get(i)));
+        }
+        for (int i = 0; i < list.size(); i++) {
+            Assert.assertTrue(items.contains(list.get(i)));
+        }
+    }
+
+    @Test
+    public void shouldSweepEveryItemWhenSomeRemoveThemselves() {
+        final TrackedList<Object> list = new TrackedList<Object>();
+        final List<Object> dead = new ArrayList<Object>();
+        for (int i = 0; i < 100; i++) {
+            Object item = new Object();
+            list.add(item);
+            if (i % 3 == 0) {
+                dead.add(item);
+            }
+        }
+
+        final Map<Object, Integer> checks = new IdentityHashMap<Object, Integer>();
+        Sweep sweep = new Sweep() {
+            @Override
+            protected void check(Object item) {
+                Integer count = checks.get(item);
+                checks.put(item, count == null ? 1 : count + 1);
+                if (dead.contains(item)) {
+                    list.remove(item);
+                }
+            }
+        };
+        for (int tick = 0; tick < 10; tick++) {
+            sweep.tick(list, tick, 10, Long.MAX_VALUE / 1000);
+        }
+
+        Assert.assertEquals(1, sweep.getPasses());
+        Assert.assertEquals(100, checks.size());
+        for (Integer count : checks.values()) {
+            Assert.assertEquals(1, (int) count);
+        }
+        Assert.assertEquals(100 - dead.size(), list.size());
+    }
+
+    /**
+     * Compares going through all the entities of a world to find the protected ones with going through those only.
+     */
+    @Test
+    public void benchmarkSweepCost() {
+        Benchmark.assumeEnabled();
+        List<Object> world = new ArrayList<Object>();
+        TrackedList<Object> tracked = new TrackedList<Object>();
+        final Map<Object, Boolean> protectedItems = new IdentityHashMap<Object, Boolean>();
+        for (int i = 0; i < POPULATION; i++) {
+            Object item = new Object();
+            world.add(item);
+            if (i % (POPULATION / PROTECTED) == 0) {
+                tracked.add(item);
+                protectedItems.put(item, true);
+            }
+        }
+
+        long[] found = new long[1];
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            for (Object item : world) {
+                if (protectedItems.containsKey(item)) {
+                    found[0]++;
+                }
+            }
+        }
+        long worldTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < tracked.size(); j++) {
+                if (tracked.get(j) != null) {
+                    found[0]--;
+                }
+            }
+        }
+        long trackedTime = System.nanoTime() - start;
+
+        Benchmark.report("%d protected of %d: whole world %d us/pass, tracked only %d us/pass",
+                PROTECTED, POPULATION, worldTime / 20000, trackedTime / 20000);
+        Assert.assertEquals(0, found[0]);
+    }
+}
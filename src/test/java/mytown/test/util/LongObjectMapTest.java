@@ -0,0 +1,119 @@
+package mytown.test.util;
+
+import mytown.test.Benchmark;
+import mytown.util.LongObjectMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class LongObjectMapTest {
+
+    private static final String KEY_FORMAT = "%s;%s;%s";
+    private static final int CHUNKS = 20000;
+    private static final int LOOKUPS = 1000000;
+
+    @Test
+    public void shouldPutGetAndRemove() {
+        LongObjectMap<String> map = new LongObjectMap<String>();
+        for (int x = -50; x < 50; x++) {
+            for (int z = -50; z < 50; z++) {
+                map.put(LongObjectMap.pack(x, z), x + ";" + z);
+            }
+        }
+        Assert.assertEquals(10000, map.size());
+        Assert.assertEquals("-3;7", map.get(LongObjectMap.pack(-3, 7)));
+        Assert.assertNull(map.get(LongObjectMap.pack(7, -3000)));
+
+        for (int x = -50; x < 50; x += 2) {
+            for (int z = -50; z < 50; z++) {
+                Assert.assertNotNull(map.remove(LongObjectMap.pack(x, z)));
+            }
+        }
+        Assert.assertEquals(5000, map.size());
+        for (int x = -50; x < 50; x++) {
+            for (int z = -50; z < 50; z++) {
+                Assert.assertEquals(x % 2 != 0, map.containsKey(LongObjectMap.pack(x, z)));
+            }
+        }
+
+        int iterated = 0;
+        for (String value : map.values()) {
+            Assert.assertNotNull(value);
+            iterated++;
+        }
+        Assert.assertEquals(map.size(), iterated);
+    }
+
+    @Test
+    public void shouldPackCoordinatesLosslessly() {
+        int[] coords = {0, 1, -1, 1875000, -1875000, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int x : coords) {
+            for (int z : coords) {
+                long key = LongObjectMap.pack(x, z);
+                Assert.assertEquals(x, LongObjectMap.unpackX(key));
+                Assert.assertEquals(z, LongObjectMap.unpackZ(key));
+            }
+        }
+    }
+
+    @Test
+    public void shouldPackBlockCoordinatesLosslessly() {
+        int[] coords = {0, 1, -1, 30000000, -30000000};
+        int[] heights = {0, 1, 64, 255};
+        for (int x : coords) {
+            for (int z : coords) {
+                for (int y : heights) {
+                    long key = LongObjectMap.packBlock(x, y, z);
+                    Assert.assertEquals(x, LongObjectMap.unpackBlockX(key));
+                    Assert.assertEquals(y, LongObjectMap.unpackBlockY(key));
+                    Assert.assertEquals(z, LongObjectMap.unpackBlockZ(key));
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the old String keyed lookup of the TownBlock containers with the packed long one.
+     */
+    @Test
+    public void benchmarkChunkLookup() {
+        Benchmark.assumeEnabled();
+        Random random = new Random(42);
+        Map<String, Object> stringMap = new HashMap<String, Object>();
+        LongObjectMap<Object> longMap = new LongObjectMap<Object>();
+        int[] xs = new int[CHUNKS];
+        int[] zs = new int[CHUNKS];
+        for (int i = 0; i < CHUNKS; i++) {
+            xs[i] = random.nextInt(4000) - 2000;
+            zs[i] = random.nextInt(4000) - 2000;
+            Object block = new Object();
+            stringMap.put(String.format(KEY_FORMAT, 0, xs[i], zs[i]), block);
+            longMap.put(LongObjectMap.pack(xs[i], zs[i]), block);
+        }
+
+        int hits = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            int index = i % CHUNKS;
+            if (stringMap.containsKey(String.format(KEY_FORMAT, 0, xs[index], zs[index] + (i & 1)))) {
+                hits++;
+            }
+        }
+        long stringTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            int index = i % CHUNKS;
+            if (longMap.containsKey(LongObjectMap.pack(xs[index], zs[index] + (i & 1)))) {
+                hits--;
+            }
+        }
+        long longTime = System.nanoTime() - start;
+
+        Benchmark.report("Chunk lookup: String key %d ns/op, packed long key %d ns/op", stringTime / LOOKUPS, longTime / LOOKUPS);
+        Assert.assertEquals(0, hits);
+    }
+}